@@ -0,0 +1,104 @@
+/* Copyright (c) 2007-2017 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package minesweeper;
+
+import java.nio.ByteOrder;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * VectorKernels are the BoardKernels written with the Vector API, a whole vector of squares
+ * (e.g. 64 bytes or 32 shorts with AVX-512) per operation. The tails shorter than a vector are
+ * done by the scalar kernels.
+ *
+ * Only loaded (reflectively) through BoardKernels.get(), which falls back on the scalar kernels
+ * if this class can't be loaded. It's kept out of src, in its own source tree, since compiling
+ * and running it requires "--add-modules jdk.incubator.vector": it's compiled against the
+ * classes of src, and its class is added to the class path of the runs using the module, e.g.
+ *      javac -d bin src/minesweeper/*.java src/minesweeper/server/*.java
+ *      javac --add-modules jdk.incubator.vector -cp bin -d bin-vector src-vector/minesweeper/*.java
+ *      java --add-modules jdk.incubator.vector -cp bin:bin-vector minesweeper.server.MinesweeperServer
+ */
+final class VectorKernels extends BoardKernels {
+
+    private static final VectorSpecies<Byte> BYTES = ByteVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Short> SHORTS = ShortVector.SPECIES_PREFERRED;
+    // a space in the high byte of each short, i.e. after the glyph in little endian order
+    private static final short SPACE_AFTER = (short) (' ' << 8);
+
+    @Override
+    String getName() {
+        return "vector " + BYTES.vectorBitSize() + " bits";
+    }
+
+    /**
+     * countColumn
+     * see BoardKernels.countColumn: the bombs of each row of the three columns are summed into
+     * sums (shifted by one row, with a 0 above and below), then the sums of three consecutive
+     * rows are added, as three loads of sums at offsets 0, 1 and 2.
+     */
+    @Override
+    void countColumn(boolean[] left, boolean[] column, boolean[] right, byte[] counts) {
+        int n = column.length;
+        byte[] sums = new byte[n + 2];
+        int bound = BYTES.loopBound(n);
+        int y = 0;
+        for (; y < bound; y += BYTES.length()) {
+            ByteVector sum = ByteVector.fromBooleanArray(BYTES, column, y);
+            if (left != null)
+                sum = sum.add(ByteVector.fromBooleanArray(BYTES, left, y));
+            if (right != null)
+                sum = sum.add(ByteVector.fromBooleanArray(BYTES, right, y));
+            sum.intoArray(sums, y + 1);
+        }
+        for (; y < n; y++) {
+            sums[y + 1] = (byte) (((left != null && left[y]) ? 1 : 0) + (column[y] ? 1 : 0) + ((right != null && right[y]) ? 1 : 0));
+        }
+
+        for (y = 0; y < bound; y += BYTES.length()) {
+            ByteVector.fromArray(BYTES, sums, y)
+                      .add(ByteVector.fromArray(BYTES, sums, y + 1))
+                      .add(ByteVector.fromArray(BYTES, sums, y + 2))
+                      .intoArray(counts, y);
+        }
+        for (; y < n; y++) {
+            counts[y] = (byte) (sums[y] + sums[y + 1] + sums[y + 2]);
+        }
+    }
+
+    /**
+     * glyphs
+     * see BoardKernels.glyphs: each state becomes a short holding its glyph and a space, which
+     * are stored as two bytes. An unexpected state throws, as with the scalar kernels.
+     */
+    @Override
+    void glyphs(short[] states, int n, byte[] out, int offset) {
+        int bound = SHORTS.loopBound(n);
+        int j = 0;
+        for (; j < bound; j += SHORTS.length()) {
+            ShortVector state = ShortVector.fromArray(SHORTS, states, j);
+            VectorMask<Short> invalid = state.compare(VectorOperators.LT, Board.FLAGGED)
+                                             .or(state.compare(VectorOperators.GT, 8));
+            if (invalid.anyTrue())
+                glyph(states[j + invalid.firstTrue()]); // throws
+            VectorMask<Short> empty = state.compare(VectorOperators.EQ, 0);
+            VectorMask<Short> untouched = state.compare(VectorOperators.EQ, Board.UNTOUCHED);
+            VectorMask<Short> flagged = state.compare(VectorOperators.EQ, Board.FLAGGED);
+            state.add((short) '0')
+                 .blend((short) ' ', empty)
+                 .blend((short) '-', untouched)
+                 .blend((short) 'F', flagged)
+                 .or(SPACE_AFTER)
+                 .intoByteArray(out, offset + 2 * j, ByteOrder.LITTLE_ENDIAN);
+        }
+        for (; j < n; j++) {
+            out[offset + 2 * j] = glyph(states[j]);
+            out[offset + 2 * j + 1] = ' ';
+        }
+    }
+}
@@ -0,0 +1,1021 @@
+/* Copyright (c) 2007-2017 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package minesweeper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * AbstractBoard is the game of a Board whose squares are kept in storage of its subclass,
+ * addressed with long indices (x * sizeY + y): the subclasses only store the state, the version
+ * and the bomb of each square (see state, cellVersion and isMine), the rules of the game,
+ * the locking, the cascades, the drawings and the events being those of AbstractBoard.
+ *
+ * Cascades are revealed square by square, sequentially, unless the subclass floods them faster
+ * (see flood, and DenseBoard's engines). The counts of squares (getBombs, getUntouched...) and
+ * the drawings are limited to what an int or an array can hold, as in the Board interface: they
+ * throw ArithmeticException (resp. RuntimeException) beyond.
+ *
+ * A subclass makes its boards from random bombs (see placeMines), from a board file in the
+ * format of DenseBoard(File) (see readSizes and readMines), or empty for bombs placed lazily
+ * (see deferMines). Its storage is only accessed by AbstractBoard, with the board's lock held,
+ * but for the bombs while deferMines places them in the background.
+ */
+abstract class AbstractBoard implements Board {
+
+    // the size of the board specified.
+    private final int sizeX;
+    private final int sizeY;
+    private final long squares;
+
+    // number of bombs, and of squares untouched, flagged and dug (read by MappedBoard)
+    long numBombs;
+    long numUntouched;
+    long numFlagged;
+    long numDug;
+
+    // number of operations that changed the state of the board so far (read by MappedBoard)
+    long version;
+
+    // true once the storage of the board has been released
+    private boolean isReleased = false;
+
+    // bombs being placed in the background until the first dig (see deferMines): the number
+    // of bombs placed, or null once the first dig took them
+    private CompletableFuture<Long> pendingMines = null;
+
+    // listeners to be notified when the state of the board changes
+    private final List<BoardListener> listeners = new CopyOnWriteArrayList<>();
+
+    // lock wait and hold times of the operations on this board
+    private final BoardMonitor monitor = new BoardMonitor();
+
+    // squares revealed by a cascade each time it holds the lock, 0 for whole cascades
+    private int cascadeSlice = 0;
+
+    // squares changed by the last CHANGE_LOG changes of squares (see getChangedSince), in a ring:
+    // the change c (counted from 0) is of the square changes[c % CHANGE_LOG], as y * sizeX + x,
+    // by the operation of version changeVersions[c % CHANGE_LOG]
+    private static final int CHANGE_LOG = 1 << 12;
+    private final long[] changes = new long[CHANGE_LOG];
+    private final long[] changeVersions = new long[CHANGE_LOG];
+    private long numChanges = 0;
+
+    // the log holds all the changes of squares after this version
+    private long loggedSince = 0;
+
+    private static final BoardKernels kernels = BoardKernels.get();
+
+    // rep invariant:
+    //   1. sizeX > 0, sizeY > 0, squares == sizeX * sizeY
+    //   2. numBombs <= squares
+    //   3. numUntouched + numFlagged + numDug == squares
+    //   4. version >= 0, and it only increases
+    //   5. 0 <= the version of each square <= version
+    //   6. cascadeSlice >= 0
+    //   7. the versions of the changes of the log never decrease, they are > loggedSince, and
+    //      each change of a square after loggedSince is in the log
+    //
+    // abstraction function:
+    //    represents the state of a game of Minesweeper's board, the square (x, y) being
+    //    the square x * sizeY + y of the storage of the subclass.
+    //
+    // All reps are private, and the storage never leaves the board, so no rep exposure risk.
+    //
+    // Thread safety argument:
+    //   all accesses to the storage happen within the board's methods, with the board's lock
+    //   (its monitor, as Board requires) held (and after checking it wasn't released, which also takes the lock), but for the
+    //   bombs placed in the background by pendingMines: the board doesn't access them until the
+    //   first dig or release() joins it.
+    //   listeners is a thread safe list, and monitor is thread safe.
+
+    /**
+     * constructor
+     * make a board of sizeX x sizeY squares over the storage of the subclass, which must be
+     * all untouched, with versions 0 and without bombs. The counters are those of an empty
+     * board; see placeMines(), readMines(), recover() and restore() otherwise.
+     */
+    AbstractBoard (int sizeX, int sizeY) {
+        this.sizeX = sizeX;
+        this.sizeY = sizeY;
+        this.squares = (long) sizeX * sizeY;
+        this.numUntouched = squares;
+    }
+
+    /*
+     * the storage of the squares, with the lock held, for a square s of the board:
+     *    state, putState - the state of s (see getState), UNTOUCHED in a new storage;
+     *    cellVersion, putCellVersion - the version of s (see getCellVersion), 0 in a new storage;
+     *    isMine, putMine - true iff s has a bomb, false in a new storage;
+     *    releaseSquares - free the storage, which isn't accessed afterwards.
+     */
+    abstract int state(long s);
+
+    abstract void putState(long s, int state);
+
+    abstract long cellVersion(long s);
+
+    abstract void putCellVersion(long s, long version);
+
+    abstract boolean isMine(long s);
+
+    abstract void putMine(long s, boolean mine);
+
+    abstract void releaseSquares();
+
+    /*
+     * the same storage for a square (x, y) inside the board, used by the operations on the
+     * squares and the cascades: index(x, y) by default, a subclass addressing its storage by
+     * coordinates overrides them to skip the index (see DenseBoard).
+     */
+    int state(int x, int y) {
+        return state(index(x, y));
+    }
+
+    void putState(int x, int y, int state) {
+        putState(index(x, y), state);
+    }
+
+    long cellVersion(int x, int y) {
+        return cellVersion(index(x, y));
+    }
+
+    void putCellVersion(int x, int y, long version) {
+        putCellVersion(index(x, y), version);
+    }
+
+    boolean isMine(int x, int y) {
+        return isMine(index(x, y));
+    }
+
+    /*
+     * the hooks of a subclass keeping structures of its own over the storage, with the lock held
+     * (they do nothing by default):
+     *    checkNeighbors - the number of bombs around the square (x, y), the square included;
+     *    mineRemoved - the bomb of the square (x, y) dug was removed, before the counts of the
+     *                  squares around are updated;
+     *    minesTaken - the bombs placed in the background were taken by the first dig;
+     *    flood - reveal squares of a whole cascade faster than square by square, popping their
+     *            frontier off cascade, and return their number (they are untouched squares,
+     *            dug with the state and version of digSquare, but not logged, see
+     *            getChangedSince), or -1 to expand the top square of cascade square by square.
+     */
+    int checkNeighbors(int x, int y) {
+        int result = 0;
+        for (int i = Math.max(0, x - 1); i <= Math.min(sizeX - 1, x + 1); i++) {
+            for (int j = Math.max(0, y - 1); j <= Math.min(sizeY - 1, y + 1); j++) {
+                if (isMine(i, j))
+                    result++;
+            }
+        }
+        return result;
+    }
+
+    void mineRemoved(int x, int y) {
+    }
+
+    void minesTaken() {
+    }
+
+    long flood(Cascade cascade) {
+        return -1;
+    }
+
+    /*
+     * the states of the row y into row, with the lock held.
+     */
+    void states(int y, short[] row) {
+        for (int x = 0; x < sizeX; x++) {
+            row[x] = (short) state(x, y);
+        }
+    }
+
+    static int checkSizes(int sizeX, int sizeY) {
+        if ((sizeX <= 0) || (sizeY <= 0))
+            throw new RuntimeException("invalid board size, x="+sizeX+",y="+sizeY);
+        return sizeX;
+    }
+
+    /*
+     * place a bomb on each square with a probability of 0.25, on an empty board.
+     */
+    void placeMines() {
+        Random rand = new Random();
+        for (long s = 0; s < squares; s++) {
+            if (rand.nextInt(4) == 0)
+                setMine(s);
+        }
+    }
+
+    /*
+     * place a bomb on each square with a probability of 0.25 in the background, on an empty
+     * board: the first dig of an untouched square waits for them, and takes the bombs off its
+     * square and the squares around it, so it's safe and starts a cascade (digging a flagged
+     * square before takes nothing). Until then, the board has no bomb.
+     */
+    void deferMines() {
+        pendingMines = CompletableFuture.supplyAsync(() -> {
+            Random rand = new Random();
+            long bombs = 0;
+            for (long s = 0; s < squares; s++) {
+                if (rand.nextInt(4) == 0) {
+                    putMine(s, true);
+                    bombs++;
+                }
+            }
+            return bombs;
+        });
+    }
+
+    /*
+     * take the bombs placed in the background on the first dig of a covered square, (x, y)
+     * on the board, with the lock held.
+     */
+    private void takeMines(int x, int y) {
+        numBombs = pendingMines.join();
+        pendingMines = null;
+        for (int i = Math.max(0, x - 1); i <= Math.min(sizeX - 1, x + 1); i++) {
+            for (int j = Math.max(0, y - 1); j <= Math.min(sizeY - 1, y + 1); j++) {
+                if (isMine(index(i, j)))
+                    clearMine(index(i, j));
+            }
+        }
+        minesTaken();
+    }
+
+    /*
+     * place the bombs of the rows of a board file, after its first line (see readSizes), on an
+     * empty board of its size. The reader is closed afterwards, and the board released if the
+     * rows are invalid.
+     */
+    void readMines(BufferedReader reader) throws IOException {
+        try (BufferedReader lines = reader) {
+            for (int i = 0; i < sizeY; i++) {
+                String line = lines.readLine();
+                if (line == null)
+                    throw new RuntimeException("not enough rows in file!");
+                String[] values = line.split(" ");
+                if (values.length != sizeX)
+                    throw new RuntimeException("invalid row read! length="+values.length);
+                for (int j = 0; j < sizeX; j++) {
+                    int n = Integer.parseInt(values[j]);
+                    if (n == 1)
+                        setMine(index(j, i));
+                    else if (n != 0)
+                        throw new RuntimeException("invalid number read ("+n+")");
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            release();
+            throw e;
+        }
+    }
+
+    /*
+     * read the first line of a board file, see DenseBoard(File): its sizes {x, y}.
+     */
+    static int[] readSizes(BufferedReader reader) throws IOException {
+        try {
+            String line = reader.readLine();
+            if (line == null)
+                throw new RuntimeException("empty file!");
+            String[] sizes = line.split(" ");
+            int sizeX = Integer.parseInt(sizes[0]);
+            int sizeY = Integer.parseInt(sizes[1]);
+            checkSizes(sizeX, sizeY);
+            return new int[] {sizeX, sizeY};
+        } catch (IOException | RuntimeException e) {
+            reader.close();
+            throw e;
+        }
+    }
+
+    // assert the rep invariant, see above (1 to 3)
+    private void checkRep() {
+        if ((sizeX <= 0) || (sizeY <= 0) || (squares != (long) sizeX * sizeY))
+            throw new RuntimeException("Board sizes must greater than zero (sizeX = "+sizeX+", sizeY = "+sizeY+")");
+        if (numBombs > squares)
+            throw new RuntimeException("numBombs too big (numBombs = "+numBombs+", squares = "+squares+")");
+        if (numUntouched + numFlagged + numDug != squares)
+            throw new RuntimeException("number of cells don't match! numUntouched = "+numUntouched+
+                                       ",numFlagged = "+numFlagged+",numDug = "+numDug+
+                                       ",squares = "+squares);
+    }
+
+    /*
+     * throw if the board was released.
+     */
+    private void checkLive() {
+        if (isReleased)
+            throw new IllegalStateException("the board was released");
+    }
+
+    private long index(int x, int y) {
+        return (long) x * sizeY + y;
+    }
+
+    /*
+     * place a bomb on the square s, which has none, of a board being made.
+     */
+    void setMine(long s) {
+        putMine(s, true);
+        numBombs++;
+    }
+
+    private void clearMine(long s) {
+        putMine(s, false);
+        numBombs--;
+    }
+
+    /*
+     * called with the lock held before an operation changes the planes, the first change of a
+     * dig included (the slices of a cascade only follow it).
+     */
+    void changing() {
+    }
+
+    /*
+     * setState
+     * change the state of square (x, y), recording the version of the operation doing it.
+     */
+    private void setState(int x, int y, int state) {
+        putState(x, y, state);
+        putCellVersion(x, y, version + 1); // version is bumped when the operation completes
+        logChange(x, y);
+    }
+
+    /*
+     * log the change of the square (x, y) by the operation running, see getChangedSince.
+     */
+    private void logChange(int x, int y) {
+        int i = (int) (numChanges % CHANGE_LOG);
+        if (numChanges >= CHANGE_LOG)
+            loggedSince = Math.max(loggedSince, changeVersions[i]); // dropped
+        changes[i] = (long) y * sizeX + x;
+        changeVersions[i] = version + 1;
+        numChanges++;
+    }
+
+    @Override
+    public synchronized int getBoardSizeX() {
+        return sizeX;
+    }
+
+    @Override
+    public synchronized int getBoardSizeY() {
+        return sizeY;
+    }
+
+    @Override
+    public synchronized int getBombs() {
+        return Math.toIntExact(numBombs);
+    }
+
+    @Override
+    public synchronized boolean hasPendingMines() {
+        return pendingMines != null;
+    }
+
+    @Override
+    public synchronized int getFlagged() {
+        return Math.toIntExact(numFlagged);
+    }
+
+    @Override
+    public synchronized int getUntouched() {
+        return Math.toIntExact(numUntouched);
+    }
+
+    @Override
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    @Override
+    public synchronized long getCellVersion(int x, int y) {
+        checkLive();
+        return cellVersion(x, y);
+    }
+
+    /**
+     * getChangedSince
+     * see Board.getChangedSince. The squares changed after the versions of the log of the last
+     * CHANGE_LOG changes of squares are found in the log, in O(changes); for older versions,
+     * which at least CHANGE_LOG changes of squares (or a flood, see flood) followed, the board is
+     * scanned.
+     */
+    @Override
+    public synchronized int[] getChangedSince(long since, int max) {
+        checkLive();
+        if (since == version)
+            return new int[0];
+        if (since < loggedSince)
+            return scanChangedSince(since, max);
+
+        // the changes after since, the last ones of the log
+        int n = 0;
+        while (n < Math.min(numChanges, CHANGE_LOG)
+               && changeVersions[(int) ((numChanges - 1 - n) % CHANGE_LOG)] > since) {
+            n++;
+        }
+        long[] squares = new long[n];
+        for (int k = 0; k < n; k++) {
+            squares[k] = changes[(int) ((numChanges - 1 - k) % CHANGE_LOG)];
+        }
+        // row by row, each square once
+        Arrays.sort(squares);
+        int[] changed = new int[3 * Math.min(max, n)];
+        int m = 0;
+        for (int k = 0; k < n; k++) {
+            if (k > 0 && squares[k] == squares[k - 1])
+                continue;
+            if (m == max)
+                return null;
+            int x = (int) (squares[k] % sizeX);
+            int y = (int) (squares[k] / sizeX);
+            changed[3*m] = x;
+            changed[3*m + 1] = y;
+            changed[3*m + 2] = state(x, y);
+            m++;
+        }
+        return Arrays.copyOf(changed, 3 * m);
+    }
+
+    /*
+     * getChangedSince, scanning the board for the squares whose version is after since.
+     */
+    private int[] scanChangedSince(long since, int max) {
+        int[] changed = new int[3 * Math.min(max, 64)];
+        int n = 0;
+
+        for (int i = 0; i < sizeY; i++) {
+            for (int j = 0; j < sizeX; j++) {
+                if (cellVersion(j, i) > since) {
+                    if (n == max)
+                        return null;
+                    if (3 * n == changed.length)
+                        changed = Arrays.copyOf(changed, 2 * changed.length);
+                    changed[3*n] = j;
+                    changed[3*n + 1] = i;
+                    changed[3*n + 2] = state(j, i);
+                    n++;
+                }
+            }
+        }
+        return Arrays.copyOf(changed, 3 * n);
+    }
+
+    @Override
+    public synchronized int getState(int x, int y) {
+        checkLive();
+        return state(x, y);
+    }
+
+    @Override
+    public void addListener(BoardListener listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void removeListener(BoardListener listener) {
+        listeners.remove(listener);
+    }
+
+    @Override
+    public BoardMonitor getMonitor() {
+        return monitor;
+    }
+
+    /*
+     * account for an operation on the square (x, y) that changed the board: bump the version
+     * and notify all listeners.
+     */
+    private void changed(int x, int y) {
+        version++;
+        for (BoardListener listener : listeners) {
+            listener.boardChanged(this, x, y);
+        }
+    }
+
+    @Override
+    public void flag (int x, int y) {
+        long start = System.nanoTime();
+        long locked, released;
+        synchronized (this) {
+            locked = System.nanoTime();
+            flagLocked(x, y, true);
+            released = System.nanoTime();
+        }
+        monitor.record(BoardMonitor.Op.FLAG, x, y, 0, locked - start, released - locked);
+    }
+
+    @Override
+    public void deflag (int x, int y) {
+        long start = System.nanoTime();
+        long locked, released;
+        synchronized (this) {
+            locked = System.nanoTime();
+            flagLocked(x, y, false);
+            released = System.nanoTime();
+        }
+        monitor.record(BoardMonitor.Op.DEFLAG, x, y, 0, locked - start, released - locked);
+    }
+
+    /*
+     * flag (or unflag) the square (x, y), see flag() and deflag(), with the lock held.
+     */
+    private void flagLocked (int x, int y, boolean flag) {
+        checkLive();
+        BoardEvents.Flag event = new BoardEvents.Flag();
+        event.begin();
+
+        if ((x < 0) || (x >= sizeX) || (y < 0) || (y >= sizeY))
+            return;
+
+        boolean changed = (state(x, y) == (flag ? UNTOUCHED : FLAGGED));
+        if (changed) {
+            changing();
+            setState(x, y, flag ? FLAGGED : UNTOUCHED);
+            numFlagged += flag ? 1 : -1;
+            numUntouched -= flag ? 1 : -1;
+            changed(x, y);
+        }
+        checkRep();
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.x = x;
+            event.y = y;
+            event.flagged = flag;
+            event.changed = changed;
+            event.commit();
+        }
+    }
+
+    /**
+     * dig
+     * see Board.dig. If cascades are sliced (see setCascadeSlice), dig returns once its whole
+     * cascade is revealed, but the lock is released between two slices.
+     */
+    @Override
+    public int dig (int x, int y) {
+        long start = System.nanoTime();
+        long locked, released;
+        long dug;
+        int state;
+        Cascade cascade = new Cascade();
+        synchronized (this) {
+            locked = System.nanoTime();
+            dug = numDug;
+            state = digLocked(x, y, cascade);
+            dug = numDug - dug;
+            released = System.nanoTime();
+        }
+        // the rest of a sliced cascade
+        while (!cascade.isEmpty()) {
+            dug += digSlice(x, y, cascade);
+        }
+        monitor.record(BoardMonitor.Op.DIG, x, y, (int) Math.min(dug, Integer.MAX_VALUE), locked - start, released - locked);
+        return state;
+    }
+
+    /*
+     * dig the square (x, y), see dig(), with the lock held. The cascade is left with the
+     * frontier of the squares still to be revealed, if it's sliced.
+     */
+    private int digLocked (int x, int y, Cascade cascade) {
+        checkLive();
+        BoardEvents.Dig event = new BoardEvents.Dig();
+        event.begin();
+
+        long dug = numDug;
+        int state = NOP;
+        if ((x >= 0) && (x < sizeX) && (y >= 0) && (y < sizeY)) {
+            if (state(x, y) == UNTOUCHED) {
+                // a flagged square isn't dug: the first dig is the first one of a covered square
+                if (pendingMines != null)
+                    takeMines(x, y);
+                changing();
+            }
+            state = digSquare(x, y, cascade);
+            digMore(cascade, cascadeBudget());
+        }
+        if (numDug != dug) {
+            // at least one square has been revealed
+            changed(x, y);
+        }
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.x = x;
+            event.y = y;
+            event.result = state;
+            event.cascadeSize = (int) Math.min(numDug - dug, Integer.MAX_VALUE);
+            event.commit();
+        }
+        return state;
+    }
+
+    /*
+     * reveal one more slice of the cascade started by dig(x, y), and return the number of
+     * squares revealed.
+     */
+    private long digSlice (int x, int y, Cascade cascade) {
+        long start = System.nanoTime();
+        long locked, released;
+        long dug;
+        synchronized (this) {
+            locked = System.nanoTime();
+            checkLive();
+            changing();
+            dug = numDug;
+            digMore(cascade, cascadeBudget());
+            dug = numDug - dug;
+            if (dug > 0) {
+                changed(x, y);
+            }
+            released = System.nanoTime();
+        }
+        monitor.record(BoardMonitor.Op.CASCADE, x, y, (int) Math.min(dug, Integer.MAX_VALUE), locked - start, released - locked);
+        return dug;
+    }
+
+    /*
+     * number of squares a cascade may reveal before releasing the lock.
+     */
+    private long cascadeBudget () {
+        return (cascadeSlice > 0) ? cascadeSlice : Long.MAX_VALUE;
+    }
+
+    /*
+     * reveal the square (x, y), inside the board, see dig(). Listeners are not notified, so a
+     * whole cascade (see digMore) results in a single notification. If the square has no bomb
+     * around, it's pushed on the cascade's frontier.
+     */
+    private int digSquare (int x, int y, Cascade cascade) {
+        int state = state(x, y);
+        if (state != UNTOUCHED)
+            return state;
+
+        numUntouched--;
+        if (isMine(x, y)) {
+            // change the square to contain no bomb, and update the neighbors' counts
+            clearMine(index(x, y));
+            mineRemoved(x, y);
+            updateNeighbors(x, y);
+            state = BOMB;
+        }
+        int count = checkNeighbors(x, y);
+        setState(x, y, count);
+        numDug++;
+        if (count == 0)
+            cascade.push(index(x, y));
+        return (state == BOMB) ? BOMB : count;
+    }
+
+    /*
+     * reveal the untouched squares without bomb around the squares of the cascade's frontier,
+     * and the squares around those with no bomb around in turn, until the frontier is empty or
+     * budget squares were revealed (give or take 8). Whole cascades (budget Long.MAX_VALUE) may
+     * be flooded by the subclass, see flood.
+     */
+    private void digMore (Cascade cascade, long budget) {
+        long dug = numDug;
+        while (!cascade.isEmpty() && numDug - dug < budget) {
+            if (budget == Long.MAX_VALUE) {
+                long revealed = flood(cascade);
+                if (revealed >= 0) {
+                    numUntouched -= revealed;
+                    numDug += revealed;
+                    if (revealed > 0)
+                        loggedSince = version + 1; // not logged
+                    continue;
+                }
+            }
+            long s = cascade.pop();
+            int x = (int) (s / sizeY);
+            int y = (int) (s % sizeY);
+            for (int i = Math.max(0, x - 1); i <= Math.min(sizeX - 1, x + 1); i++) {
+                for (int j = Math.max(0, y - 1); j <= Math.min(sizeY - 1, y + 1); j++) {
+                    if (!isMine(i, j) && state(i, j) == UNTOUCHED)
+                        digSquare(i, j, cascade);
+                }
+            }
+        }
+        checkRep();
+    }
+
+    /*
+     * once the bomb of the square (x, y) has been removed, decrement the counts of the dug
+     * squares around it.
+     */
+    private void updateNeighbors (int x, int y) {
+        for (int i = Math.max(0, x - 1); i <= Math.min(sizeX - 1, x + 1); i++) {
+            for (int j = Math.max(0, y - 1); j <= Math.min(sizeY - 1, y + 1); j++) {
+                int state = state(i, j);
+                if (state > 0)
+                    setState(i, j, state - 1);
+            }
+        }
+    }
+
+    /*
+     * restore the counters and the version of a board whose planes are known to be consistent
+     * (see MappedBoard), without reading the planes.
+     */
+    void restore(long numBombs, long numUntouched, long numFlagged, long numDug, long version) {
+        this.numBombs = numBombs;
+        this.numUntouched = numUntouched;
+        this.numFlagged = numFlagged;
+        this.numDug = numDug;
+        this.version = version;
+        this.loggedSince = version;
+        checkRep();
+    }
+
+    /*
+     * recover a board from its storage alone, after an unknown part of the changes of its last
+     * operations was lost (see MappedBoard): a square may be dug while its bomb is still there,
+     * the counts around a bomb dug may be stale, and a cascade may have been interrupted. So the
+     * dug squares lose their bombs, get their counts from the bombs around, the interrupted
+     * cascades are revealed to the end, and the counters and the version are computed again.
+     * The result is a consistent board, which lost or kept each of those changes.
+     */
+    void recover() {
+        // 1. the dug squares have no bomb
+        for (long s = 0; s < squares; s++) {
+            if (state(s) >= 0 && isMine(s))
+                putMine(s, false);
+        }
+
+        // 2. the counters, the version, and the counts of the dug squares
+        numBombs = 0;
+        for (long s = 0; s < squares; s++) {
+            if (isMine(s))
+                numBombs++;
+        }
+        numUntouched = 0;
+        numFlagged = 0;
+        numDug = 0;
+        version = 0;
+        for (int x = 0; x < sizeX; x++) {
+            for (int y = 0; y < sizeY; y++) {
+                long s = index(x, y);
+                int state = state(s);
+                if (state == UNTOUCHED) {
+                    numUntouched++;
+                } else if (state == FLAGGED) {
+                    numFlagged++;
+                } else {
+                    numDug++;
+                    putState(s, checkNeighbors(x, y));
+                }
+                version = Math.max(version, cellVersion(s));
+            }
+        }
+        checkRep();
+
+        // 3. the cascades interrupted: the dug squares with no bomb around whose neighbors
+        //    aren't all revealed yet, revealed as one more operation
+        Cascade cascade = new Cascade();
+        for (int x = 0; x < sizeX; x++) {
+            for (int y = 0; y < sizeY; y++) {
+                if (state(index(x, y)) == 0 && hasUntouchedNeighbor(x, y))
+                    cascade.push(index(x, y));
+            }
+        }
+        long dug = numDug;
+        digMore(cascade, Long.MAX_VALUE);
+        if (numDug != dug)
+            version++;
+        loggedSince = version;
+    }
+
+    /*
+     * true iff a square around (x, y) is untouched without a bomb.
+     */
+    private boolean hasUntouchedNeighbor (int x, int y) {
+        for (int i = Math.max(0, x - 1); i <= Math.min(sizeX - 1, x + 1); i++) {
+            for (int j = Math.max(0, y - 1); j <= Math.min(sizeY - 1, y + 1); j++) {
+                long t = index(i, j);
+                if (!isMine(t) && state(t) == UNTOUCHED)
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * setCascadeSlice
+     * set how many squares a cascade reveals each time it holds the board's lock (up to 8 more,
+     * the neighbors of the last square expanded). Slicing cascades bounds the time a dig on a
+     * huge empty region holds the lock, at the price of taking it more often. Sliced cascades
+     * are revealed square by square (see flood).
+     */
+    @Override
+    public synchronized void setCascadeSlice (int squares) {
+        if (squares < 0)
+            throw new IllegalArgumentException("cascade slice must be >= 0 (squares = "+squares+")");
+        cascadeSlice = squares;
+    }
+
+    /**
+     * setParallelCascade
+     * cascades are revealed sequentially, unless the subclass floods them in parallel (see
+     * DenseBoard): only a null pool is supported.
+     * @throws IllegalArgumentException if pool isn't null
+     */
+    @Override
+    public synchronized void setParallelCascade (ForkJoinPool pool, int threshold) {
+        if (threshold <= 0)
+            throw new IllegalArgumentException("parallel threshold must be > 0 (threshold = "+threshold+")");
+        if (pool != null)
+            throw new IllegalArgumentException("unsupported parallel cascade for "+getClass().getSimpleName());
+    }
+
+    /**
+     * setCascadeEngine
+     * only SCALAR is supported, unless the subclass keeps the structures of the other engines
+     * (see DenseBoard).
+     */
+    @Override
+    public synchronized void setCascadeEngine (CascadeEngine engine) {
+        if (engine != CascadeEngine.SCALAR)
+            throw new IllegalArgumentException("unsupported cascade engine for "+getClass().getSimpleName()+": "+engine);
+    }
+
+    @Override
+    public String draw () {
+        long start = System.nanoTime();
+        long locked, released;
+        String drawing;
+        synchronized (this) {
+            locked = System.nanoTime();
+            drawing = drawLocked();
+            released = System.nanoTime();
+        }
+        monitor.record(BoardMonitor.Op.DRAW, -1, -1, 0, locked - start, released - locked);
+        return drawing;
+    }
+
+    /*
+     * draw the board, see Board.draw(), with the lock held.
+     */
+    private String drawLocked () {
+        checkLive();
+        BoardEvents.Draw event = new BoardEvents.Draw();
+        event.begin();
+        byte[] separator = System.lineSeparator().getBytes(StandardCharsets.ISO_8859_1);
+        // each square is its glyph and a space, but the last one of a row whose space is
+        // replaced by the separator (the last row's is past the length of the drawing)
+        long lineLength = 2L * sizeX - 1;
+        long length = sizeY * lineLength + (sizeY - 1L) * separator.length;
+        if (length >= Integer.MAX_VALUE - 8)
+            throw new RuntimeException("board too large to draw ("+sizeX+"x"+sizeY+")");
+        byte[] drawing = new byte[(int) length + 1];
+        short[] row = new short[sizeX];
+
+        // draw row by row
+        int offset = 0;
+        for (int i = 0; i < sizeY; i++) {
+            states(i, row);
+            kernels.glyphs(row, sizeX, drawing, offset);
+            offset += lineLength;
+            if (i < sizeY - 1) {
+                System.arraycopy(separator, 0, drawing, offset, separator.length);
+                offset += separator.length;
+            }
+        }
+        String result = new String(drawing, 0, (int) length, StandardCharsets.ISO_8859_1);
+        commitDraw(event, "plain");
+        return result;
+    }
+
+    @Override
+    public String drawRle () {
+        long start = System.nanoTime();
+        long locked, released;
+        String drawing;
+        synchronized (this) {
+            locked = System.nanoTime();
+            drawing = drawRleLocked();
+            released = System.nanoTime();
+        }
+        monitor.record(BoardMonitor.Op.DRAW, -1, -1, 0, locked - start, released - locked);
+        return drawing;
+    }
+
+    /*
+     * draw the run-length encoded board, see Board.drawRle(), with the lock held.
+     */
+    private String drawRleLocked () {
+        checkLive();
+        BoardEvents.Draw event = new BoardEvents.Draw();
+        event.begin();
+        String separator = System.lineSeparator();
+        StringBuilder builder = new StringBuilder();
+        short[] row = new short[sizeX];
+
+        for (int i = 0; i < sizeY; i++) {
+            states(i, row);
+            int j = 0;
+            while (j < sizeX) {
+                int state = row[j];
+                int run = j + 1;
+                while (run < sizeX && row[run] == state) {
+                    run++;
+                }
+                if (j > 0)
+                    builder.append(' ');
+                builder.append((state == 0) ? '.' : (char) BoardKernels.glyph(state));
+                builder.append(run - j);
+                j = run;
+            }
+            if (i < sizeY - 1)
+                builder.append(separator);
+        }
+        String drawing = builder.toString();
+        commitDraw(event, "rle");
+        return drawing;
+    }
+
+    @Override
+    public byte[] drawPacked () {
+        long start = System.nanoTime();
+        long locked, released;
+        byte[] packed;
+        synchronized (this) {
+            locked = System.nanoTime();
+            packed = drawPackedLocked();
+            released = System.nanoTime();
+        }
+        monitor.record(BoardMonitor.Op.DRAW, -1, -1, 0, locked - start, released - locked);
+        return packed;
+    }
+
+    /*
+     * pack the board, see Board.drawPacked(), with the lock held.
+     */
+    private byte[] drawPackedLocked () {
+        checkLive();
+        BoardEvents.Draw event = new BoardEvents.Draw();
+        event.begin();
+        if ((squares + 1) / 2 >= Integer.MAX_VALUE - 8)
+            throw new RuntimeException("board too large to draw ("+sizeX+"x"+sizeY+")");
+        byte[] packed = new byte[(int) ((squares + 1) / 2)];
+        short[] row = new short[sizeX];
+        int index = 0;
+
+        for (int i = 0; i < sizeY; i++) {
+            states(i, row);
+            for (int j = 0; j < sizeX; j++) {
+                int state = row[j];
+                int nibble = (state == UNTOUCHED) ? PACKED_UNTOUCHED
+                           : (state == FLAGGED) ? PACKED_FLAGGED
+                           : state;
+                if ((index & 1) == 0)
+                    packed[index >> 1] = (byte) (nibble << 4);
+                else
+                    packed[index >> 1] |= nibble;
+                index++;
+            }
+        }
+        commitDraw(event, "packed");
+        return packed;
+    }
+
+    /*
+     * end a Draw event of the whole board, and commit it if it's enabled.
+     */
+    private void commitDraw (BoardEvents.Draw event, String format) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.format = format;
+            event.cells = (int) Math.min(squares, Integer.MAX_VALUE);
+            event.commit();
+        }
+    }
+
+    /**
+     * release
+     * free the storage of the board. Any later operation on the squares throws
+     * IllegalStateException, rather than touching freed storage.
+     */
+    @Override
+    public synchronized void release() {
+        if (isReleased)
+            return;
+        isReleased = true;
+        if (pendingMines != null)
+            pendingMines.join(); // it writes the storage
+        releaseSquares();
+    }
+}
@@ -0,0 +1,275 @@
+/* Copyright (c) 2007-2017 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package minesweeper;
+
+import java.util.Arrays;
+
+/**
+ * BitboardFlood is the BITBOARD cascade engine of Board: it computes the squares revealed by a
+ * cascade on bit planes, 64 squares per long, instead of square by square.
+ *
+ * The board is kept as two planes, one bit per square, row by row (bit x % 64 of word
+ * y * words + x / 64 is the square (x, y)): the bombs, and the untouched squares. The plane of
+ * the squares with no bomb around is derived from the bombs (the complement of their dilation),
+ * and the squares a cascade may reveal are the untouched ones without a bomb.
+ *
+ * A flood works row by row from the rows holding seeds (revealed squares with no bomb around):
+ *    1. the seeds are extended along their row through the revealable squares with no bomb
+ *       around, with carry propagation (adding the seeds to the run they start carries through
+ *       the whole run), upwards and, on the reversed row, downwards;
+ *    2. the extended row is dilated by a shift-and-mask, and the revealable squares it covers in
+ *       the row and the rows above and below are revealed;
+ *    3. the squares revealed with no bomb around in the rows above and below become their seeds.
+ * until no row holds seeds any more. The squares revealed are the same as with Board's digMore.
+ */
+final class BitboardFlood {
+
+    private final int sizeX;
+    private final int sizeY;
+    // longs per row
+    private final int words;
+    // valid bits of the last word of a row
+    private final long lastMask;
+
+    private final long[] mines;
+    private final long[] untouched;
+    // squares with no bomb around, derived from mines, null when mines changed since
+    private long[] zero = null;
+
+    // rep invariant:
+    //    mines, untouched (and zero if not null) have sizeY * words longs
+    //    the bits beyond sizeX in each row are 0
+    //    zero == null or zero is the complement of the dilation of mines, masked to the board
+    //
+    // abstraction function:
+    //    represents the bombs and untouched squares of a sizeX x sizeY board, as bit planes.
+    //
+    // Thread safety argument:
+    //    not thread safe; only used by its Board with the board's lock held.
+
+    /**
+     * constructor
+     * build the planes of a board.
+     * @param minesField - where the bombs are
+     * @param board - the states of the squares
+     */
+    BitboardFlood(boolean[][] minesField, int[][] board) {
+        this.sizeX = board.length;
+        this.sizeY = board[0].length;
+        this.words = (sizeX + 63) >>> 6;
+        this.lastMask = -1L >>> (words * 64 - sizeX);
+        this.mines = new long[sizeY * words];
+        this.untouched = new long[sizeY * words];
+        for (int x = 0; x < sizeX; x++) {
+            for (int y = 0; y < sizeY; y++) {
+                if (minesField[x][y])
+                    set(mines, x, y);
+                if (board[x][y] == Board.UNTOUCHED)
+                    set(untouched, x, y);
+            }
+        }
+    }
+
+    private void set(long[] plane, int x, int y) {
+        plane[y * words + (x >>> 6)] |= 1L << x;
+    }
+
+    private void clear(long[] plane, int x, int y) {
+        plane[y * words + (x >>> 6)] &= ~(1L << x);
+    }
+
+    /*
+     * account for the square (x, y) changing state.
+     */
+    void setUntouched(int x, int y, boolean isUntouched) {
+        if (isUntouched)
+            set(untouched, x, y);
+        else
+            clear(untouched, x, y);
+    }
+
+    /*
+     * account for the bomb of the square (x, y) being removed.
+     */
+    void removeMine(int x, int y) {
+        clear(mines, x, y);
+        zero = null;
+    }
+
+    /**
+     * flood
+     * reveal the squares of a cascade: find them on the planes, then set their states in board
+     * (and their versions in cellVersion), column by column as board is laid out.
+     * @param frontier - revealed squares with no bomb around (x * sizeY + y), whose
+     *                   neighbors are still to be revealed
+     * @param board - the states of the squares, changed in place
+     * @param cellVersion - the versions of the squares, set to version for the squares revealed
+     * @param version - the version of the board once the dig is over
+     * @return the number of squares revealed
+     */
+    int flood(int[] frontier, int[][] board, long[][] cellVersion, long version) {
+        if (zero == null)
+            zero = computeZero();
+
+        long[] revealed = new long[sizeY * words];
+        long[] seeds = new long[sizeY * words];
+        boolean[] queued = new boolean[sizeY];
+        int[] queue = new int[sizeY];
+        int queueSize = 0;
+        // rows where squares were revealed
+        int minRow = sizeY;
+        int maxRow = -1;
+        for (int square : frontier) {
+            int x = square / sizeY;
+            int y = square % sizeY;
+            set(seeds, x, y);
+            if (!queued[y]) {
+                queued[y] = true;
+                queue[queueSize++] = y;
+            }
+        }
+
+        long[] run = new long[words];
+        long[] seed = new long[words];
+        long[] filled = new long[words];
+        long[] reversedRun = new long[words];
+        long[] reversedSeed = new long[words];
+        long[] reversedFilled = new long[words];
+        long[] dilated = new long[words];
+        while (queueSize > 0) {
+            int y = queue[--queueSize];
+            queued[y] = false;
+            int row = y * words;
+
+            // 1. extend the seeds along the row
+            for (int i = 0; i < words; i++) {
+                seed[i] = seeds[row + i];
+                seeds[row + i] = 0;
+                run[i] = (untouched[row + i] & ~mines[row + i] & zero[row + i] & ~revealed[row + i]) | seed[i];
+                reversedRun[words - 1 - i] = Long.reverse(run[i]);
+                reversedSeed[words - 1 - i] = Long.reverse(seed[i]);
+            }
+            Arrays.fill(filled, 0);
+            Arrays.fill(reversedFilled, 0);
+            fillUp(run, seed, filled);
+            fillUp(reversedRun, reversedSeed, reversedFilled);
+            for (int i = 0; i < words; i++) {
+                filled[i] |= Long.reverse(reversedFilled[words - 1 - i]);
+            }
+
+            // 2. dilate it, and reveal what it covers
+            for (int i = 0; i < words; i++) {
+                dilated[i] = filled[i] | (filled[i] << 1) | (filled[i] >>> 1)
+                           | ((i > 0) ? filled[i - 1] >>> 63 : 0)
+                           | ((i < words - 1) ? filled[i + 1] << 63 : 0);
+            }
+            for (int r = Math.max(0, y - 1); r <= Math.min(sizeY - 1, y + 1); r++) {
+                boolean seeded = false;
+                for (int i = 0; i < words; i++) {
+                    int w = r * words + i;
+                    long reveal = dilated[i] & untouched[w] & ~mines[w] & ~revealed[w];
+                    if (reveal == 0)
+                        continue;
+                    revealed[w] |= reveal;
+                    minRow = Math.min(minRow, r);
+                    maxRow = Math.max(maxRow, r);
+                    // 3. the squares revealed with no bomb around seed their row (those of
+                    //    row y were already extended)
+                    if (r != y && (reveal & zero[w]) != 0) {
+                        seeds[w] |= reveal & zero[w];
+                        seeded = true;
+                    }
+                }
+                if (seeded && !queued[r]) {
+                    queued[r] = true;
+                    queue[queueSize++] = r;
+                }
+            }
+        }
+
+        // the squares revealed, which are no longer untouched
+        int count = 0;
+        for (int w = minRow * words; w < (maxRow + 1) * words; w++) {
+            count += Long.bitCount(revealed[w]);
+            untouched[w] &= ~revealed[w];
+        }
+        for (int x = 0; x < sizeX && count > 0; x++) {
+            int[] column = board[x];
+            long[] versions = cellVersion[x];
+            int i = x >>> 6;
+            long bit = 1L << x;
+            for (int y = minRow; y <= maxRow; y++) {
+                if ((revealed[y * words + i] & bit) != 0) {
+                    column[y] = ((zero[y * words + i] & bit) != 0) ? 0 : countBombs(x, y);
+                    versions[y] = version;
+                }
+            }
+        }
+        return count;
+    }
+
+    /*
+     * add to filled the bits of run reachable from the seeds (a subset of run) going up, to
+     * the higher bits, through consecutive bits of run. Adding the seeds to run carries through
+     * the bits above them, up to the end of their run, flipping them.
+     */
+    private static void fillUp(long[] run, long[] seed, long[] filled) {
+        long carry = 0;
+        for (int i = 0; i < run.length; i++) {
+            long sum = run[i] + seed[i];
+            long carryOut = (Long.compareUnsigned(sum, run[i]) < 0) ? 1 : 0;
+            sum += carry;
+            if (carry != 0 && sum == 0)
+                carryOut = 1;
+            filled[i] |= ((sum ^ run[i]) | seed[i]) & run[i];
+            carry = carryOut;
+        }
+    }
+
+    private boolean isMine(int x, int y) {
+        return (mines[y * words + (x >>> 6)] & (1L << x)) != 0;
+    }
+
+    /*
+     * number of bombs around the square (x, y).
+     */
+    private int countBombs(int x, int y) {
+        int result = 0;
+        for (int i = Math.max(0, x - 1); i <= Math.min(sizeX - 1, x + 1); i++) {
+            for (int j = Math.max(0, y - 1); j <= Math.min(sizeY - 1, y + 1); j++) {
+                if (isMine(i, j))
+                    result++;
+            }
+        }
+        return result;
+    }
+
+    /*
+     * the squares with no bomb around: the complement of the bombs dilated by one square.
+     */
+    private long[] computeZero() {
+        long[] dilatedRows = new long[sizeY * words];
+        for (int y = 0; y < sizeY; y++) {
+            int row = y * words;
+            for (int i = 0; i < words; i++) {
+                long m = mines[row + i];
+                dilatedRows[row + i] = m | (m << 1) | (m >>> 1)
+                                     | ((i > 0) ? mines[row + i - 1] >>> 63 : 0)
+                                     | ((i < words - 1) ? mines[row + i + 1] << 63 : 0);
+            }
+        }
+        long[] result = new long[sizeY * words];
+        for (int y = 0; y < sizeY; y++) {
+            for (int i = 0; i < words; i++) {
+                long around = dilatedRows[y * words + i];
+                if (y > 0)
+                    around |= dilatedRows[(y - 1) * words + i];
+                if (y < sizeY - 1)
+                    around |= dilatedRows[(y + 1) * words + i];
+                result[y * words + i] = ~around & ((i == words - 1) ? lastMask : -1L);
+            }
+        }
+        return result;
+    }
+}
@@ -3,25 +3,20 @@
  */
 package minesweeper;
 
-import java.util.Collections;
-import java.util.Random;
-import java.io.IOException;
-import java.io.File;
-import java.io.FileReader;
-import java.io.BufferedReader;
+import java.util.concurrent.ForkJoinPool;
 
 /**
- * Board is an immutable type representing a Minesweeper game board.
- * 
+ * Board is a mutable type representing a Minesweeper game board.
+ *
  * Specification fields:
  * @specfield UNTOUCHED : int      // The state of a square of the board
  * @specfield FLAGGED : int        // The state of a square of the board
  * @specfield BOMB : int           // The state of a square of the board
  * @specfield NOP : int            // The state of a square of the board
- * 
+ *
  * @specfield sizeX : int          // The size of the board, x axis
  * @specfield sizeY : int          // The size of the board, y axis
- * 
+ *
  * Board operations supported:
  * DIG ::= "dig" SPACE X SPACE Y
  * FLAG ::= "flag" SPACE X SPACE Y
@@ -30,434 +25,184 @@ import java.io.BufferedReader;
  * Y ::= INT
  * SPACE ::= " "
  * INT ::= "-"? [0-9]+
- * 
+ *
+ * Implementations:
+ *    DenseBoard   - 2D arrays on the heap, see DenseBoard
+ *    PackedBoard  - bit-packed planes on the heap, see PackedBoard
+ *    ChunkedBoard - tiles on the heap, allocated as the game reaches them, see ChunkedBoard
+ *    OffHeapBoard - planes in direct memory, for boards larger than the heap, see OffHeapBoard
+ *    MappedBoard  - an OffHeapBoard persisted in a file, see MappedBoard
+ *
+ * All implementations are thread safe, and behave the same. BoardFactory chooses among the
+ * first four, from the dimensions of the board and the density of its bombs.
+ *
+ * The lock of a board is its own monitor: every operation of an implementation holds it while
+ * it reads or changes the board (a sliced cascade holds it for each slice, see
+ * setCascadeSlice), and listeners are told of the operations with it held. So a client may
+ * take it, with synchronized (board), to read several squares of the board as of one version:
+ * no operation changes the board in between (FrameCache, HintSolver and ProbabilityEngine do).
  */
-public class Board {
-    
+public interface Board {
+
     // some predefined constants to be used as board states:
     public static final int UNTOUCHED = -1;
     public static final int FLAGGED = -2;
     public static final int BOMB = -3;
     public static final int NOP = -4;
-    
-    // the size of the board specified.
-    private final int sizeX;
-    private final int sizeY;
-    
-    // number of bombs generated for this board.
-    private int numBombs;
-    
-    // number of squares "untouched"
-    private int numUntouched;
-    
-    // number of squares "flagged"
-    private int numFlagged;
-    
-    // number of squares "dug"
-    private int numDug;
-    
-    // indicates where a bomb is planted
-    private boolean[][] minesField;
-    
-    // current state of this board. Each square may be in one of the states {UNTOUCHED, FLAGGED} or 
-    // a number between 0..8 for a dug empty square with number of neighboring squares containing a bomb.
-    private int[][] board;
-     
-    // rep invariant:
-    //   1. sizeX > 0, sizeY > 0
-    //   2. numBombs <= sizeX * sizeY
-    //   3. numUntouched + numFlagged + numDug == sizeX * sizeY
-    //
-    // abstraction function:
-    //    represents the state of a game of Minesweeper's board. 
-    //
-    // All reps except the state are private so no rep exposure risk.
-    //    the states are all constants so are safe from being mutated.
-    //
-    // Thread safety argument:
-    //   all accesses to board happen within Board's methods,
-    //   which are all guarded by Board's lock.
-       
-    /**
-     * constructor
-     * @param int sizeX - the width of the board (X axis)
-     * @param int sizeY - the length of the board (Y axis)
-     * 
-     * construct a board with dimension sizeX x sizeY, each square is randomly assigned with a bomb 
-     * (with a probability of 0.25) or not.
-     */
-    public Board (int sizeX, int sizeY) {
-        // initialize all instance variables
-        this.sizeX = sizeX;
-        this.sizeY = sizeY;
-        numUntouched = sizeX * sizeY;
-        numFlagged = 0;
-        numDug = 0;
-        
-        minesField = new boolean[sizeX][sizeY];
-        board = new int[sizeX][sizeY];
-        
-        Random rand = new Random();
-        int i,j;
-        boolean assign;
-        
-        this.numBombs=0;
-    
-        // initialize the board and minesField
-        for (i=0; i < sizeX; i++) {
-            for (j=0; j < sizeY; j++) {
-                
-                board[i][j] = UNTOUCHED;
-                
-                // random generator will generate a random integer between 0..3
-                // the probability of having a 0 is 1/4, when this happens
-                // we will assign the square (i,j) with a bomb.
-                assign = rand.nextInt(4)==0;
-                if (assign) {
-                    minesField[i][j] = true; // assign a bomb
-                    this.numBombs++;
-                } else {
-                    minesField[i][j] = false;
-                }
-            }
-        }
-    }
-    
+
     /**
-     * constructor
-     * @param File file - the text file contains the board to initialize. The first line of the file
-     *   specifies the board size, and it must be followed by exactly Y lines, where each line 
-     *   must contain exactly X values. If the file is properly formatted, the Board should be 
-     *   instantiated such that square i,j has a bomb if and only if the ith VAL in LINE j of 
-     *   the input is 1. If the file is improperly formatted, the program should throw an 
-     *   unchecked exception (RuntimeException). 
-     *   
-     * The grammar of the file:
-     * 
-     * FILE ::= BOARD LINE+
-     * BOARD := X SPACE Y NEWLINE
-     * LINE ::= (VAL SPACE)* VAL NEWLINE
-     * VAL ::= 0 | 1
-     * X ::= INT
-     * Y ::= INT
-     * SPACE ::= " "
-     * NEWLINE ::= "\n" | "\r" "\n"?
-     * INT ::= [0-9]+
-     * 
+     * Engines revealing the cascades, see setCascadeEngine:
+     *    SCALAR   - square by square (and in parallel for huge cascades, see setParallelCascade)
+     *    BITBOARD - 64 squares at a time, on bit planes of the board (see BitboardFlood)
+     *    REGIONS  - region by region, from the labelled regions of zero squares (see ZeroRegions)
      */
-    public Board (File file) throws IOException {
-        int sizeX;
-        int sizeY;
-        
-        /* for debug \/
-        if (file.exists() && file.isFile() && file.canRead()) {
-            System.out.println("File can be read!");
-        }
-        System.out.println("Board is attempting to read from file in: "+file.getCanonicalPath());
-        */
-        
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            StringBuilder sb = new StringBuilder();
-                        
-            // the first line should contain the board size
-            String line = reader.readLine();
-            if (line == null) {
-                //empty file
-                throw new RuntimeException("empty file!");
-            } else {
-                String[] sizes = line.split(" ");
+    public static enum CascadeEngine {SCALAR, BITBOARD, REGIONS};
+
+    // frontier size from which a cascade is flooded in parallel, by default
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 4096;
+
+    // nibbles of the untouched and flagged squares in drawPacked()
+    public static final int PACKED_FLAGGED = 0xE;
+    public static final int PACKED_UNTOUCHED = 0xF;
 
-                sizeX = Integer.parseInt(sizes[0]);
-                sizeY = Integer.parseInt(sizes[1]);
-                
-                if ((sizeX <= 0) || (sizeY <= 0)) {
-                    // if either size is illegal
-                    throw new RuntimeException("invalid board size, x="+sizeX+",y="+sizeY);
-                }
-            }
-            // initialize all instance variables
-            this.sizeX = sizeX;
-            this.sizeY = sizeY;
-            numUntouched = sizeX * sizeY;
-            numFlagged = 0;
-            numDug = 0;
-            numBombs = 0;
-            minesField = new boolean[sizeX][sizeY];
-            board = new int[sizeX][sizeY];
-            
-            // continue to process the 2nd line...
-            for (int i = 0; i < sizeY; i++) {
-                line = reader.readLine();
-                if (line == null) {
-                    //not enough rows in file
-                    throw new RuntimeException("not enough rows in file!");
-                }
-                    
-                String[] mines = line.split(" ");
-                int arraySize = mines.length;
-                if (arraySize != sizeX)
-                    throw new RuntimeException("invalid row read! length="+arraySize);
-                    
-                //System.out.println();  //debug
-                //System.out.print("(y="+i+"):");  //debug
-                for (int j = 0; j < sizeX; j++) {    
-                    board[j][i] = UNTOUCHED;
-                        
-                    int n = Integer.parseInt(mines[j]);
-                    //System.out.print(n+" ");  //debug
-                    if (n == 1) {
-                        minesField[j][i] = true; // assign a bomb
-                        this.numBombs++;
-                    } else if (n == 0) {
-                        minesField[j][i] = false;
-                    } else {
-                        throw new RuntimeException("invalid number read ("+n+")");
-                    }
-                }
-            }
-            //System.out.println();  //debug
-            reader.close();
-        }   
-    }
-    
-    // assert the rep invariantG
-    // 
-    //   1. sizeX > 0, sizeY > 0
-    //   2. numBombs <= sizeX * sizeY
-    //   3. numUntouched + numFlagged + numDug == sizeX * sizeY
-    private void checkRep() {
-        if ((sizeX <= 0) || (sizeY <= 0)) 
-            throw new RuntimeException("Board sizes must greater than zero (sizeX = "+sizeX+", sizeY = "+sizeY+")");
-        if (numBombs > sizeX*sizeY)
-            throw new RuntimeException("numBombs too big (numBombs = "+numBombs+", sizeX = "+sizeX+", sizeY = "+sizeY+")");
-        if (numUntouched + numFlagged + numDug != sizeX * sizeY) 
-            throw new RuntimeException("number of cells don't match! numUntouched = "+numUntouched+
-                                       ",numFlagged = "+numFlagged+",numDug = "+numDug+
-                                       "sizeX = "+sizeX+",sizeY = "+sizeY);
-    }
-    
     /**
      * getBoardSizeX
      * return the width (X) of the board
-     * 
      */
-    public synchronized int getBoardSizeX(){
-        return this.sizeX;
-    }
-    
+    int getBoardSizeX();
+
     /**
      * getBoardSizeY
      * return the length (Y) of the board
-     * 
      */
-    public synchronized int getBoardSizeY(){
-        return this.sizeY;
-    }
-    
+    int getBoardSizeY();
+
     /**
      * getBombs
-     * return the number of bombs in the board
-     * 
+     * return the number of bombs in the board (0 until the first dig, if its bombs are placed
+     * lazily, see BoardFactory.make)
      */
-    public synchronized int getBombs(){
-        return this.numBombs;
-    }
-    
+    int getBombs();
+
+    /**
+     * hasPendingMines
+     * return true iff the bombs of the board are still to be placed, by its first dig (if they
+     * are placed lazily, see BoardFactory.make): until then, the board has no bomb to count.
+     */
+    boolean hasPendingMines();
+
     /**
      * getFlagged
      * return the number of squares currently flagged in the board
-     * 
      */
-    public synchronized int getFlagged(){
-        return this.numFlagged;
-    }
-    
+    int getFlagged();
+
     /**
      * getUntouched
      * return the number of squares currently untouched in the board
-     * 
      */
-    public synchronized int getUntouched(){
-        return this.numUntouched;
-    }
-    
+    int getUntouched();
+
+    /**
+     * getVersion
+     * return the version of the board: it's 0 for a new board, and increases by one for each
+     * operation (dig, flag, deflag) that changes the state of the board, so two calls returning
+     * the same version are guaranteed to see the same state.
+     */
+    long getVersion();
+
+    /**
+     * getCellVersion
+     * return the version of the board (see getVersion) when the square at position (x, y)
+     * last changed, or 0 if it never changed.
+     */
+    long getCellVersion(int x, int y);
+
+    /**
+     * getChangedSince
+     * return the squares changed after the given version of the board, as a sequence of
+     * triples (x, y, state) in row by row order, or null if there are more than max of them.
+     * @param since - a version of the board, 0 <= since <= getVersion()
+     * @param max - the maximum number of squares the caller is interested in
+     */
+    int[] getChangedSince(long since, int max);
+
     /**
      * getState
-     * return the state of square at position (x, y)
-     * 
-     * the possible state:
-     *    UNTOUCHED
-     *    FLAGGED
-     *    BOMB
-     *    0 (dug, no bomb in neighboring squares)
-     *    1-8 (total number of bombs in neighboring squares)
-     * 
+     * return the state of square at position (x, y): UNTOUCHED, FLAGGED, or 0-8 for a dug
+     * square (the number of bombs in its neighboring squares).
      */
-    public synchronized int getState(int x, int y){
-        return board[x][y];
-    }
-    
+    int getState(int x, int y);
+
+    /**
+     * addListener
+     * register a listener to be notified each time the state of the board changes.
+     * @param listener - the listener, see BoardListener for what it may do
+     */
+    void addListener(BoardListener listener);
+
+    /**
+     * removeListener
+     * unregister a listener added with addListener, if it was registered.
+     */
+    void removeListener(BoardListener listener);
+
+    /**
+     * getMonitor
+     * return the monitor recording the lock wait and hold times of the operations on this board.
+     */
+    BoardMonitor getMonitor();
+
     /**
      * flag
      * to mark an untouched square to indicate it potentially contains a bomb.
-     * if it's not in UNTOUCHED state then do nothing.
-     * @param int x - the x coordinate of the square to be marked.
-     *                0 <= x < sizeX
-     * @param int y - the y coordinate of the square to be marked.
-     *                0 <= y < sizeY
-     *
+     * if it's not in UNTOUCHED state (or outside the board) then do nothing.
      */
-    public synchronized void flag (int x, int y) {
-        
-        if ((x < 0) || (x >= sizeX))
-            return;
-        if ((y < 0) || (y >= sizeY))
-            return;
-        
-
-        if (board[x][y] == UNTOUCHED) {
-            board[x][y] = FLAGGED;
-            numFlagged++;
-            numUntouched--;
-        }
+    void flag(int x, int y);
 
-        checkRep();
-    }
-    
-    
     /**
      * deflag
-     * to unmark an flagged square if it has been flagged before.
-     * if it's not in UNTOUCHED state then do nothing.
-     * @param int x - the x coordinate of the square to be unmarked.
-     *                0 <= x < sizeX
-     * @param int y - the y coordinate of the square to be unmarked.
-     *                0 <= y < sizeY
-     *
+     * to unmark a flagged square if it has been flagged before.
+     * if it's not in FLAGGED state (or outside the board) then do nothing.
      */
-    public synchronized void deflag (int x, int y) {
-        
-        if ((x < 0) || (x >= sizeX))
-            return;
-        if ((y < 0) || (y >= sizeY))
-            return;
-        
-        synchronized (this) {
-            if (board[x][y] == FLAGGED) {
-                board[x][y] = UNTOUCHED;
-                numFlagged--;
-                numUntouched++;
-            }
-        }
-        checkRep();
-    }
+    void deflag(int x, int y);
+
     /**
      * dig
-     * to reveal an untouched square and return the state of that square.
-     * @param int x - the x coordinate of the square to be revealed.
-     *                0 <= x < sizeX
-     * @param int y - the y coordinate of the square to be revealed.
-     *                0 <= y < sizeY
-     * @returns the state of the square 
-     *          - BOMB if the square contains a bomb. Also, this square will contain no more bomb and
-     *            this square and its surrounding cells' bomb count will be updated accordingly.
-     *          - 0..8 if the square is an empty cell and number of neighboring cells containing bomb.
-     *
+     * to reveal an untouched square and return the state of that square: BOMB if it contained
+     * a bomb (which is then removed, and the counts of the squares around updated), 0..8
+     * otherwise; a square with no bomb around reveals the squares around it in turn (a cascade).
+     * Digging a flagged or dug square does nothing and returns its state, and NOP outside
+     * the board.
      */
-    public synchronized int dig (int x, int y) {
-        
-        if ((x < 0) || (x >= sizeX))
-            return NOP;
-        if ((y < 0) || (y >= sizeY))
-            return NOP;
-     
-        int state = board[x][y];
-        
-        switch (state) {
-        case FLAGGED:
-            // do nothing.
-            break;
+    int dig(int x, int y);
 
-        case UNTOUCHED:
-            numUntouched--;
-            if (minesField[x][y]) {
-                state = BOMB;
-                
-                // change the square to contain no bomb
-                minesField[x][y] = false;
-                numBombs--;
-                
-                // update the neighboring square's bomb count (if already dug)
-                updateNeighbors(x,y);
-                board[x][y] = checkNeighbors(x,y);
-            } else {
-                // no bomb in this square, check how many bombs in the surrounding cells
-                board[x][y] = checkNeighbors(x,y);
-                state = board[x][y];
-            }
-            numDug++;
-            if (board[x][y] == 0) {
-                // no bomb in neighbor squares, dig more...
-                digMore(x,y);
-            }
+    /**
+     * setCascadeSlice
+     * set how many squares a cascade reveals each time it holds the board's lock.
+     * @param squares - the squares revealed per slice, or 0 to reveal whole cascades at once
+     *                  (the default), requires squares >= 0
+     */
+    void setCascadeSlice(int squares);
 
-            break;
-        case 0:
-        case 1:
-        case 2:
-        case 3:
-        case 4:
-        case 5:
-        case 6:
-        case 7:
-        case 8:
-           // already dug, so nothing needs to be done here.
-           break;
-        default:
-           throw new RuntimeException("unexpected board state!");
-        }
+    /**
+     * setParallelCascade
+     * set how the cascades are flooded in parallel, if the implementation supports it.
+     * @param pool - the pool running the flood, or null to always reveal cascades sequentially
+     * @param threshold - the frontier size from which the flood is parallel, requires threshold > 0
+     * @throws IllegalArgumentException if pool isn't null and the implementation doesn't flood
+     *                                  cascades in parallel
+     */
+    void setParallelCascade(ForkJoinPool pool, int threshold);
 
-        checkRep();
-        return state;
-    }
-    
     /**
-     * digMore
-     * to uncover the contents of more squares around the square (x, y).  
-     * For each of the square surrounding (x, y):
-     *    - if the square is UNTOUCHED and it does *not* contain a bomb then
-     *      the contents of the square is revealed.
-     *    - further, if the revealed square is empty and has no neighboring bombs,
-     *      digMore() is called recursively on it.
-     * @param int x - the x coordinate of the square to be started.
-     *                0 <= x < sizeX
-     * @param int y - the y coordinate of the square to be started.
-     *                0 <= y < sizeY
+     * setCascadeEngine
+     * set the engine revealing the cascades. All engines reveal the same squares.
+     * @param engine - the engine, SCALAR by default (which all implementations support)
+     * @throws IllegalArgumentException if the implementation doesn't support engine
      */
-    private synchronized void digMore(int x, int y) {
-        int lowerBoundX, lowerBoundY, upperBoundX, upperBoundY;
-         
-        // Don't check outside the edges of the board
-        lowerBoundX = (x <= 0 ? 0 : x - 1);
-        lowerBoundY = (y <= 0 ? 0 : y - 1);
-        upperBoundX = (x >= sizeX - 1 ? sizeX : x + 2);
-        upperBoundY = (y >= sizeY - 1 ? sizeY : y + 2);
-         
-        // Loop over all surrounding cells
-        for (int i = lowerBoundX; i < upperBoundX; i++) {
-            for (int j = lowerBoundY; j < upperBoundY; j++) {
-                if (!minesField[i][j] && (board[i][j] == UNTOUCHED)) {
-                    dig(i, j);
-                    // after the square is dug, we will continue to explore its
-                    // neighboring square if its state is 0 (no neighbor contains bomb)
-                    if (board[i][j] == 0) {
-                        digMore(i, j);
-                    }
-                }
-            }
-        }
-        checkRep();
-    }
+    void setCascadeEngine(CascadeEngine engine);
+
     /**
      * draw
      * to draw a representation of the current state of the board in a readable way:
@@ -465,111 +210,45 @@ public class Board {
      *                  "flagged", place "F"
      *                  0 (dug, and no surrounding square has bomb), place " "
      *                  1~8, place the number 1~8 respectively.
-     * each square is separated by a " ", except the last one in a row, instead, it'll be 
-     * a new line "\n".
-     * @return String which represents the drawing of the board.
+     * each square is separated by a " ", except the last one in a row, instead, it'll be
+     * a new line.
+     */
+    String draw();
+
+    /**
+     * drawRle
+     * to draw a run-length encoded representation of the current state of the board, built
+     * directly from the squares' states (without drawing the board first). Each row of the
+     * board is a line of runs of identical squares:
+     *
+     * ROW ::= RUN (SPACE RUN)*
+     * RUN ::= GLYPH COUNT
+     * GLYPH ::= "-" | "F" | "." | [1-8]
+     * COUNT ::= [1-9] [0-9]*
      *
+     * where GLYPH is the same as in draw(), except "." for a dug square with no bomb around,
+     * and COUNT is the number of such squares in a row. Rows are separated by a new line,
+     * as in draw().
      */
-    public synchronized String draw () {
-        String separator = System.lineSeparator();
-        StringBuilder builder = new StringBuilder();
-        
-        // draw row by row
-        for (int i = 0; i < sizeY; i++) {     
-            for (int j = 0; j < sizeX; j++) {
-                switch (board[j][i]) {
-                case UNTOUCHED:
-                    if (j < sizeX - 1)
-                        builder.append("- ");
-                    else
-                        builder.append("-"); //last entry does not need extra space
-                    continue;
-                case FLAGGED:
-                    if (j < sizeX - 1)
-                        builder.append("F ");
-                    else
-                        builder.append("F"); //last entry does not need extra space
-                    continue;
-                case 0:
-                    if (j < sizeX - 1)
-                        builder.append("  ");
-                    else
-                        builder.append(" "); //last entry does not need extra space
-                    continue;
-                case 1:
-                case 2:
-                case 3:
-                case 4:
-                case 5:
-                case 6:
-                case 7:
-                case 8:
-                    if (j < sizeX - 1)
-                        builder.append(board[j][i]).append(" ");
-                    else
-                        builder.append(board[j][i]);  //last entry does not need extra space
-                    continue;
-                default:
-                    throw new RuntimeException("unexpected state!");
-                }
-            }
-            //append a new line at the end of each row, except the last one
-            if (i < sizeY - 1)
-                builder.append(separator);
-        }
-        //builder.deleteCharAt(builder.length() - 1); //get rid of the last new line.
-        // System.out.println("board draw:\n"+builder.toString()); // debug
-        return builder.toString();
-    }
+    String drawRle();
+
     /**
-     * checkNeighbors
-     * to count how many the neighboring cells of (x,y) contains bomb and return the total count
+     * drawPacked
+     * to pack the current state of the board into nibbles, built directly from the squares'
+     * states. Squares are packed row by row (y = 0 first), two squares per byte, the square
+     * with the even index in the high nibble:
+     *
+     * NIBBLE ::= 0..8 (dug, with that many bombs around) | PACKED_FLAGGED | PACKED_UNTOUCHED
+     *
+     * If the board has an odd number of squares, the low nibble of the last byte is 0.
      */
-    private synchronized int checkNeighbors(int x, int y) {
-        int lowerBoundX, lowerBoundY, upperBoundX, upperBoundY;
-        int result = 0;
-     
-        // Don't check outside the edges of the board
-        lowerBoundX = (x <= 0 ? 0 : x - 1);
-        lowerBoundY = (y <= 0 ? 0 : y - 1);
-        upperBoundX = (x >= sizeX - 1 ? sizeX : x + 2);
-        upperBoundY = (y >= sizeY - 1 ? sizeY : y + 2);
-     
-         // Check all immediate neighbors
-         for (int i = lowerBoundX; i < upperBoundX; i++) {
-             for (int j = lowerBoundY; j < upperBoundY; j++) {
-                 if (minesField[i][j]) {
-                     result++;
-                 }
-             }
-         }
-         
-         return result;
-    }
-    
+    byte[] drawPacked();
+
     /**
-     * updateNeighbors
-     * once the bomb has been removed from the square (x, y), we need to update all its
-     * surrounding cell's bomb count (the DUG ones).
-     * 
+     * release
+     * release the memory held outside the heap by the board, once its game is over. The board
+     * must not be used afterwards. Does nothing by default (the heap is garbage collected).
      */
-    private synchronized void updateNeighbors(int x, int y) {
-        int lowerBoundX, lowerBoundY, upperBoundX, upperBoundY;
-     
-        // Don't check outside the edges of the board
-        lowerBoundX = (x <= 0 ? 0 : x - 1);
-        lowerBoundY = (y <= 0 ? 0 : y - 1);
-        upperBoundX = (x >= sizeX - 1 ? sizeX : x + 2);
-        upperBoundY = (y >= sizeY - 1 ? sizeY : y + 2);
-     
-         // Check all immediate neighbors
-         for (int i = lowerBoundX; i < upperBoundX; i++) {
-             for (int j = lowerBoundY; j < upperBoundY; j++) {
-                 if (board[i][j] > 0) {
-                     board[i][j]--;
-                 }
-             }
-         }
+    default void release() {
     }
-    
 }
@@ -0,0 +1,86 @@
+/* Copyright (c) 2007-2017 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package minesweeper;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * BoardEvents holds the JDK Flight Recorder events emitted by Board.
+ *
+ * All of them are disabled by default, so they cost nothing until a recording enables them
+ * (e.g. a recording started with a .jfc settings file setting minesweeper.Dig#enabled=true).
+ * Each event lasts as long as the operation it records, which includes notifying the board
+ * listeners but not waiting for the board's lock.
+ */
+final class BoardEvents {
+
+    private BoardEvents() {
+        // event classes only
+    }
+
+    @Name("minesweeper.Dig")
+    @Label("Dig")
+    @Category({"Minesweeper", "Board"})
+    @Description("A dig on the board, with the squares revealed by its cascade")
+    @Enabled(false)
+    @StackTrace(false)
+    static final class Dig extends Event {
+        @Label("X")
+        int x;
+
+        @Label("Y")
+        int y;
+
+        @Label("Result")
+        @Description("State of the square dug: 0..8, or -3 for a bomb, -4 for no operation")
+        int result;
+
+        @Label("Cascade Size")
+        @Description("Number of squares revealed (by the first slice, if the cascade is sliced)")
+        int cascadeSize;
+    }
+
+    @Name("minesweeper.Flag")
+    @Label("Flag")
+    @Category({"Minesweeper", "Board"})
+    @Description("A flag or deflag on the board")
+    @Enabled(false)
+    @StackTrace(false)
+    static final class Flag extends Event {
+        @Label("X")
+        int x;
+
+        @Label("Y")
+        int y;
+
+        @Label("Flagged")
+        @Description("True for a flag, false for a deflag")
+        boolean flagged;
+
+        @Label("Changed")
+        @Description("True if the square changed state")
+        boolean changed;
+    }
+
+    @Name("minesweeper.Draw")
+    @Label("Draw")
+    @Category({"Minesweeper", "Board"})
+    @Description("A drawing of the whole board")
+    @Enabled(false)
+    @StackTrace(false)
+    static final class Draw extends Event {
+        @Label("Format")
+        @Description("plain (draw), rle (drawRle) or packed (drawPacked)")
+        String format;
+
+        @Label("Cells Rendered")
+        int cells;
+    }
+}
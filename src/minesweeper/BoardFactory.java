@@ -0,0 +1,160 @@
+/* Copyright (c) 2007-2017 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package minesweeper;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+
+/**
+ * BoardFactory makes the boards, choosing their implementation from their dimensions and the
+ * density of their bombs, unless it's given:
+ *    - small boards are DenseBoards, the fastest, with all the cascade engines;
+ *    - larger boards with few bombs have large cascades, which reveal most of the board: they
+ *      are PackedBoards, the smallest on the heap when all the squares are played;
+ *    - larger boards with many bombs have small cascades, so a game only reveals a fraction of
+ *      the board: they are ChunkedBoards, which only take memory for the parts played;
+ *    - boards too large for the heap are OffHeapBoards.
+ */
+public final class BoardFactory {
+
+    /**
+     * Implementations of Board, see BoardFactory.
+     */
+    public static enum Implementation {DENSE, PACKED, CHUNKED, OFF_HEAP};
+
+    // boards of up to DENSE_SQUARES squares are dense (about 56 MB)
+    static final long DENSE_SQUARES = 1L << 22;
+
+    // bomb density from which cascades are small
+    static final double SPARSE_DENSITY = 0.15;
+
+    // bomb density of the random boards
+    static final double RANDOM_DENSITY = 0.25;
+
+    // bytes per square of a PackedBoard, rounded up
+    private static final long PACKED_BYTES = 9;
+
+    private BoardFactory() {
+    }
+
+    /**
+     * choose
+     * return the implementation of a board of sizeX x sizeY squares with the given density of
+     * bombs, for the maximum heap size of this JVM.
+     * @param density - the fraction of the squares with a bomb, 0 <= density <= 1
+     */
+    public static Implementation choose(int sizeX, int sizeY, double density) {
+        return choose(sizeX, sizeY, density, Runtime.getRuntime().maxMemory());
+    }
+
+    /*
+     * choose, for a heap of maxMemory bytes: a PackedBoard may take half of it, and the bombs of
+     * a ChunkedBoard a quarter (its tiles take more as the game goes).
+     */
+    static Implementation choose(int sizeX, int sizeY, double density, long maxMemory) {
+        long squares = (long) sizeX * sizeY;
+        if (squares <= DENSE_SQUARES)
+            return Implementation.DENSE;
+        if (density >= SPARSE_DENSITY) {
+            if (squares <= ChunkedBoard.MAX_SQUARES && squares / 8 <= maxMemory / 4)
+                return Implementation.CHUNKED;
+        } else {
+            if (squares <= PackedBoard.MAX_SQUARES && PACKED_BYTES * squares <= maxMemory / 2)
+                return Implementation.PACKED;
+        }
+        return Implementation.OFF_HEAP;
+    }
+
+    /**
+     * make
+     * make a board of sizeX x sizeY squares, each with a bomb with a probability of 0.25.
+     * @param implementation - the implementation of the board, or null to choose it
+     */
+    public static Board make(Implementation implementation, int sizeX, int sizeY) {
+        return make(implementation, sizeX, sizeY, false);
+    }
+
+    /**
+     * make
+     * make a board of sizeX x sizeY squares, each with a bomb with a probability of 0.25.
+     * @param implementation - the implementation of the board, or null to choose it
+     * @param lazyMines - true to place the bombs in the background, the first dig taking them
+     *                    off its square and the squares around it, see AbstractBoard.deferMines
+     */
+    public static Board make(Implementation implementation, int sizeX, int sizeY, boolean lazyMines) {
+        if (implementation == null)
+            implementation = choose(sizeX, sizeY, RANDOM_DENSITY);
+        if (!lazyMines) {
+            switch (implementation) {
+            case DENSE:
+                return new DenseBoard(sizeX, sizeY);
+            case PACKED:
+                return new PackedBoard(sizeX, sizeY);
+            case CHUNKED:
+                return new ChunkedBoard(sizeX, sizeY);
+            default:
+                return new OffHeapBoard(sizeX, sizeY);
+            }
+        }
+        AbstractBoard board;
+        switch (implementation) {
+        case DENSE:
+            board = DenseBoard.empty(sizeX, sizeY);
+            break;
+        case PACKED:
+            board = PackedBoard.empty(sizeX, sizeY);
+            break;
+        case CHUNKED:
+            board = ChunkedBoard.empty(sizeX, sizeY);
+            break;
+        default:
+            board = OffHeapBoard.empty(sizeX, sizeY);
+            break;
+        }
+        board.deferMines();
+        return board;
+    }
+
+    /**
+     * make
+     * make the board of a board file, see DenseBoard(File).
+     * @param implementation - the implementation of the board, or null to choose it (which
+     *                         reads the file twice)
+     */
+    public static Board make(Implementation implementation, File file) throws IOException {
+        if (implementation == null)
+            implementation = choose(file);
+        switch (implementation) {
+        case DENSE:
+            return new DenseBoard(file);
+        case PACKED:
+            return new PackedBoard(file);
+        case CHUNKED:
+            return new ChunkedBoard(file);
+        default:
+            return new OffHeapBoard(file);
+        }
+    }
+
+    /*
+     * choose the implementation of the board of a board file, from its sizes and its bombs.
+     */
+    private static Implementation choose(File file) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            int[] sizes = AbstractBoard.readSizes(reader);
+            long squares = (long) sizes[0] * sizes[1];
+            if (squares <= DENSE_SQUARES)
+                return Implementation.DENSE;
+            long bombs = 0;
+            int c;
+            while ((c = reader.read()) != -1) {
+                if (c == '1')
+                    bombs++;
+            }
+            return choose(sizes[0], sizes[1], (double) bombs / squares);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/* Copyright (c) 2007-2017 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package minesweeper;
+
+/**
+ * BoardKernels holds the regular array passes of Board: counting the bombs around each square
+ * of a column, and translating the states of a row to the glyphs of draw().
+ *
+ * This class is the scalar implementation. get() returns VectorKernels instead, which does the
+ * same with the (incubating) Vector API, when the jdk.incubator.vector module is available
+ * (e.g. "java --add-modules jdk.incubator.vector") and VectorKernels is on the class path (it's
+ * compiled apart from src, see VectorKernels), unless the system property minesweeper.vector
+ * is "false". src itself compiles without the module.
+ */
+class BoardKernels {
+
+    private static final BoardKernels INSTANCE = load();
+
+    /**
+     * get
+     * return the best kernels available.
+     */
+    static BoardKernels get() {
+        return INSTANCE;
+    }
+
+    /*
+     * the vector kernels if they can be loaded, the scalar ones otherwise.
+     */
+    private static BoardKernels load() {
+        if (!Boolean.parseBoolean(System.getProperty("minesweeper.vector", "true")))
+            return new BoardKernels();
+        try {
+            return (BoardKernels) Class.forName("minesweeper.VectorKernels").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            // jdk.incubator.vector isn't there
+            return new BoardKernels();
+        }
+    }
+
+    /**
+     * getName
+     * return the name of the implementation, e.g. for the logs.
+     */
+    String getName() {
+        return "scalar";
+    }
+
+    /**
+     * countColumn
+     * count the bombs around each square of a column, the square included.
+     * @param left - the bombs of the column on the left, or null at the left edge
+     * @param column - the bombs of the column
+     * @param right - the bombs of the column on the right, or null at the right edge
+     * @param counts - set to the counts, counts[y] for the square y of the column, requires
+     *                 counts.length >= column.length
+     */
+    void countColumn(boolean[] left, boolean[] column, boolean[] right, byte[] counts) {
+        int n = column.length;
+        // bombs of each row of the three columns, shifted by one row with a 0 above and below
+        byte[] sums = new byte[n + 2];
+        for (int y = 0; y < n; y++) {
+            sums[y + 1] = (byte) (column[y] ? 1 : 0);
+        }
+        addColumn(left, sums);
+        addColumn(right, sums);
+        for (int y = 0; y < n; y++) {
+            counts[y] = (byte) (sums[y] + sums[y + 1] + sums[y + 2]);
+        }
+    }
+
+    /*
+     * add the bombs of a column, if any, to the sums of countColumn.
+     */
+    private static void addColumn(boolean[] column, byte[] sums) {
+        if (column == null)
+            return;
+        for (int y = 0; y < column.length; y++) {
+            sums[y + 1] += column[y] ? 1 : 0;
+        }
+    }
+
+    /**
+     * glyphs
+     * translate the states of a row to the glyphs of draw(), each followed by a space.
+     * @param states - the states of the squares of the row, UNTOUCHED, FLAGGED or 0..8
+     * @param n - the number of squares of the row
+     * @param out - set to the 2 * n bytes of the glyphs, from offset
+     * @param offset - where the glyphs start in out
+     */
+    void glyphs(short[] states, int n, byte[] out, int offset) {
+        for (int j = 0; j < n; j++) {
+            out[offset + 2 * j] = glyph(states[j]);
+            out[offset + 2 * j + 1] = ' ';
+        }
+    }
+
+    // glyph of each state, from FLAGGED (-2) to 8
+    private static final byte[] GLYPHS = {'F', '-', ' ', '1', '2', '3', '4', '5', '6', '7', '8'};
+
+    /*
+     * the glyph of a state, see draw().
+     */
+    static byte glyph(int state) {
+        if (state >= Board.FLAGGED && state <= 8)
+            return GLYPHS[state - Board.FLAGGED];
+        throw new RuntimeException("unexpected state!");
+    }
+}
@@ -0,0 +1,36 @@
+/* Copyright (c) 2007-2017 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package minesweeper;
+
+/**
+ * BoardListener is notified whenever the state of a Board changes.
+ * 
+ * Listeners are called by the thread doing the change while it still holds the Board's lock,
+ * so they must be fast and must never block (e.g. just mark some state as dirty and let
+ * another thread do the work).
+ */
+public interface BoardListener {
+
+    /**
+     * boardChanged
+     * called after an operation (dig, flag, deflag) changed the state of board.
+     * @param board - the board that changed
+     */
+    void boardChanged(Board board);
+
+    /**
+     * boardChanged
+     * called after an operation (dig, flag, deflag) on the square (x, y) changed the state of
+     * board, instead of boardChanged(board), which it calls by default. The squares changed are
+     * (x, y), and for a dig the squares around it and the squares of its cascade, each next to
+     * a square dug with no bomb around; a slice of a cascade (see Board.setCascadeSlice) is
+     * notified with the square of its dig.
+     * @param board - the board that changed
+     * @param x - the x coordinate of the square of the operation
+     * @param y - the y coordinate of the square of the operation
+     */
+    default void boardChanged(Board board, int x, int y) {
+        boardChanged(board);
+    }
+}
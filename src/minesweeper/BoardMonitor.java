@@ -0,0 +1,123 @@
+/* Copyright (c) 2007-2017 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package minesweeper;
+
+/**
+ * BoardMonitor records, for each operation of a Board, how long it waited for the board's lock
+ * and how long it held it, plus the number of squares revealed by each dig.
+ *
+ * A watchdog may be set to hear of every operation that held the lock longer than a threshold
+ * (e.g. a huge cascade stalling all the other clients). It is called after the lock is released,
+ * on the thread that ran the operation.
+ */
+public class BoardMonitor {
+
+    /**
+     * Operations of the board, as measured by the monitor. CASCADE is one more slice of a
+     * sliced cascade (see Board.setCascadeSlice), after the DIG which started it.
+     */
+    public static enum Op {DIG, CASCADE, FLAG, DEFLAG, DRAW};
+
+    /**
+     * Watchdog is told of the operations that held the board's lock too long.
+     */
+    public interface Watchdog {
+        /**
+         * heldTooLong
+         * called after an operation held the board's lock longer than the threshold.
+         * @param op - the operation
+         * @param x - the x coordinate of the square operated on, -1 for DRAW
+         * @param y - the y coordinate of the square operated on, -1 for DRAW
+         * @param cascade - the number of squares revealed, 0 but for DIG and CASCADE
+         * @param heldNanos - the time the lock was held, in nanoseconds
+         */
+        void heldTooLong(Op op, int x, int y, int cascade, long heldNanos);
+    }
+
+    private final Histogram[] wait = new Histogram[Op.values().length];
+    private final Histogram[] held = new Histogram[Op.values().length];
+    private final Histogram cascade = new Histogram();
+
+    // the watchdog and its threshold, in nanoseconds
+    private volatile Watchdog watchdog = null;
+    private volatile long threshold = Long.MAX_VALUE;
+
+    // rep invariant:
+    //    wait[i] != null and held[i] != null for every Op i
+    //    threshold >= 0
+    //
+    // abstraction function:
+    //    represents the lock wait and hold times of every operation done on a board, per Op,
+    //    and the cascade sizes of its digs (including all their slices).
+    //
+    // Thread safety argument:
+    //    histograms are thread safe, and watchdog and threshold are volatile (a record racing
+    //    with setWatchdog may pair the old watchdog with the new threshold, which is harmless).
+
+    /**
+     * constructor
+     * construct a monitor with nothing recorded and no watchdog.
+     */
+    public BoardMonitor() {
+        for (int i = 0; i < wait.length; i++) {
+            wait[i] = new Histogram();
+            held[i] = new Histogram();
+        }
+    }
+
+    /*
+     * record one operation of the board, called once its lock is released.
+     */
+    void record(Op op, int x, int y, int squares, long waitNanos, long heldNanos) {
+        wait[op.ordinal()].record(waitNanos);
+        held[op.ordinal()].record(heldNanos);
+        if (op == Op.DIG)
+            cascade.record(squares);
+
+        Watchdog w = watchdog;
+        if (w != null && heldNanos > threshold)
+            w.heldTooLong(op, x, y, squares, heldNanos);
+    }
+
+    /**
+     * getWait
+     * return the times operations op waited for the lock, in nanoseconds. The histogram is
+     * live, and must only be read.
+     */
+    public Histogram getWait(Op op) {
+        return wait[op.ordinal()];
+    }
+
+    /**
+     * getHeld
+     * return the times operations op held the lock, in nanoseconds. The histogram is live,
+     * and must only be read.
+     */
+    public Histogram getHeld(Op op) {
+        return held[op.ordinal()];
+    }
+
+    /**
+     * getCascade
+     * return the numbers of squares revealed by the digs. The histogram is live, and must
+     * only be read.
+     */
+    public Histogram getCascade() {
+        return cascade;
+    }
+
+    /**
+     * setWatchdog
+     * set (or replace) the watchdog of the board.
+     * @param thresholdNanos - the watchdog is called for every operation holding the lock longer
+     *                         than this, in nanoseconds, requires thresholdNanos >= 0
+     * @param watchdog - the watchdog, or null for none
+     */
+    public void setWatchdog(long thresholdNanos, Watchdog watchdog) {
+        if (thresholdNanos < 0)
+            throw new IllegalArgumentException("threshold must be >= 0 (threshold = "+thresholdNanos+")");
+        this.threshold = thresholdNanos;
+        this.watchdog = watchdog;
+    }
+}
@@ -0,0 +1,71 @@
+/* Copyright (c) 2007-2017 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package minesweeper;
+
+import java.util.Arrays;
+
+/**
+ * Cascade is the frontier of a cascade of digs (see Board.dig): the squares revealed with no
+ * bomb around, whose neighbors are still to be revealed. Squares are kept as their index in
+ * the board (x * sizeY + y), on a stack of longs.
+ *
+ * Keeping the frontier explicit (rather than on the call stack) bounds the stack depth of huge
+ * cascades, and lets a cascade be suspended between two slices (see Board.setCascadeSlice).
+ */
+final class Cascade {
+
+    private long[] squares = new long[16];
+    private int size = 0;
+
+    // rep invariant:
+    //    0 <= size <= squares.length
+    //
+    // abstraction function:
+    //    represents the frontier squares[0..size-1] of a cascade.
+    //
+    // Thread safety argument:
+    //    not thread safe; a cascade is only used by the dig it belongs to, with the board's
+    //    lock held.
+
+    void push(long square) {
+        if (size == squares.length)
+            squares = Arrays.copyOf(squares, 2 * size);
+        squares[size++] = square;
+    }
+
+    /*
+     * remove and return the square last pushed, requires !isEmpty().
+     */
+    long pop() {
+        return squares[--size];
+    }
+
+    /*
+     * return the square last pushed, requires !isEmpty().
+     */
+    long peek() {
+        return squares[size - 1];
+    }
+
+    /*
+     * remove and return all the squares of the frontier, requires them to be ints (boards of
+     * less than 2^31 squares, see DenseBoard).
+     */
+    int[] popAll() {
+        int[] all = new int[size];
+        for (int i = 0; i < size; i++) {
+            all[i] = Math.toIntExact(squares[i]);
+        }
+        size = 0;
+        return all;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int size() {
+        return size;
+    }
+}
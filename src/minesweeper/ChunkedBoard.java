@@ -0,0 +1,191 @@
+/* Copyright (c) 2007-2017 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package minesweeper;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+
+/**
+ * ChunkedBoard is a Board whose squares are kept on the heap in tiles of 64x64 squares, each
+ * tile being allocated when one of its squares first changes: the untouched parts of the board
+ * take no memory but their bombs, a bit per square. So a huge board whose game only reveals
+ * a fraction of it (a dense board, whose cascades are small) takes a fraction of its size; a tile
+ * takes about 36 KB (a byte for the state and a long for the version of each square).
+ *
+ * A board has less than 2^37 squares (its bombs are an array of longs).
+ */
+public class ChunkedBoard extends AbstractBoard {
+
+    // a tile is TILE x TILE squares
+    static final int TILE_BITS = 6;
+    private static final int TILE = 1 << TILE_BITS;
+    private static final int TILE_MASK = TILE - 1;
+
+    // largest number of squares of a board (the bombs are the largest array of longs)
+    static final long MAX_SQUARES = (long) (Integer.MAX_VALUE - 8) << 6;
+
+    private final int sizeY;
+    // number of tiles along the y axis
+    private final int tilesY;
+
+    // tile (i, j), holding the squares (TILE * i .. TILE * i + TILE - 1, TILE * j .. ), at
+    // i * tilesY + j, or null if none of its squares changed yet
+    private Tile[] tiles;
+    // number of tiles allocated
+    private int numTiles = 0;
+    // bit s % 64 of the long s / 64 is set iff the square s has a bomb
+    private long[] mines;
+
+    // rep invariant:
+    //    tiles has ceil(sizeX / TILE) * tilesY entries, numTiles of them not null, and mines a
+    //    bit per square; or tiles and mines are null once released
+    //
+    // abstraction function:
+    //    represents the board of AbstractBoard, the square (x, y) having the state and the
+    //    version of the square ((x % TILE) * TILE + y % TILE) of its tile, or UNTOUCHED and 0
+    //    if its tile is null, and the bomb of the bit x * sizeY + y of mines.
+    //
+    // Thread safety argument:
+    //    the tiles and mines are only accessed by AbstractBoard, see AbstractBoard; the tiles
+    //    are allocated with its lock held, as the squares change.
+
+    /**
+     * constructor
+     *
+     * construct a board with dimension sizeX x sizeY, each square is randomly assigned with a bomb
+     * (with a probability of 0.25) or not.
+     */
+    public ChunkedBoard (int sizeX, int sizeY) {
+        this(new int[] {checkSizes(sizeX, sizeY), sizeY});
+        placeMines();
+    }
+
+    /**
+     * constructor
+     * @param File file - the text file contains the board to initialize, see DenseBoard(File)
+     */
+    public ChunkedBoard (File file) throws IOException {
+        this(new BufferedReader(new FileReader(file)));
+    }
+
+    private ChunkedBoard (BufferedReader reader) throws IOException {
+        this(readSizes(reader), reader);
+    }
+
+    private ChunkedBoard (int[] sizes, BufferedReader reader) throws IOException {
+        this(sizes);
+        readMines(reader);
+    }
+
+    /*
+     * empty
+     * make an empty board of sizeX x sizeY squares, all untouched and without bombs (see
+     * AbstractBoard.deferMines).
+     */
+    static ChunkedBoard empty(int sizeX, int sizeY) {
+        return new ChunkedBoard(new int[] {checkSizes(sizeX, sizeY), sizeY});
+    }
+
+    /*
+     * allocate an empty board of the sizes {x, y}, checked.
+     */
+    private ChunkedBoard (int[] sizes) {
+        super(sizes[0], sizes[1]);
+        int sizeX = sizes[0];
+        int sizeY = sizes[1];
+        long squares = (long) sizeX * sizeY;
+        if (squares > MAX_SQUARES)
+            throw new RuntimeException("board too large ("+sizeX+"x"+sizeY+")");
+        this.sizeY = sizeY;
+        this.tilesY = (sizeY + TILE_MASK) >>> TILE_BITS;
+        this.tiles = new Tile[Math.toIntExact((long) ((sizeX + TILE_MASK) >>> TILE_BITS) * tilesY)];
+        this.mines = new long[(int) ((squares + 63) >>> 6)];
+    }
+
+    /**
+     * getTiles
+     * return the number of tiles allocated so far, each holding TILE x TILE squares.
+     */
+    synchronized int getTiles() {
+        return numTiles;
+    }
+
+    /*
+     * the tile of the square s, allocated if allocate and it's null, or null.
+     */
+    private Tile tile(long s, boolean allocate) {
+        int x = (int) (s / sizeY);
+        int y = (int) (s - (long) x * sizeY);
+        int i = (x >>> TILE_BITS) * tilesY + (y >>> TILE_BITS);
+        Tile tile = tiles[i];
+        if (tile == null && allocate) {
+            tile = new Tile();
+            tiles[i] = tile;
+            numTiles++;
+        }
+        return tile;
+    }
+
+    /*
+     * the index of the square s in its tile.
+     */
+    private int offset(long s) {
+        int x = (int) (s / sizeY);
+        int y = (int) (s - (long) x * sizeY);
+        return ((x & TILE_MASK) << TILE_BITS) | (y & TILE_MASK);
+    }
+
+    @Override
+    int state(long s) {
+        Tile tile = tile(s, false);
+        return (tile == null) ? UNTOUCHED : tile.states[offset(s)] + UNTOUCHED;
+    }
+
+    @Override
+    void putState(long s, int state) {
+        tile(s, true).states[offset(s)] = (byte) (state - UNTOUCHED);
+    }
+
+    @Override
+    long cellVersion(long s) {
+        Tile tile = tile(s, false);
+        return (tile == null) ? 0 : tile.versions[offset(s)];
+    }
+
+    @Override
+    void putCellVersion(long s, long version) {
+        tile(s, true).versions[offset(s)] = version;
+    }
+
+    @Override
+    boolean isMine(long s) {
+        return (mines[(int) (s >>> 6)] & (1L << s)) != 0;
+    }
+
+    @Override
+    void putMine(long s, boolean mine) {
+        int i = (int) (s >>> 6);
+        mines[i] = mine ? mines[i] | (1L << s) : mines[i] & ~(1L << s);
+    }
+
+    /*
+     * drop the tiles and the bombs, for the garbage collector.
+     */
+    @Override
+    void releaseSquares() {
+        tiles = null;
+        mines = null;
+    }
+
+    /*
+     * Tile is the states (as state - UNTOUCHED, so that the initial zeros are UNTOUCHED) and
+     * the versions of TILE x TILE squares.
+     */
+    private static final class Tile {
+        final byte[] states = new byte[TILE * TILE];
+        final long[] versions = new long[TILE * TILE];
+    }
+}
@@ -0,0 +1,360 @@
+/* Copyright (c) 2007-2017 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package minesweeper;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.io.IOException;
+import java.io.File;
+import java.io.FileReader;
+import java.io.BufferedReader;
+
+/**
+ * DenseBoard is a Board whose squares are kept in dense 2D arrays on the heap: the state (an int)
+ * and the version (a long) of each square, and where the bombs are. It's the fastest Board, with
+ * all the cascade engines, but it's limited to boards of less than 2^31 squares which fit in
+ * the heap.
+ *
+ * The game is AbstractBoard's: DenseBoard counts the bombs around each square ahead, and keeps
+ * the structures of its cascade engines in sync with the arrays (see AbstractBoard's hooks).
+ */
+public class DenseBoard extends AbstractBoard {
+    
+    // the size of the board specified (AbstractBoard's).
+    private final int sizeX;
+    private final int sizeY;
+    
+    // indicates where a bomb is planted
+    private final boolean[][] minesField;
+    
+    // current state of this board. Each square may be in one of the states {UNTOUCHED, FLAGGED} or 
+    // a number between 0..8 for a dug empty square with number of neighboring squares containing a bomb.
+    private final int[][] board;
+    
+    // version of the board when each square last changed (0 if it never changed)
+    private final long[][] cellVersion;
+    
+    // pool flooding the cascades in parallel once their frontier reaches parallelThreshold
+    // squares (see ParallelFlood), or null to always reveal them sequentially
+    private ForkJoinPool floodPool = (ForkJoinPool.getCommonPoolParallelism() > 1) ? ForkJoinPool.commonPool() : null;
+    private int parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+    
+    // bit planes of the BITBOARD engine, null for the other engines
+    private BitboardFlood bitboard = null;
+    
+    // zero regions of the REGIONS engine, null for the other engines
+    private ZeroRegions regions = null;
+    
+    // number of bombs around each square, the square included
+    private byte[][] bombsAround;
+    
+    // array passes counting the bombs (vectorized when available)
+    private static final BoardKernels kernels = BoardKernels.get();
+     
+    // rep invariant:
+    //   AbstractBoard's, and
+    //   1. minesField, board, cellVersion and bombsAround are sizeX x sizeY
+    //   2. parallelThreshold > 0
+    //   3. bitboard == null, or its planes match minesField and the untouched squares of board
+    //   4. regions == null, or its regions are those of the zero squares of minesField, and
+    //      bitboard == null
+    //   5. bombsAround[x][y] is the number of bombs of minesField in the 3x3 squares around (x, y)
+    //      (all 0 while the bombs are placed lazily, see AbstractBoard.deferMines)
+    //
+    // abstraction function:
+    //    represents the state of a game of Minesweeper's board, the square (x, y) of
+    //    AbstractBoard being board[x][y], cellVersion[x][y] and minesField[x][y].
+    //
+    // All reps are private so no rep exposure risk.
+    //    the arrays only leave the board for its engines, which don't keep them elsewhere.
+    //
+    // Thread safety argument:
+    //   the arrays and the engines are only accessed by AbstractBoard and its hooks, with the
+    //   board's lock held, but for minesField while AbstractBoard places the bombs lazily, see
+    //   deferMines; ParallelFlood's tasks only run within the dig waiting for them.
+       
+    /**
+     * constructor
+     * @param int sizeX - the width of the board (X axis)
+     * @param int sizeY - the length of the board (Y axis)
+     * 
+     * construct a board with dimension sizeX x sizeY, each square is randomly assigned with a bomb 
+     * (with a probability of 0.25) or not.
+     */
+    public DenseBoard (int sizeX, int sizeY) {
+        this(new int[] {checkSizes(sizeX, sizeY), sizeY});
+        placeMines();
+        countBombs();
+    }
+    
+    /*
+     * empty
+     * make an empty board of sizeX x sizeY squares, all untouched and without bombs (see
+     * AbstractBoard.deferMines).
+     */
+    static DenseBoard empty(int sizeX, int sizeY) {
+        return new DenseBoard(new int[] {checkSizes(sizeX, sizeY), sizeY});
+    }
+    
+    /**
+     * constructor
+     * @param File file - the text file contains the board to initialize. The first line of the file
+     *   specifies the board size, and it must be followed by exactly Y lines, where each line 
+     *   must contain exactly X values. If the file is properly formatted, the Board should be 
+     *   instantiated such that square i,j has a bomb if and only if the ith VAL in LINE j of 
+     *   the input is 1. If the file is improperly formatted, the program should throw an 
+     *   unchecked exception (RuntimeException). 
+     *   
+     * The grammar of the file:
+     * 
+     * FILE ::= BOARD LINE+
+     * BOARD := X SPACE Y NEWLINE
+     * LINE ::= (VAL SPACE)* VAL NEWLINE
+     * VAL ::= 0 | 1
+     * X ::= INT
+     * Y ::= INT
+     * SPACE ::= " "
+     * NEWLINE ::= "\n" | "\r" "\n"?
+     * INT ::= [0-9]+
+     * 
+     */
+    public DenseBoard (File file) throws IOException {
+        this(new BufferedReader(new FileReader(file)));
+    }
+    
+    private DenseBoard (BufferedReader reader) throws IOException {
+        this(readSizes(reader), reader);
+    }
+    
+    private DenseBoard (int[] sizes, BufferedReader reader) throws IOException {
+        this(sizes);
+        readMines(reader);
+        countBombs();
+    }
+    
+    /**
+     * constructor
+     * @param boolean[][] mines - the bombs of the board: square (x, y) has a bomb if and only if
+     *   mines[x][y]. The array must be a non-empty rectangle; it's copied.
+     * 
+     * construct a board with dimension mines.length x mines[0].length, e.g. generated by
+     * NoGuessGenerator.
+     */
+    public DenseBoard (boolean[][] mines) {
+        this(new int[] {checkSizes(mines.length, (mines.length == 0) ? 0 : mines[0].length), mines[0].length});
+        for (int i = 0; i < sizeX; i++) {
+            if (mines[i].length != sizeY)
+                throw new RuntimeException("invalid column! length="+mines[i].length);
+            for (int j = 0; j < sizeY; j++) {
+                if (mines[i][j])
+                    setMine((long) i * sizeY + j);
+            }
+        }
+        countBombs();
+    }
+    
+    /*
+     * allocate an empty board of the sizes {x, y}, checked: all untouched and without bombs.
+     */
+    private DenseBoard (int[] sizes) {
+        super(sizes[0], sizes[1]);
+        sizeX = sizes[0];
+        sizeY = sizes[1];
+        minesField = new boolean[sizeX][sizeY];
+        board = new int[sizeX][sizeY];
+        cellVersion = new long[sizeX][sizeY];
+        bombsAround = new byte[sizeX][sizeY];
+        for (int i = 0; i < sizeX; i++) {
+            Arrays.fill(board[i], UNTOUCHED);
+        }
+    }
+    
+    /*
+     * count the bombs around each square into bombsAround, column by column.
+     */
+    private void countBombs() {
+        bombsAround = new byte[sizeX][sizeY];
+        for (int x = 0; x < sizeX; x++) {
+            kernels.countColumn((x > 0) ? minesField[x - 1] : null, minesField[x],
+                                (x < sizeX - 1) ? minesField[x + 1] : null, bombsAround[x]);
+        }
+    }
+    
+    @Override
+    int state(long s) {
+        return state((int) (s / sizeY), (int) (s % sizeY));
+    }
+    
+    @Override
+    void putState(long s, int state) {
+        putState((int) (s / sizeY), (int) (s % sizeY), state);
+    }
+    
+    @Override
+    long cellVersion(long s) {
+        return cellVersion((int) (s / sizeY), (int) (s % sizeY));
+    }
+    
+    @Override
+    void putCellVersion(long s, long version) {
+        putCellVersion((int) (s / sizeY), (int) (s % sizeY), version);
+    }
+    
+    @Override
+    boolean isMine(long s) {
+        return isMine((int) (s / sizeY), (int) (s % sizeY));
+    }
+    
+    @Override
+    void putMine(long s, boolean mine) {
+        minesField[(int) (s / sizeY)][(int) (s % sizeY)] = mine;
+    }
+    
+    @Override
+    int state(int x, int y) {
+        return board[x][y];
+    }
+    
+    @Override
+    void putState(int x, int y, int state) {
+        if (bitboard != null)
+            bitboard.setUntouched(x, y, state == UNTOUCHED);
+        if (regions != null)
+            regions.stateChanged(x, y, board[x][y], state);
+        board[x][y] = state;
+    }
+    
+    @Override
+    long cellVersion(int x, int y) {
+        return cellVersion[x][y];
+    }
+    
+    @Override
+    void putCellVersion(int x, int y, long version) {
+        cellVersion[x][y] = version;
+    }
+    
+    @Override
+    boolean isMine(int x, int y) {
+        return minesField[x][y];
+    }
+    
+    @Override
+    void releaseSquares() {
+        // the arrays are garbage collected with the board
+    }
+    
+    /*
+     * checkNeighbors
+     * counted ahead in bombsAround, see countBombs.
+     */
+    @Override
+    int checkNeighbors(int x, int y) {
+        return bombsAround[x][y];
+    }
+    
+    /*
+     * the squares around (x, y), and the engines, lose the bomb dug on it.
+     */
+    @Override
+    void mineRemoved(int x, int y) {
+        if (bitboard != null)
+            bitboard.removeMine(x, y);
+        if (regions != null)
+            regions.removeMine(x, y, board);
+        for (int i = Math.max(0, x - 1); i <= Math.min(sizeX - 1, x + 1); i++) {
+            for (int j = Math.max(0, y - 1); j <= Math.min(sizeY - 1, y + 1); j++) {
+                bombsAround[i][j]--;
+            }
+        }
+    }
+    
+    @Override
+    void minesTaken() {
+        countBombs();
+        // the engines keep structures built from the bombs
+        if (bitboard != null)
+            bitboard = new BitboardFlood(minesField, board);
+        if (regions != null)
+            regions = new ZeroRegions(minesField, board);
+    }
+    
+    /*
+     * flood
+     * the BITBOARD engine floods whole cascades at once, a cascade whose frontier reaches
+     * parallelThreshold squares is flooded in parallel (see setParallelCascade), and the
+     * REGIONS engine reveals whole regions at once (see setCascadeEngine).
+     */
+    @Override
+    long flood(Cascade cascade) {
+        if (bitboard != null) {
+            // the whole cascade at once
+            return bitboard.flood(cascade.popAll(), board, cellVersion, version + 1);
+        }
+        if (floodPool != null && regions == null && cascade.size() >= parallelThreshold) {
+            // a huge cascade, flood the rest of it in parallel
+            return new ParallelFlood(board, minesField, cellVersion, version + 1)
+                       .flood(floodPool, cascade.popAll());
+        }
+        if (regions != null) {
+            // the whole region of the square, and its border, if it's still untouched
+            long s = cascade.peek();
+            int revealed = regions.reveal((int) (s / sizeY), (int) (s % sizeY), board, cellVersion, version + 1);
+            if (revealed >= 0)
+                cascade.pop();
+            return revealed;
+        }
+        return -1;
+    }
+    
+    @Override
+    void states(int y, short[] row) {
+        for (int x = 0; x < sizeX; x++) {
+            row[x] = (short) board[x][y];
+        }
+    }
+    
+    /**
+     * setParallelCascade
+     * set how the cascades are flooded in parallel: once the frontier of a whole (not sliced)
+     * cascade reaches threshold squares, the rest of it is revealed by a breadth first search
+     * run in pool (see ParallelFlood). The squares revealed are the same either way.
+     * By default, cascades of DEFAULT_PARALLEL_THRESHOLD squares are flooded in the common
+     * pool if it has several threads.
+     * @param pool - the pool running the flood, or null to always reveal cascades sequentially
+     * @param threshold - the frontier size from which the flood is parallel, requires threshold > 0
+     */
+    @Override
+    public synchronized void setParallelCascade (ForkJoinPool pool, int threshold) {
+        if (threshold <= 0)
+            throw new IllegalArgumentException("parallel threshold must be > 0 (threshold = "+threshold+")");
+        floodPool = pool;
+        parallelThreshold = threshold;
+    }
+    
+    /**
+     * setCascadeEngine
+     * set the engine revealing the cascades. All engines reveal the same squares, with the same
+     * changes to the board. BITBOARD and REGIONS keep structures of their own in sync with the
+     * board (built when the engine is set), and only reveal whole cascades (sliced ones, see
+     * setCascadeSlice, are revealed by SCALAR); REGIONS falls back on SCALAR for the regions
+     * already partly dug or flagged.
+     * @param engine - the engine, SCALAR by default
+     */
+    @Override
+    public synchronized void setCascadeEngine (CascadeEngine engine) {
+        if (engine == CascadeEngine.BITBOARD) {
+            if (bitboard == null)
+                bitboard = new BitboardFlood(minesField, board);
+        } else {
+            bitboard = null;
+        }
+        if (engine == CascadeEngine.REGIONS) {
+            if (regions == null)
+                regions = new ZeroRegions(minesField, board);
+        } else {
+            regions = null;
+        }
+    }
+}
@@ -0,0 +1,403 @@
+/* Copyright (c) 2007-2017 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package minesweeper;
+
+import java.util.Arrays;
+
+/**
+ * HintSolver finds squares of a board that are provably safe, or provably hold a bomb, from what
+ * the players see: the counts of the dug squares (the flags are the players' guesses, not
+ * information). Each dug square is a constraint: its count is the number of bombs among its
+ * covered (untouched or flagged) neighbors. A square is proven
+ *    - by a single constraint, when its count is 0 (all its covered neighbors are safe) or the
+ *      number of its covered neighbors (all are bombs);
+ *    - by two constraints A and B whose covered squares are a subset of each other's: the
+ *      squares of B but not A hold the count of B minus the count of A.
+ * The squares proven are bombs, or safe, for good, so they are kept as known and taken off
+ * the constraints around them, which may prove more squares in turn.
+ *
+ * The solver is incremental: it's a listener of the board, told the square of each operation,
+ * and keeps a copy of the states of the board, so it only reads the squares an operation
+ * changed (the squares around the square of the operation, and its cascade) and only solves
+ * again the constraints around them. The covered squares of a constraint are bitsets of its
+ * 3x3 squares, laid on the 7x7 squares around the constraint solved to compare them.
+ */
+public class HintSolver implements BoardListener {
+
+    /** Kinds of hints, see hint(). */
+    public static final int SAFE = 0;
+    public static final int MINE = 1;
+
+    /** Largest number of squares of a board the solver accepts (it takes 2 bytes per square). */
+    public static final long MAX_SQUARES = 1L << 25;
+
+    // bits of marks: the square is known safe, known to hold a bomb, and it's on dirty
+    private static final byte KNOWN_SAFE = 1;
+    private static final byte KNOWN_MINE = 2;
+    private static final byte DIRTY = 4;
+
+    // EXPAND[(ox + 2) * 5 + (oy + 2)][mask] is the bitset of the 7x7 squares around a square c
+    // (bit (dx + 3) * 7 + (dy + 3) for the square (dx, dy) from c) of the 3x3 squares around the
+    // square (ox, oy) from c, given as a bitset of the 3x3 squares (bit (i + 1) * 3 + (j + 1)
+    // for the square (i, j) from the square (ox, oy))
+    private static final long[][] EXPAND = new long[25][512];
+    static {
+        for (int ox = -2; ox <= 2; ox++) {
+            for (int oy = -2; oy <= 2; oy++) {
+                long[] expand = EXPAND[(ox + 2) * 5 + (oy + 2)];
+                for (int mask = 0; mask < 512; mask++) {
+                    for (int bit = 0; bit < 9; bit++) {
+                        if ((mask & (1 << bit)) != 0)
+                            expand[mask] |= 1L << ((ox + bit / 3 - 1 + 3) * 7 + (oy + bit % 3 - 1 + 3));
+                    }
+                }
+            }
+        }
+    }
+    private static final int CENTER = 2 * 5 + 2;
+
+    // operations kept until a hint reads them
+    private static final int MAX_PENDING = 1 << 16;
+
+    private final Board board;
+    private final int sizeX;
+    private final int sizeY;
+
+    // states[s] is the state of the square s (x * sizeY + y) when the solver last read it
+    private final byte[] states;
+    // marks[s] holds the bits KNOWN_SAFE, KNOWN_MINE and DIRTY of the square s
+    private final byte[] marks;
+
+    // squares of the operations not read yet, up to MAX_PENDING, or the whole board if rescan
+    private final IntStack pending = new IntStack();
+    private boolean rescan = false;
+    // dug squares with no bomb around left with untouched squares around, i.e. cascades not
+    // over yet (sliced) when they were read
+    private IntStack open = new IntStack();
+    // constraints to solve again, marked DIRTY
+    private final IntStack dirty = new IntStack();
+    // squares proven, some maybe played since
+    private final IntStack hints = new IntStack();
+    // squares to read, while reading the changes
+    private final IntStack work = new IntStack();
+
+    // rep invariant:
+    //    states and marks have sizeX * sizeY entries
+    //    a square is DIRTY iff it's on dirty
+    //    a square isn't both KNOWN_SAFE and KNOWN_MINE, and each known square is on hints
+    //      unless it isn't covered anymore
+    //    the states are those of the board, but for the squares changed by the operations
+    //      of pending, and around the squares of open (or any square if rescan)
+    //
+    // abstraction function:
+    //    represents the squares of board proven safe (KNOWN_SAFE) or bombs (KNOWN_MINE), and
+    //    the constraints that may prove more of them (the dug squares on dirty).
+    //
+    // Thread safety argument:
+    //    the solver is only accessed with the board's lock held (the lock of a board is
+    //    the board itself, see Board): boardChanged is called with it held, and hint()
+    //    takes it.
+
+    private HintSolver(Board board) {
+        this.board = board;
+        this.sizeX = board.getBoardSizeX();
+        this.sizeY = board.getBoardSizeY();
+        this.states = new byte[sizeX * sizeY];
+        this.marks = new byte[sizeX * sizeY];
+    }
+
+    /**
+     * attach
+     * make a solver of a board, and register it as a listener of the board. It reads the whole
+     * board once, and then only the squares changed.
+     * @param board - the board, of up to MAX_SQUARES squares
+     * @throws IllegalArgumentException if the board is too large
+     */
+    public static HintSolver attach(Board board) {
+        long squares = (long) board.getBoardSizeX() * board.getBoardSizeY();
+        if (squares > MAX_SQUARES)
+            throw new IllegalArgumentException("board too large for hints ("+squares+" squares)");
+        HintSolver solver = new HintSolver(board);
+        synchronized (board) {
+            for (int x = 0; x < solver.sizeX; x++) {
+                for (int y = 0; y < solver.sizeY; y++) {
+                    int s = x * solver.sizeY + y;
+                    solver.states[s] = (byte) board.getState(x, y);
+                    if (solver.states[s] >= 0)
+                        solver.markDirty(s);
+                }
+            }
+            board.addListener(solver);
+        }
+        return solver;
+    }
+
+    /**
+     * boardChanged
+     * the board changed, the operations are only read by hint().
+     */
+    @Override
+    public void boardChanged(Board board) {
+        // only the operations with their square are of interest
+    }
+
+    @Override
+    public void boardChanged(Board board, int x, int y) {
+        if (rescan)
+            return;
+        if (pending.size() == MAX_PENDING) {
+            // no hint asked for a long time: the next one reads the whole board instead
+            pending.clear();
+            rescan = true;
+            return;
+        }
+        pending.push(x * sizeY + y);
+    }
+
+    /**
+     * hint
+     * return a square of the board proven safe or proven to hold a bomb, from the counts of the
+     * dug squares, as {x, y, SAFE} or {x, y, MINE}, or null if none can be proven this way. The
+     * square is untouched, or flagged if it's proven safe. The same square is returned until
+     * it's played.
+     */
+    public int[] hint() {
+        synchronized (board) {
+            readChanges();
+            while (true) {
+                while (!hints.isEmpty()) {
+                    int s = hints.peek();
+                    boolean mine = (marks[s] & KNOWN_MINE) != 0;
+                    if (states[s] == Board.UNTOUCHED || (states[s] == Board.FLAGGED && !mine))
+                        return new int[] {s / sizeY, s % sizeY, mine ? MINE : SAFE};
+                    hints.pop();
+                }
+                if (dirty.isEmpty())
+                    return null;
+                int a = dirty.pop();
+                marks[a] &= ~DIRTY;
+                solve(a / sizeY, a % sizeY);
+            }
+        }
+    }
+
+    /*
+     * read the squares changed by the pending operations, and by the cascades still open, from
+     * the board, and mark the constraints around them dirty.
+     */
+    private void readChanges() {
+        if (rescan) {
+            rescan = false;
+            for (int s = 0; s < states.length; s++) {
+                read(s, false);
+            }
+        }
+        IntStack reopen = open;
+        open = new IntStack();
+        while (!reopen.isEmpty()) {
+            pushAround(reopen.pop());
+        }
+        while (!pending.isEmpty()) {
+            work.push(pending.pop());
+        }
+        while (!work.isEmpty()) {
+            read(work.pop(), true);
+        }
+        // the cascades over are closed
+        IntStack stillOpen = new IntStack();
+        while (!open.isEmpty()) {
+            int s = open.pop();
+            if (states[s] == 0 && hasUntouchedAround(s / sizeY, s % sizeY))
+                stillOpen.push(s);
+        }
+        open = stillOpen;
+    }
+
+    /*
+     * read the square s from the board. If it changed, mark the constraints around it dirty,
+     * and if follow and it's dug, push the squares around it on work: they may have changed
+     * too (revealed by its cascade, or their count decremented if it held a bomb).
+     */
+    private void read(int s, boolean follow) {
+        byte state = (byte) board.getState(s / sizeY, s % sizeY);
+        if (state == states[s])
+            return;
+        states[s] = state;
+        markAround(s / sizeY, s % sizeY);
+        if (state >= 0 && follow)
+            pushAround(s);
+        if (state == 0)
+            open.push(s);
+    }
+
+    private void pushAround(int s) {
+        int x = s / sizeY;
+        int y = s % sizeY;
+        for (int i = Math.max(0, x - 1); i <= Math.min(sizeX - 1, x + 1); i++) {
+            for (int j = Math.max(0, y - 1); j <= Math.min(sizeY - 1, y + 1); j++) {
+                work.push(i * sizeY + j);
+            }
+        }
+    }
+
+    private boolean hasUntouchedAround(int x, int y) {
+        for (int i = Math.max(0, x - 1); i <= Math.min(sizeX - 1, x + 1); i++) {
+            for (int j = Math.max(0, y - 1); j <= Math.min(sizeY - 1, y + 1); j++) {
+                if (states[i * sizeY + j] == Board.UNTOUCHED)
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    /*
+     * mark the constraints around (x, y), the square included, dirty.
+     */
+    private void markAround(int x, int y) {
+        for (int i = Math.max(0, x - 1); i <= Math.min(sizeX - 1, x + 1); i++) {
+            for (int j = Math.max(0, y - 1); j <= Math.min(sizeY - 1, y + 1); j++) {
+                int s = i * sizeY + j;
+                if (states[s] >= 0)
+                    markDirty(s);
+            }
+        }
+    }
+
+    private void markDirty(int s) {
+        if ((marks[s] & DIRTY) == 0) {
+            marks[s] |= DIRTY;
+            dirty.push(s);
+        }
+    }
+
+    /*
+     * the constraint of the square (x, y), which must be dug: the bitset of its 3x3 squares
+     * covered and not known (bits 0 to 8), and the number of bombs among them (from bit 16).
+     */
+    private int constraint(int x, int y) {
+        int mask = 0;
+        int bombs = states[x * sizeY + y];
+        for (int i = -1; i <= 1; i++) {
+            for (int j = -1; j <= 1; j++) {
+                int u = x + i;
+                int v = y + j;
+                if (u < 0 || u >= sizeX || v < 0 || v >= sizeY)
+                    continue;
+                int s = u * sizeY + v;
+                if (states[s] >= 0)
+                    continue;
+                if ((marks[s] & KNOWN_MINE) != 0)
+                    bombs--;
+                else if ((marks[s] & KNOWN_SAFE) == 0)
+                    mask |= 1 << ((i + 1) * 3 + (j + 1));
+            }
+        }
+        return mask | (bombs << 16);
+    }
+
+    /*
+     * solve the constraint of the square (x, y) alone, and with each constraint around it.
+     */
+    private void solve(int x, int y) {
+        int a = constraint(x, y);
+        int maskA = a & 0x1FF;
+        int bombsA = a >> 16;
+        if (maskA == 0)
+            return;
+        long coveredA = EXPAND[CENTER][maskA];
+        if (bombsA == 0) {
+            prove(x, y, coveredA, false);
+            return;
+        }
+        if (bombsA == Integer.bitCount(maskA)) {
+            prove(x, y, coveredA, true);
+            return;
+        }
+        for (int ox = -2; ox <= 2; ox++) {
+            for (int oy = -2; oy <= 2; oy++) {
+                int u = x + ox;
+                int v = y + oy;
+                if ((ox == 0 && oy == 0) || u < 0 || u >= sizeX || v < 0 || v >= sizeY || states[u * sizeY + v] < 0)
+                    continue;
+                int b = constraint(u, v);
+                int maskB = b & 0x1FF;
+                if (maskB == 0)
+                    continue;
+                int bombsB = b >> 16;
+                long coveredB = EXPAND[(ox + 2) * 5 + (oy + 2)][maskB];
+                if ((coveredA & ~coveredB) == 0)
+                    proveDifference(x, y, coveredB & ~coveredA, bombsB - bombsA);
+                else if ((coveredB & ~coveredA) == 0)
+                    proveDifference(x, y, coveredA & ~coveredB, bombsA - bombsB);
+            }
+        }
+    }
+
+    /*
+     * the squares of covered (a bitset of the 7x7 squares around (x, y)) hold bombs bombs.
+     */
+    private void proveDifference(int x, int y, long covered, int bombs) {
+        if (covered == 0)
+            return;
+        if (bombs == 0)
+            prove(x, y, covered, false);
+        else if (bombs == Long.bitCount(covered))
+            prove(x, y, covered, true);
+    }
+
+    /*
+     * the squares of covered (a bitset of the 7x7 squares around (x, y)) are all safe, or all
+     * bombs if mine.
+     */
+    private void prove(int x, int y, long covered, boolean mine) {
+        while (covered != 0) {
+            int bit = Long.numberOfTrailingZeros(covered);
+            covered &= covered - 1;
+            int u = x + bit / 7 - 3;
+            int v = y + bit % 7 - 3;
+            int s = u * sizeY + v;
+            if ((marks[s] & (KNOWN_SAFE | KNOWN_MINE)) != 0)
+                continue;
+            marks[s] |= mine ? KNOWN_MINE : KNOWN_SAFE;
+            hints.push(s);
+            // the constraints around it have one square less
+            markAround(u, v);
+        }
+    }
+
+    /*
+     * IntStack is a stack of squares.
+     */
+    private static final class IntStack {
+
+        private int[] squares = new int[16];
+        private int size = 0;
+
+        void push(int square) {
+            if (size == squares.length)
+                squares = Arrays.copyOf(squares, 2 * size);
+            squares[size++] = square;
+        }
+
+        int pop() {
+            return squares[--size];
+        }
+
+        int peek() {
+            return squares[size - 1];
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        int size() {
+            return size;
+        }
+
+        void clear() {
+            size = 0;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/* Copyright (c) 2007-2017 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package minesweeper;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram records the distribution of non-negative long values (e.g. latencies in
+ * nanoseconds), with a bounded relative error, in the style of an HDR histogram.
+ *
+ * Values are counted in log-linear buckets: each power of two range [2^e, 2^(e+1)) is split
+ * into SUB_BUCKETS buckets of equal width, so a value is reported with a relative error of at
+ * most 1/SUB_BUCKETS (values below SUB_BUCKETS are exact). Recording a value is lock-free and
+ * allocation-free: a handful of atomic increments.
+ */
+public class Histogram {
+
+    // number of buckets per power of two, 2^SUB_BITS
+    private static final int SUB_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    // enough buckets for every non-negative long
+    private static final int BUCKETS = (63 - SUB_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    // rep invariant:
+    //    the sum of counts == count, whenever no record() is in progress
+    //    max >= every value recorded
+    //
+    // abstraction function:
+    //    represents the multiset of values recorded, where the value of each bucket stands for
+    //    any value between bucketLow(i) and bucketHigh(i).
+    //
+    // Thread safety argument:
+    //    all fields are atomic types, and record() only ever increments them, so concurrent
+    //    readers may see a recording half done (e.g. counted but not summed yet), never a
+    //    corrupted one.
+
+    /**
+     * record
+     * record one value.
+     * @param value - the value, negative values are recorded as 0
+     */
+    public void record(long value) {
+        if (value < 0)
+            value = 0;
+        counts.incrementAndGet(index(value));
+        count.increment();
+        sum.add(value);
+        long m = max.get();
+        while (value > m && !max.compareAndSet(m, value)) {
+            m = max.get();
+        }
+    }
+
+    /**
+     * getCount
+     * return the number of values recorded.
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * getSum
+     * return the sum of the values recorded.
+     */
+    public long getSum() {
+        return sum.sum();
+    }
+
+    /**
+     * getMax
+     * return the largest value recorded, or 0 if none.
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * getValueAtPercentile
+     * return the value below which the given percentage of the recorded values fall, within
+     * the histogram's precision, or 0 if no value was recorded.
+     * @param percentile - the percentage, requires 0 <= percentile <= 100
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100)
+            throw new IllegalArgumentException("percentile must be in 0..100 (percentile = "+percentile+")");
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0)
+            return 0;
+
+        long target = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= target)
+                return Math.min(bucketHigh(i), getMax());
+        }
+        return getMax();
+    }
+
+    /*
+     * index of the bucket counting value >= 0.
+     */
+    private static int index(long value) {
+        if (value < SUB_BUCKETS)
+            return (int) value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BITS)) - SUB_BUCKETS;
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    /*
+     * highest value counted by the bucket at index.
+     */
+    private static long bucketHigh(int index) {
+        if (index < SUB_BUCKETS)
+            return index;
+        int exponent = index / SUB_BUCKETS + SUB_BITS - 1;
+        long width = 1L << (exponent - SUB_BITS);
+        long low = (SUB_BUCKETS + index % SUB_BUCKETS) * width;
+        return low + width - 1;
+    }
+}
@@ -0,0 +1,312 @@
+/* Copyright (c) 2007-2017 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package minesweeper;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * MappedBoard is an OffHeapBoard whose planes live in a file mapped in memory: the OS pages the
+ * squares in on demand (so a board may be larger than the memory), and writes them back to the
+ * file, so the game is persisted as it's played. Opening the file again (e.g. when the server
+ * restarts) resumes the game.
+ *
+ * The OS writes the pages back in any order, at any time: the file is only known to be
+ * consistent at the force() points, which write all the changes back and then record, in the
+ * header of the file, the counters of the board and the sequence number of the last move (the
+ * version of the board, see getVersion). The first change after a force() marks the header dirty
+ * (and writes it back) before touching the planes. So opening a file:
+ *    - whose header is clean resumes the game at once, as it was at its last force(), with
+ *      nothing to read but the header;
+ *    - whose header is dirty (the board wasn't forced after its last moves, e.g. after a crash)
+ *      recovers the board from its planes (see AbstractBoard.recover), reading the whole file:
+ *      each move after the last force() is then kept or lost, in part or entirely, but the
+ *      board is consistent.
+ *
+ * The file is locked while the board is open. release() forces the board and closes the file.
+ *
+ * File format (longs in little endian order):
+ *    HEADER_LENGTH bytes of header: MAGIC, sizeX, sizeY, sequence, clean (1 or 0), and the
+ *    number of bombs, untouched, flagged and dug squares, then the planes of OffHeapBoard:
+ *    the states, the bombs and the versions of the squares.
+ */
+public class MappedBoard extends OffHeapBoard {
+
+    // "MINESWP1"
+    private static final long MAGIC = 0x31505753454e494dL;
+    static final int HEADER_LENGTH = 4096;
+
+    // index of each long of the header
+    private static final int MAGIC_INDEX = 0;
+    private static final int SIZE_X_INDEX = 1;
+    private static final int SIZE_Y_INDEX = 2;
+    private static final int SEQUENCE_INDEX = 3;
+    private static final int CLEAN_INDEX = 4;
+    private static final int BOMBS_INDEX = 5;
+    private static final int UNTOUCHED_INDEX = 6;
+    private static final int FLAGGED_INDEX = 7;
+    private static final int DUG_INDEX = 8;
+
+    private final FileChannel channel;
+    private final FileLock lock;
+    private final OffHeapArray header;
+    private final OffHeapArray[] planes;
+
+    // true iff the file was consistent as of the last force, and nothing changed since
+    private boolean clean;
+    // true iff the board was recovered from a dirty file when it was opened
+    private boolean recovered = false;
+    // true once released
+    private boolean closed = false;
+
+    // rep invariant:
+    //    the header's magic and sizes match the board's
+    //    clean implies that the header's clean flag is 1, and that its sequence and counters
+    //      are the board's version and counters
+    //    !clean implies that the header's clean flag is 0 on the storage device
+    //
+    // abstraction function:
+    //    represents the board of OffHeapBoard, persisted in the file of channel.
+    //
+    // Thread safety argument:
+    //    the header and the flags are only accessed with the board's lock held, as OffHeapBoard's
+    //    planes.
+
+    private MappedBoard (int sizeX, int sizeY, FileChannel channel, FileLock lock,
+                         OffHeapArray header, OffHeapArray[] planes) {
+        super(sizeX, sizeY, planes[0], planes[1], planes[2]);
+        this.channel = channel;
+        this.lock = lock;
+        this.header = header;
+        this.planes = planes;
+        this.clean = header.getLong(CLEAN_INDEX) == 1;
+    }
+
+    /**
+     * create
+     * create a file holding a new board of sizeX x sizeY squares, each with a bomb with a
+     * probability of 0.25, as OffHeapBoard(int, int).
+     * @param file - the file, which must not exist
+     * @throws IOException if the file can't be created
+     */
+    public static MappedBoard create (File file, int sizeX, int sizeY) throws IOException {
+        checkSizes(sizeX, sizeY);
+        MappedBoard board = map(file, sizeX, sizeY, true);
+        try {
+            board.placeMines();
+        } catch (RuntimeException e) {
+            board.discard(file);
+            throw e;
+        }
+        board.force();
+        return board;
+    }
+
+    /**
+     * create
+     * create a file holding a new board, with the bombs given by a board file, as
+     * OffHeapBoard(File).
+     * @param file - the file, which must not exist
+     * @param boardFile - the board file, in the format of DenseBoard(File)
+     * @throws IOException if a file can't be read or created
+     */
+    public static MappedBoard create (File file, File boardFile) throws IOException {
+        BufferedReader reader = new BufferedReader(new FileReader(boardFile));
+        int[] sizes = readSizes(reader);
+        MappedBoard board;
+        try {
+            board = map(file, sizes[0], sizes[1], true);
+        } catch (IOException | RuntimeException e) {
+            reader.close();
+            throw e;
+        }
+        try {
+            board.readMines(reader);
+        } catch (IOException | RuntimeException e) {
+            board.discard(file);
+            throw e;
+        }
+        board.force();
+        return board;
+    }
+
+    /**
+     * open
+     * open the board of a file created by create(), and resume its game: at once if the board
+     * was forced after its last moves, otherwise by recovering it (see isRecovered).
+     * @param file - the file
+     * @throws IOException if the file can't be read, or isn't a board's
+     */
+    public static MappedBoard open (File file) throws IOException {
+        MappedBoard board = map(file, 0, 0, false);
+        try {
+            if (board.clean) {
+                OffHeapArray header = board.header;
+                board.restore(header.getLong(BOMBS_INDEX), header.getLong(UNTOUCHED_INDEX),
+                              header.getLong(FLAGGED_INDEX), header.getLong(DUG_INDEX),
+                              header.getLong(SEQUENCE_INDEX));
+            } else {
+                board.recover();
+                board.recovered = true;
+                board.force();
+            }
+        } catch (RuntimeException e) {
+            board.close(false);
+            throw new IOException("invalid board file: " + file, e);
+        }
+        return board;
+    }
+
+    /*
+     * open (and lock) a board file, creating it (of sizeX x sizeY squares) if create, and map it.
+     */
+    private static MappedBoard map (File file, int sizeX, int sizeY, boolean create) throws IOException {
+        FileChannel channel = create
+                ? FileChannel.open(file.toPath(), StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)
+                : FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            FileLock lock;
+            try {
+                lock = channel.tryLock();
+            } catch (OverlappingFileLockException e) {
+                // locked by this JVM
+                lock = null;
+            }
+            if (lock == null)
+                throw new IOException("board file already in use: " + file);
+            if (!create && channel.size() < HEADER_LENGTH)
+                throw new IOException("not a board file: " + file);
+            OffHeapArray header = new OffHeapArray(channel, 0, HEADER_LENGTH);
+            if (create) {
+                header.putLong(MAGIC_INDEX, MAGIC);
+                header.putLong(SIZE_X_INDEX, sizeX);
+                header.putLong(SIZE_Y_INDEX, sizeY);
+                header.putLong(CLEAN_INDEX, 0);
+                header.force();
+            } else {
+                sizeX = (int) header.getLong(SIZE_X_INDEX);
+                sizeY = (int) header.getLong(SIZE_Y_INDEX);
+                if (header.getLong(MAGIC_INDEX) != MAGIC || sizeX <= 0 || sizeY <= 0) {
+                    header.release();
+                    throw new IOException("not a board file: " + file);
+                }
+            }
+            long[] lengths = {statesLength(sizeX, sizeY), minesLength(sizeX, sizeY), versionsLength(sizeX, sizeY)};
+            long position = HEADER_LENGTH;
+            if (!create && channel.size() < position + lengths[0] + lengths[1] + lengths[2]) {
+                header.release();
+                throw new IOException("truncated board file: " + file);
+            }
+            OffHeapArray[] planes = new OffHeapArray[lengths.length];
+            for (int i = 0; i < planes.length; i++) {
+                planes[i] = new OffHeapArray(channel, position, lengths[i]);
+                position += lengths[i];
+            }
+            return new MappedBoard(sizeX, sizeY, channel, lock, header, planes);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            if (create)
+                file.delete();
+            throw e;
+        }
+    }
+
+    /*
+     * release a board being created, and delete its file.
+     */
+    private void discard (File file) {
+        close(false);
+        file.delete();
+    }
+
+    /**
+     * force
+     * make the file consistent: write all the changes of the board back to it, and record the
+     * last move in its header. Does nothing if the board didn't change since the last force().
+     * The board's lock is held meanwhile, for the time the OS takes to write the pages
+     * changed since the last force().
+     */
+    public synchronized void force () {
+        if (closed)
+            throw new IllegalStateException("the board was released");
+        if (clean)
+            return;
+        for (OffHeapArray plane : planes) {
+            plane.force();
+        }
+        header.putLong(SEQUENCE_INDEX, version);
+        header.putLong(BOMBS_INDEX, numBombs);
+        header.putLong(UNTOUCHED_INDEX, numUntouched);
+        header.putLong(FLAGGED_INDEX, numFlagged);
+        header.putLong(DUG_INDEX, numDug);
+        header.putLong(CLEAN_INDEX, 1);
+        header.force();
+        clean = true;
+    }
+
+    /**
+     * getSequence
+     * return the sequence number of the last move recorded as consistent in the file, i.e.
+     * the version of the board at the last force().
+     */
+    public synchronized long getSequence () {
+        return header.getLong(SEQUENCE_INDEX);
+    }
+
+    /**
+     * isRecovered
+     * return true iff the board was recovered when it was opened, because it wasn't forced
+     * after its last moves: some of them may have been lost.
+     */
+    public synchronized boolean isRecovered () {
+        return recovered;
+    }
+
+    /*
+     * the header is marked dirty, on the storage device, before the planes change.
+     */
+    @Override
+    void changing () {
+        if (clean) {
+            header.putLong(CLEAN_INDEX, 0);
+            header.force();
+            clean = false;
+        }
+    }
+
+    /**
+     * release
+     * force the board (see force()), unmap it and close its file. The board must not be used
+     * afterwards.
+     */
+    @Override
+    public void release () {
+        close(true);
+    }
+
+    /*
+     * unmap the board and close its file, forcing it first if force.
+     */
+    private synchronized void close (boolean force) {
+        if (closed)
+            return;
+        if (force)
+            force();
+        closed = true;
+        super.release();
+        header.release();
+        try {
+            lock.release();
+            channel.close();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,354 @@
+/* Copyright (c) 2007-2017 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package minesweeper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * NoGuessGenerator generates boards which can be played without guessing from a first dig: the
+ * bombs of candidate boards are placed at random, away from the square of the first dig (so it
+ * starts a cascade), and each candidate is played from the first dig with the hints of a
+ * HintSolver only, until none is left. The first candidate played to the end is taken.
+ *
+ * On large boards, a candidate almost always has a place left where a guess is needed, so a
+ * candidate played to a stop is repaired rather than drawn again: about half of the bombs of the
+ * untouched squares next to the dug squares (where the play stopped), and of the bombs walling
+ * in pockets of safe squares no dug square reaches (which no hint ever reaches either), are
+ * moved to other squares at random, and the candidate is played again from the first dig, up to
+ * MAX_REPAIRS times. The bombs of the boards generated are thus a bit less dense along the
+ * places that needed a guess.
+ *
+ * The candidates are drawn and played in parallel by the tasks of a fork/join pool, one
+ * candidate after another each, until one of them is played to the end or the time allowed is
+ * over; the candidate with the fewest safe squares left covered is taken then.
+ */
+public final class NoGuessGenerator {
+
+    /** Density of the bombs of the expert boards: 99 bombs on 30 x 16 squares. */
+    public static final double EXPERT_DENSITY = 99.0 / (30 * 16);
+
+    // times a candidate is repaired before drawing another one
+    static final int MAX_REPAIRS = 100;
+
+    private NoGuessGenerator() {
+    }
+
+    /**
+     * generate
+     * return the bombs of a board which can be played without guessing from a dig of (firstX,
+     * firstY), as mines[x][y] for the square (x, y), or the best candidate found in time.
+     * @param sizeX - the width of the board, sizeX > 0
+     * @param sizeY - the length of the board, sizeY > 0
+     * @param bombs - the number of bombs, at most the number of squares not around (firstX, firstY)
+     * @param firstX - column of the first dig
+     * @param firstY - row of the first dig
+     * @param timeout - the time allowed to find a candidate played to the end, in milliseconds
+     * @param pool - the pool playing the candidates, or null to play them in the caller's thread
+     * @param seed - the seed of the candidates
+     * @throws IllegalArgumentException if the first dig isn't on the board, or there are too
+     *         many bombs
+     */
+    public static boolean[][] generate(int sizeX, int sizeY, int bombs, int firstX, int firstY,
+                                       long timeout, ForkJoinPool pool, long seed) {
+        AbstractBoard.checkSizes(sizeX, sizeY);
+        if (firstX < 0 || firstX >= sizeX || firstY < 0 || firstY >= sizeY)
+            throw new IllegalArgumentException("first dig ("+firstX+", "+firstY+") not on the board");
+        int around = (Math.min(sizeX - 1, firstX + 1) - Math.max(0, firstX - 1) + 1)
+                     * (Math.min(sizeY - 1, firstY + 1) - Math.max(0, firstY - 1) + 1);
+        if (bombs < 0 || bombs > (long) sizeX * sizeY - around)
+            throw new IllegalArgumentException("invalid number of bombs ("+bombs+")");
+
+        Search search = new Search(sizeX, sizeY, bombs, firstX, firstY,
+                                   System.nanoTime() + timeout * 1_000_000);
+        SplittableRandom random = new SplittableRandom(seed);
+        if (pool == null) {
+            search.run(random);
+            return search.best;
+        }
+        List<RecursiveAction> tasks = new ArrayList<>();
+        for (int t = 0; t < pool.getParallelism(); t++) {
+            SplittableRandom split = random.split();
+            tasks.add(new RecursiveAction() {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected void compute() {
+                    search.run(split);
+                }
+            });
+        }
+        pool.invoke(new RecursiveAction() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected void compute() {
+                ForkJoinTask.invokeAll(tasks);
+            }
+        });
+        return search.best;
+    }
+
+    /**
+     * solve
+     * return the number of safe squares left covered once the board of mines is played from a
+     * dig of (firstX, firstY), digging the squares HintSolver proves safe and flagging the ones
+     * it proves to hold a bomb until it proves none: 0 if the board can be played without
+     * guessing this way.
+     * @param mines - the bombs of the board, see generate
+     * @param firstX - column of the first dig, a square without a bomb
+     * @param firstY - row of the first dig
+     */
+    public static int solve(boolean[][] mines, int firstX, int firstY) {
+        Board board = play(mines, firstX, firstY);
+        return board.getUntouched() + board.getFlagged() - board.getBombs();
+    }
+
+    /*
+     * repair
+     * repair mines in place until it can be played without guessing from a dig of (firstX,
+     * firstY), up to MAX_REPAIRS times (see the class comment), and return the safe squares left
+     * covered then, see solve.
+     */
+    static int repair(boolean[][] mines, int firstX, int firstY, long seed) {
+        int bombs = 0;
+        for (boolean[] column : mines) {
+            for (boolean mine : column) {
+                if (mine)
+                    bombs++;
+            }
+        }
+        Search search = new Search(mines.length, mines[0].length, bombs, firstX, firstY, Long.MAX_VALUE);
+        return search.play(mines, new SplittableRandom(seed));
+    }
+
+    /*
+     * play the board of mines from a dig of (firstX, firstY) with the hints only, see solve.
+     */
+    private static Board play(boolean[][] mines, int firstX, int firstY) {
+        Board board = new DenseBoard(mines);
+        // the candidates are already played in parallel
+        board.setParallelCascade(null, Board.DEFAULT_PARALLEL_THRESHOLD);
+        HintSolver solver = HintSolver.attach(board);
+        board.dig(firstX, firstY);
+        int[] hint;
+        while ((hint = solver.hint()) != null) {
+            if (hint[2] == HintSolver.MINE)
+                board.flag(hint[0], hint[1]);
+            else
+                board.dig(hint[0], hint[1]);
+        }
+        return board;
+    }
+
+    /*
+     * Search is the state of a search shared by its tasks: the best candidate so far.
+     */
+    private static final class Search {
+
+        private final int sizeX;
+        private final int sizeY;
+        private final int bombs;
+        private final int firstX;
+        private final int firstY;
+        // System.nanoTime() when the time allowed is over
+        private final long deadline;
+
+        // set once a candidate is played to the end
+        private final AtomicBoolean found = new AtomicBoolean(false);
+        // the best candidate so far, and its safe squares left covered, guarded by this
+        private boolean[][] best = null;
+        private int bestLeft = Integer.MAX_VALUE;
+
+        // Thread safety argument:
+        //    the parameters are final, found is atomic, and best and bestLeft are only accessed
+        //    with the lock of the search held, or after the tasks are joined.
+
+        Search(int sizeX, int sizeY, int bombs, int firstX, int firstY, long deadline) {
+            this.sizeX = sizeX;
+            this.sizeY = sizeY;
+            this.bombs = bombs;
+            this.firstX = firstX;
+            this.firstY = firstY;
+            this.deadline = deadline;
+        }
+
+        /*
+         * play candidates drawn with random until one is played to the end, by any task, or the
+         * time allowed is over (at least one candidate is played).
+         */
+        void run(SplittableRandom random) {
+            do {
+                play(draw(random), random);
+            } while (!found.get() && System.nanoTime() < deadline);
+        }
+
+        /*
+         * play candidate, repairing it after each stop, until it's played to the end, by any
+         * task, the time allowed is over or it's repaired MAX_REPAIRS times. Return the safe
+         * squares left covered by its last play.
+         */
+        int play(boolean[][] candidate, SplittableRandom random) {
+            for (int repairs = 0; ; repairs++) {
+                Board board = NoGuessGenerator.play(candidate, firstX, firstY);
+                int left = board.getUntouched() + board.getFlagged() - board.getBombs();
+                synchronized (this) {
+                    if (left < bestLeft) {
+                        best = copy(candidate);
+                        bestLeft = left;
+                    }
+                }
+                if (left == 0)
+                    found.set(true);
+                if (found.get() || System.nanoTime() >= deadline || repairs == MAX_REPAIRS
+                        || !repair(candidate, board, random))
+                    return left;
+            }
+        }
+
+        /*
+         * move about half of the bombs of candidate on the untouched squares of board next to a
+         * dug square (where the play stopped), and around the pockets of board, to squares away
+         * from them, not around the first dig, without a bomb. Return false if no bomb was moved.
+         */
+        private boolean repair(boolean[][] candidate, Board board, SplittableRandom random) {
+            boolean[][] stuck = new boolean[sizeX][sizeY];
+            int[] frontier = new int[16];
+            int n = 0;
+            for (int x = 0; x < sizeX; x++) {
+                for (int y = 0; y < sizeY; y++) {
+                    if (board.getState(x, y) != Board.UNTOUCHED || !hasDugAround(board, x, y))
+                        continue;
+                    stuck[x][y] = true;
+                    if (candidate[x][y]) {
+                        if (n == frontier.length)
+                            frontier = Arrays.copyOf(frontier, 2 * n);
+                        frontier[n++] = x * sizeY + y;
+                    }
+                }
+            }
+            // the bombs walling in the pockets: once the rest is played, their flags are left
+            // around safe squares no count ever tells apart
+            boolean[][] reached = reach(candidate, board);
+            for (int x = 0; x < sizeX; x++) {
+                for (int y = 0; y < sizeY; y++) {
+                    if (reached[x][y] || candidate[x][y])
+                        continue;
+                    stuck[x][y] = true;
+                    for (int u = Math.max(0, x - 1); u <= Math.min(sizeX - 1, x + 1); u++) {
+                        for (int v = Math.max(0, y - 1); v <= Math.min(sizeY - 1, y + 1); v++) {
+                            if (!candidate[u][v] || stuck[u][v])
+                                continue;
+                            stuck[u][v] = true;
+                            if (n == frontier.length)
+                                frontier = Arrays.copyOf(frontier, 2 * n);
+                            frontier[n++] = u * sizeY + v;
+                        }
+                    }
+                }
+            }
+            boolean moved = false;
+            for (int i = 0; i < n; i++) {
+                // at least the last one, if none was moved yet
+                if (random.nextBoolean() && (moved || i < n - 1))
+                    continue;
+                // a square drawn at random, a few times at most
+                for (int tries = 0; tries < 64; tries++) {
+                    int x = random.nextInt(sizeX);
+                    int y = random.nextInt(sizeY);
+                    if (candidate[x][y] || stuck[x][y] || (Math.abs(x - firstX) <= 1 && Math.abs(y - firstY) <= 1))
+                        continue;
+                    candidate[frontier[i] / sizeY][frontier[i] % sizeY] = false;
+                    candidate[x][y] = true;
+                    moved = true;
+                    break;
+                }
+            }
+            return moved;
+        }
+
+        /*
+         * return the safe squares of candidate joined to a dug square of board by safe squares
+         * (around each other): the other safe squares are the pockets of board.
+         */
+        private boolean[][] reach(boolean[][] candidate, Board board) {
+            boolean[][] reached = new boolean[sizeX][sizeY];
+            int[] queue = new int[16];
+            int n = 0;
+            for (int x = 0; x < sizeX; x++) {
+                for (int y = 0; y < sizeY; y++) {
+                    if (board.getState(x, y) >= 0) {
+                        reached[x][y] = true;
+                        if (n == queue.length)
+                            queue = Arrays.copyOf(queue, 2 * n);
+                        queue[n++] = x * sizeY + y;
+                    }
+                }
+            }
+            while (n > 0) {
+                int s = queue[--n];
+                int x = s / sizeY;
+                int y = s % sizeY;
+                for (int u = Math.max(0, x - 1); u <= Math.min(sizeX - 1, x + 1); u++) {
+                    for (int v = Math.max(0, y - 1); v <= Math.min(sizeY - 1, y + 1); v++) {
+                        if (reached[u][v] || candidate[u][v])
+                            continue;
+                        reached[u][v] = true;
+                        if (n == queue.length)
+                            queue = Arrays.copyOf(queue, 2 * n);
+                        queue[n++] = u * sizeY + v;
+                    }
+                }
+            }
+            return reached;
+        }
+
+        private boolean hasDugAround(Board board, int x, int y) {
+            for (int u = Math.max(0, x - 1); u <= Math.min(sizeX - 1, x + 1); u++) {
+                for (int v = Math.max(0, y - 1); v <= Math.min(sizeY - 1, y + 1); v++) {
+                    if (board.getState(u, v) >= 0)
+                        return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean[][] copy(boolean[][] mines) {
+            boolean[][] copy = new boolean[sizeX][];
+            for (int x = 0; x < sizeX; x++) {
+                copy[x] = mines[x].clone();
+            }
+            return copy;
+        }
+
+        /*
+         * draw the bombs of a candidate: bombs squares not around the first dig, uniformly.
+         */
+        private boolean[][] draw(SplittableRandom random) {
+            int[] squares = new int[sizeX * sizeY];
+            int n = 0;
+            for (int x = 0; x < sizeX; x++) {
+                for (int y = 0; y < sizeY; y++) {
+                    if (Math.abs(x - firstX) > 1 || Math.abs(y - firstY) > 1)
+                        squares[n++] = x * sizeY + y;
+                }
+            }
+            // the first bombs squares of a partial Fisher-Yates shuffle
+            boolean[][] mines = new boolean[sizeX][sizeY];
+            for (int i = 0; i < bombs; i++) {
+                int j = i + random.nextInt(n - i);
+                int s = squares[j];
+                squares[j] = squares[i];
+                mines[s / sizeY][s % sizeY] = true;
+            }
+            return mines;
+        }
+    }
+}
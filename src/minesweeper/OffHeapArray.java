@@ -0,0 +1,160 @@
+/* Copyright (c) 2007-2017 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package minesweeper;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * OffHeapArray is an array of bytes in direct memory, outside the heap, addressed with long
+ * indices. It's made of pages of 2^30 bytes (direct buffers are addressed with ints), allocated
+ * with ByteBuffer.allocateDirect, so it may be larger than 2^31 bytes, and the garbage collector
+ * never scans it.
+ *
+ * The array holds bytes, and longs (8 aligned bytes, at index 8 * i for the long i), and its
+ * memory is released explicitly by release(), or else when the array is garbage collected.
+ *
+ * An array may also be a region of a file mapped in memory (see FileChannel.map), whose pages
+ * are read from the file on demand and written back to it, by the OS or by force().
+ */
+final class OffHeapArray {
+
+    // bytes per page
+    static final int PAGE_BITS = 30;
+    private static final long PAGE_MASK = (1L << PAGE_BITS) - 1;
+
+    // sun.misc.Unsafe.invokeCleaner, to free a direct buffer without waiting for the GC, or
+    // null if it isn't available
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER;
+    static {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+        try {
+            Class<?> cls = Class.forName("sun.misc.Unsafe");
+            Field field = cls.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            unsafe = field.get(null);
+            invokeCleaner = cls.getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // the buffers will be freed by the GC
+        }
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+    }
+
+    private final long length;
+    private ByteBuffer[] pages;
+
+    // rep invariant:
+    //    pages == null once released, otherwise pages has ceil(length / 2^PAGE_BITS) buffers,
+    //    all of 2^PAGE_BITS bytes but the last one, which holds the rest
+    //
+    // abstraction function:
+    //    represents the bytes b[0..length-1], b[i] being byte i % 2^PAGE_BITS of
+    //    pages[i / 2^PAGE_BITS].
+    //
+    // Thread safety argument:
+    //    not thread safe; only used by its board with the board's lock held.
+
+    /**
+     * constructor
+     * allocate an array of zeros.
+     * @param length - the number of bytes of the array, requires length > 0
+     */
+    OffHeapArray(long length) {
+        if (length <= 0)
+            throw new IllegalArgumentException("length must be > 0 (length = "+length+")");
+        this.length = length;
+        this.pages = new ByteBuffer[(int) ((length + PAGE_MASK) >>> PAGE_BITS)];
+        for (int i = 0; i < pages.length; i++) {
+            long size = Math.min(length - ((long) i << PAGE_BITS), 1L << PAGE_BITS);
+            pages[i] = ByteBuffer.allocateDirect((int) size).order(ByteOrder.nativeOrder());
+        }
+    }
+
+    /**
+     * constructor
+     * map a region of a file, which is extended if it's shorter (with zeros).
+     * @param channel - the file, open for reading and writing
+     * @param position - where the region starts in the file
+     * @param length - the number of bytes of the region, requires length > 0
+     * @throws IOException if the file can't be mapped
+     */
+    OffHeapArray(FileChannel channel, long position, long length) throws IOException {
+        if (length <= 0)
+            throw new IllegalArgumentException("length must be > 0 (length = "+length+")");
+        this.length = length;
+        this.pages = new ByteBuffer[(int) ((length + PAGE_MASK) >>> PAGE_BITS)];
+        for (int i = 0; i < pages.length; i++) {
+            long offset = (long) i << PAGE_BITS;
+            long size = Math.min(length - offset, 1L << PAGE_BITS);
+            // longs are stored in the file in little endian order, whatever the platform
+            pages[i] = channel.map(FileChannel.MapMode.READ_WRITE, position + offset, size).order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+
+    long length() {
+        return length;
+    }
+
+    byte getByte(long index) {
+        return pages[(int) (index >>> PAGE_BITS)].get((int) (index & PAGE_MASK));
+    }
+
+    void putByte(long index, byte value) {
+        pages[(int) (index >>> PAGE_BITS)].put((int) (index & PAGE_MASK), value);
+    }
+
+    /*
+     * the long i, i.e. the bytes 8 * i to 8 * i + 7 (a page holds whole longs).
+     */
+    long getLong(long i) {
+        long index = i << 3;
+        return pages[(int) (index >>> PAGE_BITS)].getLong((int) (index & PAGE_MASK));
+    }
+
+    void putLong(long i, long value) {
+        long index = i << 3;
+        pages[(int) (index >>> PAGE_BITS)].putLong((int) (index & PAGE_MASK), value);
+    }
+
+    /**
+     * force
+     * write the changes of a mapped array back to its file, and wait until they're on the
+     * storage device. Does nothing if the array isn't mapped.
+     */
+    void force() {
+        for (ByteBuffer page : pages) {
+            if (page instanceof MappedByteBuffer)
+                ((MappedByteBuffer) page).force();
+        }
+    }
+
+    /**
+     * release
+     * free the memory of the array, or unmap it (the OS still writes its changes back to the
+     * file, but maybe later, see force()). The array must not be used afterwards.
+     */
+    void release() {
+        if (pages == null)
+            return;
+        ByteBuffer[] released = pages;
+        pages = null;
+        if (INVOKE_CLEANER == null)
+            return;
+        for (ByteBuffer page : released) {
+            try {
+                INVOKE_CLEANER.invoke(UNSAFE, page);
+            } catch (ReflectiveOperationException e) {
+                // left to the GC
+            }
+        }
+    }
+}
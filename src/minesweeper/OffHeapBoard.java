@@ -0,0 +1,154 @@
+/* Copyright (c) 2007-2017 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package minesweeper;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+
+/**
+ * OffHeapBoard is a Board whose squares are kept outside the heap, in direct memory (see
+ * OffHeapArray), and addressed with long indices (x * sizeY + y): so a board may have more than
+ * 2^31 squares, and a board of gigabytes is never scanned by the garbage collector.
+ *
+ * Each square takes a byte for its state, a long for its version and a bit for its bomb, about
+ * 9 bytes, which are released by release() when the game is over.
+ *
+ * The direct memory of a JVM is limited to its maximum heap size by default: large boards need
+ * e.g. "java -XX:MaxDirectMemorySize=16g".
+ */
+public class OffHeapBoard extends AbstractBoard {
+
+    // state of each square, as state - UNTOUCHED so that the initial zeros are UNTOUCHED
+    private final OffHeapArray states;
+    // bit s % 64 of the long s / 64 is set iff the square s has a bomb
+    private final OffHeapArray mines;
+    // version of the board when each square last changed (0 if it never changed)
+    private final OffHeapArray versions;
+
+    // rep invariant:
+    //    the arrays have the lengths statesLength, minesLength and versionsLength of the board
+    //
+    // abstraction function:
+    //    represents the board of AbstractBoard, the square s being described by the byte s of
+    //    states, the bit s of mines and the long s of versions.
+    //
+    // Thread safety argument:
+    //    the arrays are only accessed by AbstractBoard, see AbstractBoard.
+
+    /**
+     * constructor
+     *
+     * construct a board with dimension sizeX x sizeY, each square is randomly assigned with a bomb
+     * (with a probability of 0.25) or not.
+     */
+    public OffHeapBoard (int sizeX, int sizeY) {
+        this(new int[] {checkSizes(sizeX, sizeY), sizeY});
+        placeMines();
+    }
+
+    /**
+     * constructor
+     * @param File file - the text file contains the board to initialize, see DenseBoard(File)
+     */
+    public OffHeapBoard (File file) throws IOException {
+        this(new BufferedReader(new FileReader(file)));
+    }
+
+    private OffHeapBoard (BufferedReader reader) throws IOException {
+        this(readSizes(reader), reader);
+    }
+
+    private OffHeapBoard (int[] sizes, BufferedReader reader) throws IOException {
+        this(sizes);
+        readMines(reader);
+    }
+
+    /*
+     * empty
+     * make an empty board of sizeX x sizeY squares, all untouched and without bombs (see
+     * AbstractBoard.deferMines).
+     */
+    static OffHeapBoard empty(int sizeX, int sizeY) {
+        return new OffHeapBoard(new int[] {checkSizes(sizeX, sizeY), sizeY});
+    }
+
+    /*
+     * allocate an empty board of the sizes {x, y}, checked.
+     */
+    private OffHeapBoard (int[] sizes) {
+        this(sizes[0], sizes[1], new OffHeapArray(statesLength(sizes[0], sizes[1])),
+             new OffHeapArray(minesLength(sizes[0], sizes[1])), new OffHeapArray(versionsLength(sizes[0], sizes[1])));
+    }
+
+    /**
+     * constructor
+     * make a board of the planes given (see statesLength, minesLength and versionsLength for
+     * their lengths), all untouched and without bombs if they are all zeros. The counters are
+     * those of an empty board; see recover() and restore() otherwise.
+     */
+    OffHeapBoard (int sizeX, int sizeY, OffHeapArray states, OffHeapArray mines, OffHeapArray versions) {
+        super(sizeX, sizeY);
+        this.states = states;
+        this.mines = mines;
+        this.versions = versions;
+    }
+
+    /*
+     * the number of bytes of the planes of a sizeX x sizeY board (multiples of 8).
+     */
+    static long statesLength(int sizeX, int sizeY) {
+        return (((long) sizeX * sizeY + 7) >>> 3) << 3;
+    }
+
+    static long minesLength(int sizeX, int sizeY) {
+        return (((long) sizeX * sizeY + 63) >>> 6) << 3;
+    }
+
+    static long versionsLength(int sizeX, int sizeY) {
+        return ((long) sizeX * sizeY) << 3;
+    }
+
+    @Override
+    int state(long s) {
+        return states.getByte(s) + UNTOUCHED;
+    }
+
+    @Override
+    void putState(long s, int state) {
+        states.putByte(s, (byte) (state - UNTOUCHED));
+    }
+
+    @Override
+    long cellVersion(long s) {
+        return versions.getLong(s);
+    }
+
+    @Override
+    void putCellVersion(long s, long version) {
+        versions.putLong(s, version);
+    }
+
+    @Override
+    boolean isMine(long s) {
+        return (mines.getLong(s >>> 6) & (1L << s)) != 0;
+    }
+
+    @Override
+    void putMine(long s, boolean mine) {
+        long word = mines.getLong(s >>> 6);
+        mines.putLong(s >>> 6, mine ? word | (1L << s) : word & ~(1L << s));
+    }
+
+    /*
+     * free the direct memory of the board.
+     */
+    @Override
+    void releaseSquares() {
+        states.release();
+        mines.release();
+        versions.release();
+    }
+}
@@ -0,0 +1,176 @@
+/* Copyright (c) 2007-2017 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package minesweeper;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * ParallelFlood reveals the rest of a huge cascade with a level-synchronous breadth first
+ * search, each level of the frontier being expanded by fork/join tasks (see
+ * Board.setParallelCascade).
+ *
+ * The squares of a level are split between the tasks, and each untouched square without a bomb
+ * around them is claimed by a compare-and-set of its state from UNTOUCHED to its bomb count, so
+ * it's revealed exactly once even when several tasks reach it. The squares revealed are the same
+ * as with Board's sequential digMore (the untouched squares without a bomb next to a revealed
+ * square with no bomb around), only their order differs, and nobody can see it: the board's lock
+ * is held by the dig waiting for the flood to end.
+ */
+final class ParallelFlood {
+
+    // atomic accesses to the squares of a column of the board
+    private static final VarHandle SQUARE = MethodHandles.arrayElementVarHandle(int[].class);
+    // frontier squares expanded by a single task
+    private static final int LEAF = 256;
+
+    private final int[][] board;
+    private final boolean[][] minesField;
+    private final long[][] cellVersion;
+    private final long version;
+    private final int sizeX;
+    private final int sizeY;
+
+    // rep invariant:
+    //    board, minesField and cellVersion are sizeX x sizeY arrays
+    //
+    // abstraction function:
+    //    represents a flood of board (with minesField), marking the squares it reveals with version.
+    //
+    // Thread safety argument:
+    //    minesField is only read. A square of board is only changed by the compare-and-set
+    //    claiming it, and its cellVersion only by the task which claimed it. The tasks are
+    //    joined before flood() returns, which publishes all their writes to its caller.
+
+    /**
+     * constructor
+     * @param board - the states of the squares, changed in place
+     * @param minesField - where the bombs are
+     * @param cellVersion - the versions of the squares, set to version for the squares revealed
+     * @param version - the version of the board once the dig is over
+     */
+    ParallelFlood(int[][] board, boolean[][] minesField, long[][] cellVersion, long version) {
+        this.board = board;
+        this.minesField = minesField;
+        this.cellVersion = cellVersion;
+        this.version = version;
+        this.sizeX = board.length;
+        this.sizeY = board[0].length;
+    }
+
+    /**
+     * flood
+     * reveal all the squares reached from the frontier, level by level.
+     * @param pool - the pool running the tasks
+     * @param frontier - revealed squares with no bomb around (x * sizeY + y), whose
+     *                   neighbors are still to be revealed
+     * @return the number of squares revealed
+     */
+    int flood(ForkJoinPool pool, int[] frontier) {
+        int revealed = 0;
+        while (frontier.length > 0) {
+            Level level = pool.invoke(new Expand(frontier, 0, frontier.length));
+            revealed += level.revealed;
+            frontier = Arrays.copyOf(level.next, level.size);
+        }
+        return revealed;
+    }
+
+    /*
+     * the squares revealed by expanding (part of) a level, and the next level.
+     */
+    private static final class Level {
+        int[] next;
+        int size = 0;
+        int revealed = 0;
+
+        Level(int capacity) {
+            next = new int[capacity];
+        }
+
+        void add(int square) {
+            if (size == next.length)
+                next = Arrays.copyOf(next, 2 * size + 8);
+            next[size++] = square;
+        }
+    }
+
+    /*
+     * expand the squares frontier[lo..hi-1].
+     */
+    private final class Expand extends RecursiveTask<Level> {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] frontier;
+        private final int lo;
+        private final int hi;
+
+        Expand(int[] frontier, int lo, int hi) {
+            this.frontier = frontier;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected Level compute() {
+            if (hi - lo > LEAF) {
+                int mid = (lo + hi) >>> 1;
+                Expand left = new Expand(frontier, lo, mid);
+                left.fork();
+                Level right = new Expand(frontier, mid, hi).compute();
+                Level level = left.join();
+                // concatenate the two next levels
+                if (level.size + right.size > level.next.length)
+                    level.next = Arrays.copyOf(level.next, level.size + right.size);
+                System.arraycopy(right.next, 0, level.next, level.size, right.size);
+                level.size += right.size;
+                level.revealed += right.revealed;
+                return level;
+            }
+
+            Level level = new Level(hi - lo);
+            for (int k = lo; k < hi; k++) {
+                int x = frontier[k] / sizeY;
+                int y = frontier[k] % sizeY;
+                int upperBoundX = (x >= sizeX - 1 ? sizeX : x + 2);
+                int upperBoundY = (y >= sizeY - 1 ? sizeY : y + 2);
+                for (int i = (x <= 0 ? 0 : x - 1); i < upperBoundX; i++) {
+                    for (int j = (y <= 0 ? 0 : y - 1); j < upperBoundY; j++) {
+                        // a plain read is enough to skip the squares already revealed,
+                        // the compare-and-set decides
+                        if (minesField[i][j] || board[i][j] != Board.UNTOUCHED)
+                            continue;
+                        int count = countBombs(i, j);
+                        if (SQUARE.compareAndSet(board[i], j, Board.UNTOUCHED, count)) {
+                            cellVersion[i][j] = version;
+                            level.revealed++;
+                            if (count == 0)
+                                level.add(i * sizeY + j);
+                        }
+                    }
+                }
+            }
+            return level;
+        }
+    }
+
+    /*
+     * number of bombs around the square (x, y).
+     */
+    private int countBombs(int x, int y) {
+        int upperBoundX = (x >= sizeX - 1 ? sizeX : x + 2);
+        int upperBoundY = (y >= sizeY - 1 ? sizeY : y + 2);
+        int result = 0;
+        for (int i = (x <= 0 ? 0 : x - 1); i < upperBoundX; i++) {
+            for (int j = (y <= 0 ? 0 : y - 1); j < upperBoundY; j++) {
+                if (minesField[i][j])
+                    result++;
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,495 @@
+/* Copyright (c) 2007-2017 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package minesweeper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * ProbabilityEngine computes, for the covered (untouched or flagged) squares of a board, the
+ * probability that they hold a bomb, from what the players see: the counts of the dug squares
+ * (the flags are the players' guesses, not information, as for HintSolver).
+ *
+ * The covered squares next to a dug square (the frontier) are split into components: two
+ * squares are in the same component if a dug square has both around it. The bombs of different
+ * components are independent but for their total, so each component is solved alone, by
+ * enumerating the placements of its bombs satisfying its constraints, square by square, with the
+ * counts of the placements of the squares left memoized on the counts left of the constraints
+ * under way. The placements are weighted by p / (1 - p) per bomb, p the density of the bombs
+ * left in the covered squares, which is the weight of the placements of the other squares in the
+ * limit of a large board; the other covered squares have probability p.
+ *
+ * A component has at most MAX_CELLS squares: a larger one is cut, and the constraints of its
+ * squares reaching over the cut are ignored, so the probabilities of its squares near the cut
+ * are approximate. The counts of the placements (by number of bombs, independent of p) of the
+ * components are cached, each until a square of the board within 2 squares of it changes, or
+ * a component built from another square overlaps it.
+ * The components are solved in parallel on a fork/join pool.
+ */
+public class ProbabilityEngine {
+
+    /** Largest number of squares of a board the engine accepts (squares are indexed by an int). */
+    public static final long MAX_SQUARES = Integer.MAX_VALUE;
+
+    // largest number of squares of a component
+    static final int MAX_CELLS = 32;
+    // largest number of squares of the components cached
+    private static final int MAX_CACHED = 1 << 16;
+    // the density of the bombs is taken within [MIN_DENSITY, 1 - MIN_DENSITY] for the weights,
+    // so they don't underflow
+    private static final double MIN_DENSITY = 1e-3;
+
+    private final Board board;
+    private final int sizeX;
+    private final int sizeY;
+    private final ForkJoinPool pool;
+
+    // cache of the components solved, by square (x * sizeY + y)
+    private final Map<Integer, Component> components = new HashMap<>();
+
+    // rep invariant:
+    //    each component of components is mapped from each of its squares, and from no other
+    //
+    // abstraction function:
+    //    represents the engine computing the probabilities of the squares of board, with the
+    //    components of the squares it last computed, each valid while the squares within 2
+    //    squares of it didn't change after its version.
+    //
+    // Thread safety argument:
+    //    the methods of the engine are synchronized, and read the board with its lock held
+    //    (the lock of a board is the board itself, see Board). The engine's lock is
+    //    taken before the board's, and the board never calls the engine, so they can't deadlock.
+    //    The components are solved by the tasks of pool without any lock: a component is only
+    //    accessed by its task until the pool joins them.
+
+    /**
+     * constructor
+     * make an engine computing the probabilities of the squares of a board, solving the
+     * components in parallel on the common fork/join pool.
+     * @param board - the board, of up to MAX_SQUARES squares
+     * @throws IllegalArgumentException if the board is too large
+     */
+    public ProbabilityEngine(Board board) {
+        this(board, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * constructor
+     * @param board - the board, of up to MAX_SQUARES squares
+     * @param pool - the pool solving the components, or null to solve them sequentially
+     * @throws IllegalArgumentException if the board is too large
+     */
+    public ProbabilityEngine(Board board, ForkJoinPool pool) {
+        long squares = (long) board.getBoardSizeX() * board.getBoardSizeY();
+        if (squares > MAX_SQUARES)
+            throw new IllegalArgumentException("board too large for probabilities ("+squares+" squares)");
+        this.board = board;
+        this.sizeX = board.getBoardSizeX();
+        this.sizeY = board.getBoardSizeY();
+        this.pool = pool;
+    }
+
+    /**
+     * probabilities
+     * return the probabilities that the squares of a window of the board hold a bomb: [i][j]
+     * for the square (x + i, y + j), or NaN if it's dug; or null while the bombs of the board are
+     * still to be placed by its first dig (see Board.hasPendingMines), which leaves no bomb around it.
+     * @param x - column of the top left square of the window
+     * @param y - row of the top left square of the window
+     * @param width - number of columns of the window
+     * @param height - number of rows of the window
+     * @throws IllegalArgumentException if the window isn't within the board
+     */
+    public synchronized double[][] probabilities(int x, int y, int width, int height) {
+        if (x < 0 || y < 0 || width < 0 || height < 0 || width > sizeX - x || height > sizeY - y)
+            throw new IllegalArgumentException("window "+width+"x"+height+" at ("+x+", "+y+") not within the board");
+        if (components.size() > MAX_CACHED)
+            components.clear();
+
+        double[][] probabilities = new double[width][height];
+        Component[] window = new Component[width * height];
+        List<Component> unsolved = new ArrayList<>();
+        Set<Component> checked = new HashSet<>();
+        int bombs;
+        int covered;
+        synchronized (board) {
+            if (board.hasPendingMines())
+                return null;
+            bombs = board.getBombs();
+            covered = board.getUntouched() + board.getFlagged();
+            long version = board.getVersion();
+            for (int i = 0; i < width; i++) {
+                for (int j = 0; j < height; j++) {
+                    int u = x + i;
+                    int v = y + j;
+                    if (board.getState(u, v) >= 0) {
+                        probabilities[i][j] = Double.NaN;
+                        continue;
+                    }
+                    if (!hasDugAround(u, v))
+                        continue;
+                    Component component = components.get(u * sizeY + v);
+                    if (component == null || (!checked.contains(component) && !isValid(component))) {
+                        if (component != null)
+                            forget(component);
+                        component = build(u, v, version);
+                        unsolved.add(component);
+                    }
+                    checked.add(component);
+                    window[i * height + j] = component;
+                }
+            }
+        }
+        solve(unsolved);
+
+        double density = (covered == 0) ? 0 : (double) bombs / covered;
+        double odds = Math.min(Math.max(density, MIN_DENSITY), 1 - MIN_DENSITY);
+        odds = odds / (1 - odds);
+        for (int i = 0; i < width; i++) {
+            for (int j = 0; j < height; j++) {
+                if (Double.isNaN(probabilities[i][j]))
+                    continue;
+                Component component = window[i * height + j];
+                if (bombs == 0 || bombs == covered) {
+                    // no choice left
+                    probabilities[i][j] = (bombs == 0) ? 0 : 1;
+                } else if (component == null) {
+                    probabilities[i][j] = density;
+                } else {
+                    probabilities[i][j] = component.probability(component.indexOf((x + i) * sizeY + (y + j)), odds, density);
+                }
+            }
+        }
+        return probabilities;
+    }
+
+    /*
+     * return true iff none of the squares within 2 squares of the squares of component changed
+     * since its version.
+     */
+    private boolean isValid(Component component) {
+        for (int s : component.cells) {
+            int x = s / sizeY;
+            int y = s % sizeY;
+            for (int u = Math.max(0, x - 2); u <= Math.min(sizeX - 1, x + 2); u++) {
+                for (int v = Math.max(0, y - 2); v <= Math.min(sizeY - 1, y + 2); v++) {
+                    if (board.getCellVersion(u, v) > component.version)
+                        return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    // assert the rep invariant, see above, on the components a build changed: the component
+    // built, and the components it overlapped
+    private void checkRep(Component built, List<Component> overlapped) {
+        for (int s : built.cells) {
+            if (components.get(s) != built)
+                throw new RuntimeException("square "+s+" not mapped to its component");
+        }
+        for (Component component : overlapped) {
+            for (int s : component.cells) {
+                if (components.get(s) == component)
+                    throw new RuntimeException("square "+s+" mapped to a component overlapped");
+            }
+        }
+    }
+
+    private void forget(Component component) {
+        for (int s : component.cells) {
+            components.remove(s, component);
+        }
+    }
+
+    private boolean hasDugAround(int x, int y) {
+        for (int u = Math.max(0, x - 1); u <= Math.min(sizeX - 1, x + 1); u++) {
+            for (int v = Math.max(0, y - 1); v <= Math.min(sizeY - 1, y + 1); v++) {
+                if (board.getState(u, v) >= 0)
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    /*
+     * build the component of the covered square (x, y), which has a dug square around it, from
+     * the squares of the board at version, and cache it. Its squares are taken in breadth first
+     * order from (x, y), up to MAX_CELLS of them.
+     */
+    private Component build(int x, int y, long version) {
+        int[] cells = new int[MAX_CELLS];
+        Map<Integer, Integer> index = new HashMap<>();
+        int n = 0;
+        cells[n] = x * sizeY + y;
+        index.put(cells[n++], 0);
+        Set<Integer> constraints = new HashSet<>();
+        List<Integer> order = new ArrayList<>();
+        for (int k = 0; k < n; k++) {
+            int cx = cells[k] / sizeY;
+            int cy = cells[k] % sizeY;
+            for (int u = Math.max(0, cx - 1); u <= Math.min(sizeX - 1, cx + 1); u++) {
+                for (int v = Math.max(0, cy - 1); v <= Math.min(sizeY - 1, cy + 1); v++) {
+                    if (board.getState(u, v) < 0 || !constraints.add(u * sizeY + v))
+                        continue;
+                    order.add(u * sizeY + v);
+                    for (int a = Math.max(0, u - 1); a <= Math.min(sizeX - 1, u + 1); a++) {
+                        for (int b = Math.max(0, v - 1); b <= Math.min(sizeY - 1, v + 1); b++) {
+                            int s = a * sizeY + b;
+                            if (n < MAX_CELLS && board.getState(a, b) < 0 && !index.containsKey(s)) {
+                                index.put(s, n);
+                                cells[n++] = s;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        // the constraints within the component, with their squares
+        List<int[]> members = new ArrayList<>();
+        List<Integer> counts = new ArrayList<>();
+        for (int d : order) {
+            int u = d / sizeY;
+            int v = d % sizeY;
+            int[] squares = new int[9];
+            int size = 0;
+            boolean within = true;
+            for (int a = Math.max(0, u - 1); a <= Math.min(sizeX - 1, u + 1); a++) {
+                for (int b = Math.max(0, v - 1); b <= Math.min(sizeY - 1, v + 1); b++) {
+                    if (board.getState(a, b) >= 0)
+                        continue;
+                    Integer i = index.get(a * sizeY + b);
+                    if (i == null)
+                        within = false;
+                    else
+                        squares[size++] = i;
+                }
+            }
+            if (within) {
+                members.add(Arrays.copyOf(squares, size));
+                counts.add(board.getState(u, v));
+            }
+        }
+
+        // a component cut at MAX_CELLS may overlap the components cached from other squares:
+        // they're forgotten, so each square is mapped to one component only
+        Component component = new Component(Arrays.copyOf(cells, n), version, members, counts);
+        List<Component> overlapped = new ArrayList<>();
+        for (int s : component.cells) {
+            Component other = components.get(s);
+            if (other != null) {
+                forget(other);
+                overlapped.add(other);
+            }
+        }
+        for (int s : component.cells) {
+            components.put(s, component);
+        }
+        checkRep(component, overlapped);
+        return component;
+    }
+
+    /*
+     * solve the components, in parallel if there are several of them and a pool.
+     */
+    private void solve(List<Component> unsolved) {
+        if (pool == null || unsolved.size() < 2) {
+            for (Component component : unsolved) {
+                component.solve();
+            }
+            return;
+        }
+        pool.invoke(new RecursiveAction() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected void compute() {
+                List<RecursiveAction> tasks = new ArrayList<>();
+                for (Component component : unsolved) {
+                    tasks.add(new RecursiveAction() {
+                        private static final long serialVersionUID = 1L;
+
+                        @Override
+                        protected void compute() {
+                            component.solve();
+                        }
+                    });
+                }
+                ForkJoinTask.invokeAll(tasks);
+            }
+        });
+    }
+
+    /*
+     * Component is a set of covered squares linked by the constraints of the dug squares around
+     * them, and the counts of the placements of bombs satisfying the constraints.
+     */
+    private static final class Component {
+
+        // the squares (x * sizeY + y), in breadth first order
+        final int[] cells;
+        // version of the board the component was built from
+        final long version;
+
+        // counts[q] is the number of bombs of the constraint q, among its squares members[q]
+        // (indexes in cells)
+        private final int[] counts;
+        private final int[][] members;
+        // constraintsOf[i] are the constraints of the square i
+        private final int[][] constraintsOf;
+        // under[i] are the constraints with squares both before i and from i
+        private final int[][] under;
+
+        // weights[k] is the number of placements with k bombs, and mineWeights[i][k] those with
+        // the square i holding a bomb, or null if not solved yet
+        private double[] weights;
+        private double[][] mineWeights;
+
+        Component(int[] cells, long version, List<int[]> members, List<Integer> counts) {
+            this.cells = cells;
+            this.version = version;
+            int n = cells.length;
+            int m = members.size();
+            this.members = members.toArray(new int[m][]);
+            this.counts = new int[m];
+            int[] first = new int[m];
+            int[] last = new int[m];
+            int[] degrees = new int[n];
+            for (int q = 0; q < m; q++) {
+                this.counts[q] = counts.get(q);
+                first[q] = n;
+                last[q] = -1;
+                for (int i : this.members[q]) {
+                    first[q] = Math.min(first[q], i);
+                    last[q] = Math.max(last[q], i);
+                    degrees[i]++;
+                }
+            }
+            this.constraintsOf = new int[n][];
+            for (int i = 0; i < n; i++) {
+                constraintsOf[i] = new int[degrees[i]];
+                degrees[i] = 0;
+            }
+            for (int q = 0; q < m; q++) {
+                for (int i : this.members[q]) {
+                    constraintsOf[i][degrees[i]++] = q;
+                }
+            }
+            this.under = new int[n + 1][];
+            for (int i = 0; i <= n; i++) {
+                int size = 0;
+                int[] qs = new int[m];
+                for (int q = 0; q < m; q++) {
+                    if (first[q] < i && i <= last[q])
+                        qs[size++] = q;
+                }
+                under[i] = Arrays.copyOf(qs, size);
+            }
+        }
+
+        int indexOf(int square) {
+            for (int i = 0; i < cells.length; i++) {
+                if (cells[i] == square)
+                    return i;
+            }
+            throw new IllegalArgumentException("square "+square+" not in the component");
+        }
+
+        /*
+         * count the placements of the bombs, and of the bombs with each square holding one.
+         */
+        void solve() {
+            int n = cells.length;
+            List<Map<Long, double[]>> memo = new ArrayList<>(n + 1);
+            for (int i = 0; i <= n; i++) {
+                memo.add(new HashMap<>());
+            }
+            int[] left = counts.clone();
+            int[] unplaced = new int[counts.length];
+            for (int q = 0; q < counts.length; q++) {
+                unplaced[q] = members[q].length;
+            }
+            weights = count(0, -1, left, unplaced, memo);
+            mineWeights = new double[n][];
+            for (int f = 0; f < n; f++) {
+                // the placements of the squares after f don't depend on f holding a bomb
+                List<Map<Long, double[]>> forced = new ArrayList<>(n + 1);
+                for (int i = 0; i <= n; i++) {
+                    forced.add((i > f) ? memo.get(i) : new HashMap<>());
+                }
+                mineWeights[f] = count(0, f, left, unplaced, forced);
+            }
+        }
+
+        /*
+         * return the numbers of placements of bombs on the squares from i satisfying the
+         * constraints, by number of bombs, with the square forced holding a bomb, given the
+         * bombs left[q] of each constraint q to place on its squares unplaced[q] from i.
+         * left and unplaced are restored before returning.
+         */
+        private double[] count(int i, int forced, int[] left, int[] unplaced, List<Map<Long, double[]>> memo) {
+            int n = cells.length;
+            if (i == n)
+                return new double[] {1};
+            // the counts left of the constraints under way tell the placements from i
+            long key = -1;
+            if (under[i].length < 16) {
+                key = 0;
+                for (int q : under[i]) {
+                    key = (key << 4) | left[q];
+                }
+                double[] counted = memo.get(i).get(key);
+                if (counted != null)
+                    return counted;
+            }
+            double[] counted = new double[n - i + 1];
+            for (int bomb = (forced == i) ? 1 : 0; bomb <= 1; bomb++) {
+                boolean possible = true;
+                for (int q : constraintsOf[i]) {
+                    left[q] -= bomb;
+                    unplaced[q]--;
+                    possible &= 0 <= left[q] && left[q] <= unplaced[q];
+                }
+                if (possible) {
+                    double[] rest = count(i + 1, forced, left, unplaced, memo);
+                    for (int k = 0; k < rest.length; k++) {
+                        counted[k + bomb] += rest[k];
+                    }
+                }
+                for (int q : constraintsOf[i]) {
+                    left[q] += bomb;
+                    unplaced[q]++;
+                }
+            }
+            if (key >= 0)
+                memo.get(i).put(key, counted);
+            return counted;
+        }
+
+        /*
+         * return the probability that the square i holds a bomb, the placements being weighted by
+         * odds per bomb, or density if none satisfies the constraints.
+         */
+        double probability(int i, double odds, double density) {
+            double all = 0;
+            double mine = 0;
+            double weight = 1;
+            for (int k = 0; k < weights.length; k++) {
+                all += weights[k] * weight;
+                mine += mineWeights[i][k] * weight;
+                weight *= odds;
+            }
+            return (all > 0) ? mine / all : density;
+        }
+    }
+}
@@ -0,0 +1,232 @@
+/* Copyright (c) 2007-2017 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package minesweeper;
+
+/**
+ * ZeroRegions is the REGIONS cascade engine of Board: it labels the connected regions of squares
+ * with no bomb around (the zero squares), so a dig on a zero square reveals its region and the
+ * region's border directly, without searching for them.
+ *
+ * The regions are the sets of a union-find over the squares (x * sizeY + y), with path halving
+ * and union by size. Zero squares only ever appear (when a bomb is dug and removed, its square
+ * and its neighbors may become zero), so regions only ever merge, which is what union-find does
+ * incrementally. The members of each region are also chained in a circular list, spliced on
+ * each merge, to walk a region in time proportional to its size.
+ *
+ * A region is revealed at once only if all its squares but the one dug are untouched, which is
+ * the usual case (a region is revealed whole the first time one of its squares is dug); otherwise
+ * (flags or earlier digs inside it) Board falls back on its scalar cascade, which reveals exactly
+ * what the sequential algorithm would.
+ */
+final class ZeroRegions {
+
+    private final int sizeX;
+    private final int sizeY;
+    private final boolean[][] minesField;
+
+    // parent of each zero square in the union-find, -1 for the other squares
+    private final int[] parent;
+    // for a root: size of its region, and number of its squares which are untouched
+    private final int[] size;
+    private final int[] untouched;
+    // next square of the same region, in a circular list
+    private final int[] next;
+
+    // rep invariant:
+    //    parent[s] == -1 iff s is not a zero square (a bomb, or a square with a bomb around)
+    //    for a root r (parent[r] == r): size[r] is the number of squares whose root is r, and
+    //      untouched[r] the number of them which are UNTOUCHED on the board
+    //    next links the squares of each region in one cycle
+    //
+    // abstraction function:
+    //    represents the partition of the zero squares of a board into connected regions
+    //    (8-neighborhood), each with its number of untouched squares.
+    //
+    // Thread safety argument:
+    //    not thread safe; only used by its Board with the board's lock held.
+
+    /**
+     * constructor
+     * label the zero regions of a board.
+     * @param minesField - where the bombs are, shared with the board (and read as it changes)
+     * @param board - the states of the squares
+     */
+    ZeroRegions(boolean[][] minesField, int[][] board) {
+        this.sizeX = board.length;
+        this.sizeY = board[0].length;
+        this.minesField = minesField;
+        int squares = sizeX * sizeY;
+        this.parent = new int[squares];
+        this.size = new int[squares];
+        this.untouched = new int[squares];
+        this.next = new int[squares];
+        for (int x = 0; x < sizeX; x++) {
+            for (int y = 0; y < sizeY; y++) {
+                int s = x * sizeY + y;
+                parent[s] = -1;
+                if (isZero(x, y))
+                    add(s, board[x][y] == Board.UNTOUCHED);
+            }
+        }
+        // union each zero square with its zero neighbors already labelled (left and above)
+        for (int x = 0; x < sizeX; x++) {
+            for (int y = 0; y < sizeY; y++) {
+                if (parent[x * sizeY + y] >= 0)
+                    unionWithNeighbors(x, y, true);
+            }
+        }
+    }
+
+    /*
+     * true iff the square (x, y) has no bomb, nor around it.
+     */
+    private boolean isZero(int x, int y) {
+        for (int i = Math.max(0, x - 1); i <= Math.min(sizeX - 1, x + 1); i++) {
+            for (int j = Math.max(0, y - 1); j <= Math.min(sizeY - 1, y + 1); j++) {
+                if (minesField[i][j])
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    /*
+     * make the square s a region of its own.
+     */
+    private void add(int s, boolean isUntouched) {
+        parent[s] = s;
+        size[s] = 1;
+        untouched[s] = isUntouched ? 1 : 0;
+        next[s] = s;
+    }
+
+    /*
+     * union the zero square (x, y) with its zero neighbors: all of them, or only those
+     * before it in the labelling order (x, then y) if backwardOnly.
+     */
+    private void unionWithNeighbors(int x, int y, boolean backwardOnly) {
+        int s = x * sizeY + y;
+        for (int i = Math.max(0, x - 1); i <= Math.min(sizeX - 1, x + 1); i++) {
+            for (int j = Math.max(0, y - 1); j <= Math.min(sizeY - 1, y + 1); j++) {
+                int t = i * sizeY + j;
+                if (t == s || parent[t] < 0 || (backwardOnly && t > s))
+                    continue;
+                union(s, t);
+            }
+        }
+    }
+
+    private int find(int s) {
+        while (parent[s] != s) {
+            parent[s] = parent[parent[s]];
+            s = parent[s];
+        }
+        return s;
+    }
+
+    private void union(int s, int t) {
+        int a = find(s);
+        int b = find(t);
+        if (a == b)
+            return;
+        if (size[a] < size[b]) {
+            int swap = a;
+            a = b;
+            b = swap;
+        }
+        parent[b] = a;
+        size[a] += size[b];
+        untouched[a] += untouched[b];
+        // splice the two cycles
+        int nextA = next[a];
+        next[a] = next[b];
+        next[b] = nextA;
+    }
+
+    /*
+     * account for the square (x, y) changing from state oldState to newState.
+     */
+    void stateChanged(int x, int y, int oldState, int newState) {
+        int s = x * sizeY + y;
+        if (parent[s] < 0 || (oldState == Board.UNTOUCHED) == (newState == Board.UNTOUCHED))
+            return;
+        untouched[find(s)] += (newState == Board.UNTOUCHED) ? 1 : -1;
+    }
+
+    /*
+     * account for the bomb of the square (x, y) being removed (minesField already updated):
+     * the square and its neighbors may have become zero squares, joining the regions around.
+     */
+    void removeMine(int x, int y, int[][] board) {
+        for (int i = Math.max(0, x - 1); i <= Math.min(sizeX - 1, x + 1); i++) {
+            for (int j = Math.max(0, y - 1); j <= Math.min(sizeY - 1, y + 1); j++) {
+                int s = i * sizeY + j;
+                if (parent[s] < 0 && isZero(i, j)) {
+                    add(s, board[i][j] == Board.UNTOUCHED);
+                    unionWithNeighbors(i, j, false);
+                }
+            }
+        }
+    }
+
+    /**
+     * reveal
+     * reveal the region of the zero square (x, y), just dug, and its border, if all the other
+     * squares of the region are untouched.
+     * @param x - the x coordinate of the square dug
+     * @param y - the y coordinate of the square dug
+     * @param board - the states of the squares, changed in place
+     * @param cellVersion - the versions of the squares, set to version for the squares revealed
+     * @param version - the version of the board once the dig is over
+     * @return the number of squares revealed, or -1 if the region isn't all untouched (and
+     *         nothing was revealed)
+     */
+    int reveal(int x, int y, int[][] board, long[][] cellVersion, long version) {
+        int start = x * sizeY + y;
+        int root = find(start);
+        if (untouched[root] != size[root] - 1)
+            return -1;
+
+        // the region first, so its squares are not taken for the border
+        int revealed = 0;
+        for (int s = next[start]; s != start; s = next[s]) {
+            board[s / sizeY][s % sizeY] = 0;
+            cellVersion[s / sizeY][s % sizeY] = version;
+            revealed++;
+        }
+        untouched[root] = 0;
+
+        // the border: the untouched squares with a bomb around, next to the region
+        int s = start;
+        do {
+            int sx = s / sizeY;
+            int sy = s % sizeY;
+            for (int i = Math.max(0, sx - 1); i <= Math.min(sizeX - 1, sx + 1); i++) {
+                for (int j = Math.max(0, sy - 1); j <= Math.min(sizeY - 1, sy + 1); j++) {
+                    if (board[i][j] == Board.UNTOUCHED && !minesField[i][j]) {
+                        board[i][j] = countBombs(i, j);
+                        cellVersion[i][j] = version;
+                        revealed++;
+                    }
+                }
+            }
+            s = next[s];
+        } while (s != start);
+        return revealed;
+    }
+
+    /*
+     * number of bombs around the square (x, y).
+     */
+    private int countBombs(int x, int y) {
+        int result = 0;
+        for (int i = Math.max(0, x - 1); i <= Math.min(sizeX - 1, x + 1); i++) {
+            for (int j = Math.max(0, y - 1); j <= Math.min(sizeY - 1, y + 1); j++) {
+                if (minesField[i][j])
+                    result++;
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,349 @@
+/* Copyright (c) 2007-2017 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package minesweeper.client;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import minesweeper.Board;
+import minesweeper.server.BinaryProtocol;
+
+/**
+ * BinaryClient is a client of the Minesweeper server speaking the binary protocol (see
+ * BinaryProtocol).
+ *
+ * Each request method sends one request and waits for its reply. Several requests can also be
+ * sent as a single BATCH with batch(), whose replies all come back in one read.
+ *
+ * A BinaryClient is not thread safe: it must be used by one thread at a time.
+ */
+public class BinaryClient implements AutoCloseable {
+
+    private final Socket socket;
+    private final InputStream in;
+    private final OutputStream out;
+    private final String hello;
+
+    // rep invariant:
+    //    socket != null, hello != null
+    //
+    // abstraction function:
+    //    represents a binary protocol connection to the server over socket, which greeted
+    //    the client with hello.
+    //
+    // Thread safety argument:
+    //    not thread safe, see BinaryClient.
+
+    /**
+     * Reply is one decoded reply of the server.
+     */
+    public static final class Reply {
+
+        /** Kinds of replies. */
+        public static enum Kind {BOARD, BOOM, HELP, BYE};
+
+        private final Kind kind;
+        private final int sizeX, sizeY;
+        private final byte[] cells;
+        private final String text;
+
+        private Reply(Kind kind, int sizeX, int sizeY, byte[] cells, String text) {
+            this.kind = kind;
+            this.sizeX = sizeX;
+            this.sizeY = sizeY;
+            this.cells = cells;
+            this.text = text;
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        /**
+         * getBoardSizeX
+         * return the width of the board of a BOARD reply, or 0.
+         */
+        public int getBoardSizeX() {
+            return sizeX;
+        }
+
+        /**
+         * getBoardSizeY
+         * return the height of the board of a BOARD reply, or 0.
+         */
+        public int getBoardSizeY() {
+            return sizeY;
+        }
+
+        /**
+         * getState
+         * return the state of the square (x,y) of the board of a BOARD reply, as Board.getState().
+         * @param x - column of the square, requires 0 <= x < getBoardSizeX()
+         * @param y - row of the square, requires 0 <= y < getBoardSizeY()
+         */
+        public int getState(int x, int y) {
+            if (kind != Kind.BOARD)
+                throw new IllegalStateException("not a board: " + kind);
+            if (x < 0 || x >= sizeX || y < 0 || y >= sizeY)
+                throw new IndexOutOfBoundsException("(" + x + "," + y + ") out of the board");
+            int index = y * sizeX + x;
+            int b = cells[index >> 1];
+            int nibble = ((index & 1) == 0) ? (b >> 4) & 0xF : b & 0xF;
+            if (nibble == Board.PACKED_UNTOUCHED)
+                return Board.UNTOUCHED;
+            if (nibble == Board.PACKED_FLAGGED)
+                return Board.FLAGGED;
+            return nibble;
+        }
+
+        /**
+         * getText
+         * return the text of a HELP reply, or null.
+         */
+        public String getText() {
+            return text;
+        }
+
+        /**
+         * toString
+         * return the board of a BOARD reply drawn as Board.draw(), and the kind of the
+         * reply (or the text of a HELP reply) otherwise.
+         */
+        @Override
+        public String toString() {
+            if (kind == Kind.HELP)
+                return text;
+            if (kind != Kind.BOARD)
+                return kind.toString();
+            StringBuilder builder = new StringBuilder(2 * sizeX * sizeY);
+            for (int y = 0; y < sizeY; y++) {
+                for (int x = 0; x < sizeX; x++) {
+                    int state = getState(x, y);
+                    builder.append(state == Board.UNTOUCHED ? '-'
+                                   : state == Board.FLAGGED ? 'F'
+                                   : state == 0 ? ' '
+                                   : (char) ('0' + state));
+                    if (x < sizeX - 1)
+                        builder.append(' ');
+                }
+                if (y < sizeY - 1)
+                    builder.append(System.lineSeparator());
+            }
+            return builder.toString();
+        }
+    }
+
+    /**
+     * Batch collects requests to be sent as a single BATCH, see BinaryClient.batch().
+     */
+    public final class Batch {
+        private final ByteArrayOutputStream requests = new ByteArrayOutputStream();
+        private int count = 0;
+
+        private Batch() {
+        }
+
+        public Batch look() {
+            return add(BinaryProtocol.LOOK, 0, 0);
+        }
+
+        public Batch dig(int x, int y) {
+            return add(BinaryProtocol.DIG, x, y);
+        }
+
+        public Batch flag(int x, int y) {
+            return add(BinaryProtocol.FLAG, x, y);
+        }
+
+        public Batch deflag(int x, int y) {
+            return add(BinaryProtocol.DEFLAG, x, y);
+        }
+
+        public Batch help() {
+            return add(BinaryProtocol.HELP, 0, 0);
+        }
+
+        public Batch bye() {
+            return add(BinaryProtocol.BYE, 0, 0);
+        }
+
+        /**
+         * send
+         * send the requests of the batch and wait for their replies.
+         * @return the replies, in the order of the requests. There are fewer replies than
+         *         requests if the connection ended in the middle of the batch (BYE, or BOOM
+         *         when the server is not in debug mode).
+         * @throws IOException if the connection fails
+         */
+        public List<Reply> send() throws IOException {
+            BinaryProtocol.writeBatch(out, count);
+            requests.writeTo(out);
+            out.flush();
+
+            List<Reply> replies = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                Reply reply = readReply(true);
+                if (reply == null)
+                    break;
+                replies.add(reply);
+            }
+            return replies;
+        }
+
+        private Batch add(int opcode, int x, int y) {
+            if (count == BinaryProtocol.MAX_BATCH)
+                throw new IllegalStateException("batch full, at most " + BinaryProtocol.MAX_BATCH + " requests");
+            try {
+                BinaryProtocol.writeRequest(requests, opcode, x, y);
+            } catch (IOException ioe) {
+                throw new AssertionError("ByteArrayOutputStream can't fail", ioe);
+            }
+            count++;
+            return this;
+        }
+    }
+
+    /**
+     * constructor
+     * connect to the server, read its HELLO line, and switch the connection to the binary protocol.
+     * @param host - host name of the server
+     * @param port - port of the server
+     * @throws IOException if the connection fails
+     */
+    public BinaryClient(String host, int port) throws IOException {
+        this.socket = new Socket(host, port);
+        this.socket.setTcpNoDelay(true);
+        this.in = new BufferedInputStream(socket.getInputStream());
+        this.out = new BufferedOutputStream(socket.getOutputStream());
+        this.hello = readLine();
+        out.write(BinaryProtocol.MAGIC);
+        out.flush();
+    }
+
+    /**
+     * getHello
+     * return the HELLO line the server greeted the client with.
+     */
+    public String getHello() {
+        return hello;
+    }
+
+    public Reply look() throws IOException {
+        return request(BinaryProtocol.LOOK, 0, 0);
+    }
+
+    public Reply dig(int x, int y) throws IOException {
+        return request(BinaryProtocol.DIG, x, y);
+    }
+
+    public Reply flag(int x, int y) throws IOException {
+        return request(BinaryProtocol.FLAG, x, y);
+    }
+
+    public Reply deflag(int x, int y) throws IOException {
+        return request(BinaryProtocol.DEFLAG, x, y);
+    }
+
+    public Reply help() throws IOException {
+        return request(BinaryProtocol.HELP, 0, 0);
+    }
+
+    public Reply bye() throws IOException {
+        return request(BinaryProtocol.BYE, 0, 0);
+    }
+
+    /**
+     * batch
+     * start a batch of requests, sent with Batch.send().
+     */
+    public Batch batch() {
+        return new Batch();
+    }
+
+    /**
+     * close
+     * close the connection, without saying bye.
+     */
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+
+    /*
+     * send one request and wait for its reply.
+     */
+    private Reply request(int opcode, int x, int y) throws IOException {
+        BinaryProtocol.writeRequest(out, opcode, x, y);
+        out.flush();
+        return readReply(false);
+    }
+
+    /*
+     * read and decode the next reply.
+     * return null if the connection ended before a new reply and endOk, fail otherwise.
+     */
+    private Reply readReply(boolean endOk) throws IOException {
+        int opcode = in.read();
+        if (opcode < 0) {
+            if (endOk)
+                return null;
+            throw new EOFException("connection closed by the server");
+        }
+        switch (opcode) {
+        case BinaryProtocol.REPLY_BOARD: {
+            int sizeX = (int) BinaryProtocol.readVarint(in);
+            int sizeY = (int) BinaryProtocol.readVarint(in);
+            byte[] cells = readFully(((long) sizeX * sizeY + 1) / 2);
+            return new Reply(Reply.Kind.BOARD, sizeX, sizeY, cells, null);
+        }
+        case BinaryProtocol.REPLY_HELP: {
+            byte[] utf8 = readFully(BinaryProtocol.readVarint(in));
+            return new Reply(Reply.Kind.HELP, 0, 0, null, new String(utf8, StandardCharsets.UTF_8));
+        }
+        case BinaryProtocol.REPLY_BOOM:
+            return new Reply(Reply.Kind.BOOM, 0, 0, null, null);
+        case BinaryProtocol.REPLY_BYE:
+            return new Reply(Reply.Kind.BYE, 0, 0, null, null);
+        default:
+            throw new IOException("unknown reply opcode " + opcode);
+        }
+    }
+
+    private byte[] readFully(long length) throws IOException {
+        if (length > Integer.MAX_VALUE)
+            throw new IOException("reply too large: " + length + " bytes");
+        byte[] bytes = new byte[(int) length];
+        int read = 0;
+        while (read < bytes.length) {
+            int n = in.read(bytes, read, bytes.length - read);
+            if (n < 0)
+                throw new EOFException("connection closed in the middle of a reply");
+            read += n;
+        }
+        return bytes;
+    }
+
+    /*
+     * read the text HELLO line sent by the server before the switch to the binary protocol.
+     */
+    private String readLine() throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        for (int b = in.read(); b != '\n'; b = in.read()) {
+            if (b < 0)
+                throw new EOFException("connection closed before the HELLO line");
+            if (b != '\r')
+                line.write(b);
+        }
+        return new String(line.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,263 @@
+/* Copyright (c) 2007-2017 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package minesweeper.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * BinaryProtocol defines the compact binary alternative to the text protocol, and its codec.
+ *
+ * Both protocols share the game port. The server greets every client with the text HELLO line;
+ * a client then switches its connection to the binary protocol by sending the MAGIC byte,
+ * which can't start a text request. From then on, requests and replies are binary frames:
+ * <pre>
+ *   REQUEST ::= LOOK | DIG X Y | FLAG X Y | DEFLAG X Y | HELP | BYE | BATCH N REQUEST{N}
+ *   REPLY   ::= BOARD SIZE_X SIZE_Y CELLS | BOOM | HELP_TEXT LENGTH UTF8{LENGTH} | BYE
+ * </pre>
+ * where each opcode is a single byte, X and Y are zigzag varints (so out-of-bounds negative
+ * coordinates are still valid requests, as in the text protocol), N, SIZE_X, SIZE_Y and LENGTH
+ * are varints, and CELLS is the board packed by Board.drawPacked().
+ *
+ * A BATCH holds N requests (no nested BATCH) whose N replies are sent back in a single write.
+ * As in the text protocol, a BYE, or a BOOM when not in debug mode, ends the connection, and
+ * the rest of the batch is ignored. An unknown opcode gets a HELP_TEXT reply, and then the
+ * connection is closed since the rest of the stream can't be parsed.
+ *
+ * A varint is the usual base 128 encoding: 7 bits per byte, least significant group first,
+ * with the high bit set on all bytes but the last.
+ */
+public final class BinaryProtocol {
+
+    /** First byte sent by a client switching to the binary protocol. */
+    public static final int MAGIC = 0xB5;
+
+    // request opcodes
+    public static final int LOOK = 0x01;
+    public static final int DIG = 0x02;
+    public static final int FLAG = 0x03;
+    public static final int DEFLAG = 0x04;
+    public static final int HELP = 0x05;
+    public static final int BYE = 0x06;
+    public static final int BATCH = 0x07;
+
+    // reply opcodes
+    public static final int REPLY_BOARD = 0x81;
+    public static final int REPLY_BOOM = 0x82;
+    public static final int REPLY_HELP = 0x83;
+    public static final int REPLY_BYE = 0x84;
+
+    /** Maximum number of requests in a BATCH. */
+    public static final int MAX_BATCH = 4096;
+
+    // longest varint of an int, in bytes
+    private static final int MAX_VARINT_SIZE = 5;
+
+    private BinaryProtocol() {
+        // static methods only
+    }
+
+    /**
+     * Request is one decoded request frame.
+     */
+    public static final class Request {
+        /** opcode of the request */
+        public final int opcode;
+        /** coordinates of DIG, FLAG and DEFLAG, or 0 */
+        public final int x, y;
+        /** number of requests of a BATCH, or 0 */
+        public final int count;
+        /** size of the frame, in bytes */
+        public final int size;
+
+        Request(int opcode, int x, int y, int count, int size) {
+            this.opcode = opcode;
+            this.x = x;
+            this.y = y;
+            this.count = count;
+            this.size = size;
+        }
+
+        @Override
+        public String toString() {
+            switch (opcode) {
+            case LOOK:   return "look";
+            case DIG:    return "dig " + x + " " + y;
+            case FLAG:   return "flag " + x + " " + y;
+            case DEFLAG: return "deflag " + x + " " + y;
+            case HELP:   return "help";
+            case BYE:    return "bye";
+            case BATCH:  return "batch " + count;
+            default:     return "opcode " + opcode;
+            }
+        }
+    }
+
+    /**
+     * isRequest
+     * return true if opcode is a known request opcode.
+     */
+    public static boolean isRequest(int opcode) {
+        return opcode >= LOOK && opcode <= BATCH;
+    }
+
+    /**
+     * readRequest
+     * read the next request frame from in. The arguments of an unknown opcode are not read.
+     * @param in - the stream following the MAGIC byte
+     * @return the request, or null if the stream ended before a new frame
+     * @throws IOException if the stream fails or ends in the middle of a frame, or a BATCH
+     *                     is larger than MAX_BATCH
+     */
+    public static Request readRequest(InputStream in) throws IOException {
+        int opcode = in.read();
+        if (opcode < 0)
+            return null;
+        switch (opcode) {
+        case DIG:
+        case FLAG:
+        case DEFLAG: {
+            long x = readVarint(in);
+            long y = readVarint(in);
+            return new Request(opcode, zigzagDecode(x), zigzagDecode(y), 0,
+                               1 + varintSize(x) + varintSize(y));
+        }
+        case BATCH: {
+            long count = readVarint(in);
+            if (count > MAX_BATCH)
+                throw new IOException("batch of " + count + " requests, more than " + MAX_BATCH);
+            return new Request(opcode, 0, 0, (int) count, 1 + varintSize(count));
+        }
+        default:
+            return new Request(opcode, 0, 0, 0, 1);
+        }
+    }
+
+    /**
+     * writeRequest
+     * append a request frame to out.
+     * @param out - where the frame is written
+     * @param opcode - a request opcode other than BATCH
+     * @param x - x coordinate of DIG, FLAG and DEFLAG, ignored otherwise
+     * @param y - y coordinate of DIG, FLAG and DEFLAG, ignored otherwise
+     */
+    public static void writeRequest(OutputStream out, int opcode, int x, int y) throws IOException {
+        out.write(opcode);
+        if (opcode == DIG || opcode == FLAG || opcode == DEFLAG) {
+            writeVarint(out, zigzagEncode(x));
+            writeVarint(out, zigzagEncode(y));
+        }
+    }
+
+    /**
+     * writeBatch
+     * append the header of a BATCH of count requests to out; the requests must follow.
+     */
+    public static void writeBatch(OutputStream out, int count) throws IOException {
+        if (count < 0 || count > MAX_BATCH)
+            throw new IllegalArgumentException("batch size must be in 0.." + MAX_BATCH + " (count = "+count+")");
+        out.write(BATCH);
+        writeVarint(out, count);
+    }
+
+    /**
+     * boardFrame
+     * encode a BOARD reply.
+     * @param sizeX - width of the board
+     * @param sizeY - height of the board
+     * @param cells - the board as packed by Board.drawPacked()
+     */
+    public static byte[] boardFrame(int sizeX, int sizeY, byte[] cells) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(1 + 2 * MAX_VARINT_SIZE + cells.length);
+        out.write(REPLY_BOARD);
+        writeVarint(out, sizeX);
+        writeVarint(out, sizeY);
+        out.write(cells, 0, cells.length);
+        return out.toByteArray();
+    }
+
+    /**
+     * textFrame
+     * encode a HELP_TEXT reply.
+     */
+    public static byte[] textFrame(String text) {
+        byte[] utf8 = text.getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(1 + MAX_VARINT_SIZE + utf8.length);
+        out.write(REPLY_HELP);
+        writeVarint(out, utf8.length);
+        out.write(utf8, 0, utf8.length);
+        return out.toByteArray();
+    }
+
+    /**
+     * writeVarint
+     * append the varint encoding of value to out.
+     * @param value - the value to encode, requires value >= 0
+     */
+    public static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    /**
+     * writeVarint
+     * append the varint encoding of value to out.
+     * @param value - the value to encode, requires value >= 0
+     */
+    public static void writeVarint(OutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    /**
+     * readVarint
+     * read a varint of at most MAX_VARINT_SIZE bytes (i.e. an unsigned int) from in.
+     * @throws EOFException if the stream ends in the middle of the varint
+     * @throws IOException if the varint is too long, or the stream fails
+     */
+    public static long readVarint(InputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 7 * MAX_VARINT_SIZE; shift += 7) {
+            int b = in.read();
+            if (b < 0)
+                throw new EOFException("stream ended in the middle of a varint");
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
+        throw new IOException("varint longer than " + MAX_VARINT_SIZE + " bytes");
+    }
+
+    /*
+     * zigzag mapping of signed ints to unsigned ones, so small negative values stay short:
+     * 0 -> 0, -1 -> 1, 1 -> 2, -2 -> 3, ...
+     */
+    private static long zigzagEncode(int value) {
+        return ((value << 1) ^ (value >> 31)) & 0xFFFFFFFFL;
+    }
+
+    private static int zigzagDecode(long value) {
+        int v = (int) value;
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    private static int varintSize(long value) {
+        int size = 1;
+        while ((value & ~0x7FL) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+}
@@ -0,0 +1,137 @@
+/* Copyright (c) 2007-2017 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package minesweeper.server;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import minesweeper.Board;
+import minesweeper.BoardListener;
+
+/**
+ * BoardBroadcaster pushes the board to every subscribed session whenever it changes.
+ *
+ * Changes are coalesced: the board only marks the broadcaster dirty, and a single flusher
+ * thread checks the flag once per flush interval. When set, the frame of the current board
+ * version is taken from the FrameCache (so it's drawn and encoded once), and the same bytes
+ * are pushed to every subscriber, so a burst of moves results in one frame per subscriber
+ * per interval.
+ *
+ * A pushed frame is the line "update" followed by the board, as in a "look" reply (sessions may
+ * push something else, see Session.pushUpdate, e.g. WebSocketSession pushes deltas). Frames are
+ * pushed to the sessions' outbound queues, so a slow subscriber never delays the others: a newer
+ * frame replaces its unsent older one, and its OverflowPolicy applies if it falls too far behind.
+ */
+public class BoardBroadcaster implements BoardListener {
+
+    /** Default interval between two pushes, in milliseconds. */
+    public static final long DEFAULT_INTERVAL = 100;
+
+    /** First line of a pushed frame. */
+    public static final String UPDATE_HEADER = "update";
+
+    private final Board board;
+    private final FrameCache frames;
+    private final long interval;
+    private final Set<Session> subscribers = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean dirty = new AtomicBoolean();
+    private final ScheduledExecutorService flusher;
+
+    // rep invariant:
+    //    interval > 0
+    //
+    // abstraction function:
+    //    represents the push channel from board to the sessions in subscribers, where
+    //    dirty is true iff board changed since the last frame was pushed.
+    //
+    // Thread safety argument:
+    //    subscribers is a concurrent set and dirty is atomic; only the flusher thread
+    //    draws and pushes frames, and session outbound queues are thread safe.
+
+    /**
+     * constructor
+     * @param board - the board to be broadcast
+     * @param frames - the cache of the encoded frames of board
+     * @param interval - the minimum time between two pushes, in milliseconds (> 0)
+     */
+    public BoardBroadcaster(Board board, FrameCache frames, long interval) {
+        if (interval <= 0)
+            throw new IllegalArgumentException("push interval must be > 0 (interval = "+interval+")");
+        this.board = board;
+        this.frames = frames;
+        this.interval = interval;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "minesweeper-push");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * start
+     * start listening to the board and pushing its changes.
+     */
+    public void start() {
+        board.addListener(this);
+        flusher.scheduleWithFixedDelay(this::flush, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * stop
+     * stop pushing changes; subscribers are left connected.
+     */
+    public void stop() {
+        board.removeListener(this);
+        flusher.shutdownNow();
+    }
+
+    /**
+     * subscribe
+     * push the board changes to session from now on.
+     */
+    public void subscribe(Session session) {
+        subscribers.add(session);
+    }
+
+    /**
+     * unsubscribe
+     * stop pushing the board changes to session, if it was subscribed.
+     */
+    public void unsubscribe(Session session) {
+        subscribers.remove(session);
+    }
+
+    /**
+     * getSubscribers
+     * return the number of sessions currently subscribed.
+     */
+    public int getSubscribers() {
+        return subscribers.size();
+    }
+
+    @Override
+    public void boardChanged(Board changed) {
+        // called with the board's lock held: just remember to push on the next tick
+        dirty.set(true);
+    }
+
+    /*
+     * push the board to all subscribers if it changed since the last push.
+     */
+    private void flush() {
+        if (!dirty.getAndSet(false) || subscribers.isEmpty())
+            return;
+
+        for (Session session : subscribers) {
+            // frames are encoded once per encoding, and shared by the sessions using them
+            if (!session.pushUpdate(frames)) {
+                Log.debug("push to %s dropped, %d frames pending", session, session.getPending());
+            }
+        }
+    }
+}
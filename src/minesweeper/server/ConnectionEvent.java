@@ -0,0 +1,67 @@
+/* Copyright (c) 2007-2017 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package minesweeper.server;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * ConnectionEvent is the JDK Flight Recorder event of one client connection, lasting from the
+ * HELLO message to the end of the connection.
+ *
+ * Disabled by default, like the events of Board (see BoardEvents).
+ */
+@Name("minesweeper.Connection")
+@Label("Connection")
+@Category({"Minesweeper", "Server"})
+@Description("A client connection, from HELLO to disconnection")
+@Enabled(false)
+@StackTrace(false)
+final class ConnectionEvent extends Event {
+
+    @Label("Session")
+    long session;
+
+    @Label("Remote Address")
+    String remoteAddress;
+
+    @Label("Protocol")
+    @Description("text, binary or websocket")
+    String protocol;
+
+    @Label("Commands")
+    long commands;
+
+    @Label("Bytes In")
+    @DataAmount
+    long bytesIn;
+
+    @Label("Bytes Out")
+    @DataAmount
+    long bytesOut;
+
+    /**
+     * end the event, and commit it if it's enabled.
+     * @param s - the session of the connection
+     * @param protocolName - the protocol spoken by the client
+     */
+    void commit(Session s, String protocolName) {
+        end();
+        if (shouldCommit()) {
+            session = s.getId();
+            remoteAddress = String.valueOf(s.getRemoteAddress());
+            protocol = protocolName;
+            commands = s.getCommands();
+            bytesIn = s.getBytesIn();
+            bytesOut = s.getBytesOut();
+            commit();
+        }
+    }
+}
@@ -0,0 +1,277 @@
+/* Copyright (c) 2007-2017 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package minesweeper.server;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongFunction;
+import java.util.function.Supplier;
+
+import minesweeper.Board;
+
+/**
+ * FrameCache holds the encoded board frames of the current version of a board.
+ *
+ * All the clients looking at an unchanged board share the same byte[]: the board is drawn and
+ * encoded at most once per version (and per kind of frame), by the first client asking for it.
+ * The byte arrays handed out must never be modified.
+ *
+ * It also builds the replies to "look if-changed-since VERSION", which are one of:
+ *    "unchanged" SPACE VERSION                     - the board did not change since VERSION
+ *    "delta" SPACE VERSION SPACE N (NEWLINE CELL)* - N squares changed, CELL ::= X SPACE Y SPACE STATE
+ *    "board" SPACE VERSION (NEWLINE ROW)+          - the whole board, as drawn by Board.draw()
+ * where VERSION is the current version of the board, and STATE is "-", "F" or a digit 0..8.
+ * A delta is only sent when it's smaller than the whole board. The deltas of the current version
+ * are cached too, by the version they start from: the subscribers pushed the same version last
+ * time (see WebSocketSession.pushUpdate) share the same delta.
+ *
+ * Whole boards come in one of the encodings negotiated by the clients (see Encoding), and
+ * each encoding is cached separately, as is the BOARD reply of the binary protocol.
+ */
+public class FrameCache {
+
+    /**
+     * Encodings of the whole board frames:
+     *    PLAIN - as drawn by Board.draw(), 2 bytes per square
+     *    RLE   - run-length encoded, as drawn by Board.drawRle()
+     */
+    public static enum Encoding {PLAIN, RLE};
+
+    // approximate size of a CELL line in a delta, in bytes
+    private static final int DELTA_LINE_SIZE = 12;
+
+    // the most deltas cached per version, whatever the versions the clients ask them from
+    private static final int MAX_DELTAS = 64;
+
+    // a delta cached as the whole board (see lookSince), never handed out
+    private static final byte[] WHOLE_BOARD = new byte[0];
+
+    private final Board board;
+    private final String separator = System.lineSeparator();
+    // the most squares worth sending as a delta rather than a whole board
+    private final int maxDelta;
+
+    // cached frames of each kind, indexed by Encoding
+    private final Slot[] boardFrame = new Slot[Encoding.values().length];
+    private final Slot[] updateFrame = new Slot[Encoding.values().length];
+    private final Slot[] versionedFrame = new Slot[Encoding.values().length];
+    private final Slot packedFrame = new Slot(this::renderPacked);
+    // cached deltas of the latest version asked for
+    private volatile Deltas deltas = new Deltas(0);
+
+    // rep invariant:
+    //    maxDelta >= 1
+    //    the frame of each slot is null or has version <= board.getVersion()
+    //    deltas.version <= board.getVersion(), and deltas holds at most MAX_DELTAS deltas
+    //
+    // abstraction function:
+    //    represents the encoded frames of board at the version of each slot (or a later
+    //    one, see render); a frame is stale once the board's version moved on.
+    //
+    // Thread safety argument:
+    //    frames are immutable and published through volatile fields; a frame's version is
+    //    read before its contents, so it is never newer than them, and cache misses are
+    //    serialized on the slot's lock so each version is only drawn once.
+    //    deltas is replaced (by a newer version only) with this FrameCache's lock held, and its
+    //    deltas are in a thread safe map; a delta may be built twice by racing clients, which
+    //    encode the same reply.
+
+    /*
+     * an encoded frame of a given version of the board.
+     */
+    private static final class Frame {
+        final long version;
+        final byte[] bytes;
+
+        Frame(long version, byte[] bytes) {
+            this.version = version;
+            this.bytes = bytes;
+        }
+    }
+
+    /*
+     * the cached frame of one kind, i.e. with a given header and encoding.
+     */
+    private final class Slot {
+        private final Supplier<Frame> renderer;
+        private volatile Frame frame;
+
+        Slot(Supplier<Frame> renderer) {
+            this.renderer = renderer;
+        }
+
+        byte[] get() {
+            Frame f = frame;
+            if (f == null || f.version != board.getVersion()) {
+                synchronized (this) {
+                    f = frame;
+                    if (f == null || f.version != board.getVersion()) {
+                        f = renderer.get();
+                        frame = f;
+                    }
+                }
+            }
+            return f.bytes;
+        }
+    }
+
+    /*
+     * the deltas of one version of the board, by the version they start from: the encoded
+     * reply to "look if-changed-since", or WHOLE_BOARD if it's the whole board.
+     */
+    private static final class Deltas {
+        final long version;
+        final ConcurrentHashMap<Long, byte[]> since = new ConcurrentHashMap<>();
+
+        Deltas(long version) {
+            this.version = version;
+        }
+    }
+
+    /**
+     * constructor
+     * @param board - the board whose frames are cached
+     */
+    public FrameCache(Board board) {
+        this.board = board;
+        long boardSize = 2L * board.getBoardSizeX() * board.getBoardSizeY();
+        this.maxDelta = (int) Math.max(1, Math.min(Integer.MAX_VALUE, boardSize / DELTA_LINE_SIZE));
+        for (Encoding encoding : Encoding.values()) {
+            boardFrame[encoding.ordinal()] = new Slot(() -> render(version -> "", encoding));
+            updateFrame[encoding.ordinal()] = new Slot(() -> render(version -> BoardBroadcaster.UPDATE_HEADER + separator, encoding));
+            versionedFrame[encoding.ordinal()] = new Slot(() -> render(version -> "board " + version + separator, encoding));
+        }
+    }
+
+    /**
+     * boardFrame
+     * return the encoded reply to a "look": the board followed by a line separator.
+     * @param encoding - how the board is encoded
+     */
+    public byte[] boardFrame(Encoding encoding) {
+        return boardFrame[encoding.ordinal()].get();
+    }
+
+    /**
+     * updateFrame
+     * return the encoded frame pushed to subscribers: BoardBroadcaster.UPDATE_HEADER, then the
+     * board, each followed by a line separator.
+     * @param encoding - how the board is encoded
+     */
+    public byte[] updateFrame(Encoding encoding) {
+        return updateFrame[encoding.ordinal()].get();
+    }
+
+    /**
+     * getVersion
+     * return the current version of the board.
+     */
+    public long getVersion() {
+        return board.getVersion();
+    }
+
+    /**
+     * packedFrame
+     * return the encoded BOARD reply of the binary protocol, see BinaryProtocol.
+     */
+    public byte[] packedFrame() {
+        return packedFrame.get();
+    }
+
+    /**
+     * lookSince
+     * return the encoded reply to "look if-changed-since since", see FrameCache.
+     * @param since - the version of the board last seen by the client
+     * @param encoding - how the board is encoded, if the whole board is sent
+     */
+    public byte[] lookSince(long since, Encoding encoding) {
+        Deltas cached = deltas;
+        long version = board.getVersion();
+        if (since != version && cached.version == version) {
+            byte[] delta = cached.since.get(since);
+            if (delta != null)
+                return (delta == WHOLE_BOARD) ? versionedFrame[encoding.ordinal()].get() : delta;
+        }
+
+        int[] changed;
+        synchronized (board) {
+            version = board.getVersion();
+            if (since == version)
+                return ("unchanged " + version + separator).getBytes(StandardCharsets.UTF_8);
+            // a version from the future (e.g. from before a restart) gets the whole board
+            changed = (since < version) ? board.getChangedSince(since, maxDelta) : null;
+        }
+        byte[] delta = (changed == null) ? WHOLE_BOARD : encodeDelta(version, changed);
+        cached = deltas(version);
+        if (cached != null && cached.since.size() < MAX_DELTAS)
+            cached.since.putIfAbsent(since, delta);
+        return (delta == WHOLE_BOARD) ? versionedFrame[encoding.ordinal()].get() : delta;
+    }
+
+    /*
+     * the cached deltas of version, or null if a newer version is cached.
+     */
+    private Deltas deltas(long version) {
+        Deltas cached = deltas;
+        if (cached.version < version) {
+            synchronized (this) {
+                cached = deltas;
+                if (cached.version < version) {
+                    cached = new Deltas(version);
+                    deltas = cached;
+                }
+            }
+        }
+        return (cached.version == version) ? cached : null;
+    }
+
+    /*
+     * encode the reply "delta" of the squares changed, see getChangedSince.
+     */
+    private byte[] encodeDelta(long version, int[] changed) {
+        int n = changed.length / 3;
+        StringBuilder builder = new StringBuilder(16 + n * DELTA_LINE_SIZE);
+        builder.append("delta ").append(version).append(' ').append(n).append(separator);
+        for (int i = 0; i < n; i++) {
+            builder.append(changed[3*i]).append(' ').append(changed[3*i + 1]).append(' ');
+            int state = changed[3*i + 2];
+            if (state == Board.UNTOUCHED)
+                builder.append('-');
+            else if (state == Board.FLAGGED)
+                builder.append('F');
+            else
+                builder.append(state);
+            builder.append(separator);
+        }
+        return builder.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /*
+     * draw and encode the current version of the board, preceded by its header.
+     */
+    private Frame render(LongFunction<String> header, Encoding encoding) {
+        long start = System.nanoTime();
+        // read the version before drawing, without holding the board's lock in between (so the
+        // board's monitor sees the draw's wait): the drawing may be newer than its version, never
+        // older, which at worst renders the frame again or resends a few squares in a delta
+        long version = board.getVersion();
+        String drawing = (encoding == Encoding.RLE) ? board.drawRle() : board.draw();
+        byte[] bytes = (header.apply(version) + drawing + separator).getBytes(StandardCharsets.UTF_8);
+        Metrics.render(System.nanoTime() - start);
+        return new Frame(version, bytes);
+    }
+
+    /*
+     * pack the current version of the board into a binary BOARD reply.
+     */
+    private Frame renderPacked() {
+        long start = System.nanoTime();
+        // the version is read before drawing, see render()
+        long version = board.getVersion();
+        byte[] cells = board.drawPacked();
+        byte[] bytes = BinaryProtocol.boardFrame(board.getBoardSizeX(), board.getBoardSizeY(), cells);
+        Metrics.render(System.nanoTime() - start);
+        return new Frame(version, bytes);
+    }
+}
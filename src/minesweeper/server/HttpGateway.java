@@ -0,0 +1,177 @@
+/* Copyright (c) 2007-2017 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package minesweeper.server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import minesweeper.server.FrameCache.Encoding;
+
+/**
+ * HttpGateway serves the game to browsers, with the JDK's built-in HTTP server:
+ *    GET /       - a page playing the game through the WebSocketGateway
+ *    GET /board  - the current board, as in a reply to "look" (text/plain)
+ *
+ * The HTTP server can't hand a connection over to another protocol, so the WebSocket
+ * connections themselves are served by the WebSocketGateway, on its own port.
+ */
+class HttpGateway {
+
+    // threads serving the HTTP requests
+    private static final int THREADS = 2;
+
+    // the page, with WS_PORT standing for the port of the WebSocketGateway
+    private static final String PAGE =
+        "<!DOCTYPE html>\n"
+        + "<html><head><meta charset=\"utf-8\"><title>Minesweeper</title>\n"
+        + "<style>td{width:1.4em;height:1.4em;text-align:center;font:bold 14px monospace;"
+        + "background:#ddd;cursor:pointer}td.d{background:#fff}</style></head>\n"
+        + "<body><table id=\"board\"></table><p id=\"status\"></p>\n"
+        + "<p>Click to dig, right-click to flag or deflag.</p>\n"
+        + "<script>\n"
+        + "var w = 0, h = 0, cells = [];\n"
+        + "// replies still due to the moves sent: the board, without a header, or BOOM!\n"
+        + "var moves = 0;\n"
+        + "var ws = new WebSocket('ws://' + location.hostname + ':WS_PORT/');\n"
+        + "function status(text) { document.getElementById('status').textContent = text; }\n"
+        + "function draw() {\n"
+        + "  var html = '';\n"
+        + "  for (var y = 0; y < h; y++) {\n"
+        + "    html += '<tr>';\n"
+        + "    for (var x = 0; x < w; x++) {\n"
+        + "      var c = cells[y * w + x];\n"
+        + "      html += '<td data-x=\"' + x + '\" data-y=\"' + y + '\"' + (c == '-' || c == 'F' ? '' : ' class=\"d\"')\n"
+        + "            + '>' + (c == '-' ? '' : c) + '</td>';\n"
+        + "    }\n"
+        + "    html += '</tr>';\n"
+        + "  }\n"
+        + "  document.getElementById('board').innerHTML = html;\n"
+        + "}\n"
+        + "function move(command) { moves++; ws.send(command); }\n"
+        + "function rows(lines) {\n"
+        + "  for (var y = 0; y < h; y++)\n"
+        + "    for (var x = 0; x < w; x++) cells[y * w + x] = lines[y].charAt(2 * x);\n"
+        + "  draw();\n"
+        + "}\n"
+        + "ws.onopen = function() { ws.send('subscribe'); ws.send('look if-changed-since 0'); };\n"
+        + "ws.onclose = function() { status('Disconnected.'); };\n"
+        + "ws.onmessage = function(e) {\n"
+        + "  var lines = e.data.split(/\\r?\\n/);\n"
+        + "  if (lines[lines.length - 1] == '') lines.pop();\n"
+        + "  var head = lines[0].split(' ');\n"
+        + "  var hello = /Board: (\\d+) columns by (\\d+) rows/.exec(lines[0]);\n"
+        + "  if (hello) { w = +hello[1]; h = +hello[2]; status(lines[0]); }\n"
+        + "  else if (head[0] == 'delta') {\n"
+        + "    for (var i = 1; i < lines.length; i++) {\n"
+        + "      var cell = lines[i].split(' ');\n"
+        + "      cells[+cell[1] * w + +cell[0]] = (cell[2] == '0') ? ' ' : cell[2];\n"
+        + "    }\n"
+        + "    draw();\n"
+        + "  }\n"
+        + "  else if (head[0] == 'board' || head[0] == 'update') rows(lines.slice(1));\n"
+        + "  else if (head[0] == 'unchanged' || head[0] == 'subscribed') return;\n"
+        + "  else if (moves > 0) { moves--; if (lines[0] == 'BOOM!') status(lines[0]); else rows(lines); }\n"
+        + "  else status(e.data);\n"
+        + "};\n"
+        + "var table = document.getElementById('board');\n"
+        + "table.onclick = function(e) {\n"
+        + "  if (e.target.dataset.x) move('dig ' + e.target.dataset.x + ' ' + e.target.dataset.y);\n"
+        + "};\n"
+        + "table.oncontextmenu = function(e) {\n"
+        + "  var t = e.target;\n"
+        + "  if (t.dataset.x) move((cells[t.dataset.y * w + +t.dataset.x] == 'F' ? 'deflag ' : 'flag ')\n"
+        + "                      + t.dataset.x + ' ' + t.dataset.y);\n"
+        + "  return false;\n"
+        + "};\n"
+        + "</script></body></html>\n";
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final byte[] page;
+
+    // rep invariant:
+    //    none.
+    //
+    // abstraction function:
+    //    represents the HTTP endpoint of the game, listening on server's address.
+    //
+    // Thread safety argument:
+    //    the handlers only read the immutable page and the thread safe FrameCache.
+
+    /**
+     * constructor
+     * @param frames - the frames of the board played
+     * @param port - the port to listen on, requires 0 <= port <= 65535 (0 picks a free port)
+     * @param webSocketPort - the port of the WebSocketGateway used by the page
+     * @throws IOException if the port can't be opened
+     */
+    HttpGateway(FrameCache frames, int port, int webSocketPort) throws IOException {
+        this.page = PAGE.replace("WS_PORT", Integer.toString(webSocketPort)).getBytes(StandardCharsets.UTF_8);
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        this.executor = Executors.newFixedThreadPool(THREADS, r -> {
+            Thread t = new Thread(r, "minesweeper-http");
+            t.setDaemon(true);
+            return t;
+        });
+        server.setExecutor(executor);
+        server.createContext("/", exchange -> {
+            if (!exchange.getRequestURI().getPath().equals("/"))
+                reply(exchange, 404, "text/plain", new byte[0]);
+            else
+                reply(exchange, 200, "text/html; charset=utf-8", page);
+        });
+        server.createContext("/board", exchange ->
+            reply(exchange, 200, "text/plain; charset=utf-8", frames.boardFrame(Encoding.PLAIN)));
+    }
+
+    /**
+     * getPort
+     * return the port the gateway listens on.
+     */
+    int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    void start() {
+        server.start();
+        Log.info("HTTP gateway listening on port %d", getPort());
+    }
+
+    void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /*
+     * send a whole reply, GET and HEAD requests only.
+     */
+    private static void reply(HttpExchange exchange, int status, String type, byte[] body) throws IOException {
+        try {
+            String method = exchange.getRequestMethod();
+            if (!method.equals("GET") && !method.equals("HEAD")) {
+                exchange.getResponseHeaders().set("Allow", "GET, HEAD");
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            exchange.getResponseHeaders().set("Content-Type", type);
+            if (method.equals("HEAD")) {
+                exchange.sendResponseHeaders(status, -1);
+                return;
+            }
+            exchange.sendResponseHeaders(status, (body.length == 0) ? -1 : body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+}
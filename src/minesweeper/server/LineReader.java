@@ -0,0 +1,110 @@
+/* Copyright (c) 2007-2017 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package minesweeper.server;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * LineReader reads the lines of the text protocol from a client, like BufferedReader.readLine,
+ * and tells whether a whole line is already buffered, so reading it won't block (see hasLine):
+ * BufferedReader.ready() is also true when only a part of a line is buffered.
+ *
+ * Lines end with "\n", "\r" or "\r\n", and are decoded as UTF-8.
+ */
+final class LineReader {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final InputStream in;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int position = 0;
+    private int limit = 0;
+    // true if the last line ended with '\r', so a '\n' right after it is part of its end
+    private boolean skipLF = false;
+
+    // the line being read
+    private byte[] line = new byte[128];
+    private int length = 0;
+
+    // rep invariant:
+    //    0 <= position <= limit <= buffer.length
+    //    0 <= length <= line.length
+    //
+    // abstraction function:
+    //    represents the stream in, of which the bytes buffer[position..limit) are read but not
+    //    consumed yet.
+    //
+    // Thread safety argument:
+    //    not thread safe, a LineReader is confined to the thread of its client.
+
+    LineReader(InputStream in) {
+        this.in = in;
+    }
+
+    /**
+     * readLine
+     * return the next line, without its end, or null at the end of the stream. Blocks until a
+     * whole line is read, or the stream ends (then the last line may have no end).
+     */
+    String readLine() throws IOException {
+        length = 0;
+        boolean started = false;
+        while (true) {
+            if (position == limit) {
+                int n = in.read(buffer, 0, buffer.length);
+                if (n <= 0)
+                    return started ? decode() : null;
+                position = 0;
+                limit = n;
+            }
+            if (skipLF) {
+                skipLF = false;
+                if (buffer[position] == '\n') {
+                    position++;
+                    continue;
+                }
+            }
+            started = true;
+            int end = position;
+            while (end < limit && buffer[end] != '\n' && buffer[end] != '\r') {
+                end++;
+            }
+            append(position, end);
+            if (end < limit) {
+                skipLF = buffer[end] == '\r';
+                position = end + 1;
+                return decode();
+            }
+            position = limit;
+        }
+    }
+
+    /**
+     * hasLine
+     * return true iff a whole line is buffered: readLine() returns it without blocking.
+     */
+    boolean hasLine() {
+        int start = (skipLF && position < limit && buffer[position] == '\n') ? position + 1 : position;
+        for (int i = start; i < limit; i++) {
+            if (buffer[i] == '\n' || buffer[i] == '\r')
+                return true;
+        }
+        return false;
+    }
+
+    private void append(int from, int to) {
+        int n = to - from;
+        if (length + n > line.length)
+            line = Arrays.copyOf(line, Math.max(2 * line.length, length + n));
+        System.arraycopy(buffer, from, line, length, n);
+        length += n;
+    }
+
+    private String decode() {
+        return new String(line, 0, length, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,290 @@
+/* Copyright (c) 2007-2017 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package minesweeper.server;
+
+import java.io.PrintStream;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Log is a leveled, asynchronous logger used by the Minesweeper server.
+ *
+ * A log call on a disabled level returns right away. A log call on an enabled level only
+ * captures the level, time, thread name, message template and its arguments, and hands them
+ * to a lock-free queue. A single daemon writer thread formats the entries and writes them to
+ * the output stream in batches, so client threads never contend on System.out.
+ *
+ * Levels, from the most to the least verbose:
+ *    TRACE - full messages, including every board sent to a client
+ *    DEBUG - one line per handled request
+ *    INFO  - server life cycle and sampled access log lines
+ *    WARN  - recoverable errors (e.g. a client connection failing)
+ *    ERROR - unrecoverable errors
+ *    OFF   - nothing is logged
+ */
+public final class Log {
+
+    /** Logging levels, from the most to the least verbose. */
+    public static enum Level {TRACE, DEBUG, INFO, WARN, ERROR, OFF};
+
+    /** Default level of the logger. */
+    public static final Level DEFAULT_LEVEL = Level.INFO;
+    /** Default access log sampling rate, i.e. one access line every DEFAULT_ACCESS_SAMPLE requests. */
+    public static final int DEFAULT_ACCESS_SAMPLE = 100;
+
+    // maximum number of entries waiting for the writer, further entries are dropped (and counted)
+    private static final int MAX_PENDING = 64 * 1024;
+    // how long the writer sleeps when it has nothing to do
+    private static final long IDLE_PARK_NANOS = 50_000_000L;
+
+    // current level, entries below this level are discarded by the caller thread
+    private static volatile Level level = DEFAULT_LEVEL;
+    // one out of accessSample requests is written to the access log
+    private static volatile int accessSample = DEFAULT_ACCESS_SAMPLE;
+    // destination of the log entries, only written by the writer thread
+    private static volatile PrintStream out = System.out;
+
+    // hand-off between the logging threads and the writer thread
+    private static final ConcurrentLinkedQueue<Entry> queue = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger pending = new AtomicInteger();
+    private static final AtomicLong dropped = new AtomicLong();
+    private static final AtomicLong accessCount = new AtomicLong();
+    // true while the writer is parked waiting for more entries
+    private static final AtomicBoolean idle = new AtomicBoolean();
+    private static final Thread writer;
+
+    // rep invariant:
+    //    0 <= pending <= MAX_PENDING (approximately, pending may briefly overshoot by the
+    //    number of concurrent callers)
+    //    accessSample >= 1
+    //
+    // abstraction function:
+    //    represents the stream of log lines [queue] waiting to be written to [out], where
+    //    [dropped] lines have been discarded because the writer fell behind.
+    //
+    // Thread safety argument:
+    //    the queue and the counters are lock-free concurrent types, level/accessSample/out are
+    //    volatile, and only the writer thread touches the output stream.
+
+    static {
+        writer = new Thread(Log::drain, "minesweeper-log");
+        writer.setDaemon(true);
+        writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(Log::flush, "minesweeper-log-flush"));
+    }
+
+    private Log() {
+        // static methods only
+    }
+
+    /*
+     * one pending log line, formatted lazily by the writer thread.
+     */
+    private static final class Entry {
+        final Level level;
+        final long millis;
+        final String thread;
+        final String format;
+        final Object[] args;
+
+        Entry(Level level, String format, Object[] args) {
+            this.level = level;
+            this.millis = System.currentTimeMillis();
+            this.thread = Thread.currentThread().getName();
+            this.format = format;
+            this.args = args;
+        }
+    }
+
+    /**
+     * setLevel
+     * set the minimum level of the entries to be logged.
+     * @param newLevel - the new level, must not be null
+     */
+    public static void setLevel(Level newLevel) {
+        if (newLevel == null)
+            throw new IllegalArgumentException("log level must not be null");
+        level = newLevel;
+    }
+
+    /**
+     * getLevel
+     * return the minimum level of the entries to be logged.
+     */
+    public static Level getLevel() {
+        return level;
+    }
+
+    /**
+     * setAccessSample
+     * log one request out of every n requests in the access log.
+     * @param n - the sampling rate, requires n >= 1
+     */
+    public static void setAccessSample(int n) {
+        if (n < 1)
+            throw new IllegalArgumentException("access sample must be >= 1 (n = "+n+")");
+        accessSample = n;
+    }
+
+    /**
+     * setOutput
+     * redirect the log to the given stream.
+     * @param stream - the stream where the writer thread writes the log lines
+     */
+    public static void setOutput(PrintStream stream) {
+        flush();
+        out = stream;
+    }
+
+    /**
+     * getDropped
+     * return the number of log entries dropped because the writer could not keep up.
+     */
+    public static long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * isEnabled
+     * return true if entries of the given level are currently logged.
+     */
+    public static boolean isEnabled(Level l) {
+        return l.compareTo(level) >= 0 && l != Level.OFF;
+    }
+
+    public static void trace(String format, Object... args) {
+        log(Level.TRACE, format, args);
+    }
+
+    public static void debug(String format, Object... args) {
+        log(Level.DEBUG, format, args);
+    }
+
+    public static void info(String format, Object... args) {
+        log(Level.INFO, format, args);
+    }
+
+    public static void warn(String format, Object... args) {
+        log(Level.WARN, format, args);
+    }
+
+    public static void error(String format, Object... args) {
+        log(Level.ERROR, format, args);
+    }
+
+    /**
+     * access
+     * record one handled request in the (sampled) access log, at INFO level.
+     * @param client - the client who sent the request
+     * @param request - the request line
+     * @param nanos - the time spent handling the request
+     */
+    public static void access(Object client, String request, long nanos) {
+        if (!isEnabled(Level.INFO))
+            return;
+        if (accessCount.getAndIncrement() % accessSample != 0)
+            return;
+        log(Level.INFO, "access client=%s request=\"%s\" micros=%d", client, request, nanos / 1000);
+    }
+
+    /**
+     * log
+     * queue a log entry for the writer thread if its level is enabled. The message is formatted
+     * with String.format(format, args) by the writer thread, so args must not be mutated afterwards.
+     * If the last arg is a Throwable, its stack trace is written after the message.
+     */
+    public static void log(Level l, String format, Object... args) {
+        if (!isEnabled(l))
+            return;
+        if (pending.incrementAndGet() > MAX_PENDING) {
+            pending.decrementAndGet();
+            dropped.incrementAndGet();
+            return;
+        }
+        queue.offer(new Entry(l, format, args));
+        if (idle.get()) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    /**
+     * flush
+     * wait (for a short while) until all the entries queued so far have been written to the
+     * stream, and the stream flushed.
+     */
+    public static void flush() {
+        long deadline = System.nanoTime() + 1_000_000_000L;
+        while (pending.get() > 0 && System.nanoTime() < deadline) {
+            LockSupport.unpark(writer);
+            Thread.yield();
+        }
+    }
+
+    /*
+     * body of the writer thread: drain the queue in batches, and park when it's empty.
+     */
+    private static void drain() {
+        SimpleDateFormat time = new SimpleDateFormat("HH:mm:ss.SSS", Locale.ROOT);
+        StringBuilder builder = new StringBuilder();
+        long reported = 0;
+
+        while (true) {
+            Entry e = queue.poll();
+            if (e == null) {
+                // re-check the queue after announcing we're idle, so an entry queued
+                // between poll() and idle.set(true) is never left behind.
+                idle.set(true);
+                if (queue.isEmpty()) {
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                }
+                idle.set(false);
+                continue;
+            }
+            PrintStream stream = out;
+            int written = 0;
+            do {
+                builder.setLength(0);
+                builder.append(time.format(new Date(e.millis))).append(' ')
+                       .append(e.level).append(" [").append(e.thread).append("] ");
+                builder.append(format(e.format, e.args));
+                stream.println(builder);
+                Object last = (e.args.length > 0) ? e.args[e.args.length - 1] : null;
+                if (last instanceof Throwable) {
+                    ((Throwable) last).printStackTrace(stream);
+                }
+                written++;
+                e = queue.poll();
+            } while (e != null);
+
+            long lost = dropped.get();
+            if (lost > reported) {
+                stream.println(time.format(new Date()) + " WARN [minesweeper-log] "
+                               + (lost - reported) + " log entries dropped");
+                reported = lost;
+            }
+            stream.flush();
+            // only now are the entries on the stream, see flush()
+            pending.addAndGet(-written);
+        }
+    }
+
+    /*
+     * format a message, never letting a bad format string kill the writer thread.
+     */
+    private static String format(String format, Object[] args) {
+        if (args.length == 0)
+            return format;
+        try {
+            return String.format(format, args);
+        } catch (RuntimeException re) {
+            return format + " (bad log format: " + re + ")";
+        }
+    }
+}
@@ -0,0 +1,220 @@
+/* Copyright (c) 2007-2017 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package minesweeper.server;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import minesweeper.BoardMonitor;
+import minesweeper.Histogram;
+
+/**
+ * Metrics holds the instrumentation of the Minesweeper server, and renders it in the
+ * Prometheus text exposition format.
+ *
+ * Counters are LongAdders and latencies go to Histograms, so recording never takes a lock and
+ * costs a few atomic increments; the rendering does the heavier work, once per scrape.
+ *
+ * Metrics exposed:
+ *    minesweeper_commands_total{command}   - requests handled, per command (invalid for bad ones)
+ *    minesweeper_booms_total               - bombs dug
+ *    minesweeper_connections_total         - clients connected since start
+ *    minesweeper_received_bytes_total      - bytes received from the clients
+ *    minesweeper_sent_bytes_total          - bytes sent to the clients
+ *    minesweeper_cascade_squares           - squares revealed by each dig (summary)
+ *    minesweeper_board_lock_wait_seconds{op} - time waiting for the board's lock, per operation (summary)
+ *    minesweeper_board_lock_held_seconds{op} - time holding the board's lock, per operation (summary)
+ *    minesweeper_render_seconds            - time drawing and encoding a board frame (summary)
+ *    minesweeper_socket_write_seconds      - time writing (and flushing) a batch of frames (summary)
+ * plus the gauges registered by the server (e.g. the number of connected clients). The cascade
+ * and lock metrics are read from the BoardMonitor of the board played.
+ */
+public final class Metrics {
+
+    /** Commands counted by minesweeper_commands_total. */
+    public static enum Command {LOOK, DIG, FLAG, DEFLAG, HELP, BYE, WHO, SUBSCRIBE, UNSUBSCRIBE, ENCODING, METRICS, HINT, PROB, INVALID};
+
+    // quantiles of the summaries
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    private static final LongAdder[] commands = new LongAdder[Command.values().length];
+    private static final LongAdder booms = new LongAdder();
+    private static final LongAdder connections = new LongAdder();
+    private static final LongAdder bytesIn = new LongAdder();
+    private static final LongAdder bytesOut = new LongAdder();
+
+    private static final Histogram render = new Histogram();
+    private static final Histogram socketWrite = new Histogram();
+
+    // gauges registered by the server, by name
+    private static final Map<String, Gauge> gauges = new ConcurrentSkipListMap<>();
+    
+    // monitor of the board played, replaced when the server starts on a new board
+    private static volatile BoardMonitor board = new BoardMonitor();
+
+    // rep invariant:
+    //    commands[i] != null for every Command i
+    //
+    // abstraction function:
+    //    represents the counters and distributions of what the server did since it started.
+    //
+    // Thread safety argument:
+    //    counters are LongAdders, histograms are thread safe, gauges is a concurrent map
+    //    of immutable entries, and board is volatile (and thread safe).
+
+    static {
+        for (int i = 0; i < commands.length; i++) {
+            commands[i] = new LongAdder();
+        }
+    }
+
+    private Metrics() {
+        // static methods only
+    }
+
+    /*
+     * a gauge registered by the server: its help text and how to read it.
+     */
+    private static final class Gauge {
+        final String help;
+        final LongSupplier value;
+
+        Gauge(String help, LongSupplier value) {
+            this.help = help;
+            this.value = value;
+        }
+    }
+
+    public static void command(Command command) {
+        commands[command.ordinal()].increment();
+    }
+
+    public static void boom() {
+        booms.increment();
+    }
+
+    public static void connection() {
+        connections.increment();
+    }
+
+    public static void bytesIn(long bytes) {
+        bytesIn.add(bytes);
+    }
+
+    public static void bytesOut(long bytes) {
+        bytesOut.add(bytes);
+    }
+
+    /**
+     * board
+     * set the monitor of the board played, whose metrics are rendered from then on.
+     */
+    public static void board(BoardMonitor monitor) {
+        board = monitor;
+    }
+
+    /**
+     * render
+     * record the time spent drawing and encoding one board frame.
+     */
+    public static void render(long nanos) {
+        render.record(nanos);
+    }
+
+    /**
+     * socketWrite
+     * record the time spent writing one batch of frames to a client.
+     */
+    public static void socketWrite(long nanos) {
+        socketWrite.record(nanos);
+    }
+
+    /**
+     * gauge
+     * register (or replace) a gauge, read each time the metrics are rendered.
+     * @param name - name of the gauge, a valid Prometheus metric name
+     * @param help - one line describing the gauge
+     * @param value - reads the current value of the gauge
+     */
+    public static void gauge(String name, String help, LongSupplier value) {
+        gauges.put(name, new Gauge(help, value));
+    }
+
+    /**
+     * prometheus
+     * return all the metrics in the Prometheus text exposition format (version 0.0.4).
+     */
+    public static String prometheus() {
+        StringBuilder out = new StringBuilder(4096);
+
+        header(out, "minesweeper_commands_total", "counter", "Requests handled, per command.");
+        for (Command c : Command.values()) {
+            out.append("minesweeper_commands_total{command=\"").append(c.name().toLowerCase(Locale.ROOT))
+               .append("\"} ").append(commands[c.ordinal()].sum()).append('\n');
+        }
+        counter(out, "minesweeper_booms_total", "Bombs dug.", booms.sum());
+        counter(out, "minesweeper_connections_total", "Clients connected since start.", connections.sum());
+        counter(out, "minesweeper_received_bytes_total", "Bytes received from the clients.", bytesIn.sum());
+        counter(out, "minesweeper_sent_bytes_total", "Bytes sent to the clients.", bytesOut.sum());
+
+        for (Map.Entry<String, Gauge> e : gauges.entrySet()) {
+            header(out, e.getKey(), "gauge", e.getValue().help);
+            out.append(e.getKey()).append(' ').append(e.getValue().value.getAsLong()).append('\n');
+        }
+
+        BoardMonitor monitor = board;
+        summary(out, "minesweeper_cascade_squares", "Squares revealed by each dig.", monitor.getCascade(), 1);
+        header(out, "minesweeper_board_lock_wait_seconds", "summary", "Time waiting for the board's lock, per operation.");
+        for (BoardMonitor.Op op : BoardMonitor.Op.values()) {
+            series(out, "minesweeper_board_lock_wait_seconds", op, monitor.getWait(op), NANOS_PER_SECOND);
+        }
+        header(out, "minesweeper_board_lock_held_seconds", "summary", "Time holding the board's lock, per operation.");
+        for (BoardMonitor.Op op : BoardMonitor.Op.values()) {
+            series(out, "minesweeper_board_lock_held_seconds", op, monitor.getHeld(op), NANOS_PER_SECOND);
+        }
+        summary(out, "minesweeper_render_seconds", "Time drawing and encoding a board frame.", render, NANOS_PER_SECOND);
+        summary(out, "minesweeper_socket_write_seconds", "Time writing a batch of frames to a client.", socketWrite, NANOS_PER_SECOND);
+        return out.toString();
+    }
+
+    private static void header(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void counter(StringBuilder out, String name, String help, long value) {
+        header(out, name, "counter", help);
+        out.append(name).append(' ').append(value).append('\n');
+    }
+
+    /*
+     * render a histogram as a summary, dividing its values by unit (e.g. nanoseconds to seconds).
+     */
+    private static void summary(StringBuilder out, String name, String help, Histogram histogram, double unit) {
+        header(out, name, "summary", help);
+        for (double q : QUANTILES) {
+            out.append(name).append("{quantile=\"").append(q).append("\"} ")
+               .append(histogram.getValueAtPercentile(q * 100) / unit).append('\n');
+        }
+        out.append(name).append("_sum ").append(histogram.getSum() / unit).append('\n');
+        out.append(name).append("_count ").append(histogram.getCount()).append('\n');
+    }
+
+    /*
+     * render the series of a summary labelled with a board operation.
+     */
+    private static void series(StringBuilder out, String name, BoardMonitor.Op op, Histogram histogram, double unit) {
+        String label = "op=\"" + op.name().toLowerCase(Locale.ROOT) + "\"";
+        for (double q : QUANTILES) {
+            out.append(name).append('{').append(label).append(",quantile=\"").append(q).append("\"} ")
+               .append(histogram.getValueAtPercentile(q * 100) / unit).append('\n');
+        }
+        out.append(name).append("_sum{").append(label).append("} ").append(histogram.getSum() / unit).append('\n');
+        out.append(name).append("_count{").append(label).append("} ").append(histogram.getCount()).append('\n');
+    }
+}
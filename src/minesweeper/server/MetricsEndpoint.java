@@ -0,0 +1,78 @@
+/* Copyright (c) 2007-2017 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package minesweeper.server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * MetricsEndpoint serves the server Metrics to Prometheus:
+ *    GET /metrics - all the metrics, in the Prometheus text exposition format
+ *
+ * It only listens on the loopback interface, the metrics are not meant for the players.
+ */
+class MetricsEndpoint {
+
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final HttpServer server;
+
+    // rep invariant:
+    //    none.
+    //
+    // abstraction function:
+    //    represents the metrics endpoint, listening on server's address.
+    //
+    // Thread safety argument:
+    //    requests are served by the HTTP server's single dispatcher thread, and Metrics is
+    //    thread safe.
+
+    /**
+     * constructor
+     * @param port - the port to listen on, requires 0 <= port <= 65535 (0 picks a free port)
+     * @throws IOException if the port can't be opened
+     */
+    MetricsEndpoint(int port) throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/metrics", exchange -> {
+            try {
+                if (!exchange.getRequestMethod().equals("GET")) {
+                    exchange.getResponseHeaders().set("Allow", "GET");
+                    exchange.sendResponseHeaders(405, -1);
+                    return;
+                }
+                byte[] body = Metrics.prometheus().getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            } finally {
+                exchange.close();
+            }
+        });
+    }
+
+    /**
+     * getPort
+     * return the port the endpoint listens on.
+     */
+    int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    void start() {
+        server.start();
+        Log.info("metrics served on http://%s:%d/metrics", server.getAddress().getHostString(), getPort());
+    }
+
+    void stop() {
+        server.stop(0);
+    }
+}
@@ -5,9 +5,23 @@ package minesweeper.server;
 
 import java.io.*;
 import java.net.*;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import minesweeper.Board;
+import minesweeper.BoardFactory;
+import minesweeper.DenseBoard;
+import minesweeper.HintSolver;
+import minesweeper.NoGuessGenerator;
+import minesweeper.ProbabilityEngine;
+import minesweeper.MappedBoard;
+import minesweeper.server.BinaryProtocol.Request;
+import minesweeper.server.FrameCache.Encoding;
+import minesweeper.server.OutboundQueue.OverflowPolicy;
 
 /**
  * Multiplayer Minesweeper server.
@@ -18,32 +32,118 @@ public class MinesweeperServer {
 
     //   all accesses to board happen within Board's methods which
     //   is guaranteed to be thread safe.
+    //   the connected clients are tracked by SessionRegistry, whose map and
+    //   counters are concurrent / atomic types.
+    //   each client's output goes through its own bounded outbound queue, written by its own
+    //   writer thread, so a slow client never blocks the others.
 
     /** Default server port. */
     private static final int DEFAULT_PORT = 4444;
+    /** Default threshold of the board lock watchdog, in milliseconds. */
+    private static final long DEFAULT_LOCK_THRESHOLD = 50;
+    /** Default time between two forces of a persisted board (--board-file), in milliseconds. */
+    private static final long DEFAULT_FORCE_INTERVAL = 1000;
+    // time allowed to generate a board without guesses, in milliseconds
+    private static final long NO_GUESS_TIMEOUT = 10000;
+    // time the clients are given to disconnect when the server stops, in milliseconds
+    private static final long CLIENTS_TIMEOUT = 5000;
     /** Maximum port number as defined by ServerSocket. */
     private static final int MAXIMUM_PORT = 65535;
     
     /** Default square board size. */
     public static final int DEFAULT_SIZE = 10;
     
+    /** Size (in bytes) above which a batch of pipelined replies is sent without waiting for more. */
+    private static final int MAX_BATCH = 64 * 1024;
+    
     // various messages
-    private static enum MessageType {HELLO, BOARD, BOOM, DISCONNECT, HELP};
+    private static enum MessageType {HELLO, BOARD, BOOM, DISCONNECT, HELP, WHO, METRICS, SUBSCRIBED, UNSUBSCRIBED, ENCODING};
     private static final String BOOM_MSG = "BOOM!";
-    private static final String HELP_MSG = "Command syntax: [look], [dig x y], [flag x y], [deflag x y], [help], [bye] where x y are board size.";
+    private static final String HELP_MSG = "Command syntax: [look], [look if-changed-since v], [dig x y], [flag x y], [deflag x y], "
+                                         + "[hint], [prob x y w h], [subscribe], [unsubscribe], [encoding plain|rle], [who], [metrics], "
+                                         + "[help], [bye] where x y are board size, w h a window size and v a board version.";
+    private static final String HINT_MSG = "hint %1$s %2$d %3$d";
+    private static final String NO_HINT_MSG = "hint none";
+    private static final String NO_PROB_MSG = "prob none";
+    private static final String SUBSCRIBED_MSG = "subscribed";
+    private static final String UNSUBSCRIBED_MSG = "unsubscribed";
+    private static final String ENCODING_MSG = "encoding %1$s";
     private static final String DISCONNECT_MSG = "Bye";
     private static final String HELLO_MSG = "Welcome to Minesweeper. Players: %1$d including you. Board: %2$d columns by %3$d rows. Type 'help' for help.";
+    
+    // constant messages, encoded once and shared by all clients
+    private static final byte[] BOOM_BYTES = encode(BOOM_MSG);
+    private static final byte[] HELP_BYTES = encode(HELP_MSG);
+    private static final byte[] SUBSCRIBED_BYTES = encode(SUBSCRIBED_MSG);
+    private static final byte[] UNSUBSCRIBED_BYTES = encode(UNSUBSCRIBED_MSG);
+    private static final byte[] DISCONNECT_BYTES = encode(DISCONNECT_MSG);
+    private static final byte[] BINARY_BOOM_BYTES = {(byte) BinaryProtocol.REPLY_BOOM};
+    private static final byte[] BINARY_HELP_BYTES = BinaryProtocol.textFrame(HELP_MSG);
+    private static final byte[] BINARY_BYE_BYTES = {(byte) BinaryProtocol.REPLY_BYE};
 
     /** Socket for receiving incoming connections. */
     private static ServerSocket serverSocket;
     /** True if the server should *not* disconnect a client after a BOOM message. */
     private final boolean debug;
     
-    // total number of client threads running
-    private int numPlayers = 0;
+    // capacity of the outbound queue of each client, in frames
+    private static int queueCapacity = OutboundQueue.DEFAULT_CAPACITY;
+    
+    // what to do with a client too slow to read the frames pushed to it
+    private static OverflowPolicy overflowPolicy = OverflowPolicy.DROP;
+    
+    // clients currently connected
+    private final SessionRegistry sessions = new SessionRegistry(queueCapacity, overflowPolicy);
     
     // board instance to play
     private static Board board;
+    
+    // solver of the hints, or null if the board is too large for it
+    private static HintSolver hints;
+    // engine of the probabilities of the squares, or null if the board is too large for it
+    private static ProbabilityEngine probabilities;
+    // largest width and height of the window of a 'prob' request
+    private static final int MAX_PROB_WINDOW = 100;
+    
+    // interval between two pushes of the board to subscribed clients, in milliseconds
+    private static long pushInterval = BoardBroadcaster.DEFAULT_INTERVAL;
+    
+    // encoded board frames, shared by all clients until the board changes
+    private final FrameCache frames;
+    
+    // pushes the board changes to the subscribed clients
+    private final BoardBroadcaster broadcaster;
+    
+    // ports of the HTTP and WebSocket gateways for browser clients, or -1 if not served
+    private static int httpPort = -1;
+    private static int webSocketPort = -1;
+    
+    // local port serving the metrics to Prometheus, or -1 if not served
+    private static int metricsPort = -1;
+    
+    // board operations holding the board's lock longer than this are logged, in milliseconds
+    private static long lockThreshold = DEFAULT_LOCK_THRESHOLD;
+    
+    // squares revealed by a cascade each time it holds the board's lock, 0 for whole cascades
+    private static int cascadeSlice = 0;
+    
+    // engine revealing the cascades
+    private static Board.CascadeEngine cascadeEngine = Board.CascadeEngine.SCALAR;
+    
+    // implementation of the board, or null to let BoardFactory choose it
+    private static BoardFactory.Implementation boardImpl = null;
+    
+    // file where the board is persisted (see MappedBoard), or null to keep it in memory only
+    private static File boardFile = null;
+    
+    // time between two forces of the persisted board, in milliseconds
+    private static long forceInterval = DEFAULT_FORCE_INTERVAL;
+    
+    // square {x, y} of the first dig of a random board generated without guesses, or null
+    private static int[] noGuess = null;
+
+    // true to place the bombs of a random board on its first dig, away from it
+    private static boolean lazyMines = false;
 
     // rep invariant:
     //    none.
@@ -63,6 +163,10 @@ public class MinesweeperServer {
     MinesweeperServer() throws IOException {
         serverSocket = new ServerSocket(DEFAULT_PORT);
         this.debug = false;
+        this.frames = new FrameCache(board);
+        this.broadcaster = new BoardBroadcaster(board, frames, pushInterval);
+        registerGauges();
+        watchBoard();
     }
     /**
      * Make a MinesweeperServer that listens for connections on port.
@@ -74,12 +178,38 @@ public class MinesweeperServer {
     public MinesweeperServer(int port, boolean debug) throws IOException {
         serverSocket = new ServerSocket(port);
         this.debug = debug;
+        this.frames = new FrameCache(board);
+        this.broadcaster = new BoardBroadcaster(board, frames, pushInterval);
+        registerGauges();
+        watchBoard();
+    }
+
+    /*
+     * register the gauges of this server in Metrics.
+     */
+    private void registerGauges() {
+        Metrics.gauge("minesweeper_clients", "Clients currently connected.", sessions::size);
+        Metrics.gauge("minesweeper_subscribers", "Clients currently subscribed to the board.", broadcaster::getSubscribers);
+        Metrics.gauge("minesweeper_board_version", "Version of the board.", frames::getVersion);
+        Metrics.gauge("minesweeper_log_dropped", "Log entries dropped since start.", Log::getDropped);
+        Metrics.board(board.getMonitor());
+    }
+
+    /*
+     * log the board operations holding the board's lock longer than lockThreshold.
+     */
+    private static void watchBoard() {
+        board.getMonitor().setWatchdog(TimeUnit.MILLISECONDS.toNanos(lockThreshold),
+                (op, x, y, cascade, heldNanos) -> Log.warn("board lock held %.3f ms by %s x=%d y=%d cascade=%d",
+                                                           heldNanos / 1e6, op, x, y, cascade));
     }
 
     /**
      * Run the server, listening for client connections and run a separate thread handling
      * each new client connection.
-     * Server keeps listening on the server socket and never returns unless an exception is thrown.
+     * Server keeps listening on the server socket and never returns unless an exception is thrown,
+     * or the server socket is closed; the clients still connected are disconnected then, and their
+     * threads ended (for a short while at most) before it returns.
      * 
      * @throws IOException if the main server socket is broken
      *                     (IOExceptions from individual clients do *not* terminate serve())
@@ -99,20 +229,41 @@ public class MinesweeperServer {
             }
             
             public void run() {
+                // registering here rather than in the accept loop keeps accept() unblocked
+                Session session = openSession(socket, Session::new);
                 try {
-                    numPlayers++;
-                    System.out.println("client run starting, numPlayers="+numPlayers); //debug
-                    handleConnection(socket);
-                    numPlayers--;
-                    System.out.println("client run ending, numPlayers="+numPlayers); //debug
+                    Log.debug("client run starting, session=%s, numPlayers=%d", session, sessions.size());
+                    handleConnection(session);
                 } catch (IOException ioe) {
-                    ioe.printStackTrace(); // but don't terminate serve()
+                    Log.warn("client connection failed: %s", ioe, ioe); // but don't terminate serve()
+                } finally {
+                    closeSession(session);
+                    Log.debug("client run ending, session=%s, numPlayers=%d", session, sessions.size());
                 }
             }
         }
         
         Socket socket=null;
         
+        broadcaster.start();
+        
+        // browser clients play on the same board, through their own ports
+        WebSocketGateway webSocket = null;
+        HttpGateway http = null;
+        if (webSocketPort >= 0) {
+            webSocket = new WebSocketGateway(this, webSocketPort);
+            webSocket.start();
+        }
+        if (httpPort >= 0) {
+            http = new HttpGateway(frames, httpPort, webSocket.getPort());
+            http.start();
+        }
+        MetricsEndpoint metrics = null;
+        if (metricsPort >= 0) {
+            metrics = new MetricsEndpoint(metricsPort);
+            metrics.start();
+        }
+        
         // Server keeps listening on the server socket and never returns unless an exception is thrown.
         while (!Thread.interrupted()) {
             try {
@@ -124,14 +275,31 @@ public class MinesweeperServer {
                 t.start();
                 
             } catch (SocketException e) {
-                System.out.println("Server socket closed: " + e);
+                Log.info("Server socket closed: %s", e.getMessage());
                 break;
             } catch (IOException e) {
-                System.out.println("Error on accepting socket: " + e);
+                Log.error("Error on accepting socket: %s", e, e);
                 break;
             }
         }
-        System.out.println("Server shutting down, thread:"+Thread.currentThread().getName()); //debug
+        if (metrics != null)
+            metrics.stop();
+        if (http != null)
+            http.stop();
+        if (webSocket != null)
+            webSocket.stop();
+        broadcaster.stop();
+        
+        // the clients still connected (TCP and WebSocket) are disconnected, and their threads
+        // are done with the board when they have unregistered
+        sessions.close();
+        try {
+            if (!sessions.awaitEmpty(CLIENTS_TIMEOUT))
+                Log.warn("%d clients still connected after %d ms", sessions.size(), CLIENTS_TIMEOUT);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+        Log.info("Server shutting down, thread:%s", Thread.currentThread().getName());
     }
     
     /**
@@ -139,77 +307,374 @@ public class MinesweeperServer {
      * This is the main method to process the request from each client, and
      * it must be thread-safe!
      * 
-     * @param socket socket where the client is connected
+     * Clients may pipeline requests: all the requests already received are handled in a row,
+     * and their replies are queued as a single batch (in order) once no more whole request is
+     * buffered, so the whole batch goes out with one socket write.
+     * 
+     * A client whose first byte is BinaryProtocol.MAGIC speaks the binary protocol from then on,
+     * see handleBinaryConnection.
+     * 
+     * @param session session of the client, connected over session.getSocket()
      * @throws IOException if the connection encounters an error or terminates unexpectedly
      * 
      * Thread safety argument:
      *   its call to handleRequest handles all accesses to board which happen within Board's methods,
      *   which are all guarded by Board's lock.
+     *   all writes to the client go through the session's outbound queue, which is shared
+     *   with the broadcaster and is thread safe.
      */
-    private void handleConnection(Socket socket) throws IOException {
-        BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-        PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
+    private void handleConnection(Session session) throws IOException {
+        Socket socket = session.getSocket();
+        BufferedInputStream input = new BufferedInputStream(socket.getInputStream());
+        ConnectionEvent event = new ConnectionEvent();
+        event.begin();
+        String protocol = "text";
         
         //System.out.println("Server client socket="+socket.toString()); //debug
 
         // send a HELLO message to the client right after the connection is set up
-        System.out.println("Hello msg to client:"+buildMessage(MessageType.HELLO)); // debug
-        out.println(buildMessage(MessageType.HELLO));
+        byte[] hello = hello(session);
+        Log.trace("Hello msg to client:%s", new String(hello, StandardCharsets.UTF_8));
+        session.send(hello);
 
+        // replies to the requests of the current read cycle, not sent yet
+        ReplyBatch batch = new ReplyBatch();
+        
         try {
+            // peek at the first byte to pick the protocol
+            input.mark(1);
+            if (input.read() == BinaryProtocol.MAGIC) {
+                protocol = "binary";
+                handleBinaryConnection(session, input);
+                return;
+            }
+            input.reset();
+            LineReader in = new LineReader(input);
+            
             // keep processing the requests from the client until no more input (Ctrl-C)
             //
             for (String line = in.readLine(); line != null; line = in.readLine()) {
-                String output = handleRequest(line);
+                boolean last = false;
+                long start = System.nanoTime();
+                session.commandReceived(line.length() + 1);
+                byte[] output = handleRequest(line, session);
                 
                 if (output != null) {
                     // TODO: Consider improving spec of handleRequest to avoid use of null
-                    System.out.println("result sent to client:\n"+output); // debug
+                    // the full result (possibly a whole board) is only logged at TRACE level
+                    if (Log.isEnabled(Log.Level.TRACE)) {
+                        Log.trace("result sent to client:%n%s", new String(output, StandardCharsets.UTF_8));
+                    }
                     
-                    out.println(output);
+                    batch.add(output);
+                    Log.access(session, line, System.nanoTime() - start);
                     // either a "bye" from client or a bomb was dug during a "dig",
                     // we disconnect.
-                    if (output.equals(DISCONNECT_MSG))
-                        break;
-                    if (output.equals(BOOM_MSG) && !debug)
-                        break;
+                    last = endsConnection(output);
+                }
+                
+                // end of the read cycle: send the replies to all the requests handled so far,
+                // before reading a line which isn't all there yet
+                if (last || batch.size() >= MAX_BATCH || !in.hasLine()) {
+                    batch.sendTo(session);
                 }
+                if (last)
+                    break;
             }
         } finally {
             // some cleanups before we finish this client thread!
-            out.close();
-            in.close();
-            socket.close();
+            // (the replies still queued are written before the socket is closed)
+            session.close();
+            input.close();
+            event.commit(session, protocol);
         }
     }
 
+    /**
+     * Handle the binary protocol requests of a client, see BinaryProtocol. Returns when the
+     * client disconnects. Replies are batched as in the text protocol, and the replies to the
+     * requests of a BATCH always go out together.
+     * 
+     * @param session session of the client, connected over session.getSocket()
+     * @param in the input from the client, following the MAGIC byte
+     * @throws IOException if the connection encounters an error, terminates unexpectedly, or
+     *                     the client breaks the protocol
+     */
+    private void handleBinaryConnection(Session session, InputStream in) throws IOException {
+        ReplyBatch batch = new ReplyBatch();
+        
+        for (Request request = BinaryProtocol.readRequest(in); request != null; request = BinaryProtocol.readRequest(in)) {
+            boolean last = false;
+            if (request.opcode == BinaryProtocol.BATCH) {
+                session.commandReceived(request.size);
+                for (int i = 0; i < request.count && !last; i++) {
+                    Request batched = BinaryProtocol.readRequest(in);
+                    if (batched == null)
+                        throw new EOFException("stream ended in the middle of a batch");
+                    if (batched.opcode == BinaryProtocol.BATCH)
+                        throw new IOException("nested batch from " + session);
+                    last = handleBinaryRequest(batched, session, batch);
+                }
+            } else {
+                last = handleBinaryRequest(request, session, batch);
+            }
+            
+            // end of the read cycle: send the replies to all the requests handled so far
+            if (last || batch.size() >= MAX_BATCH || in.available() == 0) {
+                batch.sendTo(session);
+            }
+            if (last)
+                break;
+        }
+    }
+    
+    /**
+     * Handle one binary protocol request, adding its reply to batch.
+     * 
+     * @return true if the connection must end after this request
+     */
+    private boolean handleBinaryRequest(Request request, Session session, ReplyBatch batch) {
+        long start = System.nanoTime();
+        session.commandReceived(request.size);
+        
+        byte[] output;
+        switch (request.opcode) {
+        case BinaryProtocol.LOOK:
+            Metrics.command(Metrics.Command.LOOK);
+            output = frames.packedFrame();
+            break;
+        case BinaryProtocol.DIG:
+            Metrics.command(Metrics.Command.DIG);
+            output = (dig(request.x, request.y) == Board.BOMB) ? BINARY_BOOM_BYTES : frames.packedFrame();
+            break;
+        case BinaryProtocol.FLAG:
+            Metrics.command(Metrics.Command.FLAG);
+            board.flag(request.x, request.y);
+            output = frames.packedFrame();
+            break;
+        case BinaryProtocol.DEFLAG:
+            Metrics.command(Metrics.Command.DEFLAG);
+            board.deflag(request.x, request.y);
+            output = frames.packedFrame();
+            break;
+        case BinaryProtocol.BYE:
+            Metrics.command(Metrics.Command.BYE);
+            output = BINARY_BYE_BYTES;
+            break;
+        case BinaryProtocol.HELP:
+            Metrics.command(Metrics.Command.HELP);
+            output = BINARY_HELP_BYTES;
+            break;
+        default:
+            Metrics.command(Metrics.Command.INVALID);
+            output = BINARY_HELP_BYTES;
+            break;
+        }
+        Log.debug("handle binary request %s", request);
+        batch.add(output);
+        Log.access(session, request.toString(), System.nanoTime() - start);
+        
+        return (output == BINARY_BYE_BYTES) || (output == BINARY_BOOM_BYTES && !debug)
+               || !BinaryProtocol.isRequest(request.opcode);
+    }
+
+    /**
+     * Register the session of a newly connected client.
+     * 
+     * @param socket the socket connected to the client
+     * @param factory creates the session, see SessionRegistry
+     * @return the new session
+     */
+    Session openSession(Socket socket, SessionRegistry.SessionFactory factory) {
+        Metrics.connection();
+        return sessions.register(socket, factory);
+    }
+    
+    /**
+     * Forget the session of a client whose connection ended.
+     * 
+     * @param session session of the client
+     */
+    void closeSession(Session session) {
+        broadcaster.unsubscribe(session);
+        sessions.unregister(session);
+    }
+    
+    /**
+     * Build the HELLO message sent to a client right after it connected.
+     * 
+     * @param session session of the client
+     * @return the encoded message
+     */
+    byte[] hello(Session session) {
+        return buildMessage(MessageType.HELLO, session);
+    }
+    
+    /**
+     * Tell if the connection of a client must end after a reply: either a "bye" from
+     * the client, or a bomb was dug (when not in debug mode).
+     * 
+     * @param output reply returned by handleRequest
+     * @return true if the client must be disconnected once the reply is sent
+     */
+    boolean endsConnection(byte[] output) {
+        return (output == DISCONNECT_BYTES) || (output == BOOM_BYTES && !debug);
+    }
+
+    /*
+     * ReplyBatch collects the encoded replies of one read cycle, in order.
+     */
+    private static class ReplyBatch {
+        // the only reply of the batch (shared, not copied), or null
+        private byte[] single;
+        // the replies of the batch when there's more than one
+        private final ByteArrayOutputStream many = new ByteArrayOutputStream();
+        
+        void add(byte[] reply) {
+            if (single == null && many.size() == 0) {
+                single = reply;
+                return;
+            }
+            if (single != null) {
+                many.write(single, 0, single.length);
+                single = null;
+            }
+            many.write(reply, 0, reply.length);
+        }
+        
+        int size() {
+            return (single != null) ? single.length : many.size();
+        }
+        
+        void sendTo(Session session) throws IOException {
+            if (single != null) {
+                session.send(single);
+                single = null;
+            } else if (many.size() > 0) {
+                session.send(many.toByteArray());
+                many.reset();
+            }
+        }
+    }
+
+    /**
+     * Encode a message into the bytes to be sent to the client, terminated by a line separator.
+     * 
+     * @param message message to client
+     * @return the encoded message
+     */
+    private static byte[] encode(String message) {
+        return (message + System.lineSeparator()).getBytes(StandardCharsets.UTF_8);
+    }
+
     /**
      * Handler for client input, performing requested operations and returning an output message.
      * 
      * @param input message from client
-     * @return message to client, or DISCONNECT_MSG if client wants to disconnect
+     * @param session session of the client who sent the message
+     * @return encoded message to client, or DISCONNECT_BYTES if client wants to disconnect
      */
-    private String handleRequest(String input) {
-        String regex = "(look)|(help)|(bye)|"
+    byte[] handleRequest(String input, Session session) {
+        String regex = "(look)|(look if-changed-since \\d{1,18})|(help)|(bye)|(who)|(metrics)|(subscribe)|(unsubscribe)|"
+                     + "(hint)|(prob \\d{1,9} \\d{1,9} \\d{1,9} \\d{1,9})|(encoding (plain|rle))|"
                      + "(dig -?\\d+ -?\\d+)|(flag -?\\d+ -?\\d+)|(deflag -?\\d+ -?\\d+)";
         if ( ! input.matches(regex)) {
             // invalid input - send a help message to client!
-            System.out.println("invalid input:"+input); //debug
-            return buildMessage(MessageType.HELP);
+            Log.debug("invalid input:%s", input);
+            Metrics.command(Metrics.Command.INVALID);
+            return buildMessage(MessageType.HELP, session);
         }
         String[] tokens = input.split(" ");
-        if (tokens[0].equals("look")) {
+        if (tokens[0].equals("look") && tokens.length == 3) {
+            // 'look if-changed-since VERSION' request - send what changed since VERSION,
+            // in the cheapest form (see FrameCache)
+            long since = Long.parseLong(tokens[2]);
+            Log.debug("handle LOOK request, since=%d", since);
+            Metrics.command(Metrics.Command.LOOK);
+            return frames.lookSince(since, session.getEncoding());
+        } else if (tokens[0].equals("look")) {
             // 'look' request - send a representation of the board's current state
-            System.out.println("handle LOOK request"); //debug
-            return buildMessage(MessageType.BOARD);
+            Log.debug("handle LOOK request");
+            Metrics.command(Metrics.Command.LOOK);
+            return buildMessage(MessageType.BOARD, session);
         } else if (tokens[0].equals("help")) {
             // 'help' request - send a help message
-            System.out.println("handle HELP request"); //debug
-            return buildMessage(MessageType.HELP);
+            Log.debug("handle HELP request");
+            Metrics.command(Metrics.Command.HELP);
+            return buildMessage(MessageType.HELP, session);
+        } else if (tokens[0].equals("who")) {
+            // 'who' request - admin listing of the connected clients
+            Log.debug("handle WHO request");
+            Metrics.command(Metrics.Command.WHO);
+            return buildMessage(MessageType.WHO, session);
+        } else if (tokens[0].equals("metrics")) {
+            // 'metrics' request - admin dump of the server metrics, in Prometheus text format
+            Log.debug("handle METRICS request");
+            Metrics.command(Metrics.Command.METRICS);
+            return buildMessage(MessageType.METRICS, session);
+        } else if (tokens[0].equals("subscribe")) {
+            // 'subscribe' request - push the board to the client whenever it changes
+            Log.debug("handle SUBSCRIBE request");
+            Metrics.command(Metrics.Command.SUBSCRIBE);
+            broadcaster.subscribe(session);
+            return buildMessage(MessageType.SUBSCRIBED, session);
+        } else if (tokens[0].equals("unsubscribe")) {
+            // 'unsubscribe' request - stop pushing the board to the client
+            Log.debug("handle UNSUBSCRIBE request");
+            Metrics.command(Metrics.Command.UNSUBSCRIBE);
+            broadcaster.unsubscribe(session);
+            return buildMessage(MessageType.UNSUBSCRIBED, session);
+        } else if (tokens[0].equals("encoding")) {
+            // 'encoding ENC' request - encode the boards sent to the client with ENC from now on,
+            // clients negotiate it right after connecting
+            Log.debug("handle ENCODING request, encoding=%s", tokens[1]);
+            Metrics.command(Metrics.Command.ENCODING);
+            session.setEncoding(Encoding.valueOf(tokens[1].toUpperCase(Locale.ROOT)));
+            return buildMessage(MessageType.ENCODING, session);
+        } else if (tokens[0].equals("hint")) {
+            // 'hint' request - send a square proven safe or proven to hold a bomb, from the
+            // squares dug (see HintSolver)
+            Log.debug("handle HINT request");
+            Metrics.command(Metrics.Command.HINT);
+            int[] hint = (hints == null) ? null : hints.hint();
+            if (hint == null) {
+                return encode(NO_HINT_MSG);
+            }
+            return encode(String.format(HINT_MSG, (hint[2] == HintSolver.MINE) ? "mine" : "safe", hint[0], hint[1]));
+        } else if (tokens[0].equals("prob")) {
+            // 'prob x y w h' request - send the probabilities that the squares of the window hold
+            // a bomb (see ProbabilityEngine), row by row, '.' for the dug squares. The window is
+            // clipped to the board, and to MAX_PROB_WINDOW x MAX_PROB_WINDOW squares.
+            int x = Integer.parseInt(tokens[1]);
+            int y = Integer.parseInt(tokens[2]);
+            int w = Math.min(Math.min(Integer.parseInt(tokens[3]), MAX_PROB_WINDOW), board.getBoardSizeX() - x);
+            int h = Math.min(Math.min(Integer.parseInt(tokens[4]), MAX_PROB_WINDOW), board.getBoardSizeY() - y);
+            Log.debug("handle PROB request, x=%d, y=%d, w=%d, h=%d", x, y, w, h);
+            Metrics.command(Metrics.Command.PROB);
+            if (probabilities == null || w <= 0 || h <= 0) {
+                return encode(NO_PROB_MSG);
+            }
+            double[][] window = probabilities.probabilities(x, y, w, h);
+            if (window == null) {
+                // the bombs are placed by the first dig
+                return encode(NO_PROB_MSG);
+            }
+            StringBuilder rows = new StringBuilder();
+            for (int j = 0; j < h; j++) {
+                if (j > 0)
+                    rows.append(System.lineSeparator());
+                for (int i = 0; i < w; i++) {
+                    if (i > 0)
+                        rows.append(' ');
+                    rows.append(Double.isNaN(window[i][j]) ? "." : String.format(Locale.ROOT, "%.3f", window[i][j]));
+                }
+            }
+            return encode(rows.toString());
         } else if (tokens[0].equals("bye")) {
             // 'bye' request - disconnect the client
-            System.out.println("handle BYE request"); //debug
-            return buildMessage(MessageType.DISCONNECT);
+            Log.debug("handle BYE request");
+            Metrics.command(Metrics.Command.BYE);
+            return buildMessage(MessageType.DISCONNECT, session);
         } else {
             int x = Integer.parseInt(tokens[1]);
             int y = Integer.parseInt(tokens[2]);
@@ -218,53 +683,88 @@ public class MinesweeperServer {
                 // if a bomb is dug, return a 'boom' msg and disconnect (if debug flag is missing
                 //   otherwise keep the connection).
                 // if no bomb was dug, return the new board state
-                System.out.println("handle DIG request, x="+x+", y="+y); //debug
-                if (board.dig(x, y) == Board.BOMB) {
-                    return buildMessage(MessageType.BOOM);
+                Log.debug("handle DIG request, x=%d, y=%d", x, y);
+                Metrics.command(Metrics.Command.DIG);
+                if (dig(x, y) == Board.BOMB) {
+                    return buildMessage(MessageType.BOOM, session);
                 } else {
-                    return buildMessage(MessageType.BOARD);
+                    return buildMessage(MessageType.BOARD, session);
                 }
             } else if (tokens[0].equals("flag")) {
                 // 'flag x y' request
-                System.out.println("handle FLAG request, x="+x+", y="+y); //debug
+                Log.debug("handle FLAG request, x=%d, y=%d", x, y);
+                Metrics.command(Metrics.Command.FLAG);
                 board.flag(x, y);
-                return buildMessage(MessageType.BOARD);
+                return buildMessage(MessageType.BOARD, session);
             } else if (tokens[0].equals("deflag")) {
                 // 'deflag x y' request
-                System.out.println("handle DEFLAG request, x="+x+", y="+y); //debug
+                Log.debug("handle DEFLAG request, x=%d, y=%d", x, y);
+                Metrics.command(Metrics.Command.DEFLAG);
                 board.deflag(x, y);
-                return buildMessage(MessageType.BOARD);
+                return buildMessage(MessageType.BOARD, session);
             }
         }
         // TODO: Should never get here, make sure to return in each of the cases above
         throw new UnsupportedOperationException();
     }
     
+    /**
+     * Dig the square (x,y) of the board, counting the bombs dug in Metrics (the board's
+     * monitor records the lock times and the cascade).
+     * 
+     * @return the result of board.dig(x, y)
+     */
+    private int dig(int x, int y) {
+        int result = board.dig(x, y);
+        if (result == Board.BOMB) {
+            Metrics.boom();
+        }
+        return result;
+    }
+    
     /**
      * Build a server message according to the message type passed in.
      * 
      * @param msgType - message type based to build a message string
-     * @return message string, or null if none
+     * @param session - session of the client the message is built for
+     * @return encoded message, or null if none. Constant messages and board frames are
+     *         shared, so the array returned must not be modified.
      */
-    private String buildMessage (MessageType msgType) {
+    private byte[] buildMessage (MessageType msgType, Session session) {
         switch (msgType) {
         // HELLO, BOARD, BOOM, DISCONNECT, HELP
         case BOARD:
-            return board.draw();
+            return frames.boardFrame(session.getEncoding());
             
         case HELP:
-            return HELP_MSG;
+            return HELP_BYTES;
             
         case HELLO:
             int x = board.getBoardSizeX(), y = board.getBoardSizeY();
 
-            return String.format(HELLO_MSG, numPlayers, x, y);
+            return encode(String.format(HELLO_MSG, sessions.size(), x, y));
+            
+        case WHO:
+            return encode(sessions.who());
+            
+        case METRICS:
+            // the exposition format ends with a new line already
+            return Metrics.prometheus().getBytes(StandardCharsets.UTF_8);
+            
+        case SUBSCRIBED:
+            return SUBSCRIBED_BYTES;
+            
+        case UNSUBSCRIBED:
+            return UNSUBSCRIBED_BYTES;
+            
+        case ENCODING:
+            return encode(String.format(ENCODING_MSG, session.getEncoding().name().toLowerCase(Locale.ROOT)));
     
         case BOOM:
-            return BOOM_MSG;
+            return BOOM_BYTES;
             
         case DISCONNECT:
-            return DISCONNECT_MSG;
+            return DISCONNECT_BYTES;
             
         default:
             return null;
@@ -276,6 +776,14 @@ public class MinesweeperServer {
      * 
      * <br> Usage:
      *      MinesweeperServer [--debug | --no-debug] [--port PORT] [--size SIZE_X,SIZE_Y | --file FILE]
+     *                        [--log-level LEVEL] [--access-sample N] [--push-interval MS]
+     *                        [--outbound-queue FRAMES] [--slow-client-policy drop | disconnect]
+     *                        [--http-port HTTP_PORT] [--ws-port WS_PORT] [--metrics-port METRICS_PORT]
+     *                        [--lock-threshold LOCK_MS] [--cascade-slice SQUARES]
+     *                        [--cascade-engine scalar | bitboard | regions]
+     *                        [--board-impl dense | packed | chunked | off-heap]
+     *                        [--board-file BOARD_FILE [--force-interval FORCE_MS]] [--no-guess X,Y]
+     *                        [--lazy-mines]
      * 
      * <br> The --debug argument means the server should run in debug mode. The server should disconnect a
      *      client after a BOOM message if and only if the --debug flag was NOT given.
@@ -311,6 +819,53 @@ public class MinesweeperServer {
      * 
      * <br> If neither --file nor --size is given, generate a random board of size 10x10.
      * 
+     * <br> LEVEL is an optional argument, one of TRACE, DEBUG, INFO, WARN, ERROR or OFF (default INFO),
+     *      specifying the minimum level of the server log. Boards sent to clients are only logged at TRACE.
+     * <br> N is an optional positive integer (default 100), specifying that one request out of every N
+     *      is written to the access log (at INFO level).
+     * <br> MS is an optional positive integer (default 100), specifying the minimum time in milliseconds
+     *      between two pushes of the board to the clients who sent "subscribe". Changes made in between
+     *      are coalesced into a single pushed frame.
+     * <br> FRAMES is an optional positive integer (default 64), specifying how many frames may be waiting
+     *      to be sent to a client. A pushed board replaces the older pushed frames not sent yet.
+     * <br> --slow-client-policy specifies what to do when a frame is pushed to a client whose queue is
+     *      full: "drop" the frame (the default) or "disconnect" the client.
+     * <br> HTTP_PORT and WS_PORT are optional integers in the range 0 to 65535 inclusive, specifying the
+     *      ports where browsers are served the game page (HTTP) and play through WebSocket connections,
+     *      on the same board as the TCP clients. If only HTTP_PORT is given, a free WS_PORT is picked.
+     * <br> METRICS_PORT is an optional integer in the range 0 to 65535 inclusive, specifying the port
+     *      where the server metrics are served to Prometheus (GET /metrics), on the loopback interface
+     *      only. The same metrics are also returned by the "metrics" command on the game port.
+     * <br> LOCK_MS is an optional non-negative integer (default 50), specifying that every board operation
+     *      holding the board's lock longer than LOCK_MS milliseconds is logged (at WARN level), with its
+     *      coordinates and the size of its cascade.
+     * <br> SQUARES is an optional non-negative integer (default 0), specifying that cascades reveal at most
+     *      about SQUARES squares each time they hold the board's lock, letting the other clients play in
+     *      between. 0 reveals each cascade at once.
+     * <br> --cascade-engine specifies how cascades are revealed: "scalar", square by square (the default),
+     *      "bitboard", 64 squares at a time on bit planes of the board, or "regions", region by region from
+     *      the regions of squares with no bomb around, labelled when the server starts. All reveal the
+     *      same squares.
+     * <br> --board-impl specifies how the board is kept in memory: "dense", 2D arrays on the heap (the only
+     *      implementation with the "bitboard" and "regions" cascade engines), "packed", bit-packed arrays
+     *      on the heap, "chunked", tiles on the heap allocated as the game reaches them, or "off-heap", in
+     *      direct memory. By default it's chosen from the size of the board and the density of its bombs
+     *      (see BoardFactory), and is "dense" with the "bitboard" and "regions" cascade engines.
+     * <br> BOARD_FILE is an optional argument specifying a file where the board is persisted as it's played
+     *      (a memory-mapped MappedBoard). If BOARD_FILE exists, the game it holds resumes, and --file and
+     *      --size are ignored; otherwise BOARD_FILE is created with the board they specify. The board
+     *      is made consistent in BOARD_FILE every FORCE_MS milliseconds (an optional positive integer,
+     *      default 1000) and when the server stops; the moves made since may be lost by a crash.
+     *      Only the "scalar" cascade engine is available with a BOARD_FILE.
+     * <br> X and Y are optional non-negative integers, specifying that the random board is generated so that
+     *      it can be played without guessing from a dig of the square (X,Y), which the server digs before
+     *      the first client connects (see NoGuessGenerator). Its bombs have the density of the expert boards
+     *      (about 0.21), and it's a "dense" board. Not available with --file or --board-file.
+     * <br> --lazy-mines specifies that the bombs of the random board are placed in the background while the
+     *      server starts accepting connections, and taken off the square of the first dig and the squares
+     *      around it, so that the first dig is safe and starts a cascade. The board has no bomb until then.
+     *      Not available with --file, --board-file or --no-guess.
+     * 
      * <br> Note that --file and --size may not be specified simultaneously.
      * 
      * @param args arguments as described
@@ -322,6 +877,24 @@ public class MinesweeperServer {
         int sizeX = DEFAULT_SIZE;
         int sizeY = DEFAULT_SIZE;
         Optional<File> file = Optional.empty();
+        // the options not given take their default values, even if a previous run in this JVM
+        // was given them (the gateways are only served when asked for)
+        Log.setLevel(Log.DEFAULT_LEVEL);
+        Log.setAccessSample(Log.DEFAULT_ACCESS_SAMPLE);
+        pushInterval = BoardBroadcaster.DEFAULT_INTERVAL;
+        queueCapacity = OutboundQueue.DEFAULT_CAPACITY;
+        overflowPolicy = OverflowPolicy.DROP;
+        httpPort = -1;
+        webSocketPort = -1;
+        metricsPort = -1;
+        lockThreshold = DEFAULT_LOCK_THRESHOLD;
+        cascadeSlice = 0;
+        cascadeEngine = Board.CascadeEngine.SCALAR;
+        boardImpl = null;
+        boardFile = null;
+        forceInterval = DEFAULT_FORCE_INTERVAL;
+        noGuess = null;
+        lazyMines = false;
 
         Queue<String> arguments = new LinkedList<String>(Arrays.asList(args));
         try {
@@ -354,6 +927,86 @@ public class MinesweeperServer {
                             throw new IllegalArgumentException("file not found: \"" + file.get() + "\"");
                         }
                         //System.out.println("file name:"+file.get().getAbsolutePath()); //debug
+                    } else if (flag.equals("--log-level")) {
+                        String level = arguments.remove();
+                        try {
+                            Log.setLevel(Log.Level.valueOf(level.toUpperCase(Locale.ROOT)));
+                        } catch (IllegalArgumentException iae) {
+                            throw new IllegalArgumentException("unknown log level: \"" + level + "\"");
+                        }
+                    } else if (flag.equals("--access-sample")) {
+                        Log.setAccessSample(Integer.parseInt(arguments.remove()));
+                    } else if (flag.equals("--outbound-queue")) {
+                        queueCapacity = Integer.parseInt(arguments.remove());
+                        if (queueCapacity <= 0) {
+                            throw new IllegalArgumentException("outbound queue " + queueCapacity + " must be > 0");
+                        }
+                    } else if (flag.equals("--slow-client-policy")) {
+                        String policy = arguments.remove();
+                        try {
+                            overflowPolicy = OverflowPolicy.valueOf(policy.toUpperCase(Locale.ROOT));
+                        } catch (IllegalArgumentException iae) {
+                            throw new IllegalArgumentException("unknown slow client policy: \"" + policy + "\"");
+                        }
+                    } else if (flag.equals("--http-port")) {
+                        httpPort = Integer.parseInt(arguments.remove());
+                        if (httpPort < 0 || httpPort > MAXIMUM_PORT) {
+                            throw new IllegalArgumentException("port " + httpPort + " out of range");
+                        }
+                        if (webSocketPort < 0) {
+                            webSocketPort = 0;
+                        }
+                    } else if (flag.equals("--ws-port")) {
+                        webSocketPort = Integer.parseInt(arguments.remove());
+                        if (webSocketPort < 0 || webSocketPort > MAXIMUM_PORT) {
+                            throw new IllegalArgumentException("port " + webSocketPort + " out of range");
+                        }
+                    } else if (flag.equals("--metrics-port")) {
+                        metricsPort = Integer.parseInt(arguments.remove());
+                        if (metricsPort < 0 || metricsPort > MAXIMUM_PORT) {
+                            throw new IllegalArgumentException("port " + metricsPort + " out of range");
+                        }
+                    } else if (flag.equals("--lock-threshold")) {
+                        lockThreshold = Long.parseLong(arguments.remove());
+                        if (lockThreshold < 0) {
+                            throw new IllegalArgumentException("lock threshold " + lockThreshold + " must be >= 0");
+                        }
+                    } else if (flag.equals("--cascade-slice")) {
+                        cascadeSlice = Integer.parseInt(arguments.remove());
+                        if (cascadeSlice < 0) {
+                            throw new IllegalArgumentException("cascade slice " + cascadeSlice + " must be >= 0");
+                        }
+                    } else if (flag.equals("--cascade-engine")) {
+                        String engine = arguments.remove();
+                        try {
+                            cascadeEngine = Board.CascadeEngine.valueOf(engine.toUpperCase(Locale.ROOT));
+                        } catch (IllegalArgumentException iae) {
+                            throw new IllegalArgumentException("unknown cascade engine: \"" + engine + "\"");
+                        }
+                    } else if (flag.equals("--board-impl")) {
+                        String impl = arguments.remove();
+                        try {
+                            boardImpl = BoardFactory.Implementation.valueOf(impl.toUpperCase(Locale.ROOT).replace('-', '_'));
+                        } catch (IllegalArgumentException iae) {
+                            throw new IllegalArgumentException("unknown board implementation: \"" + impl + "\"");
+                        }
+                    } else if (flag.equals("--board-file")) {
+                        boardFile = new File(arguments.remove());
+                    } else if (flag.equals("--force-interval")) {
+                        forceInterval = Long.parseLong(arguments.remove());
+                        if (forceInterval <= 0) {
+                            throw new IllegalArgumentException("force interval " + forceInterval + " must be > 0");
+                        }
+                    } else if (flag.equals("--no-guess")) {
+                        String[] square = arguments.remove().split(",");
+                        noGuess = new int[] {Integer.parseInt(square[0]), Integer.parseInt(square[1])};
+                    } else if (flag.equals("--lazy-mines")) {
+                        lazyMines = true;
+                    } else if (flag.equals("--push-interval")) {
+                        pushInterval = Long.parseLong(arguments.remove());
+                        if (pushInterval <= 0) {
+                            throw new IllegalArgumentException("push interval " + pushInterval + " must be > 0");
+                        }
                     } else {
                         throw new IllegalArgumentException("unknown option: \"" + flag + "\"");
                     }
@@ -363,9 +1016,41 @@ public class MinesweeperServer {
                     throw new IllegalArgumentException("unable to parse number for " + flag);
                 }
             }
+            if (boardFile != null && cascadeEngine != Board.CascadeEngine.SCALAR) {
+                throw new IllegalArgumentException("cascade engine " + cascadeEngine.name().toLowerCase(Locale.ROOT)
+                                                   + " not available with --board-file");
+            }
+            if (boardFile != null && boardImpl != null) {
+                throw new IllegalArgumentException("--board-impl not available with --board-file");
+            }
+            if (boardImpl != null && boardImpl != BoardFactory.Implementation.DENSE
+                    && cascadeEngine != Board.CascadeEngine.SCALAR) {
+                throw new IllegalArgumentException("cascade engine " + cascadeEngine.name().toLowerCase(Locale.ROOT)
+                                                   + " only available with the dense board");
+            }
+            if (noGuess != null && (file.isPresent() || boardFile != null)) {
+                throw new IllegalArgumentException("--no-guess not available with --file or --board-file");
+            }
+            if (noGuess != null && boardImpl != null && boardImpl != BoardFactory.Implementation.DENSE) {
+                throw new IllegalArgumentException("--no-guess only available with the dense board");
+            }
+            if (noGuess != null && (noGuess[0] < 0 || noGuess[0] >= sizeX || noGuess[1] < 0 || noGuess[1] >= sizeY)) {
+                throw new IllegalArgumentException("first dig (" + noGuess[0] + "," + noGuess[1] + ") not on the board");
+            }
+            if (lazyMines && (file.isPresent() || boardFile != null || noGuess != null)) {
+                throw new IllegalArgumentException("--lazy-mines not available with --file, --board-file or --no-guess");
+            }
         } catch (IllegalArgumentException iae) {
             System.err.println(iae.getMessage());
-            System.err.println("usage: MinesweeperServer [--debug | --no-debug] [--port PORT] [--size SIZE_X,SIZE_Y | --file FILE]");
+            System.err.println("usage: MinesweeperServer [--debug | --no-debug] [--port PORT] [--size SIZE_X,SIZE_Y | --file FILE]"
+                               + " [--log-level LEVEL] [--access-sample N] [--push-interval MS]"
+                               + " [--outbound-queue FRAMES] [--slow-client-policy drop | disconnect]"
+                               + " [--http-port HTTP_PORT] [--ws-port WS_PORT] [--metrics-port METRICS_PORT]"
+                               + " [--lock-threshold LOCK_MS] [--cascade-slice SQUARES]"
+                               + " [--cascade-engine scalar | bitboard | regions]"
+                               + " [--board-impl dense | packed | chunked | off-heap]"
+                               + " [--board-file BOARD_FILE [--force-interval FORCE_MS]] [--no-guess X,Y]"
+                               + " [--lazy-mines]");
             return;
         }
 
@@ -395,12 +1080,31 @@ public class MinesweeperServer {
         // if !file.isPresent() then we check if sizeX > 0 and sizeY > 0 
         //   if so, we should generate a random board with these sizes passed in.
         // 
-        if (!file.isPresent()) {
+        // only the dense board has the other cascade engines
+        BoardFactory.Implementation impl = boardImpl;
+        if (impl == null && cascadeEngine != Board.CascadeEngine.SCALAR) {
+            impl = BoardFactory.Implementation.DENSE;
+        }
+        MappedBoard mapped = null;
+        if (boardFile != null) {
+            mapped = openBoardFile(file, sizeX, sizeY);
+            board = mapped;
+        } else if (noGuess != null) {
+            // the 3x3 squares around the first dig have no bomb
+            int bombs = (int) Math.min(Math.round(NoGuessGenerator.EXPERT_DENSITY * sizeX * sizeY),
+                                       Math.max(0, (long) sizeX * sizeY - 9));
+            long start = System.nanoTime();
+            boolean[][] mines = NoGuessGenerator.generate(sizeX, sizeY, bombs, noGuess[0], noGuess[1],
+                                                          NO_GUESS_TIMEOUT, ForkJoinPool.commonPool(), System.nanoTime());
+            Log.info("Board without guesses generated in %d ms, %d safe squares left to guess",
+                     (System.nanoTime() - start) / 1000000, NoGuessGenerator.solve(mines, noGuess[0], noGuess[1]));
+            board = new DenseBoard(mines);
+        } else if (!file.isPresent()) {
             if ((sizeX > 0) && (sizeY > 0)) {
-                board = new Board(sizeX, sizeY);
+                board = BoardFactory.make(impl, sizeX, sizeY, lazyMines);
             } else {
                 // sizes are not legal, use default sizes
-                board = new Board(DEFAULT_SIZE, DEFAULT_SIZE);
+                board = BoardFactory.make(impl, DEFAULT_SIZE, DEFAULT_SIZE, lazyMines);
             }
         } else {
             // use the file to configure the board
@@ -408,25 +1112,83 @@ public class MinesweeperServer {
             final String boardPath = file.get().getAbsolutePath(); // debug
             System.out.println("runMinesweeperServer is attempting to read from file in: "+boardPath); // debug
             */
-            board = new Board(file.get());
+            board = BoardFactory.make(impl, file.get());
             // board.draw(); // debug
         }
+        Log.info("Board of %dx%d squares: %s", board.getBoardSizeX(), board.getBoardSizeY(),
+                 board.getClass().getSimpleName());
+        board.setCascadeSlice(cascadeSlice);
+        board.setCascadeEngine(cascadeEngine);
+        long squares = (long) board.getBoardSizeX() * board.getBoardSizeY();
+        hints = (squares <= HintSolver.MAX_SQUARES) ? HintSolver.attach(board) : null;
+        probabilities = (squares <= ProbabilityEngine.MAX_SQUARES) ? new ProbabilityEngine(board) : null;
+        if (noGuess != null) {
+            board.dig(noGuess[0], noGuess[1]);
+        }
         
+        // the persisted board is forced periodically
+        ScheduledExecutorService forcer = null;
+        if (mapped != null) {
+            forcer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "minesweeper-force");
+                t.setDaemon(true);
+                return t;
+            });
+            forcer.scheduleWithFixedDelay(mapped::force, forceInterval, forceInterval, TimeUnit.MILLISECONDS);
+        }
+        
+        // the board of this run: board may be another run's by the time this one ends
+        Board played = board;
         MinesweeperServer server = new MinesweeperServer(port, debug);
         server.serve();
+        if (forcer != null) {
+            forcer.shutdown();
+            try {
+                forcer.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        // the game is over, and its clients are gone (a persisted board is forced)
+        played.release();
+    }
+    
+    /*
+     * open the board persisted in boardFile, or create it from file, or with sizeX x sizeY
+     * squares, if it doesn't exist yet (see runMinesweeperServer).
+     */
+    private static MappedBoard openBoardFile(Optional<File> file, int sizeX, int sizeY) throws IOException {
+        if (boardFile.exists()) {
+            MappedBoard mapped = MappedBoard.open(boardFile);
+            Log.info("Resumed board %s at move %d%s", boardFile, mapped.getVersion(),
+                     mapped.isRecovered() ? " (recovered, the last moves may have been lost)" : "");
+            return mapped;
+        }
+        Log.info("Persisting board in %s", boardFile);
+        if (file.isPresent())
+            return MappedBoard.create(boardFile, file.get());
+        if ((sizeX > 0) && (sizeY > 0))
+            return MappedBoard.create(boardFile, sizeX, sizeY);
+        return MappedBoard.create(boardFile, DEFAULT_SIZE, DEFAULT_SIZE);
     }
     
     /*
      * stopMinesweeperServer
-     * stop this server thread and close the server socket it opened.
+     * stop this server thread and close the server socket it opened, and wait (for a short
+     * while) until the server has disconnected its clients and released its board.
      * 
      * @param thread - the server thread to be stopped.
      */
     public static void stopMinesweeperServer(Thread thread) throws IOException {
         if (thread != null) {
-            System.out.println("interrupting server thread:"+thread.getName()); //debug
+            Log.info("interrupting server thread:%s", thread.getName());
             thread.interrupt();
             serverSocket.close();
+            try {
+                thread.join(2 * CLIENTS_TIMEOUT);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
         }      
     }
 }
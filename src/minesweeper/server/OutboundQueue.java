@@ -0,0 +1,195 @@
+/* Copyright (c) 2007-2017 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package minesweeper.server;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+/**
+ * OutboundQueue is a bounded queue of encoded frames waiting to be written to one client.
+ *
+ * Frames are of three kinds:
+ *    REPLY  - the reply to a request of the client. Replies are never dropped: when the queue
+ *             is full, put() waits until the writer makes room (or the queue is closed), which
+ *             only ever blocks the client's own thread.
+ *    UPDATE - a frame pushed by the server (e.g. a change notification).
+ *    BOARD  - a pushed frame holding the whole board. A BOARD frame makes any UPDATE or BOARD
+ *             frame still waiting in the queue stale, so those are removed when it's offered.
+ *             It's always queued then, even in a queue full of replies (one frame over its
+ *             capacity), so the client is never left without the state of the board.
+ * Pushed frames never block: when the queue is full, offer() rejects the UPDATE frames and
+ * the caller applies its OverflowPolicy.
+ */
+public class OutboundQueue {
+
+    /** What to do with a client whose queue is full when a frame is pushed to it. */
+    public static enum OverflowPolicy {DROP, DISCONNECT};
+
+    /** Kinds of frames, see OutboundQueue. */
+    public static enum Kind {REPLY, UPDATE, BOARD};
+
+    /** Default capacity of a queue, in frames. */
+    public static final int DEFAULT_CAPACITY = 64;
+
+    /**
+     * Frame is an encoded message waiting in the queue.
+     */
+    public static final class Frame {
+        final Kind kind;
+        final byte[] data;
+
+        public Frame(Kind kind, byte[] data) {
+            this.kind = kind;
+            this.data = data;
+        }
+    }
+
+    private final int capacity;
+    private final ArrayDeque<Frame> frames = new ArrayDeque<>();
+    private boolean closed = false;
+    private long dropped = 0;
+    private long superseded = 0;
+
+    // rep invariant:
+    //    capacity > 0
+    //    frames.size() <= capacity, or capacity + 1 if frames holds a BOARD frame
+    //    frames holds at most one BOARD frame, and no UPDATE frame before it
+    //
+    // abstraction function:
+    //    represents the sequence of frames still to be written to the client, oldest first.
+    //    once closed, no more frames are accepted, but the ones already queued are still
+    //    handed out by take().
+    //
+    // Thread safety argument:
+    //    all fields are guarded by the queue's lock; put/take wait on it.
+
+    /**
+     * constructor
+     * @param capacity - maximum number of frames in the queue (> 0)
+     */
+    public OutboundQueue(int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("queue capacity must be > 0 (capacity = "+capacity+")");
+        this.capacity = capacity;
+    }
+
+    /**
+     * put
+     * append a REPLY frame, waiting while the queue is full.
+     * @param data - the encoded reply
+     * @return false if the queue has been closed (the frame is discarded)
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public synchronized boolean put(byte[] data) throws InterruptedException {
+        while (!closed && frames.size() >= capacity) {
+            wait();
+        }
+        if (closed)
+            return false;
+        frames.addLast(new Frame(Kind.REPLY, data));
+        notifyAll();
+        return true;
+    }
+
+    /**
+     * offer
+     * append a pushed frame (UPDATE or BOARD) without waiting. A BOARD frame first removes
+     * the stale pushed frames from the queue, and is queued even if the queue is still full.
+     * @param frame - the frame to append, frame.kind != REPLY
+     * @return true if the frame has been queued, false if the queue is closed, or full for an
+     *         UPDATE frame
+     */
+    public synchronized boolean offer(Frame frame) {
+        if (frame.kind == Kind.REPLY)
+            throw new IllegalArgumentException("replies must be put(), not offered");
+        if (closed)
+            return false;
+        if (frame.kind == Kind.BOARD) {
+            for (Iterator<Frame> it = frames.iterator(); it.hasNext(); ) {
+                if (it.next().kind != Kind.REPLY) {
+                    it.remove();
+                    superseded++;
+                }
+            }
+        }
+        if (frame.kind != Kind.BOARD && frames.size() >= capacity) {
+            dropped++;
+            return false;
+        }
+        frames.addLast(frame);
+        notifyAll();
+        return true;
+    }
+
+    /**
+     * take
+     * remove and return the oldest frame, waiting while the queue is empty.
+     * @return the oldest frame, or null if the queue is closed and empty
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public synchronized Frame take() throws InterruptedException {
+        while (!closed && frames.isEmpty()) {
+            wait();
+        }
+        Frame frame = frames.pollFirst();
+        notifyAll();
+        return frame;
+    }
+
+    /**
+     * poll
+     * remove and return the oldest frame if there's one, without waiting.
+     * @return the oldest frame, or null if the queue is empty
+     */
+    public synchronized Frame poll() {
+        Frame frame = frames.pollFirst();
+        if (frame != null) {
+            notifyAll();
+        }
+        return frame;
+    }
+
+    /**
+     * close
+     * stop accepting frames. Frames already queued can still be taken.
+     */
+    public synchronized void close() {
+        closed = true;
+        notifyAll();
+    }
+
+    /**
+     * clear
+     * close the queue and discard all the frames still queued.
+     */
+    public synchronized void clear() {
+        closed = true;
+        frames.clear();
+        notifyAll();
+    }
+
+    public synchronized int size() {
+        return frames.size();
+    }
+
+    public synchronized boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * getDropped
+     * return the number of pushed frames rejected because the queue was full.
+     */
+    public synchronized long getDropped() {
+        return dropped;
+    }
+
+    /**
+     * getSuperseded
+     * return the number of pushed frames removed because a newer BOARD frame made them stale.
+     */
+    public synchronized long getSuperseded() {
+        return superseded;
+    }
+}
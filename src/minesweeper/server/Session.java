@@ -0,0 +1,270 @@
+/* Copyright (c) 2007-2017 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package minesweeper.server;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.util.concurrent.atomic.AtomicLong;
+
+import minesweeper.server.FrameCache.Encoding;
+import minesweeper.server.OutboundQueue.Frame;
+import minesweeper.server.OutboundQueue.Kind;
+import minesweeper.server.OutboundQueue.OverflowPolicy;
+
+/**
+ * Session represents one client connection to the Minesweeper server.
+ *
+ * Everything sent to the client goes through a bounded OutboundQueue, drained by a writer
+ * thread owned by the session, so neither the client's own thread nor the broadcaster ever
+ * blocks on a slow socket.
+ *
+ * Specification fields:
+ * @specfield id : long                    // unique id of the session, assigned by SessionRegistry
+ * @specfield remoteAddress : SocketAddress // the address of the client
+ * @specfield connectTime : long           // when the client connected (System.currentTimeMillis())
+ * @specfield commands : long              // number of commands served so far
+ * @specfield bytesIn : long               // number of bytes received from the client so far
+ * @specfield bytesOut : long              // number of bytes sent to the client so far
+ */
+public class Session {
+
+    // how long close() waits for the writer to flush the queued frames, in milliseconds
+    private static final long CLOSE_TIMEOUT = 3000;
+    
+    // size of the writer's output buffer, in bytes
+    private static final int OUTPUT_BUFFER_SIZE = 64 * 1024;
+
+    private final long id;
+    private final Socket socket;
+    private final SocketAddress remoteAddress;
+    private final long connectTime;
+
+    private final AtomicLong commands = new AtomicLong();
+    private final AtomicLong bytesIn = new AtomicLong();
+    private final AtomicLong bytesOut = new AtomicLong();
+    
+    // how whole boards are encoded for this client
+    private volatile Encoding encoding = Encoding.PLAIN;
+
+    // frames waiting to be written by the writer thread
+    private final OutboundQueue outbound;
+    private final OverflowPolicy policy;
+    private final Thread writer;
+
+    // rep invariant:
+    //    id > 0, socket != null
+    //    commands, bytesIn, bytesOut >= 0
+    //
+    // abstraction function:
+    //    represents the connection of the client at remoteAddress over socket, and the
+    //    traffic it generated since connectTime.
+    //
+    // Thread safety argument:
+    //    the identity fields are final and immutable, and the counters are atomic, so
+    //    sessions can be read (e.g. by "who") while their own thread keeps updating them.
+    //    only the writer thread writes to the socket, and outbound is thread safe.
+
+    /**
+     * constructor
+     * @param id - unique id of the session
+     * @param socket - the socket connected to the client
+     * @param capacity - capacity of the outbound queue, in frames (> 0)
+     * @param policy - what to do when a pushed frame finds the outbound queue full
+     */
+    Session(long id, Socket socket, int capacity, OverflowPolicy policy) {
+        this.id = id;
+        this.socket = socket;
+        this.remoteAddress = socket.getRemoteSocketAddress();
+        this.connectTime = System.currentTimeMillis();
+        this.outbound = new OutboundQueue(capacity);
+        this.policy = policy;
+        this.writer = new Thread(this::drain, "minesweeper-writer-" + id);
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public Socket getSocket() {
+        return socket;
+    }
+
+    public SocketAddress getRemoteAddress() {
+        return remoteAddress;
+    }
+
+    public long getConnectTime() {
+        return connectTime;
+    }
+
+    public long getCommands() {
+        return commands.get();
+    }
+
+    public long getBytesIn() {
+        return bytesIn.get();
+    }
+
+    public long getBytesOut() {
+        return bytesOut.get();
+    }
+
+    /**
+     * getEncoding
+     * return how whole boards are encoded for this client.
+     */
+    public Encoding getEncoding() {
+        return encoding;
+    }
+    
+    /**
+     * setEncoding
+     * change how whole boards are encoded for this client, from the next frame on.
+     */
+    public void setEncoding(Encoding encoding) {
+        this.encoding = encoding;
+    }
+
+    /**
+     * getPending
+     * return the number of frames waiting to be written to the client.
+     */
+    public int getPending() {
+        return outbound.size();
+    }
+
+    /**
+     * getDropped
+     * return the number of pushed frames dropped because the client was too slow.
+     */
+    public long getDropped() {
+        return outbound.getDropped();
+    }
+
+    /**
+     * commandReceived
+     * account for one command of the given size (in bytes) received from the client.
+     */
+    void commandReceived(long bytes) {
+        commands.incrementAndGet();
+        bytesIn.addAndGet(bytes);
+        Metrics.bytesIn(bytes);
+    }
+
+    /**
+     * send
+     * queue a reply to the client. Replies are never dropped: if the client has too many
+     * frames waiting, this waits until the writer catches up.
+     * @param data - the encoded reply, including its line terminator(s)
+     * @throws IOException if the session has been closed, or the wait was interrupted
+     */
+    public void send(byte[] data) throws IOException {
+        try {
+            if (!outbound.put(data))
+                throw new IOException("session " + this + " is closed");
+        } catch (InterruptedException ie) {
+            throw new InterruptedIOException("interrupted while sending to " + this);
+        }
+    }
+
+    /**
+     * push
+     * queue a frame pushed by the server, without ever waiting. If the client has too many
+     * frames waiting, the frame is dropped or the client is disconnected, according to the
+     * session's OverflowPolicy.
+     * @param kind - UPDATE, or BOARD if data holds the whole board (see OutboundQueue)
+     * @param data - the encoded frame, including its line terminator(s)
+     * @return true if the frame has been queued
+     */
+    public boolean push(Kind kind, byte[] data) {
+        if (outbound.offer(new Frame(kind, data)))
+            return true;
+        if (!outbound.isClosed() && policy == OverflowPolicy.DISCONNECT) {
+            Log.info("disconnecting slow client %s (%d frames pending)", this, outbound.size());
+            abort();
+        }
+        return false;
+    }
+
+    /**
+     * pushUpdate
+     * push the current board to the client, as a subscriber of the BoardBroadcaster: the
+     * whole board in the client's encoding, which makes older pushed boards stale.
+     * @param frames - the frames of the board
+     * @return true if the frame has been queued
+     */
+    boolean pushUpdate(FrameCache frames) {
+        return push(Kind.BOARD, frames.updateFrame(encoding));
+    }
+
+    /**
+     * close
+     * stop accepting frames, wait (for a while) until the writer has written the frames
+     * already queued, and close the connection.
+     */
+    public void close() {
+        outbound.close();
+        if (Thread.currentThread() != writer) {
+            try {
+                writer.join(CLOSE_TIMEOUT);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        abort();
+    }
+
+    /**
+     * abort
+     * close the connection right away, discarding the frames still queued.
+     */
+    public void abort() {
+        outbound.clear();
+        try {
+            socket.close();
+        } catch (IOException ioe) {
+            // nothing else to do, the connection is gone anyway
+        }
+    }
+
+    /*
+     * body of the writer thread: write the queued frames until the queue is closed.
+     * All the frames already queued are written into one buffer, which is only flushed
+     * once the queue is empty, so a burst of frames costs a single socket write.
+     */
+    private void drain() {
+        try {
+            OutputStream out = new BufferedOutputStream(socket.getOutputStream(), OUTPUT_BUFFER_SIZE);
+            for (Frame frame = outbound.take(); frame != null; frame = outbound.take()) {
+                long start = System.nanoTime();
+                long written = 0;
+                do {
+                    out.write(frame.data);
+                    written += frame.data.length;
+                    frame = outbound.poll();
+                } while (frame != null);
+                out.flush();
+                bytesOut.addAndGet(written);
+                Metrics.bytesOut(written);
+                Metrics.socketWrite(System.nanoTime() - start);
+            }
+        } catch (IOException ioe) {
+            Log.debug("write to %s failed: %s", this, ioe);
+            abort();
+        } catch (InterruptedException ie) {
+            abort();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "#" + id + "@" + remoteAddress;
+    }
+}
@@ -0,0 +1,186 @@
+/* Copyright (c) 2007-2017 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package minesweeper.server;
+
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import minesweeper.server.OutboundQueue.OverflowPolicy;
+
+/**
+ * SessionRegistry keeps track of the clients currently connected to the server.
+ * 
+ * Sessions are registered by their own client thread (never by the accept loop), and
+ * unregistered when the connection ends.
+ */
+public class SessionRegistry {
+
+    /**
+     * SessionFactory creates the sessions of one kind of connection (see Session's constructor).
+     */
+    public static interface SessionFactory {
+        Session create(long id, Socket socket, int capacity, OverflowPolicy policy);
+    }
+
+    private final ConcurrentHashMap<Long, Session> sessions = new ConcurrentHashMap<>();
+    private final AtomicLong nextId = new AtomicLong(1);
+    private final AtomicInteger live = new AtomicInteger();
+    // true once the server stops, see close()
+    private volatile boolean closed = false;
+    
+    // settings of the outbound queue of each new session
+    private final int queueCapacity;
+    private final OverflowPolicy overflowPolicy;
+
+    // rep invariant:
+    //    live == sessions.size() whenever no register/unregister is in progress
+    //    every session in sessions has a distinct id < nextId
+    //
+    // abstraction function:
+    //    represents the set of sessions currently connected to the server.
+    //
+    // Thread safety argument:
+    //    sessions is a concurrent map, the counters are atomic and the queue settings are
+    //    final; live is updated right
+    //    after (register) or right before (unregister) the map, so a concurrent reader may
+    //    see it off by the number of in-flight registrations but never drifting.
+    //    closed is volatile, set before close() goes through the map and read by register()
+    //    after putting its session in the map, so each session is aborted by one or the other.
+
+    /**
+     * constructor
+     * @param queueCapacity - capacity of each session's outbound queue, in frames (> 0)
+     * @param overflowPolicy - what to do with a session whose queue is full when a frame is pushed
+     */
+    public SessionRegistry(int queueCapacity, OverflowPolicy overflowPolicy) {
+        if (queueCapacity <= 0)
+            throw new IllegalArgumentException("queue capacity must be > 0 (capacity = "+queueCapacity+")");
+        this.queueCapacity = queueCapacity;
+        this.overflowPolicy = overflowPolicy;
+    }
+    
+    /**
+     * register
+     * create and register a new session for a client connected over socket.
+     * @param socket - the socket connected to the client
+     * @return the new session
+     */
+    public Session register(Socket socket) {
+        return register(socket, Session::new);
+    }
+
+    /**
+     * register
+     * create and register a new session for a client connected over socket.
+     * @param socket - the socket connected to the client
+     * @param factory - creates the session, for clients needing a subclass of Session
+     * @return the new session
+     */
+    public Session register(Socket socket, SessionFactory factory) {
+        Session session = factory.create(nextId.getAndIncrement(), socket, queueCapacity, overflowPolicy);
+        sessions.put(session.getId(), session);
+        live.incrementAndGet();
+        if (closed) {
+            // the server is stopping: the client thread ends at its first read
+            session.abort();
+        }
+        return session;
+    }
+
+    /**
+     * close
+     * abort the sessions connected, and the sessions registered from now on, so their client
+     * threads end (and unregister them) at their next read or write.
+     */
+    public void close() {
+        closed = true;
+        for (Session session : sessions.values()) {
+            session.abort();
+        }
+    }
+
+    /**
+     * awaitEmpty
+     * wait until no session is registered any more, or the timeout is over.
+     * @param timeout - the time to wait at most, in milliseconds
+     * @return true iff no session is registered
+     */
+    public boolean awaitEmpty(long timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout * 1_000_000;
+        while (live.get() > 0) {
+            if (System.nanoTime() >= deadline)
+                return false;
+            Thread.sleep(10);
+        }
+        return true;
+    }
+
+    /**
+     * unregister
+     * remove a session from the registry, if it's still registered.
+     * @param session - the session to be removed
+     */
+    public void unregister(Session session) {
+        if (sessions.remove(session.getId(), session)) {
+            live.decrementAndGet();
+        }
+    }
+
+    /**
+     * size
+     * return the number of sessions currently connected.
+     */
+    public int size() {
+        return live.get();
+    }
+
+    /**
+     * getSessions
+     * return a snapshot of the sessions currently connected, sorted by id.
+     */
+    public List<Session> getSessions() {
+        List<Session> list = new ArrayList<>(sessions.values());
+        list.sort((a, b) -> Long.compare(a.getId(), b.getId()));
+        return list;
+    }
+
+    /**
+     * sessions
+     * return a weakly consistent live view of the sessions currently connected.
+     */
+    public Collection<Session> sessions() {
+        return Collections.unmodifiableCollection(sessions.values());
+    }
+
+    /**
+     * who
+     * return a listing of the sessions currently connected, one line per session:
+     *    ID ADDRESS CONNECTED_SECONDS COMMANDS BYTES_IN BYTES_OUT
+     * preceded by a "Players: N" line.
+     */
+    public String who() {
+        List<Session> list = getSessions();
+        long now = System.currentTimeMillis();
+        String separator = System.lineSeparator();
+        StringBuilder builder = new StringBuilder();
+
+        builder.append("Players: ").append(list.size());
+        for (Session s : list) {
+            builder.append(separator)
+                   .append(s.getId()).append(' ')
+                   .append(s.getRemoteAddress()).append(' ')
+                   .append((now - s.getConnectTime()) / 1000).append(' ')
+                   .append(s.getCommands()).append(' ')
+                   .append(s.getBytesIn()).append(' ')
+                   .append(s.getBytesOut());
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,327 @@
+/* Copyright (c) 2007-2017 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package minesweeper.server;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Locale;
+
+/**
+ * WebSocketGateway lets browsers play through WebSocket connections (RFC 6455), on a port of
+ * their own next to the game port.
+ *
+ * After the opening handshake, each text message from the client is one request of the text
+ * protocol, handled by the same MinesweeperServer (and so on the same Board) as the TCP clients,
+ * and each reply is sent back as one text message. Subscribed clients are pushed deltas rather
+ * than whole boards, see WebSocketSession.
+ *
+ * Only what browsers need is supported: masked client frames, fragmented text messages of at
+ * most MAX_MESSAGE bytes, ping and close. Anything else ends the connection.
+ */
+class WebSocketGateway {
+
+    // frame opcodes
+    static final int CONTINUATION = 0x0;
+    static final int TEXT = 0x1;
+    static final int CLOSE = 0x8;
+    static final int PING = 0x9;
+    static final int PONG = 0xA;
+
+    // longest message accepted from a client (requests are short lines), in bytes
+    private static final int MAX_MESSAGE = 4096;
+    // longest opening handshake accepted from a client, in bytes
+    private static final int MAX_HANDSHAKE = 8192;
+    // appended to the client's key to compute the accept key, see RFC 6455
+    private static final String WEBSOCKET_GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+    // status code of a close frame ending the connection normally
+    private static final int NORMAL_CLOSURE = 1000;
+
+    private static final byte[] BAD_REQUEST =
+            "HTTP/1.1 400 Bad Request\r\nContent-Length: 0\r\nConnection: close\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1);
+
+    private final MinesweeperServer server;
+    private final ServerSocket serverSocket;
+    private final Thread acceptor;
+
+    // rep invariant:
+    //    none.
+    //
+    // abstraction function:
+    //    represents the WebSocket endpoint of server, listening on serverSocket.
+    //
+    // Thread safety argument:
+    //    the acceptor thread only accepts connections, and each connection is handled by its
+    //    own thread, as the TCP clients are; all accesses to the board go through server.
+
+    /**
+     * constructor
+     * @param server - the server handling the requests
+     * @param port - the port to listen on, requires 0 <= port <= 65535 (0 picks a free port)
+     * @throws IOException if the port can't be opened
+     */
+    WebSocketGateway(MinesweeperServer server, int port) throws IOException {
+        this.server = server;
+        this.serverSocket = new ServerSocket(port);
+        this.acceptor = new Thread(this::accept, "minesweeper-ws-accept");
+        this.acceptor.setDaemon(true);
+    }
+
+    /**
+     * getPort
+     * return the port the gateway listens on.
+     */
+    int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    void start() {
+        acceptor.start();
+        Log.info("WebSocket gateway listening on port %d", getPort());
+    }
+
+    /**
+     * stop
+     * stop accepting connections; the connected clients are left connected.
+     */
+    void stop() {
+        try {
+            serverSocket.close();
+        } catch (IOException ioe) {
+            // nothing else to do, the socket is gone anyway
+        }
+    }
+
+    /*
+     * body of the acceptor thread.
+     */
+    private void accept() {
+        while (true) {
+            try {
+                Socket socket = serverSocket.accept();
+                new Thread(() -> handle(socket)).start();
+            } catch (SocketException e) {
+                Log.info("WebSocket gateway socket closed: %s", e.getMessage());
+                return;
+            } catch (IOException e) {
+                Log.error("Error on accepting WebSocket connection: %s", e, e);
+                return;
+            }
+        }
+    }
+
+    /*
+     * handle one WebSocket connection, until the client or the server ends it.
+     */
+    private void handle(Socket socket) {
+        InputStream in;
+        try {
+            in = new BufferedInputStream(socket.getInputStream());
+            String key = readHandshake(in);
+            OutputStream out = socket.getOutputStream();
+            if (key == null) {
+                out.write(BAD_REQUEST);
+                socket.close();
+                return;
+            }
+            String response = "HTTP/1.1 101 Switching Protocols\r\n"
+                            + "Upgrade: websocket\r\n"
+                            + "Connection: Upgrade\r\n"
+                            + "Sec-WebSocket-Accept: " + acceptKey(key) + "\r\n\r\n";
+            out.write(response.getBytes(StandardCharsets.ISO_8859_1));
+            out.flush();
+        } catch (IOException ioe) {
+            Log.debug("WebSocket handshake failed: %s", ioe);
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // nothing else to do
+            }
+            return;
+        }
+
+        WebSocketSession session = (WebSocketSession) server.openSession(socket, WebSocketSession::new);
+        Log.debug("WebSocket client starting, session=%s", session);
+        ConnectionEvent event = new ConnectionEvent();
+        event.begin();
+        try {
+            session.send(server.hello(session));
+
+            ByteArrayOutputStream message = new ByteArrayOutputStream();
+            while (true) {
+                int first = in.read();
+                if (first < 0)
+                    break;
+                boolean fin = (first & 0x80) != 0;
+                int opcode = first & 0x0F;
+                byte[] payload = readPayload(in);
+
+                if (opcode == CLOSE) {
+                    // echo the status code, as required
+                    byte[] status = (payload.length >= 2) ? new byte[] {payload[0], payload[1]} : new byte[0];
+                    session.sendControl(frame(CLOSE, status));
+                    break;
+                } else if (opcode == PING) {
+                    session.sendControl(frame(PONG, payload));
+                    continue;
+                } else if (opcode == PONG) {
+                    continue;
+                } else if (opcode != TEXT && opcode != CONTINUATION) {
+                    throw new IOException("unsupported WebSocket opcode " + opcode);
+                }
+
+                message.write(payload, 0, payload.length);
+                if (message.size() > MAX_MESSAGE)
+                    throw new IOException("WebSocket message longer than " + MAX_MESSAGE + " bytes");
+                if (!fin)
+                    continue;
+
+                String line = new String(message.toByteArray(), StandardCharsets.UTF_8).trim();
+                long start = System.nanoTime();
+                session.commandReceived(message.size());
+                message.reset();
+
+                byte[] output = server.handleRequest(line, session);
+                if (output != null) {
+                    session.send(output);
+                    Log.access(session, line, System.nanoTime() - start);
+                    if (server.endsConnection(output)) {
+                        session.sendControl(frame(CLOSE, new byte[] {(byte) (NORMAL_CLOSURE >> 8), (byte) NORMAL_CLOSURE}));
+                        break;
+                    }
+                }
+            }
+        } catch (IOException ioe) {
+            Log.debug("WebSocket connection of %s failed: %s", session, ioe);
+        } finally {
+            server.closeSession(session);
+            session.close();
+            event.commit(session, "websocket");
+            Log.debug("WebSocket client ending, session=%s", session);
+        }
+    }
+
+    /*
+     * read the opening handshake of a client.
+     * return the client's key, or null if it's not a WebSocket upgrade request.
+     */
+    private static String readHandshake(InputStream in) throws IOException {
+        ByteArrayOutputStream request = new ByteArrayOutputStream();
+        int matched = 0;  // number of bytes of "\r\n\r\n" just read
+        while (matched < 4) {
+            int b = in.read();
+            if (b < 0)
+                throw new EOFException("connection closed during the handshake");
+            if (request.size() >= MAX_HANDSHAKE)
+                return null;
+            request.write(b);
+            matched = (b == "\r\n\r\n".charAt(matched)) ? matched + 1 : (b == '\r' ? 1 : 0);
+        }
+
+        String[] lines = new String(request.toByteArray(), StandardCharsets.ISO_8859_1).split("\r\n");
+        if (!lines[0].startsWith("GET "))
+            return null;
+        boolean upgrade = false;
+        String key = null;
+        for (int i = 1; i < lines.length; i++) {
+            int colon = lines[i].indexOf(':');
+            if (colon < 0)
+                continue;
+            String name = lines[i].substring(0, colon).trim().toLowerCase(Locale.ROOT);
+            String value = lines[i].substring(colon + 1).trim();
+            if (name.equals("upgrade") && value.equalsIgnoreCase("websocket"))
+                upgrade = true;
+            else if (name.equals("sec-websocket-key"))
+                key = value;
+        }
+        return upgrade ? key : null;
+    }
+
+    /*
+     * read the rest of a client frame (after its first byte), and return its unmasked payload.
+     */
+    private static byte[] readPayload(InputStream in) throws IOException {
+        int second = readByte(in);
+        if ((second & 0x80) == 0)
+            throw new IOException("unmasked WebSocket frame from a client");
+        long length = second & 0x7F;
+        if (length == 126) {
+            length = (readByte(in) << 8) | readByte(in);
+        } else if (length == 127) {
+            length = 0;
+            for (int i = 0; i < 8; i++) {
+                length = (length << 8) | readByte(in);
+            }
+        }
+        if (length < 0 || length > MAX_MESSAGE)
+            throw new IOException("WebSocket frame of " + length + " bytes, longer than " + MAX_MESSAGE);
+
+        byte[] mask = new byte[4];
+        for (int i = 0; i < mask.length; i++) {
+            mask[i] = (byte) readByte(in);
+        }
+        byte[] payload = new byte[(int) length];
+        for (int i = 0; i < payload.length; i++) {
+            payload[i] = (byte) (readByte(in) ^ mask[i & 3]);
+        }
+        return payload;
+    }
+
+    private static int readByte(InputStream in) throws IOException {
+        int b = in.read();
+        if (b < 0)
+            throw new EOFException("connection closed in the middle of a WebSocket frame");
+        return b;
+    }
+
+    /**
+     * frame
+     * encode a final, unmasked (server to client) WebSocket frame.
+     * @param opcode - the opcode of the frame, e.g. TEXT
+     * @param payload - the payload of the frame
+     */
+    static byte[] frame(int opcode, byte[] payload) {
+        int header = (payload.length < 126) ? 2 : (payload.length <= 0xFFFF) ? 4 : 10;
+        byte[] frame = new byte[header + payload.length];
+        frame[0] = (byte) (0x80 | opcode);
+        if (header == 2) {
+            frame[1] = (byte) payload.length;
+        } else if (header == 4) {
+            frame[1] = 126;
+            frame[2] = (byte) (payload.length >> 8);
+            frame[3] = (byte) payload.length;
+        } else {
+            frame[1] = 127;
+            for (int i = 0; i < 8; i++) {
+                frame[2 + i] = (byte) ((long) payload.length >> (8 * (7 - i)));
+            }
+        }
+        System.arraycopy(payload, 0, frame, header, payload.length);
+        return frame;
+    }
+
+    /**
+     * acceptKey
+     * return the Sec-WebSocket-Accept value answering the client's Sec-WebSocket-Key.
+     */
+    static String acceptKey(String key) {
+        try {
+            MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
+            byte[] digest = sha1.digest((key + WEBSOCKET_GUID).getBytes(StandardCharsets.ISO_8859_1));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException nsae) {
+            throw new RuntimeException("SHA-1 is required of every Java platform", nsae);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+/* Copyright (c) 2007-2017 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package minesweeper.server;
+
+import java.io.IOException;
+import java.net.Socket;
+
+import minesweeper.server.OutboundQueue.Kind;
+import minesweeper.server.OutboundQueue.OverflowPolicy;
+
+/**
+ * WebSocketSession is the session of a browser client connected through the WebSocketGateway.
+ *
+ * Every reply and pushed frame is the same text as for a TCP client, sent as one WebSocket
+ * text message. Instead of the whole board, a subscribed WebSocket client is pushed the squares
+ * changed since the previous push, as in a reply to "look if-changed-since" (see FrameCache).
+ */
+class WebSocketSession extends Session {
+
+    // version of the board last pushed to the client, only used by the broadcaster's thread
+    private long pushed = 0;
+
+    // rep invariant:
+    //    pushed >= 0
+    //
+    // abstraction function:
+    //    as Session, where the client has seen the board at version pushed (or later).
+    //
+    // Thread safety argument:
+    //    as Session; pushed is only read and written by the broadcaster's flusher thread.
+
+    /**
+     * constructor
+     * see Session, the WebSocket handshake must already be done.
+     */
+    WebSocketSession(long id, Socket socket, int capacity, OverflowPolicy policy) {
+        super(id, socket, capacity, policy);
+    }
+
+    @Override
+    public void send(byte[] data) throws IOException {
+        super.send(WebSocketGateway.frame(WebSocketGateway.TEXT, data));
+    }
+
+    @Override
+    public boolean push(Kind kind, byte[] data) {
+        return super.push(kind, WebSocketGateway.frame(WebSocketGateway.TEXT, data));
+    }
+
+    /**
+     * sendControl
+     * queue a WebSocket frame as is, e.g. a control frame.
+     * @param frame - the encoded frame
+     * @throws IOException if the session has been closed
+     */
+    void sendControl(byte[] frame) throws IOException {
+        super.send(frame);
+    }
+
+    /**
+     * pushUpdate
+     * push the squares changed since the last push (or the whole board, if that's smaller).
+     * Deltas never make older frames stale, so they are pushed as UPDATE frames; if one is
+     * dropped, the next one covers its changes too. The subscribers pushed the same version
+     * last time share the delta encoded by the first of them (see FrameCache).
+     */
+    @Override
+    boolean pushUpdate(FrameCache frames) {
+        // the delta may hold changes newer than version, they are just pushed again next time
+        long version = frames.getVersion();
+        if (version == pushed)
+            return true;
+        if (!push(Kind.UPDATE, frames.lookSince(pushed, getEncoding())))
+            return false;
+        pushed = version;
+        return true;
+    }
+}
@@ -0,0 +1,142 @@
+/* Copyright (c) 2007-2017 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package minesweeper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Test;
+
+import minesweeper.BoardFactory.Implementation;
+
+/**
+ * BoardFactoryTest checks the implementations chosen by BoardFactory.
+ */
+public class BoardFactoryTest {
+
+    private static final long GB = 1L << 30;
+
+    /*
+     * Testing strategy
+     * ==================
+     *
+     * choose, partitioned on:
+     * 1. the size: small, larger, too large for the heap, too large for an array
+     * 2. the density: below and above SPARSE_DENSITY
+     */
+
+    @Test
+    public void testChoose() {
+        assertEquals(Implementation.DENSE, BoardFactory.choose(1, 1, 0.25, GB));
+        assertEquals(Implementation.DENSE, BoardFactory.choose(2048, 2048, 0.01, GB));
+        assertEquals(Implementation.DENSE, BoardFactory.choose(2048, 2048, 0.25, GB));
+
+        assertEquals(Implementation.PACKED, BoardFactory.choose(4000, 4000, 0.05, GB));
+        assertEquals(Implementation.CHUNKED, BoardFactory.choose(4000, 4000, 0.25, GB));
+
+        // 10^10 squares: 90 GB packed, 1.25 GB of bombs chunked
+        assertEquals(Implementation.OFF_HEAP, BoardFactory.choose(100000, 100000, 0.05, 8 * GB));
+        assertEquals(Implementation.CHUNKED, BoardFactory.choose(100000, 100000, 0.25, 8 * GB));
+        assertEquals(Implementation.OFF_HEAP, BoardFactory.choose(100000, 100000, 0.25, 4 * GB));
+
+        // more squares than an array holds
+        assertEquals(Implementation.OFF_HEAP, BoardFactory.choose(50000, 50000, 0.05, 1024 * GB));
+        assertEquals(Implementation.OFF_HEAP, BoardFactory.choose(Integer.MAX_VALUE, Integer.MAX_VALUE, 0.25, 1024 * GB));
+    }
+
+    @Test
+    public void testMake() throws IOException {
+        for (Implementation implementation : Implementation.values()) {
+            Board board = BoardFactory.make(implementation, 30, 20);
+            assertEquals(30, board.getBoardSizeX());
+            assertEquals(20 * 30, board.getUntouched());
+            board.release();
+        }
+        assertTrue(BoardFactory.make(null, 30, 20) instanceof DenseBoard);
+        Board board = BoardFactory.make(Implementation.CHUNKED, new File("test/minesweeper/server/board_file_4.txt"));
+        assertTrue(board instanceof ChunkedBoard);
+        assertEquals(2, board.getBombs());
+    }
+
+    /*
+     * make with lazy bombs, partitioned on:
+     * 1. the implementation
+     * 2. the first dig in a corner, in the middle
+     * 3. squares flagged before the first dig, released before the first dig
+     * 4. a flagged square dug before the first dig
+     */
+
+    @Test
+    public void testMakeLazy() {
+        for (Implementation implementation : Implementation.values()) {
+            for (int first = 0; first < 2; first++) {
+                int x = (first == 0) ? 0 : 15;
+                int y = (first == 0) ? 0 : 10;
+                Board board = BoardFactory.make(implementation, 30, 20, true);
+                assertEquals(0, board.getBombs());
+                board.flag(29, 19);
+                assertEquals(0, board.dig(x, y));
+                for (int i = Math.max(0, x - 1); i <= x + 1; i++) {
+                    for (int j = Math.max(0, y - 1); j <= y + 1; j++) {
+                        assertTrue(board.getState(i, j) >= 0);
+                    }
+                }
+                assertEquals(Board.FLAGGED, board.getState(29, 19));
+                assertTrue(board.getBombs() > 0);
+                assertTrue(board.getUntouched() <= 30 * 20 - 1 - 4); // the flag, the cascade
+                board.release();
+            }
+            // the bombs may still be placed
+            BoardFactory.make(implementation, 30, 20, true).release();
+        }
+    }
+
+    @Test
+    public void testMakeLazyFlaggedDig() {
+        for (Implementation implementation : Implementation.values()) {
+            for (int run = 0; run < 20; run++) {
+                Board board = BoardFactory.make(implementation, 20, 20, true);
+                board.flag(5, 5);
+                // a flagged square isn't dug: the bombs are placed by the next dig
+                assertEquals(Board.FLAGGED, board.dig(5, 5));
+                assertEquals(Board.FLAGGED, board.getState(5, 5));
+                assertTrue(board.hasPendingMines());
+                assertEquals(0, board.dig(15, 15));
+                assertTrue(!board.hasPendingMines());
+                board.release();
+            }
+        }
+    }
+
+    @Test
+    public void testChooseFromFile() throws IOException {
+        // 2100 x 2000 squares, a bomb on the first column only: few bombs
+        Path file = Files.createTempFile("minesweeper", ".txt");
+        try {
+            try (PrintWriter writer = new PrintWriter(file.toFile(), "US-ASCII")) {
+                writer.println("2100 2000");
+                StringBuilder row = new StringBuilder("1");
+                for (int x = 1; x < 2100; x++) {
+                    row.append(" 0");
+                }
+                for (int y = 0; y < 2000; y++) {
+                    writer.println(row);
+                }
+            }
+            Board board = BoardFactory.make(null, file.toFile());
+            assertEquals((Runtime.getRuntime().maxMemory() / 2 >= 9L * 2100 * 2000) ? PackedBoard.class : OffHeapBoard.class,
+                         board.getClass());
+            assertEquals(2000, board.getBombs());
+            board.release();
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
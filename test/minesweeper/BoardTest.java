@@ -3,19 +3,52 @@
  */
 package minesweeper;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 
 import org.junit.Test;
 
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * BoardTest checks DenseBoard, and is the conformance suite of the Board implementations: a
+ * subclass overriding getBoardClassName runs it on another implementation.
+ */
 public class BoardTest {
     private static final String BOARDS_PKG = "test/minesweeper/server/";
     
+    /**
+     * @return the name of the Board implementation tested, with the public constructors
+     *         (int sizeX, int sizeY) and (File file) of DenseBoard
+     */
+    protected String getBoardClassName() {
+        return "minesweeper.DenseBoard";
+    }
+    
+    /**
+     * @return true iff the implementation tested supports the cascade engines other than SCALAR,
+     *         and parallel floods
+     */
+    protected boolean hasCascadeEngines() {
+        return true;
+    }
+    
     @Test(expected=AssertionError.class)
     public void testAssertionsEnabled() {
         assert false; // make sure assertions are enabled with VM argument: -ea
@@ -26,10 +59,10 @@ public class BoardTest {
     public Board makeBoard(int x, int y) {
         try {
             /*
-            Class<?> cls = Class.forName("minesweeper.Board");
+            Class<?> cls = Class.forName("minesweeper.DenseBoard");
             return (Board) cls.newInstance();
             */
-            Class<?> cls = Class.forName("minesweeper.Board");
+            Class<?> cls = Class.forName(getBoardClassName());
             Constructor constructor = cls.getDeclaredConstructor(new Class[] {int.class, int.class});
             return (Board) constructor.newInstance(new Object[]{x,y});
 
@@ -47,10 +80,12 @@ public class BoardTest {
     }
     
     public Board makeBoardFromFile (String fileName) {
+        return makeBoardFromFile(new File(BOARDS_PKG + fileName));
+    }
+    
+    private Board makeBoardFromFile (File boradFile) {
         try {
-            File boradFile = new File(BOARDS_PKG + fileName);
-            
-            Class<?> cls = Class.forName("minesweeper.Board");
+            Class<?> cls = Class.forName(getBoardClassName());
             Constructor constructor = cls.getDeclaredConstructor(new Class[] {File.class});
             return (Board) constructor.newInstance(new Object[]{boradFile});
 
@@ -560,4 +595,447 @@ public class BoardTest {
         assertEquals("- - F -", str[3]);
     }
     
+    /*
+     * Testing strategy
+     * ==================
+     * 
+     * test getVersion on the board_file_4.txt:
+     * 1. a new board has version 0
+     * 2. an operation changing the board (dig, flag, deflag) increases the version by one,
+     *    even if it's a whole cascade
+     * 3. an operation without effect (out of bound, flag a dug square, dig a flagged square)
+     *    keeps the version
+     * 
+     * Cover each part testing coverage.
+     */
+    
+    @Test
+    public void testVersion() {
+        Board bd = makeBoardFromFile("board_file_4.txt");
+        assertEquals(0, bd.getVersion());
+        
+        bd.flag(0, 0);
+        assertEquals(1, bd.getVersion());
+        bd.dig(0, 0); // flagged, no effect
+        assertEquals(1, bd.getVersion());
+        bd.deflag(0, 0);
+        assertEquals(2, bd.getVersion());
+        
+        bd.dig(3, 0); // cascade
+        assertEquals(3, bd.getVersion());
+        bd.flag(3, 0); // dug, no effect
+        bd.dig(3, 0);  // dug, no effect
+        bd.dig(-1, 7); // out of bound
+        assertEquals(3, bd.getVersion());
+    }
+    
+    /*
+     * Testing strategy
+     * ==================
+     * 
+     * test getCellVersion and getChangedSince on the board_file_4.txt:
+     * 1. squares never changed have version 0
+     * 2. each square changed by an operation (including a cascade) gets its version
+     * 3. getChangedSince the current version is empty
+     * 4. getChangedSince returns null if more than max squares changed
+     * 
+     * Cover each part testing coverage.
+     */
+    
+    @Test
+    public void testChangedSince() {
+        Board bd = makeBoardFromFile("board_file_4.txt");
+        assertEquals(0, bd.getChangedSince(0, 16).length);
+        
+        bd.flag(0, 0);
+        assertEquals(1, bd.getCellVersion(0, 0));
+        assertEquals(0, bd.getCellVersion(1, 0));
+        assertTrue(Arrays.equals(new int[] {0, 0, Board.FLAGGED}, bd.getChangedSince(0, 16)));
+        assertEquals(0, bd.getChangedSince(1, 16).length);
+        
+        bd.dig(3, 0); // cascade revealing the squares (2,0) (3,0) (2,1) (3,1) (2,2) (3,2)
+        assertEquals(2, bd.getCellVersion(3, 2));
+        assertEquals(1, bd.getCellVersion(0, 0));
+        int[] changed = bd.getChangedSince(1, 16);
+        assertEquals(6 * 3, changed.length);
+        assertTrue(Arrays.equals(new int[] {2, 0, 1}, Arrays.copyOf(changed, 3)));
+        assertEquals(7 * 3, bd.getChangedSince(0, 16).length);
+        assertEquals(null, bd.getChangedSince(0, 5));
+    }
+    
+    /*
+     * Testing strategy
+     * ==================
+     * 
+     * getChangedSince agrees with the versions of the squares (see getCellVersion) in a long game:
+     * 1. since a few operations ago, and since before more changes than the board logs (see
+     *    AbstractBoard.getChangedSince)
+     * 2. squares changed several times (flagged, deflagged, then dug)
+     * 3. exactly max squares changed, and one more than max
+     * 
+     * Cover each part testing coverage.
+     */
+    
+    @Test
+    public void testChangedSinceLongGame() throws IOException {
+        Board bd = makeBoard(100, 80, 0.15, 7);
+        Random random = new Random(7);
+        for (int i = 1; i <= 6000; i++) {
+            int x = random.nextInt(100);
+            int y = random.nextInt(80);
+            if (i % 10 == 0)
+                bd.dig(x, y);
+            else if (i % 2 == 0)
+                bd.flag(x, y);
+            else
+                bd.deflag(x, y);
+            if (i % 500 == 0) {
+                long version = bd.getVersion();
+                for (long ago : new long[] {0, 1, 5, 50, 500, 3000, version}) {
+                    long since = Math.max(0, version - ago);
+                    int[] expected = changedSince(bd, since);
+                    assertArrayEquals("since " + since, expected, bd.getChangedSince(since, 100 * 80));
+                    int n = expected.length / 3;
+                    if (n > 0) {
+                        assertArrayEquals(expected, bd.getChangedSince(since, n));
+                        assertEquals(null, bd.getChangedSince(since, n - 1));
+                    }
+                }
+            }
+        }
+    }
+    
+    /*
+     * the squares changed after since, from the versions of all the squares.
+     */
+    private static int[] changedSince(Board bd, long since) {
+        List<Integer> changed = new ArrayList<>();
+        for (int y = 0; y < bd.getBoardSizeY(); y++) {
+            for (int x = 0; x < bd.getBoardSizeX(); x++) {
+                if (bd.getCellVersion(x, y) > since) {
+                    changed.add(x);
+                    changed.add(y);
+                    changed.add(bd.getState(x, y));
+                }
+            }
+        }
+        int[] result = new int[changed.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = changed.get(i);
+        }
+        return result;
+    }
+    
+    /*
+     * Testing strategy
+     * ==================
+     * 
+     * test drawRle and drawPacked on the board_file_4.txt:
+     * 1. an untouched board is one run per row
+     * 2. runs of flagged, dug with a count, and dug without bomb around ("."), of length 1 and more
+     * 3. drawRle and drawPacked show the same squares as draw()
+     * 
+     * Cover each part testing coverage.
+     */
+    
+    @Test
+    public void testDrawRle() {
+        String sep = System.lineSeparator();
+        Board bd = makeBoardFromFile("board_file_4.txt");
+        assertEquals("-4" + sep + "-4" + sep + "-4" + sep + "-4", bd.drawRle());
+        
+        bd.flag(0, 0);
+        bd.dig(3, 0); // cascade
+        assertEquals("F - 1  " + sep + "- - 1  " + sep + "- - 2 1" + sep + "- - - -", bd.draw());
+        assertEquals("F1 -1 11 .1" + sep + "-2 11 .1" + sep + "-2 21 11" + sep + "-4", bd.drawRle());
+    }
+    
+    @Test
+    public void testDrawPacked() {
+        Board bd = makeBoardFromFile("board_file_4.txt");
+        bd.flag(0, 0);
+        bd.dig(3, 0); // cascade
+        // F - 1 0 / - - 1 0 / - - 2 1 / - - - -
+        byte[] expected = {(byte) 0xEF, 0x10, (byte) 0xFF, 0x10, (byte) 0xFF, 0x21, (byte) 0xFF, (byte) 0xFF};
+        assertTrue(Arrays.equals(expected, bd.drawPacked()));
+    }
+    
+    /*
+     * Testing strategy
+     * ==================
+     * 
+     * the flight recorder events are committed only when a recording enables them, with the
+     * coordinates and cascade size of the dig.
+     */
+    
+    /*
+     * Testing strategy
+     * ==================
+     * 
+     * the board's monitor records every operation, per type, and the cascade of each dig;
+     * its watchdog hears of the operations above the threshold, with their coordinates.
+     */
+    
+    @Test
+    public void testMonitor() {
+        Board bd = makeBoardFromFile("board_file_4.txt");
+        BoardMonitor monitor = bd.getMonitor();
+        List<String> slow = new ArrayList<>();
+        monitor.setWatchdog(0, (op, x, y, cascade, heldNanos) -> slow.add(op + " " + x + " " + y + " " + cascade));
+        
+        bd.dig(3, 0); // cascade
+        bd.flag(0, 0);
+        bd.draw();
+        monitor.setWatchdog(Long.MAX_VALUE, null);
+        bd.deflag(0, 0);
+        
+        assertEquals(1, monitor.getHeld(BoardMonitor.Op.DIG).getCount());
+        assertEquals(1, monitor.getWait(BoardMonitor.Op.FLAG).getCount());
+        assertEquals(1, monitor.getHeld(BoardMonitor.Op.DEFLAG).getCount());
+        assertEquals(1, monitor.getHeld(BoardMonitor.Op.DRAW).getCount());
+        assertEquals(6, monitor.getCascade().getMax());
+        assertEquals(Arrays.asList("DIG 3 0 6", "FLAG 0 0 0", "DRAW -1 -1 0"), slow);
+    }
+    
+    /*
+     * Testing strategy
+     * ==================
+     * 
+     * sliced cascades on an empty 40x30 board, dug in the middle:
+     * 1. reveal the same squares as a whole cascade, in several slices
+     * 2. let other operations run between two slices (a flag ahead of the cascade is kept)
+     */
+    
+    @Test
+    public void testCascadeSlice() throws Exception {
+        Board whole = makeEmptyBoard(40, 30);
+        Board sliced = makeEmptyBoard(40, 30);
+        sliced.setCascadeSlice(100);
+        int[] notified = {0};
+        sliced.addListener(b -> notified[0]++);
+        
+        assertEquals(0, whole.dig(20, 15));
+        assertEquals(0, sliced.dig(20, 15));
+        assertEquals(whole.draw(), sliced.draw());
+        assertEquals(0, sliced.getUntouched());
+        assertTrue("slices " + notified[0], notified[0] >= 12);
+        assertEquals(0, whole.getMonitor().getHeld(BoardMonitor.Op.CASCADE).getCount());
+        assertEquals(notified[0] - 1, sliced.getMonitor().getHeld(BoardMonitor.Op.CASCADE).getCount());
+        assertEquals(40 * 30, sliced.getMonitor().getCascade().getMax());
+        
+        Board flagged = makeEmptyBoard(40, 30);
+        flagged.setCascadeSlice(100);
+        flagged.addListener(b -> b.flag(0, 0)); // runs between the first two slices
+        flagged.dig(39, 29);
+        assertEquals(Board.FLAGGED, flagged.getState(0, 0));
+        assertEquals(0, flagged.getUntouched());
+    }
+    
+    /*
+     * Testing strategy
+     * ==================
+     * 
+     * parallel floods reveal the same squares, with the same counters, as sequential cascades:
+     * 1. on an empty board, and on boards with a few bombs (several regions, borders)
+     * 2. from frontiers of 1 square (flooded from the start) and larger
+     * 3. with squares flagged ahead of the cascade
+     * 4. a pool rejected by the implementations without parallel floods
+     */
+    
+    @Test
+    public void testParallelCascade() throws Exception {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            if (!hasCascadeEngines()) {
+                // rejected, see Board.setParallelCascade
+                Board bd = makeEmptyBoard(10, 10);
+                bd.setParallelCascade(null, 1);
+                try {
+                    bd.setParallelCascade(pool, 1);
+                    throw new AssertionError("parallel cascade accepted");
+                } catch (IllegalArgumentException e) {
+                    // expected
+                }
+                return;
+            }
+            for (int seed = 0; seed < 6; seed++) {
+                double density = (seed == 0) ? 0 : 0.02 * seed;
+                Board sequential = makeBoard(70, 50, density, seed);
+                Board parallel = makeBoard(70, 50, density, seed);
+                sequential.setParallelCascade(null, 1);
+                parallel.setParallelCascade(pool, (seed % 2 == 0) ? 1 : 64);
+                for (Board bd : Arrays.asList(sequential, parallel)) {
+                    bd.flag(10, 10);
+                    bd.flag(69, 49);
+                    bd.dig(0, 0);
+                    bd.dig(35, 25);
+                    bd.dig(60, 5);
+                }
+                assertEquals(sequential.draw(), parallel.draw());
+                assertEquals(sequential.getUntouched(), parallel.getUntouched());
+                assertEquals(sequential.getFlagged(), parallel.getFlagged());
+                assertEquals(sequential.getVersion(), parallel.getVersion());
+                assertTrue(Arrays.equals(sequential.getChangedSince(0, 70 * 50), parallel.getChangedSince(0, 70 * 50)));
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+    
+    /*
+     * Testing strategy
+     * ==================
+     * 
+     * the BITBOARD and REGIONS engines reveal the same squares, with the same counters, as SCALAR:
+     * 1. on boards 1, 63, 64, 65 and 130 squares wide (one or several words per row)
+     * 2. on an empty board, and on boards with a few bombs
+     * 3. with squares flagged ahead of the cascade (regions partly flagged), deflagged, and
+     *    after bombs dug (planes and regions kept in sync)
+     */
+    
+    @Test
+    public void testCascadeEngines() throws Exception {
+        if (!hasCascadeEngines()) {
+            // rejected, see Board.setCascadeEngine
+            Board bd = makeEmptyBoard(10, 10);
+            bd.setCascadeEngine(Board.CascadeEngine.SCALAR);
+            for (Board.CascadeEngine engine : Arrays.asList(Board.CascadeEngine.BITBOARD, Board.CascadeEngine.REGIONS)) {
+                try {
+                    bd.setCascadeEngine(engine);
+                    throw new AssertionError(engine + " accepted");
+                } catch (IllegalArgumentException e) {
+                    // expected
+                }
+            }
+            return;
+        }
+        int[] widths = {1, 63, 64, 65, 130};
+        for (Board.CascadeEngine engine : Arrays.asList(Board.CascadeEngine.BITBOARD, Board.CascadeEngine.REGIONS)) {
+            for (int w = 0; w < widths.length; w++) {
+                for (int seed = 0; seed < 4; seed++) {
+                    int sizeX = widths[w];
+                    double density = 0.03 * seed;
+                    Board scalar = makeBoard(sizeX, 40, density, seed);
+                    Board other = makeBoard(sizeX, 40, density, seed);
+                    scalar.setParallelCascade(null, 1);
+                    other.setCascadeEngine(engine);
+                    Random random = new Random(seed);
+                    for (int i = 0; i < 30; i++) {
+                        int x = random.nextInt(sizeX);
+                        int y = random.nextInt(40);
+                        if (i % 5 == 0) {
+                            scalar.flag(x, y);
+                            other.flag(x, y);
+                        } else if (i % 7 == 0) {
+                            scalar.deflag(x, y);
+                            other.deflag(x, y);
+                        } else {
+                            assertEquals(engine + " " + x + " " + y, scalar.dig(x, y), other.dig(x, y));
+                        }
+                    }
+                    assertEquals(engine.toString(), scalar.draw(), other.draw());
+                    assertEquals(scalar.getUntouched(), other.getUntouched());
+                    assertEquals(scalar.getBombs(), other.getBombs());
+                    assertTrue(Arrays.equals(scalar.getChangedSince(0, sizeX * 40), other.getChangedSince(0, sizeX * 40)));
+                }
+            }
+        }
+    }
+    
+    /*
+     * @return a board of sizeX x sizeY squares without any bomb
+     */
+    private Board makeEmptyBoard(int sizeX, int sizeY) throws IOException {
+        return makeBoard(sizeX, sizeY, 0, 0);
+    }
+    
+    /*
+     * @return a board of sizeX x sizeY squares, each with a bomb with probability density
+     */
+    private Board makeBoard(int sizeX, int sizeY, double density, long seed) throws IOException {
+        File file = RandomBoards.write(RandomBoards.mines(sizeX, sizeY, density, new Random(seed)));
+        try {
+            return makeBoardFromFile(file);
+        } finally {
+            file.delete();
+        }
+    }
+    
+    @Test
+    public void testKernels() {
+        // the kernels in use (vectorized if the module is there) against the scalar ones, on
+        // lengths around the vector sizes
+        BoardKernels kernels = BoardKernels.get();
+        BoardKernels scalar = new BoardKernels();
+        Random rand = new Random(7);
+        for (int n = 1; n <= 200; n++) {
+            boolean[][] columns = new boolean[3][n];
+            short[] states = new short[n];
+            for (int y = 0; y < n; y++) {
+                for (boolean[] column : columns)
+                    column[y] = rand.nextInt(3) == 0;
+                states[y] = (short) (rand.nextInt(11) - 2);
+            }
+            boolean[][] lefts = {null, columns[0]};
+            boolean[][] rights = {null, columns[2]};
+            for (boolean[] left : lefts) {
+                for (boolean[] right : rights) {
+                    byte[] expected = new byte[n];
+                    byte[] actual = new byte[n];
+                    scalar.countColumn(left, columns[1], right, expected);
+                    kernels.countColumn(left, columns[1], right, actual);
+                    assertArrayEquals(kernels.getName() + " n=" + n, expected, actual);
+                }
+            }
+            byte[] expected = new byte[2 * n + 3];
+            byte[] actual = new byte[2 * n + 3];
+            scalar.glyphs(states, n, expected, 3);
+            kernels.glyphs(states, n, actual, 3);
+            assertArrayEquals(kernels.getName() + " n=" + n, expected, actual);
+        }
+    }
+    
+    @Test
+    public void testKernelsUnexpectedState() {
+        // the kernels in use throw on an unexpected state as the scalar ones do, wherever it is
+        BoardKernels kernels = BoardKernels.get();
+        for (short unexpected : new short[] {Board.FLAGGED - 1, 9, Short.MAX_VALUE}) {
+            for (int at : new int[] {0, 31, 63, 64, 99}) {
+                short[] states = new short[100];
+                states[at] = unexpected;
+                try {
+                    kernels.glyphs(states, states.length, new byte[2 * states.length], 0);
+                    fail(kernels.getName() + " accepted state " + unexpected + " at " + at);
+                } catch (RuntimeException re) {
+                    assertEquals("unexpected state!", re.getMessage());
+                }
+            }
+        }
+    }
+    
+    @Test
+    public void testFlightRecorderEvents() throws Exception {
+        Board bd = makeBoardFromFile("board_file_4.txt");
+        Path file = Files.createTempFile("minesweeper", ".jfr");
+        try (Recording recording = new Recording()) {
+            bd.dig(0, 3); // not recorded, the recording isn't started
+            recording.enable("minesweeper.Dig");
+            recording.start();
+            bd.dig(3, 0); // cascade
+            bd.flag(0, 0); // not enabled
+            recording.stop();
+            recording.dump(file);
+            
+            List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+            assertEquals(1, events.size());
+            RecordedEvent dig = events.get(0);
+            assertEquals("minesweeper.Dig", dig.getEventType().getName());
+            assertEquals(3, dig.getInt("x"));
+            assertEquals(0, dig.getInt("y"));
+            assertEquals(0, dig.getInt("result"));
+            assertEquals(6, dig.getInt("cascadeSize"));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
 }
@@ -0,0 +1,86 @@
+/* Copyright (c) 2007-2017 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package minesweeper;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * CascadeBenchmark measures how a huge cascade stalls the other players: one thread digs the
+ * middle of an empty board (revealing it whole) while PLAYERS threads flag and deflag a corner
+ * every INTERVAL, and the latencies of their operations are reported, with whole and sliced cascades
+ * (see Board.setCascadeSlice).
+ *
+ * Not a JUnit test, run it by hand:
+ *      java minesweeper.CascadeBenchmark [SIZE [SLICE [ROUNDS]]]
+ */
+public class CascadeBenchmark {
+
+    private static final int PLAYERS = 3;
+    // time between two operations of a player, in nanoseconds
+    private static final long INTERVAL = 100_000;
+
+    public static void main(String[] args) throws Exception {
+        int size = (args.length > 0) ? Integer.parseInt(args[0]) : 1500;
+        int slice = (args.length > 1) ? Integer.parseInt(args[1]) : 4096;
+        int rounds = (args.length > 2) ? Integer.parseInt(args[2]) : 5;
+
+        System.out.printf("board %dx%d, %d players, %d rounds%n", size, size, PLAYERS, rounds);
+        for (int round = 0; round < 2; round++) {
+            // the first round warms up the JIT
+            System.out.printf("round %d%n", round);
+            run(size, 0, rounds);
+            run(size, slice, rounds);
+        }
+    }
+
+    /*
+     * dig rounds empty boards while the players play, and report the latencies.
+     */
+    private static void run(int size, int slice, int rounds) throws Exception {
+        Histogram player = new Histogram();
+        Histogram digs = new Histogram();
+        for (int r = 0; r < rounds; r++) {
+            Board board = makeEmptyBoard(size, size);
+            board.setCascadeSlice(slice);
+
+            AtomicBoolean done = new AtomicBoolean(false);
+            Thread[] players = new Thread[PLAYERS];
+            for (int p = 0; p < PLAYERS; p++) {
+                players[p] = new Thread(() -> {
+                    // latencies are measured from when the operation was due, so an operation
+                    // stalled by the cascade also counts against the ones it delayed
+                    long due = System.nanoTime();
+                    while (!done.get()) {
+                        due += INTERVAL;
+                        LockSupport.parkNanos(due - System.nanoTime());
+                        board.flag(0, 0);
+                        board.deflag(0, 0);
+                        player.record(System.nanoTime() - due);
+                    }
+                });
+                players[p].start();
+            }
+
+            Thread.sleep(10);
+            long start = System.nanoTime();
+            board.dig(size / 2, size / 2);
+            digs.record(System.nanoTime() - start);
+            done.set(true);
+            for (Thread t : players) {
+                t.join();
+            }
+        }
+        System.out.printf("  slice %7d: dig %8.2f ms, player p50 %8.3f ms, p99 %8.3f ms, max %8.3f ms%n",
+                slice, digs.getSum() / 1e6 / rounds, player.getValueAtPercentile(50) / 1e6,
+                player.getValueAtPercentile(99) / 1e6, player.getMax() / 1e6);
+    }
+
+    /*
+     * a board of sizeX x sizeY squares without any bomb.
+     */
+    static Board makeEmptyBoard(int sizeX, int sizeY) {
+        return new DenseBoard(new boolean[sizeX][sizeY]);
+    }
+}
@@ -0,0 +1,49 @@
+/* Copyright (c) 2007-2017 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package minesweeper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * ChunkedBoardTest runs the conformance suite (BoardTest) on ChunkedBoard, and checks that its
+ * tiles are only allocated as the game reaches them.
+ */
+public class ChunkedBoardTest extends BoardTest {
+
+    @Override
+    protected String getBoardClassName() {
+        return "minesweeper.ChunkedBoard";
+    }
+
+    @Override
+    protected boolean hasCascadeEngines() {
+        return false;
+    }
+
+    @Test
+    public void testSparseTiles() {
+        ChunkedBoard board = new ChunkedBoard(1000, 700);
+        assertEquals(0, board.getTiles());
+        board.draw();
+        board.getChangedSince(0, 10);
+        assertEquals(0, board.getTiles());
+
+        // the corners of 4 tiles, 2 of them on the last (partial) row and column
+        board.flag(63, 63);
+        board.flag(64, 64);
+        board.flag(999, 699);
+        board.flag(0, 699);
+        assertEquals(4, board.getTiles());
+        assertEquals(Board.FLAGGED, board.getState(999, 699));
+        assertEquals(Board.UNTOUCHED, board.getState(998, 699));
+        assertEquals(4, board.getChangedSince(0, 10).length / 3);
+
+        // a dig reaches the tiles of its cascade only (small, with a bomb on a square of 4)
+        board.dig(500, 350);
+        assertTrue(board.getTiles() < 4 + 9);
+    }
+}
@@ -0,0 +1,60 @@
+/* Copyright (c) 2007-2017 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package minesweeper;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * FloodBenchmark measures a dig revealing a whole empty board, sequentially, with parallel
+ * floods (see Board.setParallelCascade) on 1, 2, 4... worker threads up to the number of cores,
+ * and with the BITBOARD and REGIONS engines (see Board.setCascadeEngine; the time to build their
+ * structures isn't counted).
+ *
+ * Not a JUnit test, run it by hand:
+ *      java minesweeper.FloodBenchmark [SIZE [ROUNDS]]
+ */
+public class FloodBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int size = (args.length > 0) ? Integer.parseInt(args[0]) : 3000;
+        int rounds = (args.length > 1) ? Integer.parseInt(args[1]) : 5;
+        int cores = Runtime.getRuntime().availableProcessors();
+
+        System.out.printf("board %dx%d, %d cores, %d rounds%n", size, size, cores, rounds);
+        for (int round = 0; round < 2; round++) {
+            // the first round warms up the JIT
+            System.out.printf("round %d%n", round);
+            double sequential = run(size, Board.CascadeEngine.SCALAR, null, rounds);
+            System.out.printf("  sequential: %8.2f ms%n", sequential);
+            for (int threads = 1; threads <= cores; threads *= 2) {
+                ForkJoinPool pool = new ForkJoinPool(threads);
+                double parallel = run(size, Board.CascadeEngine.SCALAR, pool, rounds);
+                pool.shutdown();
+                System.out.printf("  %2d threads: %8.2f ms, speedup %5.2f%n", threads, parallel, sequential / parallel);
+            }
+            double bitboard = run(size, Board.CascadeEngine.BITBOARD, null, rounds);
+            System.out.printf("  bitboard:   %8.2f ms, speedup %5.2f%n", bitboard, sequential / bitboard);
+            double regions = run(size, Board.CascadeEngine.REGIONS, null, rounds);
+            System.out.printf("  regions:    %8.2f ms, speedup %5.2f%n", regions, sequential / regions);
+        }
+    }
+
+    /*
+     * return the mean time of a dig revealing an empty board, in milliseconds.
+     */
+    private static double run(int size, Board.CascadeEngine engine, ForkJoinPool pool, int rounds) throws Exception {
+        long total = 0;
+        for (int r = 0; r < rounds; r++) {
+            Board board = CascadeBenchmark.makeEmptyBoard(size, size);
+            board.setParallelCascade(pool, Board.DEFAULT_PARALLEL_THRESHOLD);
+            board.setCascadeEngine(engine);
+            long start = System.nanoTime();
+            board.dig(size / 2, size / 2);
+            total += System.nanoTime() - start;
+            if (board.getUntouched() != 0)
+                throw new AssertionError("the board is not all revealed");
+        }
+        return total / 1e6 / rounds;
+    }
+}
@@ -0,0 +1,62 @@
+/* Copyright (c) 2007-2017 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package minesweeper;
+
+import java.util.Random;
+
+/**
+ * HintBenchmark measures the latency of HintSolver.hint while a game is played on a large board:
+ * each move plays the hint (or digs a random square when there is none), so most hints only
+ * read the squares the last move changed.
+ *
+ * Not a JUnit test, run it by hand:
+ *      java minesweeper.HintBenchmark [SIZE [DENSITY [MOVES]]]
+ */
+public class HintBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int size = (args.length > 0) ? Integer.parseInt(args[0]) : 1000;
+        double density = (args.length > 1) ? Double.parseDouble(args[1]) : 0.15;
+        int moves = (args.length > 2) ? Integer.parseInt(args[2]) : 20000;
+
+        System.out.printf("board %dx%d, density %.2f, %d moves%n", size, size, density, moves);
+        for (int round = 0; round < 2; round++) {
+            // the first round warms up the JIT
+            System.out.printf("round %d%n", round);
+            run(size, density, moves, round);
+        }
+    }
+
+    /*
+     * play moves moves on a new board, and report the latencies of the hints.
+     */
+    private static void run(int size, double density, int moves, long seed) {
+        Board board = RandomBoards.make(size, size, density, seed);
+        Random random = new Random(seed);
+        long start = System.nanoTime();
+        HintSolver solver = HintSolver.attach(board);
+        long attach = System.nanoTime() - start;
+
+        Histogram hints = new Histogram();
+        int hinted = 0;
+        for (int move = 0; move < moves && board.getUntouched() > 0; move++) {
+            start = System.nanoTime();
+            int[] hint = solver.hint();
+            hints.record(System.nanoTime() - start);
+            if (hint == null) {
+                board.dig(random.nextInt(size), random.nextInt(size));
+            } else if (hint[2] == HintSolver.MINE) {
+                board.flag(hint[0], hint[1]);
+                hinted++;
+            } else {
+                board.deflag(hint[0], hint[1]);
+                board.dig(hint[0], hint[1]);
+                hinted++;
+            }
+        }
+        System.out.printf("  attach %8.2f ms, %d hints of %d: p50 %8.4f ms, p99 %8.4f ms, max %8.3f ms%n",
+                attach / 1e6, hinted, hints.getCount(), hints.getValueAtPercentile(50) / 1e6,
+                hints.getValueAtPercentile(99) / 1e6, hints.getMax() / 1e6);
+    }
+}
@@ -0,0 +1,115 @@
+/* Copyright (c) 2007-2017 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package minesweeper;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * HintSolverTest checks that the hints are right, and that the incremental solver proves a
+ * square whenever a solver reading the whole board does.
+ */
+public class HintSolverTest {
+
+    private static final String BOARDS_PKG = "test/minesweeper/server/";
+
+    /*
+     * Testing strategy
+     * ==================
+     *
+     * on the board_file_4.txt (bombs at (1,1) and (2,3)):
+     * 1. no hint before a dig
+     * 2. a hint by subset reasoning after a cascade, the same until it's played
+     * 3. a square proven safe and flagged is still hinted; a bomb flagged isn't
+     */
+
+    @Test
+    public void testBoardFile() throws IOException {
+        Board board = new DenseBoard(new File(BOARDS_PKG + "board_file_4.txt"));
+        HintSolver solver = HintSolver.attach(board);
+        assertEquals(null, solver.hint());
+
+        board.dig(3, 0); // cascade
+        // (2,0) has 1 bomb in {(1,0), (1,1)}, and (2,1) 1 in {(1,0), (1,1), (1,2)}
+        int[] hint = solver.hint();
+        assertTrue(hint != null);
+        assertArrayEquals(hint, solver.hint());
+        for (int i = 0; i < 6 && hint != null; i++) {
+            boolean bomb = (hint[0] == 1 && hint[1] == 1) || (hint[0] == 2 && hint[1] == 3);
+            assertEquals(bomb ? HintSolver.MINE : HintSolver.SAFE, hint[2]);
+            if (bomb) {
+                board.flag(hint[0], hint[1]);
+            } else {
+                assertTrue(board.dig(hint[0], hint[1]) >= 0);
+            }
+            hint = solver.hint();
+        }
+
+        Board flagged = new DenseBoard(new File(BOARDS_PKG + "board_file_4.txt"));
+        flagged.flag(1, 2);
+        solver = HintSolver.attach(flagged);
+        flagged.dig(3, 0);
+        flagged.dig(2, 0);
+        flagged.dig(2, 1);
+        hint = solver.hint();
+        assertArrayEquals(new int[] {1, 2, HintSolver.SAFE}, hint);
+    }
+
+    /*
+     * Testing strategy
+     * ==================
+     *
+     * random games on random boards, with bombs dug too, whole and sliced cascades:
+     * 1. each hint is right
+     * 2. the incremental solver has a hint whenever a new solver of the board has one
+     */
+
+    @Test
+    public void testRandomGames() {
+        for (int seed = 0; seed < 8; seed++) {
+            int sizeX = 30 + seed;
+            int sizeY = 20;
+            boolean[][] bombs = RandomBoards.mines(sizeX, sizeY, 0.12 + 0.02 * seed, new Random(seed));
+            Board board = new DenseBoard(bombs);
+            if (seed % 2 == 1)
+                board.setCascadeSlice(7);
+            HintSolver solver = HintSolver.attach(board);
+            Random random = new Random(seed);
+            int hinted = 0;
+            for (int move = 0; move < 150 && board.getUntouched() > 0; move++) {
+                int[] hint = solver.hint();
+                int[] fresh = HintSolver.attach(board).hint();
+                assertTrue("seed " + seed + " move " + move, fresh == null || hint != null);
+                if (hint != null) {
+                    hinted++;
+                    assertEquals(bombs[hint[0]][hint[1]] ? HintSolver.MINE : HintSolver.SAFE, hint[2]);
+                    if (hint[2] == HintSolver.MINE) {
+                        board.flag(hint[0], hint[1]);
+                    } else {
+                        board.deflag(hint[0], hint[1]);
+                        board.dig(hint[0], hint[1]);
+                    }
+                } else {
+                    // a guess, maybe a bomb (which is then removed)
+                    int x = random.nextInt(sizeX);
+                    int y = random.nextInt(sizeY);
+                    if (board.dig(x, y) == Board.BOMB)
+                        bombs[x][y] = false;
+                }
+                if (random.nextInt(10) == 0) {
+                    // a wrong flag
+                    board.flag(random.nextInt(sizeX), random.nextInt(sizeY));
+                }
+            }
+            assertTrue("seed " + seed, hinted > 0);
+        }
+    }
+}
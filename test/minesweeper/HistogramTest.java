@@ -0,0 +1,83 @@
+/* Copyright (c) 2007-2017 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package minesweeper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests Histogram.
+ */
+public class HistogramTest {
+
+    /*
+     * Testing strategy
+     * ==================
+     * 
+     * 1. empty histogram
+     * 2. small values (exact), large values (within the relative error), negative values
+     * 3. percentiles 0, 50, 99, 100
+     * 4. concurrent recording loses no value
+     * 
+     * Cover each part testing coverage.
+     */
+    
+    @Test
+    public void testEmpty() {
+        Histogram h = new Histogram();
+        assertEquals(0, h.getCount());
+        assertEquals(0, h.getSum());
+        assertEquals(0, h.getValueAtPercentile(99));
+    }
+    
+    @Test
+    public void testPercentiles() {
+        Histogram h = new Histogram();
+        for (int i = 1; i <= 100; i++) {
+            h.record(i * 1000);
+        }
+        h.record(-5);
+        assertEquals(101, h.getCount());
+        assertEquals(5050 * 1000, h.getSum());
+        assertEquals(100000, h.getMax());
+        assertEquals(0, h.getValueAtPercentile(0));
+        assertEquals(100000, h.getValueAtPercentile(100));
+        
+        long p50 = h.getValueAtPercentile(50);
+        assertTrue("p50 = " + p50, p50 >= 50000 && p50 <= 50000 * 17 / 16);
+        long p99 = h.getValueAtPercentile(99);
+        assertTrue("p99 = " + p99, p99 >= 99000 && p99 <= 100000);
+    }
+    
+    @Test
+    public void testSmallValuesExact() {
+        Histogram h = new Histogram();
+        for (int i = 0; i < 10; i++) {
+            h.record(i);
+        }
+        assertEquals(4, h.getValueAtPercentile(50));
+        assertEquals(9, h.getValueAtPercentile(100));
+    }
+    
+    @Test
+    public void testConcurrentRecording() throws InterruptedException {
+        Histogram h = new Histogram();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 10000; i++) {
+                    h.record(i);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        assertEquals(40000, h.getCount());
+        assertEquals(9999, h.getMax());
+    }
+}
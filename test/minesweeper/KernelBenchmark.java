@@ -0,0 +1,108 @@
+/* Copyright (c) 2007-2017 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package minesweeper;
+
+import java.util.Random;
+
+/**
+ * KernelBenchmark measures the BoardKernels passes over a whole SIZE x SIZE board, counting
+ * the bombs around each square (as a Board is built) and translating its states to glyphs (as it
+ * is drawn), with the scalar kernels and with the kernels in use (the vector ones if the
+ * jdk.incubator.vector module is there, and VectorKernels on the class path). The columns and rows are taken from a pool of random
+ * ones, so large boards don't need their whole arrays.
+ *
+ * Not a JUnit test, run it by hand:
+ *      java --add-modules jdk.incubator.vector minesweeper.KernelBenchmark [SIZE... [-r ROUNDS]]
+ * by default on 1024, 4096 and 16384 squares boards.
+ */
+public class KernelBenchmark {
+
+    private static final int POOL = 64;
+
+    public static void main(String[] args) {
+        int rounds = 5;
+        int[] sizes = {1024, 4096, 16384};
+        if (args.length > 0) {
+            int n = 0;
+            int[] given = new int[args.length];
+            for (int i = 0; i < args.length; i++) {
+                if (args[i].equals("-r"))
+                    rounds = Integer.parseInt(args[++i]);
+                else
+                    given[n++] = Integer.parseInt(args[i]);
+            }
+            if (n > 0)
+                sizes = java.util.Arrays.copyOf(given, n);
+        }
+        BoardKernels scalar = new BoardKernels();
+        BoardKernels kernels = BoardKernels.get();
+
+        System.out.printf("kernels: %s, %d rounds%n", kernels.getName(), rounds);
+        for (int round = 0; round < 2; round++) {
+            // the first round warms up the JIT
+            System.out.printf("round %d%n", round);
+            for (int size : sizes) {
+                double scalarCount = count(scalar, size, rounds);
+                double count = count(kernels, size, rounds);
+                double scalarGlyphs = glyphs(scalar, size, rounds);
+                double glyphs = glyphs(kernels, size, rounds);
+                System.out.printf("  %5dx%-5d count: scalar %8.2f ms, %s %8.2f ms, speedup %5.2f%n",
+                                  size, size, scalarCount, kernels.getName(), count, scalarCount / count);
+                System.out.printf("  %5dx%-5d glyphs: scalar %8.2f ms, %s %8.2f ms, speedup %5.2f%n",
+                                  size, size, scalarGlyphs, kernels.getName(), glyphs, scalarGlyphs / glyphs);
+            }
+        }
+    }
+
+    /*
+     * return the mean time to count the bombs of a board, in milliseconds.
+     */
+    private static double count(BoardKernels kernels, int size, int rounds) {
+        Random rand = new Random(1);
+        boolean[][] columns = new boolean[POOL][size];
+        for (boolean[] column : columns) {
+            for (int y = 0; y < size; y++)
+                column[y] = rand.nextInt(4) == 0;
+        }
+        byte[] counts = new byte[size];
+        long check = 0;
+        long start = System.nanoTime();
+        for (int r = 0; r < rounds; r++) {
+            for (int x = 0; x < size; x++) {
+                kernels.countColumn((x > 0) ? columns[(x - 1) % POOL] : null, columns[x % POOL],
+                                    (x < size - 1) ? columns[(x + 1) % POOL] : null, counts);
+                check += counts[x % size];
+            }
+        }
+        double result = (System.nanoTime() - start) / 1e6 / rounds;
+        if (check < 0)
+            throw new AssertionError();
+        return result;
+    }
+
+    /*
+     * return the mean time to translate the states of a board to glyphs, in milliseconds.
+     */
+    private static double glyphs(BoardKernels kernels, int size, int rounds) {
+        Random rand = new Random(2);
+        short[][] rows = new short[POOL][size];
+        for (short[] row : rows) {
+            for (int x = 0; x < size; x++)
+                row[x] = (short) (rand.nextInt(11) - 2);
+        }
+        byte[] line = new byte[2 * size];
+        long check = 0;
+        long start = System.nanoTime();
+        for (int r = 0; r < rounds; r++) {
+            for (int y = 0; y < size; y++) {
+                kernels.glyphs(rows[y % POOL], size, line, 0);
+                check += line[y % size];
+            }
+        }
+        double result = (System.nanoTime() - start) / 1e6 / rounds;
+        if (check < 0)
+            throw new AssertionError();
+        return result;
+    }
+}
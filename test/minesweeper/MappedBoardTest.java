@@ -0,0 +1,169 @@
+/* Copyright (c) 2007-2017 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package minesweeper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Test;
+
+/**
+ * MappedBoardTest checks that a MappedBoard resumes its game from its file, at once after a
+ * force(), and by recovering it otherwise.
+ */
+public class MappedBoardTest {
+
+    private static final String BOARDS_PKG = "test/minesweeper/server/";
+
+    @Test
+    public void testResume() throws IOException {
+        Path dir = Files.createTempDirectory("minesweeper");
+        File file = dir.resolve("board").toFile();
+        try {
+            MappedBoard board = MappedBoard.create(file, new File(BOARDS_PKG + "board_file_4.txt"));
+            assertEquals(0, board.getSequence());
+            board.flag(0, 0);
+            board.dig(3, 0); // cascade
+            board.dig(1, 1);
+            String drawing = board.draw();
+            long version = board.getVersion();
+            int untouched = board.getUntouched();
+            int bombs = board.getBombs();
+            board.release(); // forced
+
+            MappedBoard resumed = MappedBoard.open(file);
+            assertFalse(resumed.isRecovered());
+            assertEquals(version, resumed.getSequence());
+            assertEquals(version, resumed.getVersion());
+            assertEquals(drawing, resumed.draw());
+            assertEquals(untouched, resumed.getUntouched());
+            assertEquals(bombs, resumed.getBombs());
+            assertEquals(1, resumed.getFlagged());
+            resumed.deflag(0, 0);
+            assertEquals(version + 1, resumed.getVersion());
+            resumed.release();
+        } finally {
+            deleteAll(dir);
+        }
+    }
+
+    @Test
+    public void testRecover() throws IOException {
+        Path dir = Files.createTempDirectory("minesweeper");
+        File file = dir.resolve("board").toFile();
+        File crashed = dir.resolve("crashed").toFile();
+        try {
+            MappedBoard board = MappedBoard.create(file, new File(BOARDS_PKG + "board_file_4.txt"));
+            board.flag(0, 0);
+            board.force();
+            long sequence = board.getVersion();
+            board.dig(3, 0); // cascade, not forced
+            board.deflag(0, 0);
+            // the file as the OS left it, its header dirty
+            Files.copy(file.toPath(), crashed.toPath());
+            String drawing = board.draw();
+            long version = board.getVersion();
+            board.release();
+
+            MappedBoard recovered = MappedBoard.open(crashed);
+            assertTrue(recovered.isRecovered());
+            assertEquals(drawing, recovered.draw());
+            assertEquals(version, recovered.getVersion());
+            assertEquals(version, recovered.getSequence());
+            assertTrue(recovered.getSequence() > sequence);
+            assertEquals(0, recovered.getFlagged());
+            recovered.release();
+
+            // forced when it was recovered
+            MappedBoard reopened = MappedBoard.open(crashed);
+            assertFalse(reopened.isRecovered());
+            assertEquals(drawing, reopened.draw());
+            reopened.release();
+        } finally {
+            deleteAll(dir);
+        }
+    }
+
+    @Test
+    public void testRecoverInterruptedCascade() throws IOException {
+        Path dir = Files.createTempDirectory("minesweeper");
+        File file = dir.resolve("board").toFile();
+        File crashed = dir.resolve("crashed").toFile();
+        try {
+            MappedBoard board = MappedBoard.create(file, new File(BOARDS_PKG + "board_file_4.txt"));
+            board.dig(3, 0); // cascade
+            Files.copy(file.toPath(), crashed.toPath());
+            int sizeX = board.getBoardSizeX();
+            int sizeY = board.getBoardSizeY();
+            String drawing = board.draw();
+            int[] states = new int[sizeX * sizeY];
+            for (int x = 0; x < sizeX; x++) {
+                for (int y = 0; y < sizeY; y++) {
+                    states[x * sizeY + y] = board.getState(x, y);
+                }
+            }
+            board.release();
+
+            // only part of the squares revealed by the cascade made it to the file
+            int lost = 0;
+            try (RandomAccessFile raf = new RandomAccessFile(crashed, "rw")) {
+                for (int s = 0; s < states.length; s++) {
+                    if (states[s] >= 0 && s != 3 * sizeY && s % 2 == 0) {
+                        raf.seek(MappedBoard.HEADER_LENGTH + s);
+                        raf.write(0); // UNTOUCHED
+                        lost++;
+                    }
+                }
+            }
+            assertTrue(lost > 0);
+
+            MappedBoard recovered = MappedBoard.open(crashed);
+            assertTrue(recovered.isRecovered());
+            assertEquals(drawing, recovered.draw());
+            recovered.release();
+        } finally {
+            deleteAll(dir);
+        }
+    }
+
+    @Test
+    public void testLocked() throws IOException {
+        Path dir = Files.createTempDirectory("minesweeper");
+        File file = dir.resolve("board").toFile();
+        try {
+            MappedBoard board = MappedBoard.create(file, 20, 10);
+            try {
+                MappedBoard.open(file);
+                throw new AssertionError("opened twice");
+            } catch (IOException e) {
+                // expected
+            }
+            board.release();
+            MappedBoard.open(file).release();
+            try {
+                MappedBoard.create(file, 20, 10);
+                throw new AssertionError("created over an existing file");
+            } catch (IOException e) {
+                // expected
+            }
+            assertTrue(file.isFile());
+        } finally {
+            deleteAll(dir);
+        }
+    }
+
+    private static void deleteAll(Path dir) throws IOException {
+        for (File file : dir.toFile().listFiles()) {
+            file.delete();
+        }
+        Files.delete(dir);
+    }
+}
@@ -0,0 +1,57 @@
+/* Copyright (c) 2007-2017 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package minesweeper;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * NoGuessBenchmark measures the time NoGuessGenerator takes to generate boards which can be
+ * played without guessing, on expert boards (30 x 16 squares, 99 bombs) and on 500 x 500 boards
+ * with the expert density and lower ones, the first dig in the middle. It reports the time to
+ * generate each board, and the safe squares left covered by the board taken (0 unless the time
+ * allowed was over).
+ *
+ * Not a JUnit test, run it by hand:
+ *      java minesweeper.NoGuessBenchmark [BOARDS [TIMEOUT_MS]]
+ */
+public class NoGuessBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int boards = (args.length > 0) ? Integer.parseInt(args[0]) : 10;
+        long timeout = (args.length > 1) ? Long.parseLong(args[1]) : 10_000;
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+
+        System.out.printf("%d boards each, %d ms allowed, %d tasks%n", boards, timeout, pool.getParallelism());
+        for (int round = 0; round < 2; round++) {
+            // the first round warms up the JIT
+            System.out.printf("round %d%n", round);
+            run(30, 16, NoGuessGenerator.EXPERT_DENSITY, boards, timeout, pool);
+            run(500, 500, NoGuessGenerator.EXPERT_DENSITY, (round == 0) ? 1 : boards, timeout, pool);
+            run(500, 500, 0.15, (round == 0) ? 1 : boards, timeout, pool);
+            run(500, 500, 0.10, (round == 0) ? 1 : boards, timeout, pool);
+        }
+    }
+
+    /*
+     * generate boards boards, and report the times.
+     */
+    private static void run(int sizeX, int sizeY, double density, int boards, long timeout, ForkJoinPool pool) {
+        Histogram times = new Histogram();
+        int found = 0;
+        long left = 0;
+        int bombs = (int) Math.round(density * sizeX * sizeY);
+        for (int b = 0; b < boards; b++) {
+            long start = System.nanoTime();
+            boolean[][] mines = NoGuessGenerator.generate(sizeX, sizeY, bombs, sizeX / 2, sizeY / 2, timeout, pool, b);
+            times.record(System.nanoTime() - start);
+            int covered = NoGuessGenerator.solve(mines, sizeX / 2, sizeY / 2);
+            if (covered == 0)
+                found++;
+            left += covered;
+        }
+        System.out.printf("  %dx%d, %d bombs: %d/%d found, p50 %9.2f ms, max %9.2f ms, %.1f safe squares left on average%n",
+                sizeX, sizeY, bombs, found, boards, times.getValueAtPercentile(50) / 1e6, times.getMax() / 1e6,
+                (double) left / boards);
+    }
+}
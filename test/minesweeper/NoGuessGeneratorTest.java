@@ -0,0 +1,116 @@
+/* Copyright (c) 2007-2017 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package minesweeper;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+/**
+ * NoGuessGeneratorTest checks that the boards generated can be played without guessing, and
+ * the fallback of the generator when none is found in time.
+ */
+public class NoGuessGeneratorTest {
+
+    /*
+     * Testing strategy
+     * ==================
+     *
+     * solve, partitioned on:
+     * 1. the board can be played to the end, or a 50/50 is left
+     *
+     * generate, partitioned on:
+     * 1. played in the caller's thread, or in parallel
+     * 2. a candidate found, or the time allowed over
+     * 3. the first dig in a corner, in the middle
+     * 4. invalid first dig, too many bombs
+     *
+     * repair, partitioned on:
+     * 1. a safe square walled in by bombs, none of them next to a dug square once played
+     */
+
+    @Test
+    public void testSolve() {
+        // a single bomb at (3,0), found from the 1 of (2,0)
+        boolean[][] mines = new boolean[4][1];
+        mines[3][0] = true;
+        assertEquals(0, NoGuessGenerator.solve(mines, 0, 0));
+
+        // a bomb at (2,0) or (2,1), as far as the 1s of (1,0) and (1,1) tell
+        mines = new boolean[3][2];
+        mines[2][0] = true;
+        assertEquals(1, NoGuessGenerator.solve(mines, 0, 0));
+    }
+
+    @Test
+    public void testGenerate() {
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            for (int seed = 0; seed < 4; seed++) {
+                int firstX = (seed % 2 == 0) ? 0 : 4;
+                int firstY = (seed % 2 == 0) ? 0 : 4;
+                boolean[][] mines = NoGuessGenerator.generate(9, 9, 10, firstX, firstY, 60_000,
+                                                              (seed < 2) ? null : pool, seed);
+                assertEquals(0, NoGuessGenerator.solve(mines, firstX, firstY));
+                assertEquals(10, count(mines, 0, 0, 8, 8));
+                assertEquals(0, count(mines, firstX - 1, firstY - 1, firstX + 1, firstY + 1));
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testRepairPocket() {
+        for (int seed = 0; seed < 8; seed++) {
+            // the safe corner (8,8) walled in by the bombs of (7,7), (7,8) and (8,7): the rest
+            // is played, flagging them, but no count tells (8,8) apart
+            boolean[][] mines = new boolean[9][9];
+            mines[7][7] = true;
+            mines[7][8] = true;
+            mines[8][7] = true;
+            assertEquals(1, NoGuessGenerator.solve(mines, 0, 0));
+
+            assertEquals(0, NoGuessGenerator.repair(mines, 0, 0, seed));
+            assertEquals(0, NoGuessGenerator.solve(mines, 0, 0));
+            assertEquals(3, count(mines, 0, 0, 8, 8));
+            assertEquals(0, count(mines, 0, 0, 1, 1));
+        }
+    }
+
+    @Test
+    public void testTimeout() {
+        // no time allowed: the best of the first candidates of the tasks
+        boolean[][] mines = NoGuessGenerator.generate(30, 16, 99, 4, 4, 0, ForkJoinPool.commonPool(), 1);
+        assertEquals(99, count(mines, 0, 0, 29, 15));
+        assertEquals(0, count(mines, 3, 3, 5, 5));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFirstDigOffBoard() {
+        NoGuessGenerator.generate(9, 9, 10, 9, 0, 1000, null, 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTooManyBombs() {
+        // 77 squares away from a first dig in the middle
+        NoGuessGenerator.generate(9, 9, 73, 4, 4, 1000, null, 1);
+    }
+
+    /*
+     * the number of bombs of mines in the rectangle from (x0, y0) to (x1, y1) (clipped).
+     */
+    private static int count(boolean[][] mines, int x0, int y0, int x1, int y1) {
+        int count = 0;
+        for (int x = Math.max(0, x0); x <= Math.min(mines.length - 1, x1); x++) {
+            for (int y = Math.max(0, y0); y <= Math.min(mines[0].length - 1, y1); y++) {
+                if (mines[x][y])
+                    count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,126 @@
+/* Copyright (c) 2007-2017 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package minesweeper;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * OffHeapBoardTest runs the conformance suite (BoardTest) on OffHeapBoard, and checks that an
+ * OffHeapBoard behaves as a DenseBoard with the same bombs, for the same operations.
+ */
+public class OffHeapBoardTest extends BoardTest {
+
+    @Override
+    protected String getBoardClassName() {
+        return "minesweeper.OffHeapBoard";
+    }
+
+    @Override
+    protected boolean hasCascadeEngines() {
+        return false;
+    }
+
+    @Test
+    public void testSameAsDenseBoard() throws IOException {
+        for (int seed = 0; seed < 4; seed++) {
+            File file = RandomBoards.write(RandomBoards.mines(37, 23, 0.12, new Random(seed)));
+            try {
+                DenseBoard dense = new DenseBoard(file);
+                OffHeapBoard offHeap = new OffHeapBoard(file);
+                if (seed % 2 == 1) {
+                    // sliced cascades, one version per slice
+                    dense.setCascadeSlice(5);
+                    offHeap.setCascadeSlice(5);
+                }
+                assertSame(dense, offHeap);
+
+                Random rand = new Random(seed);
+                for (int i = 0; i < 200; i++) {
+                    // a few moves off the board too
+                    int x = rand.nextInt(39) - 1;
+                    int y = rand.nextInt(25) - 1;
+                    switch (rand.nextInt(4)) {
+                    case 0:
+                        dense.flag(x, y);
+                        offHeap.flag(x, y);
+                        break;
+                    case 1:
+                        dense.deflag(x, y);
+                        offHeap.deflag(x, y);
+                        break;
+                    default:
+                        assertEquals(dense.dig(x, y), offHeap.dig(x, y));
+                    }
+                    assertSame(dense, offHeap);
+                    assertArrayEquals(dense.getChangedSince(Math.max(0, dense.getVersion() - 3), 1000),
+                                      offHeap.getChangedSince(Math.max(0, offHeap.getVersion() - 3), 1000));
+                }
+                offHeap.release();
+            } finally {
+                file.delete();
+            }
+        }
+    }
+
+    @Test
+    public void testRandomBoard() {
+        OffHeapBoard board = new OffHeapBoard(100, 50);
+        assertEquals(100, board.getBoardSizeX());
+        assertEquals(50, board.getBoardSizeY());
+        assertEquals(5000, board.getUntouched());
+        assertTrue(board.getBombs() > 0 && board.getBombs() < 5000);
+        board.release();
+    }
+
+    @Test
+    public void testRelease() {
+        OffHeapBoard board = new OffHeapBoard(10, 10);
+        board.flag(1, 1);
+        board.release();
+        board.release(); // twice is harmless
+        try {
+            board.dig(2, 2);
+            throw new AssertionError("dig after release");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        try {
+            board.draw();
+            throw new AssertionError("draw after release");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testUnsupportedEngine() {
+        OffHeapBoard board = new OffHeapBoard(10, 10);
+        try {
+            board.setCascadeEngine(Board.CascadeEngine.BITBOARD);
+        } finally {
+            board.release();
+        }
+    }
+
+    /*
+     * assert that two boards have the same state.
+     */
+    private static void assertSame(Board expected, Board actual) {
+        assertEquals(expected.getVersion(), actual.getVersion());
+        assertEquals(expected.getBombs(), actual.getBombs());
+        assertEquals(expected.getFlagged(), actual.getFlagged());
+        assertEquals(expected.getUntouched(), actual.getUntouched());
+        assertEquals(expected.draw(), actual.draw());
+        assertEquals(expected.drawRle(), actual.drawRle());
+        assertArrayEquals(expected.drawPacked(), actual.drawPacked());
+    }
+}
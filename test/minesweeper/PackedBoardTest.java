@@ -0,0 +1,42 @@
+/* Copyright (c) 2007-2017 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package minesweeper;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * PackedBoardTest runs the conformance suite (BoardTest) on PackedBoard, and checks the packing
+ * of the states.
+ */
+public class PackedBoardTest extends BoardTest {
+
+    @Override
+    protected String getBoardClassName() {
+        return "minesweeper.PackedBoard";
+    }
+
+    @Override
+    protected boolean hasCascadeEngines() {
+        return false;
+    }
+
+    @Test
+    public void testPackedStates() {
+        // 17 x 3 squares: the nibbles of a row span two longs
+        PackedBoard board = new PackedBoard(17, 3);
+        int[] states = {Board.FLAGGED, Board.UNTOUCHED, 0, 1, 2, 3, 4, 5, 6, 7, 8};
+        for (long s = 0; s < 17 * 3; s++) {
+            board.putState(s, states[(int) (s % states.length)]);
+        }
+        for (long s = 0; s < 17 * 3; s++) {
+            assertEquals("square " + s, states[(int) (s % states.length)], board.state(s));
+        }
+        board.putState(16, Board.UNTOUCHED);
+        assertEquals(Board.UNTOUCHED, board.state(16));
+        assertEquals(states[15 % states.length], board.state(15));
+        assertEquals(states[17 % states.length], board.state(17));
+    }
+}
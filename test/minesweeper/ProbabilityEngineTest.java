@@ -0,0 +1,266 @@
+/* Copyright (c) 2007-2017 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package minesweeper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+/**
+ * ProbabilityEngineTest checks the probabilities of the squares against an enumeration of all
+ * the placements of the bombs of the frontier, and that they follow the changes of the board.
+ */
+public class ProbabilityEngineTest {
+
+    private static final String BOARDS_PKG = "test/minesweeper/server/";
+    private static final double EPSILON = 1e-9;
+
+    /*
+     * Testing strategy
+     * ==================
+     *
+     * on the board_file_4.txt (bombs at (1,1) and (2,3)):
+     * 1. before a dig: all the squares have the density of the bombs
+     * 2. after a cascade: dug squares, frontier squares (safe, even, likely), other squares
+     * 3. after a dig in the frontier: the component is solved again
+     */
+
+    @Test
+    public void testBoardFile() throws IOException {
+        Board board = new DenseBoard(new File(BOARDS_PKG + "board_file_4.txt"));
+        ProbabilityEngine engine = new ProbabilityEngine(board, null);
+        double[][] probabilities = engine.probabilities(0, 0, 4, 4);
+        assertEquals(2.0 / 16, probabilities[3][3], EPSILON);
+
+        // 2 bombs left in 10 covered squares: the placements are weighted by 0.25 per bomb, 2
+        // placements with (1,1) and 2 bombs, and 2 with (1,0), (1,3) and 3 bombs
+        board.dig(3, 0);
+        probabilities = engine.probabilities(0, 0, 4, 4);
+        assertTrue(Double.isNaN(probabilities[3][0]));
+        assertTrue(Double.isNaN(probabilities[2][2]));
+        assertEquals(0.2, probabilities[0][0], EPSILON);
+        assertEquals(0.2, probabilities[1][0], EPSILON);
+        assertEquals(0.8, probabilities[1][1], EPSILON);
+        assertEquals(0, probabilities[1][2], EPSILON);
+        assertEquals(0.2, probabilities[1][3], EPSILON);
+        assertEquals(0.5, probabilities[2][3], EPSILON);
+        assertEquals(0.5, probabilities[3][3], EPSILON);
+
+        // a window of the same component, cached
+        probabilities = engine.probabilities(2, 3, 2, 1);
+        assertEquals(0.5, probabilities[0][0], EPSILON);
+
+        board.dig(1, 2);
+        probabilities = engine.probabilities(0, 0, 4, 4);
+        assertTrue(Double.isNaN(probabilities[1][2]));
+        assertEquals(1, probabilities[2][3] + probabilities[3][3], EPSILON);
+    }
+
+    /*
+     * Testing strategy
+     * ==================
+     *
+     * on the boards whose bombs are placed lazily, of each implementation:
+     * 1. before the first dig: no probabilities, the bombs are still to be placed
+     * 2. after the first dig: the squares around it are dug, and the covered squares have
+     *    probabilities of the bombs placed
+     */
+
+    @Test
+    public void testLazyBoard() {
+        for (BoardFactory.Implementation implementation : BoardFactory.Implementation.values()) {
+            Board board = BoardFactory.make(implementation, 30, 20, true);
+            try {
+                ProbabilityEngine engine = new ProbabilityEngine(board, null);
+                assertEquals(null, engine.probabilities(0, 0, 30, 20));
+                assertEquals(null, engine.probabilities(5, 5, 1, 1));
+
+                board.dig(10, 10);
+                assertTrue(board.getBombs() > 0);
+                double[][] probabilities = engine.probabilities(0, 0, 30, 20);
+                assertTrue(Double.isNaN(probabilities[9][9]));
+                assertTrue(Double.isNaN(probabilities[11][11]));
+                boolean likely = false;
+                for (int x = 0; x < 30; x++) {
+                    for (int y = 0; y < 20; y++) {
+                        double p = probabilities[x][y];
+                        assertTrue(implementation + " " + x + " " + y, Double.isNaN(p) || (p >= 0 && p <= 1));
+                        likely |= p > 0;
+                    }
+                }
+                assertTrue(implementation.toString(), likely);
+            } finally {
+                board.release();
+            }
+        }
+    }
+
+    /*
+     * Testing strategy
+     * ==================
+     *
+     * a frontier of more than MAX_CELLS squares, cut into components overlapping each other
+     * depending on the windows asked first: the probabilities are those of the bombs, which
+     * the counts of the frontier tell apart, whatever the order of the windows.
+     */
+
+    @Test
+    public void testLargeFrontier() {
+        // 40 x 4 squares, the bombs on the even squares of the last row: digging (0,0) reveals
+        // the first 3 rows, leaving a frontier of the 40 squares of the last row
+        boolean[][] mines = new boolean[40][4];
+        for (int x = 0; x < 40; x += 2) {
+            mines[x][3] = true;
+        }
+        int[][] windows = {{39, 1}, {0, 10}, {20, 1}, {35, 1}, {5, 30}, {0, 40}};
+        for (int first = 0; first < windows.length; first++) {
+            Board board = new DenseBoard(mines);
+            ProbabilityEngine engine = new ProbabilityEngine(board, null);
+            board.dig(0, 0);
+            assertEquals(40, board.getUntouched());
+            for (int w = 0; w < windows.length; w++) {
+                int[] window = windows[(first + w) % windows.length];
+                double[][] probabilities = engine.probabilities(window[0], 3, window[1], 1);
+                for (int i = 0; i < window[1]; i++) {
+                    int x = window[0] + i;
+                    assertEquals("order " + first + " square (" + x + ", 3)", mines[x][3] ? 1 : 0,
+                                 probabilities[i][0], EPSILON);
+                }
+            }
+        }
+    }
+
+    /*
+     * Testing strategy
+     * ==================
+     *
+     * random small boards, with a few squares dug, sequential and parallel engines, probabilities
+     * asked for the whole board or for windows: the probabilities are those of an enumeration of
+     * the placements of the bombs of the whole frontier.
+     */
+
+    @Test
+    public void testRandomBoards() throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            int compared = 0;
+            for (int seed = 0; seed < 60; seed++) {
+                Random random = new Random(seed);
+                int sizeX = 5 + random.nextInt(4);
+                int sizeY = 4 + random.nextInt(4);
+                Board board = new DenseBoard(RandomBoards.mines(sizeX, sizeY, 0.2, random));
+                ProbabilityEngine engine = new ProbabilityEngine(board, (seed % 2 == 0) ? null : pool);
+                for (int dig = 0; dig < 4; dig++) {
+                    board.dig(random.nextInt(sizeX), random.nextInt(sizeY));
+                    double[][] expected = enumerate(board);
+                    if (expected == null)
+                        continue;
+                    double[][] probabilities = engine.probabilities(0, 0, sizeX, sizeY);
+                    double[][] window = engine.probabilities(1, 1, sizeX - 2, sizeY - 2);
+                    for (int x = 0; x < sizeX; x++) {
+                        for (int y = 0; y < sizeY; y++) {
+                            String square = "seed " + seed + " square (" + x + ", " + y + ")";
+                            assertEquals(square, expected[x][y], probabilities[x][y], EPSILON);
+                            if (x > 0 && y > 0 && x < sizeX - 1 && y < sizeY - 1)
+                                assertEquals(square, expected[x][y], window[x - 1][y - 1], EPSILON);
+                        }
+                    }
+                    compared++;
+                }
+            }
+            assertTrue(compared > 100);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /*
+     * the probabilities of the squares of board, by enumerating all the placements of bombs on
+     * its frontier satisfying the counts of the dug squares, weighted as by ProbabilityEngine,
+     * or null if the frontier is too large.
+     */
+    private static double[][] enumerate(Board board) {
+        int sizeX = board.getBoardSizeX();
+        int sizeY = board.getBoardSizeY();
+        int bombs = board.getBombs();
+        int covered = board.getUntouched() + board.getFlagged();
+        double density = (covered == 0) ? 0 : (double) bombs / covered;
+        double odds = density / (1 - density);
+
+        List<int[]> frontier = new ArrayList<>();
+        double[][] probabilities = new double[sizeX][sizeY];
+        for (int x = 0; x < sizeX; x++) {
+            for (int y = 0; y < sizeY; y++) {
+                if (board.getState(x, y) >= 0) {
+                    probabilities[x][y] = Double.NaN;
+                } else if (hasDugAround(board, x, y)) {
+                    frontier.add(new int[] {x, y});
+                } else {
+                    probabilities[x][y] = density;
+                }
+            }
+        }
+        int n = frontier.size();
+        if (n > 16 || bombs == 0 || bombs == covered)
+            return null;
+
+        double all = 0;
+        double[] mine = new double[n];
+        for (int placement = 0; placement < (1 << n); placement++) {
+            boolean[][] bomb = new boolean[sizeX][sizeY];
+            for (int i = 0; i < n; i++) {
+                bomb[frontier.get(i)[0]][frontier.get(i)[1]] = (placement & (1 << i)) != 0;
+            }
+            if (!satisfies(board, bomb))
+                continue;
+            double weight = Math.pow(odds, Integer.bitCount(placement));
+            all += weight;
+            for (int i = 0; i < n; i++) {
+                if ((placement & (1 << i)) != 0)
+                    mine[i] += weight;
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            probabilities[frontier.get(i)[0]][frontier.get(i)[1]] = mine[i] / all;
+        }
+        return probabilities;
+    }
+
+    private static boolean satisfies(Board board, boolean[][] bomb) {
+        for (int x = 0; x < board.getBoardSizeX(); x++) {
+            for (int y = 0; y < board.getBoardSizeY(); y++) {
+                int count = board.getState(x, y);
+                if (count < 0)
+                    continue;
+                for (int u = Math.max(0, x - 1); u <= Math.min(board.getBoardSizeX() - 1, x + 1); u++) {
+                    for (int v = Math.max(0, y - 1); v <= Math.min(board.getBoardSizeY() - 1, y + 1); v++) {
+                        if (bomb[u][v])
+                            count--;
+                    }
+                }
+                if (count != 0)
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean hasDugAround(Board board, int x, int y) {
+        for (int u = Math.max(0, x - 1); u <= Math.min(board.getBoardSizeX() - 1, x + 1); u++) {
+            for (int v = Math.max(0, y - 1); v <= Math.min(board.getBoardSizeY() - 1, y + 1); v++) {
+                if (board.getState(u, v) >= 0)
+                    return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,64 @@
+/* Copyright (c) 2007-2017 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package minesweeper;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * RandomBoards makes the random boards of the tests and benchmarks: their bombs in memory, and
+ * the board files of the implementations only made from a file.
+ */
+final class RandomBoards {
+
+    private RandomBoards() {
+    }
+
+    /*
+     * @return the bombs of a board of sizeX x sizeY squares, each with a bomb with probability
+     *         density, as mines[x][y] for the square (x, y); drawn row by row from random
+     */
+    static boolean[][] mines(int sizeX, int sizeY, double density, Random random) {
+        boolean[][] mines = new boolean[sizeX][sizeY];
+        for (int y = 0; y < sizeY; y++) {
+            for (int x = 0; x < sizeX; x++) {
+                mines[x][y] = random.nextDouble() < density;
+            }
+        }
+        return mines;
+    }
+
+    /*
+     * @return a DenseBoard of sizeX x sizeY squares, each with a bomb with probability density
+     */
+    static Board make(int sizeX, int sizeY, double density, long seed) {
+        return new DenseBoard(mines(sizeX, sizeY, density, new Random(seed)));
+    }
+
+    /*
+     * @return a temporary board file (see DenseBoard(File)) of the bombs mines, for the caller
+     *         to delete
+     */
+    static File write(boolean[][] mines) throws IOException {
+        int sizeX = mines.length;
+        int sizeY = mines[0].length;
+        StringBuilder rows = new StringBuilder(2 * sizeX * sizeY + 16);
+        rows.append(sizeX).append(' ').append(sizeY).append('\n');
+        for (int y = 0; y < sizeY; y++) {
+            for (int x = 0; x < sizeX; x++) {
+                if (x > 0)
+                    rows.append(' ');
+                rows.append(mines[x][y] ? '1' : '0');
+            }
+            rows.append('\n');
+        }
+        Path file = Files.createTempFile("minesweeper", ".txt");
+        Files.write(file, rows.toString().getBytes(StandardCharsets.US_ASCII));
+        return file.toFile();
+    }
+}
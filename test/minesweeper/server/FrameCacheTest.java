@@ -0,0 +1,82 @@
+/* Copyright (c) 2007-2017 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package minesweeper.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+import minesweeper.Board;
+import minesweeper.DenseBoard;
+import minesweeper.server.FrameCache.Encoding;
+
+public class FrameCacheTest {
+
+    /*
+     * Testing strategy
+     * ==================
+     *
+     * Partition the inputs of lookSince as follows:
+     * 1. since the current version, since an older one (a delta, the whole board), since a
+     *    version from the future
+     * 2. the same since asked again, by the same version or after the board changed
+     * 3. each encoding
+     *
+     * Cover each part testing coverage.
+     */
+
+    private static String text(byte[] bytes) {
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /*
+     * a 20x10 board without bombs, so a dig reveals it whole.
+     */
+    private static Board emptyBoard() {
+        return new DenseBoard(new boolean[20][10]);
+    }
+
+    @Test
+    public void testDeltaShared() {
+        Board board = emptyBoard();
+        FrameCache frames = new FrameCache(board);
+        assertTrue(text(frames.lookSince(0, Encoding.PLAIN)).startsWith("unchanged 0"));
+
+        board.flag(1, 2);
+        board.flag(3, 4);
+        byte[] delta = frames.lookSince(0, Encoding.PLAIN);
+        assertTrue(text(delta).startsWith("delta 2 2"));
+        // encoded once per version, whatever the encoding of the clients
+        assertTrue(delta == frames.lookSince(0, Encoding.PLAIN));
+        assertTrue(delta == frames.lookSince(0, Encoding.RLE));
+        assertTrue(text(frames.lookSince(1, Encoding.PLAIN)).startsWith("delta 2 1"));
+
+        board.deflag(1, 2);
+        byte[] newer = frames.lookSince(0, Encoding.PLAIN);
+        assertTrue(text(newer).startsWith("delta 3 2"));
+        assertTrue(text(frames.lookSince(2, Encoding.PLAIN)).startsWith("delta 3 1"));
+    }
+
+    @Test
+    public void testWholeBoard() {
+        Board board = emptyBoard();
+        FrameCache frames = new FrameCache(board);
+        board.dig(0, 0);
+        for (Encoding encoding : Encoding.values()) {
+            byte[] whole = frames.lookSince(0, encoding);
+            assertTrue(text(whole).startsWith("board 1"));
+            assertTrue(whole == frames.lookSince(0, encoding));
+        }
+        String plain = text(frames.lookSince(0, Encoding.PLAIN));
+        String rle = text(frames.lookSince(0, Encoding.RLE));
+        assertEquals("board 1" + System.lineSeparator() + board.draw() + System.lineSeparator(), plain);
+        assertEquals("board 1" + System.lineSeparator() + board.drawRle() + System.lineSeparator(), rle);
+
+        // a version from the future
+        assertTrue(text(frames.lookSince(7, Encoding.PLAIN)).startsWith("board 1"));
+    }
+}
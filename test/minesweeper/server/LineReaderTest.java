@@ -0,0 +1,71 @@
+/* Copyright (c) 2007-2017 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package minesweeper.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+public class LineReaderTest {
+
+    /*
+     * Testing strategy
+     * ==================
+     *
+     * Partition the inputs as follows:
+     * 1. lines ending with "\n", "\r", "\r\n", the last line without an end, empty lines
+     * 2. hasLine with no byte buffered, a part of a line, a whole line, only the '\n' of "\r\n"
+     * 3. lines longer than the buffer
+     *
+     * Cover each part testing coverage.
+     */
+
+    private static InputStream stream(String s) {
+        return new ByteArrayInputStream(s.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testLineEnds() throws IOException {
+        LineReader in = new LineReader(stream("look\ndig 1 2\r\n\rflag 3 4\rbye"));
+        assertEquals("look", in.readLine());
+        assertEquals("dig 1 2", in.readLine());
+        assertEquals("", in.readLine());
+        assertEquals("flag 3 4", in.readLine());
+        assertEquals("bye", in.readLine());
+        assertEquals(null, in.readLine());
+        assertEquals(null, in.readLine());
+    }
+
+    @Test
+    public void testHasLine() throws IOException {
+        LineReader in = new LineReader(stream("help\r\nlook\r\nlo"));
+        assertFalse(in.hasLine());
+        assertEquals("help", in.readLine());
+        assertTrue(in.hasLine());
+        assertEquals("look", in.readLine());
+        // "\nlo" is buffered: the end of "look", then a part of a line
+        assertFalse(in.hasLine());
+        assertEquals("lo", in.readLine());
+        assertFalse(in.hasLine());
+    }
+
+    @Test
+    public void testLongLine() throws IOException {
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            line.append((char) ('a' + i % 26));
+        }
+        LineReader in = new LineReader(stream(line + "\n" + line + "\n"));
+        assertEquals(line.toString(), in.readLine());
+        assertEquals(line.toString(), in.readLine());
+        assertEquals(null, in.readLine());
+    }
+}
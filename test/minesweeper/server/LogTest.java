@@ -0,0 +1,131 @@
+/* Copyright (c) 2007-2017 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package minesweeper.server;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class LogTest {
+
+    /*
+     * Testing strategy
+     * ==================
+     *
+     * Partition the inputs as follows:
+     * 1. entries logged by one thread, by several threads
+     * 2. entries on an enabled level, on a disabled level
+     * 3. flush() with the entries buffered by the stream until it's flushed
+     *
+     * Cover each part testing coverage.
+     */
+
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+    private static void restore() {
+        Log.setLevel(Log.DEFAULT_LEVEL);
+        Log.setOutput(System.out);
+    }
+
+    /*
+     * redirect the log to bytes, through a buffer only written out when the stream is flushed.
+     */
+    private void capture() throws UnsupportedEncodingException {
+        Log.setOutput(new PrintStream(new BufferedOutputStream(bytes, 1 << 20), false, "UTF-8"));
+    }
+
+    private List<String> messages() {
+        List<String> messages = new ArrayList<>();
+        for (String line : new String(bytes.toByteArray(), StandardCharsets.UTF_8).split("\n")) {
+            // "HH:mm:ss.SSS LEVEL [thread] message"
+            if (!line.isEmpty())
+                messages.add(line.substring(line.indexOf("] ") + 2).trim());
+        }
+        return messages;
+    }
+
+    @Test
+    public void testFlush() throws UnsupportedEncodingException {
+        capture();
+        try {
+            Log.info("first");
+            Log.info("second %d", 2);
+            Log.flush();
+            // both entries are on bytes, past the buffer of the stream
+            List<String> messages = messages();
+            assertEquals(2, messages.size());
+            assertEquals("first", messages.get(0));
+            assertEquals("second 2", messages.get(1));
+        } finally {
+            restore();
+        }
+    }
+
+    @Test
+    public void testLevels() throws UnsupportedEncodingException {
+        capture();
+        try {
+            Log.setLevel(Log.Level.WARN);
+            Log.info("dropped");
+            Log.warn("kept");
+            Log.error("kept too");
+            Log.flush();
+            List<String> messages = messages();
+            assertEquals(2, messages.size());
+            assertEquals("kept", messages.get(0));
+            assertEquals("kept too", messages.get(1));
+        } finally {
+            restore();
+        }
+    }
+
+    @Test
+    public void testOrderPerThread() throws Exception {
+        capture();
+        try {
+            final int threads = 4;
+            final int entries = 1000;
+            List<Thread> loggers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                final int id = t;
+                loggers.add(new Thread(() -> {
+                    for (int i = 0; i < entries; i++) {
+                        Log.info("%d %d", id, i);
+                    }
+                }));
+            }
+            for (Thread logger : loggers) {
+                logger.start();
+            }
+            for (Thread logger : loggers) {
+                logger.join();
+            }
+            Log.flush();
+
+            // every entry is written, in the order of its thread
+            int[] next = new int[threads];
+            List<String> messages = messages();
+            assertEquals(threads * entries, messages.size());
+            for (String message : messages) {
+                String[] fields = message.split(" ");
+                int id = Integer.parseInt(fields[0]);
+                assertEquals(next[id], Integer.parseInt(fields[1]));
+                next[id]++;
+            }
+            for (int t = 0; t < threads; t++) {
+                assertEquals(entries, next[t]);
+            }
+        } finally {
+            restore();
+        }
+    }
+}
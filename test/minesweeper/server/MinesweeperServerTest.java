@@ -11,16 +11,24 @@ import static org.junit.Assert.assertTrue;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.net.ConnectException;
 import java.net.Socket;
+import java.net.HttpURLConnection;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
 import java.util.Random;
 
 import org.junit.Test;
 
+import minesweeper.Board;
+import minesweeper.client.BinaryClient;
+import minesweeper.client.BinaryClient.Reply;
 import minesweeper.server.MinesweeperServer;
 
 /**
@@ -217,7 +225,11 @@ public class MinesweeperServerTest {
         assertTrue("expected HELLO message: ", in.readLine().startsWith("Welcome"));
         
         out.println("help");
-        assertTrue("expected HELP message: ", in.readLine().startsWith("Command"));
+        String help = in.readLine();
+        assertTrue("expected HELP message: ", help.startsWith("Command"));
+        for (String command : new String[] {"[look if-changed-since v]", "[subscribe]", "[unsubscribe]", "[encoding plain|rle]"}) {
+            assertTrue("expected " + command + " in HELP message: ", help.contains(command));
+        }
 
         out.println("look");
 
@@ -568,4 +580,678 @@ public class MinesweeperServerTest {
         socket.close();
         MinesweeperServer.stopMinesweeperServer(thread);
     }
-}
\ No newline at end of file
+
+    @Test(timeout = 10000)
+    // The following tests are done in this test:
+    // 1. two clients connected to the server
+    // 2. "who" command lists both sessions, with their commands counted
+    // 
+    public void whoTest() throws IOException, ClassNotFoundException {
+        final String[] args = new String[] {
+                "--port", Integer.toString(PORT)
+        };
+        
+        Thread thread = startMinesweeperServerCommand(args);
+
+        Socket socket1 = connectToMinesweeperServer(thread);
+        BufferedReader in1 = new BufferedReader(new InputStreamReader(socket1.getInputStream()));
+        PrintWriter out1 = new PrintWriter(socket1.getOutputStream(), true);
+        assertTrue("expected HELLO message: ", in1.readLine().startsWith("Welcome"));
+
+        Socket socket2 = connectToMinesweeperServer(thread);
+        BufferedReader in2 = new BufferedReader(new InputStreamReader(socket2.getInputStream()));
+        PrintWriter out2 = new PrintWriter(socket2.getOutputStream(), true);
+        assertTrue("expected HELLO message: ", in2.readLine().startsWith("Welcome"));
+
+        out1.println("help");
+        assertTrue("expected HELP message: ", in1.readLine().startsWith("Command"));
+
+        out2.println("who");
+        assertEquals("Players: 2", in2.readLine());
+        // ID ADDRESS CONNECTED_SECONDS COMMANDS BYTES_IN BYTES_OUT
+        String[] first = in2.readLine().split(" ");
+        String[] second = in2.readLine().split(" ");
+        assertEquals(6, first.length);
+        assertEquals(6, second.length);
+        assertEquals(1, Integer.parseInt(first[3]));  // "help"
+        assertEquals(1, Integer.parseInt(second[3])); // "who"
+
+        out1.println("bye");
+        out2.println("bye");
+        socket1.close();
+        socket2.close();
+        MinesweeperServer.stopMinesweeperServer(thread);
+    }
+
+    @Test(timeout = 10000)
+    // The following tests are done in this test:
+    // 1. "subscribe" command
+    // 2. a move by another client is pushed to the subscribed client
+    // 
+    public void subscribeTest() throws IOException, ClassNotFoundException {
+
+        Thread thread = startMinesweeperServerFile("board_file_1.txt");
+
+        Socket socket1 = connectToMinesweeperServer(thread);
+        BufferedReader in1 = new BufferedReader(new InputStreamReader(socket1.getInputStream()));
+        PrintWriter out1 = new PrintWriter(socket1.getOutputStream(), true);
+        assertTrue("expected HELLO message: ", in1.readLine().startsWith("Welcome"));
+
+        out1.println("subscribe");
+        assertEquals("subscribed", in1.readLine());
+
+        Socket socket2 = connectToMinesweeperServer(thread);
+        BufferedReader in2 = new BufferedReader(new InputStreamReader(socket2.getInputStream()));
+        PrintWriter out2 = new PrintWriter(socket2.getOutputStream(), true);
+        assertTrue("expected HELLO message: ", in2.readLine().startsWith("Welcome"));
+
+        // two moves in a row, well within a push interval
+        out2.println("flag 0 0");
+        out2.println("flag 1 0");
+        for (int i=0; i < 2*7; i++) {
+            in2.readLine();
+        }
+
+        // the moves are pushed in at most two frames (if a push happened in between them)
+        String firstRow = "";
+        for (int frame=0; frame < 2 && !firstRow.equals("F F - - - - -"); frame++) {
+            assertEquals("update", in1.readLine());
+            firstRow = in1.readLine();
+            for (int i=1; i < 7; i++) {
+                assertEquals("- - - - - - -", in1.readLine());
+            }
+        }
+        assertEquals("F F - - - - -", firstRow);
+
+        out1.println("unsubscribe");
+        assertEquals("unsubscribed", in1.readLine());
+
+        out1.println("bye");
+        out2.println("bye");
+        socket1.close();
+        socket2.close();
+        MinesweeperServer.stopMinesweeperServer(thread);
+    }
+
+    @Test(timeout = 10000)
+    // The following tests are done in this test:
+    // 1. "look if-changed-since" with the current version - "unchanged"
+    // 2. "look if-changed-since" after a few changes - "delta"
+    // 3. "look if-changed-since" after a large cascade - whole board
+    // 
+    public void lookIfChangedSinceTest() throws IOException, ClassNotFoundException {
+
+        Thread thread = startMinesweeperServerFile("board_file_1.txt");
+
+        Socket socket = connectToMinesweeperServer(thread);
+        BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+        PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
+        assertTrue("expected HELLO message: ", in.readLine().startsWith("Welcome"));
+
+        out.println("look if-changed-since 0");
+        assertEquals("unchanged 0", in.readLine());
+
+        out.println("flag 0 0");
+        for (int i=0; i < 7; i++) {
+            in.readLine();
+        }
+        out.println("look if-changed-since 0");
+        assertEquals("delta 1 1", in.readLine());
+        assertEquals("0 0 F", in.readLine());
+
+        out.println("look if-changed-since 1");
+        assertEquals("unchanged 1", in.readLine());
+
+        out.println("dig 6 3");
+        for (int i=0; i < 7; i++) {
+            in.readLine();
+        }
+        out.println("look if-changed-since 1");
+        assertEquals("board 2", in.readLine());
+        assertEquals("F     1 - 1  ", in.readLine());
+        for (int i=1; i < 7; i++) {
+            in.readLine();
+        }
+
+        out.println("bye");
+        socket.close();
+        MinesweeperServer.stopMinesweeperServer(thread);
+    }
+
+    @Test(timeout = 10000)
+    // The following tests are done in this test:
+    // 1. "encoding rle" right after connecting - boards come run-length encoded
+    // 2. "encoding plain" - boards come drawn as usual again
+    // 
+    public void encodingTest() throws IOException, ClassNotFoundException {
+
+        Thread thread = startMinesweeperServerFile("board_file_1.txt");
+
+        Socket socket = connectToMinesweeperServer(thread);
+        BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+        PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
+        assertTrue("expected HELLO message: ", in.readLine().startsWith("Welcome"));
+
+        out.println("encoding rle");
+        assertEquals("encoding rle", in.readLine());
+
+        out.println("look");
+        for (int i=0; i < 7; i++) {
+            assertEquals("-7", in.readLine());
+        }
+
+        out.println("flag 0 0");
+        assertEquals("F1 -6", in.readLine());
+        for (int i=1; i < 7; i++) {
+            assertEquals("-7", in.readLine());
+        }
+
+        out.println("dig 6 3");
+        assertEquals("F1 .2 11 -1 11 .1", in.readLine());
+        for (int i=1; i < 7; i++) {
+            in.readLine();
+        }
+
+        out.println("encoding plain");
+        assertEquals("encoding plain", in.readLine());
+
+        out.println("look");
+        assertEquals("F     1 - 1  ", in.readLine());
+        for (int i=1; i < 7; i++) {
+            in.readLine();
+        }
+
+        out.println("bye");
+        socket.close();
+        MinesweeperServer.stopMinesweeperServer(thread);
+    }
+
+    @Test(timeout = 10000)
+    // The following tests are done in this test:
+    // 1. a binary client and a text client on the same port, sharing the board
+    // 2. binary look, flag, dig (with a cascade) and help
+    // 3. a batch, ended by a bye
+    // 
+    public void binaryProtocolTest() throws IOException, ClassNotFoundException {
+
+        Thread thread = startMinesweeperServerFile("board_file_1.txt");
+
+        Socket socket = connectToMinesweeperServer(thread);
+        BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+        PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
+        assertTrue("expected HELLO message: ", in.readLine().startsWith("Welcome"));
+
+        BinaryClient client = new BinaryClient(LOCALHOST, PORT);
+        assertTrue("expected HELLO message: ", client.getHello().startsWith("Welcome"));
+
+        Reply reply = client.look();
+        assertEquals(Reply.Kind.BOARD, reply.getKind());
+        assertEquals(7, reply.getBoardSizeX());
+        assertEquals(7, reply.getBoardSizeY());
+        assertEquals(Board.UNTOUCHED, reply.getState(6, 6));
+
+        assertEquals(Board.FLAGGED, client.flag(0, 0).getState(0, 0));
+        reply = client.dig(6, 3);
+        assertEquals("F     1 - 1  ", reply.toString().split(System.lineSeparator())[0]);
+        assertEquals(0, reply.getState(1, 0));
+        assertEquals(1, reply.getState(3, 0));
+        assertEquals(Reply.Kind.HELP, client.help().getKind());
+
+        // the text client sees the moves of the binary client
+        out.println("look");
+        assertEquals("F     1 - 1  ", in.readLine());
+        for (int i=1; i < 7; i++) {
+            in.readLine();
+        }
+
+        List<Reply> replies = client.batch().deflag(0, 0).dig(-1, 7).bye().look().send();
+        assertEquals(3, replies.size());
+        assertEquals(Board.UNTOUCHED, replies.get(0).getState(0, 0));
+        assertEquals(Reply.Kind.BOARD, replies.get(1).getKind());
+        assertEquals(Reply.Kind.BYE, replies.get(2).getKind());
+
+        client.close();
+        out.println("bye");
+        socket.close();
+        MinesweeperServer.stopMinesweeperServer(thread);
+    }
+
+    @Test(timeout = 10000)
+    // The following tests are done in this test:
+    // 1. "metrics" on the game port, after a dig
+    // 2. GET /metrics on the metrics port
+    // 
+    public void metricsTest() throws IOException, ClassNotFoundException, InterruptedException {
+
+        final String[] args = new String[] {
+                "--debug",
+                "--port", Integer.toString(PORT),
+                "--file", new File(BOARDS_PKG + "board_file_1.txt").getAbsolutePath(),
+                "--metrics-port", Integer.toString(PORT + 3)
+        };
+        Thread thread = startMinesweeperServerCommand(args);
+
+        Socket socket = connectToMinesweeperServer(thread);
+        BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+        PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
+        assertTrue("expected HELLO message: ", in.readLine().startsWith("Welcome"));
+
+        out.println("dig 6 3");
+        for (int i=0; i < 7; i++) {
+            in.readLine();
+        }
+
+        // the counters are shared by all the servers of this JVM, so only check what's there
+        out.println("metrics");
+        boolean dig = false, clients = false;
+        for (String line = in.readLine(); !line.startsWith("minesweeper_socket_write_seconds_count"); line = in.readLine()) {
+            if (line.startsWith("minesweeper_commands_total{command=\"dig\"} ")) {
+                dig = Long.parseLong(line.split(" ")[1]) >= 1;
+            }
+            clients |= line.equals("minesweeper_clients 1");
+            assertTrue(line, line.startsWith("# ") || line.startsWith("minesweeper_"));
+        }
+        assertTrue("dig count", dig);
+        assertTrue("clients gauge", clients);
+
+        // the endpoint is started right after the game port accepts connections
+        HttpURLConnection http = null;
+        for (int attempts = 0; http == null; attempts++) {
+            try {
+                http = (HttpURLConnection) new URL("http://" + LOCALHOST + ":" + (PORT + 3) + "/metrics").openConnection();
+                http.getResponseCode();
+            } catch (ConnectException ce) {
+                assertTrue("metrics endpoint not started", attempts < MAX_CONNECTION_ATTEMPTS);
+                http = null;
+                Thread.sleep(50);
+            }
+        }
+        assertEquals(200, http.getResponseCode());
+        assertTrue(http.getContentType().startsWith("text/plain; version=0.0.4"));
+        BufferedReader body = new BufferedReader(new InputStreamReader(http.getInputStream()));
+        assertEquals("# HELP minesweeper_commands_total Requests handled, per command.", body.readLine());
+
+        out.println("bye");
+        socket.close();
+        MinesweeperServer.stopMinesweeperServer(thread);
+    }
+
+    @Test(timeout = 10000)
+    // The following tests are done in this test:
+    // 1. a board file played on a chunked board (--board-impl)
+    // 2. a cascade drawn as on the default board
+    // 
+    public void boardImplTest() throws IOException, ClassNotFoundException {
+
+        final String[] args = new String[] {
+                "--debug",
+                "--port", Integer.toString(PORT),
+                "--file", new File(BOARDS_PKG + "board_file_4.txt").getAbsolutePath(),
+                "--board-impl", "chunked"
+        };
+        Thread thread = startMinesweeperServerCommand(args);
+
+        Socket socket = connectToMinesweeperServer(thread);
+        BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+        PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
+        assertTrue("expected HELLO message: ", in.readLine().startsWith("Welcome"));
+
+        out.println("dig 3 0");
+        assertEquals("- - 1  ", in.readLine());
+        assertEquals("- - 1  ", in.readLine());
+        assertEquals("- - 2 1", in.readLine());
+        assertEquals("- - - -", in.readLine());
+
+        out.println("bye");
+        socket.close();
+        MinesweeperServer.stopMinesweeperServer(thread);
+    }
+
+    @Test(timeout = 10000)
+    // The following tests are done in this test:
+    // 1. no hint on an untouched board
+    // 2. a square proven safe after a cascade
+    //
+    public void hintTest() throws IOException, ClassNotFoundException {
+
+        final String[] args = new String[] {
+                "--debug",
+                "--port", Integer.toString(PORT),
+                "--file", new File(BOARDS_PKG + "board_file_4.txt").getAbsolutePath()
+        };
+        Thread thread = startMinesweeperServerCommand(args);
+
+        Socket socket = connectToMinesweeperServer(thread);
+        BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+        PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
+        assertTrue("expected HELLO message: ", in.readLine().startsWith("Welcome"));
+
+        out.println("hint");
+        assertEquals("hint none", in.readLine());
+
+        out.println("dig 3 0");
+        assertEquals("- - 1  ", in.readLine());
+        assertEquals("- - 1  ", in.readLine());
+        assertEquals("- - 2 1", in.readLine());
+        assertEquals("- - - -", in.readLine());
+
+        // (2,0) and (2,1) have their bomb in {(1,0), (1,1)}
+        out.println("hint");
+        assertEquals("hint safe 1 2", in.readLine());
+
+        out.println("bye");
+        socket.close();
+        MinesweeperServer.stopMinesweeperServer(thread);
+    }
+
+    @Test(timeout = 10000)
+    // The following tests are done in this test:
+    // 1. the probabilities of a window after a cascade
+    // 2. a window clipped to the board, and out of the board
+    //
+    public void probTest() throws IOException, ClassNotFoundException {
+
+        final String[] args = new String[] {
+                "--debug",
+                "--port", Integer.toString(PORT),
+                "--file", new File(BOARDS_PKG + "board_file_4.txt").getAbsolutePath()
+        };
+        Thread thread = startMinesweeperServerCommand(args);
+
+        Socket socket = connectToMinesweeperServer(thread);
+        BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+        PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
+        assertTrue("expected HELLO message: ", in.readLine().startsWith("Welcome"));
+
+        out.println("dig 3 0");
+        assertEquals("- - 1  ", in.readLine());
+        assertEquals("- - 1  ", in.readLine());
+        assertEquals("- - 2 1", in.readLine());
+        assertEquals("- - - -", in.readLine());
+
+        out.println("prob 1 0 3 4");
+        assertEquals("0.200 . .", in.readLine());
+        assertEquals("0.800 . .", in.readLine());
+        assertEquals("0.000 . .", in.readLine());
+        assertEquals("0.200 0.500 0.500", in.readLine());
+
+        out.println("prob 3 2 10 10");
+        assertEquals(".", in.readLine());
+        assertEquals("0.500", in.readLine());
+
+        out.println("prob 4 0 1 1");
+        assertEquals("prob none", in.readLine());
+
+        out.println("bye");
+        socket.close();
+        MinesweeperServer.stopMinesweeperServer(thread);
+    }
+
+    @Test(timeout = 20000)
+    // The following tests are done in this test:
+    // 1. a random board generated without guesses (--no-guess), its first square dug
+    // 2. a hint given right away
+    //
+    public void noGuessTest() throws IOException, ClassNotFoundException {
+
+        final String[] args = new String[] {
+                "--debug",
+                "--port", Integer.toString(PORT),
+                "--size", "30,16",
+                "--no-guess", "15,8"
+        };
+        Thread thread = startMinesweeperServerCommand(args);
+
+        Socket socket = connectToMinesweeperServer(thread);
+        BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+        PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
+        assertTrue("expected HELLO message: ", in.readLine().startsWith("Welcome"));
+
+        out.println("look");
+        for (int y = 0; y < 16; y++) {
+            String row = in.readLine();
+            assertEquals(2 * 30 - 1, row.length());
+            if (y >= 7 && y <= 9) {
+                // no bomb around the first dig, which is dug with its cascade
+                assertTrue("expected dug squares: " + row, row.substring(2 * 14, 2 * 16 + 1).matches("[ 1-8] [ 1-8] [ 1-8]"));
+            }
+            if (y == 8) {
+                assertEquals(' ', row.charAt(2 * 15));
+            }
+        }
+
+        out.println("hint");
+        assertTrue("expected a hint: ", in.readLine().matches("hint (safe|mine) \\d+ \\d+"));
+
+        out.println("bye");
+        socket.close();
+        MinesweeperServer.stopMinesweeperServer(thread);
+    }
+
+    @Test(timeout = 10000)
+    // The following tests are done in this test:
+    // 1. a random board with its bombs placed lazily (--lazy-mines): the first dig is safe
+    //    and starts a cascade
+    //
+    public void lazyMinesTest() throws IOException, ClassNotFoundException {
+
+        final String[] args = new String[] {
+                "--port", Integer.toString(PORT),
+                "--size", "30,16",
+                "--lazy-mines"
+        };
+        Thread thread = startMinesweeperServerCommand(args);
+
+        Socket socket = connectToMinesweeperServer(thread);
+        BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+        PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
+        assertTrue("expected HELLO message: ", in.readLine().startsWith("Welcome"));
+
+        // no probabilities until the first dig places the bombs
+        out.println("prob 0 0 3 3");
+        assertEquals("prob none", in.readLine());
+
+        out.println("dig 15 8");
+        for (int y = 0; y < 16; y++) {
+            String row = in.readLine();
+            assertEquals(2 * 30 - 1, row.length());
+            if (y >= 7 && y <= 9) {
+                assertTrue("expected dug squares: " + row, row.substring(2 * 14, 2 * 16 + 1).matches("[ 1-8] [ 1-8] [ 1-8]"));
+            }
+            if (y == 8) {
+                assertEquals(' ', row.charAt(2 * 15));
+            }
+        }
+
+        out.println("bye");
+        socket.close();
+        MinesweeperServer.stopMinesweeperServer(thread);
+    }
+
+    /*
+     * send a masked WebSocket text message.
+     */
+    private static void sendWebSocket(OutputStream out, String message) throws IOException {
+        byte[] payload = message.getBytes(StandardCharsets.UTF_8);
+        byte[] mask = {0x12, 0x34, 0x56, 0x78};
+        out.write(0x81);
+        out.write(0x80 | payload.length);
+        out.write(mask);
+        for (int i=0; i < payload.length; i++) {
+            out.write(payload[i] ^ mask[i & 3]);
+        }
+        out.flush();
+    }
+
+    /*
+     * read a WebSocket frame from the server, return its opcode followed by its (text) payload.
+     */
+    private static String readWebSocket(InputStream in) throws IOException {
+        int opcode = in.read() & 0x0F;
+        int length = in.read();
+        if (length == 126) {
+            length = (in.read() << 8) | in.read();
+        }
+        byte[] payload = new byte[length];
+        for (int i=0; i < length; i++) {
+            payload[i] = (byte) in.read();
+        }
+        return opcode + " " + new String(payload, StandardCharsets.UTF_8).trim();
+    }
+
+    @Test(timeout = 10000)
+    // The following tests are done in this test:
+    // 1. GET / and GET /board from the HTTP gateway
+    // 2. WebSocket handshake, then requests and replies as text messages
+    // 3. a move by a TCP client is pushed to the subscribed WebSocket client as a delta
+    // 4. "bye" ends with a close frame
+    // 
+    public void webSocketTest() throws IOException, ClassNotFoundException, InterruptedException {
+
+        final String[] args = new String[] {
+                "--debug",
+                "--port", Integer.toString(PORT),
+                "--file", new File(BOARDS_PKG + "board_file_1.txt").getAbsolutePath(),
+                "--ws-port", Integer.toString(PORT + 1),
+                "--http-port", Integer.toString(PORT + 2)
+        };
+        Thread thread = startMinesweeperServerCommand(args);
+
+        Socket socket = connectToMinesweeperServer(thread);
+        BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+        PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
+        assertTrue("expected HELLO message: ", in.readLine().startsWith("Welcome"));
+
+        // the gateways are started right after the game port accepts connections
+        Socket ws = null;
+        for (int attempts = 0; ws == null; attempts++) {
+            try {
+                ws = new Socket(LOCALHOST, PORT + 1);
+            } catch (ConnectException ce) {
+                assertTrue("WebSocket gateway not started", attempts < MAX_CONNECTION_ATTEMPTS);
+                Thread.sleep(50);
+            }
+        }
+        ws.setSoTimeout(3000);
+
+        HttpURLConnection http = (HttpURLConnection) new URL("http://" + LOCALHOST + ":" + (PORT + 2) + "/board").openConnection();
+        assertEquals(200, http.getResponseCode());
+        BufferedReader body = new BufferedReader(new InputStreamReader(http.getInputStream()));
+        for (int i=0; i < 7; i++) {
+            assertEquals("- - - - - - -", body.readLine());
+        }
+        http = (HttpURLConnection) new URL("http://" + LOCALHOST + ":" + (PORT + 2) + "/").openConnection();
+        assertEquals(200, http.getResponseCode());
+        assertTrue(http.getContentType().startsWith("text/html"));
+
+        InputStream wsIn = ws.getInputStream();
+        OutputStream wsOut = ws.getOutputStream();
+        wsOut.write(("GET / HTTP/1.1\r\nHost: localhost\r\nUpgrade: websocket\r\nConnection: Upgrade\r\n"
+                     + "Sec-WebSocket-Key: dGhlIHNhbXBsZSBub25jZQ==\r\nSec-WebSocket-Version: 13\r\n\r\n")
+                     .getBytes(StandardCharsets.ISO_8859_1));
+        StringBuilder response = new StringBuilder();
+        while (!response.toString().endsWith("\r\n\r\n")) {
+            response.append((char) wsIn.read());
+        }
+        assertTrue(response.toString().startsWith("HTTP/1.1 101 "));
+        // the accept key of the sample key of RFC 6455
+        assertTrue(response.toString().contains("Sec-WebSocket-Accept: s3pPLMBiTxaQ9kYGzzhZRbK+xOo="));
+        assertTrue(readWebSocket(wsIn).startsWith("1 Welcome"));
+
+        sendWebSocket(wsOut, "subscribe");
+        assertEquals("1 subscribed", readWebSocket(wsIn));
+
+        out.println("flag 0 0");
+        for (int i=0; i < 7; i++) {
+            in.readLine();
+        }
+        assertEquals("1 delta 1 1" + System.lineSeparator() + "0 0 F", readWebSocket(wsIn));
+
+        sendWebSocket(wsOut, "help");
+        assertTrue(readWebSocket(wsIn).startsWith("1 Command syntax"));
+
+        sendWebSocket(wsOut, "bye");
+        assertEquals("1 Bye", readWebSocket(wsIn));
+        assertTrue(readWebSocket(wsIn).startsWith("8 "));
+
+        ws.close();
+        out.println("bye");
+        socket.close();
+        MinesweeperServer.stopMinesweeperServer(thread);
+    }
+
+    @Test(timeout = 10000)
+    // The following tests are done in this test:
+    // 1. many requests pipelined in a single write
+    // 2. replies come back in order, and the connection ends after "bye"
+    // 
+    public void pipelineTest() throws IOException, ClassNotFoundException {
+
+        Thread thread = startMinesweeperServerFile("board_file_1.txt");
+
+        Socket socket = connectToMinesweeperServer(thread);
+        BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+        PrintWriter out = new PrintWriter(socket.getOutputStream(), false);
+        assertTrue("expected HELLO message: ", in.readLine().startsWith("Welcome"));
+
+        StringBuilder requests = new StringBuilder();
+        for (int x=0; x < 7; x++) {
+            requests.append("flag ").append(x).append(" 6\n");
+        }
+        requests.append("help\n").append("deflag 3 6\n").append("bye\n").append("look\n");
+        out.print(requests);
+        out.flush();
+
+        // one board per flag, each with one more flag in the last row
+        String lastRow = "";
+        for (int x=0; x < 7; x++) {
+            for (int i=0; i < 6; i++) {
+                assertEquals("- - - - - - -", in.readLine());
+            }
+            lastRow = lastRow + (x == 0 ? "F" : " F");
+            assertEquals(lastRow + "- - - - - - -".substring(lastRow.length()), in.readLine());
+        }
+        assertTrue("expected HELP message: ", in.readLine().startsWith("Command"));
+        for (int i=0; i < 6; i++) {
+            assertEquals("- - - - - - -", in.readLine());
+        }
+        assertEquals("F F F - F F F", in.readLine());
+        assertEquals("Bye", in.readLine());
+        // the "look" after "bye" is never handled
+        assertEquals(null, in.readLine());
+
+        socket.close();
+        MinesweeperServer.stopMinesweeperServer(thread);
+    }
+
+    @Test(timeout = 10000)
+    // The following tests are done in this test:
+    // 1. a request followed by a part of the next one in a single write: the reply to the
+    //    first one is sent without waiting for the end of the next one
+    // 
+    public void partialLineTest() throws IOException, ClassNotFoundException {
+
+        Thread thread = startMinesweeperServerFile("board_file_1.txt");
+
+        Socket socket = connectToMinesweeperServer(thread);
+        BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+        PrintWriter out = new PrintWriter(socket.getOutputStream(), false);
+        assertTrue("expected HELLO message: ", in.readLine().startsWith("Welcome"));
+
+        out.print("help\r\nlo");
+        out.flush();
+        assertTrue("expected HELP message: ", in.readLine().startsWith("Command"));
+
+        out.print("ok\n");
+        out.flush();
+        for (int i=0; i < 7; i++) {
+            assertEquals("- - - - - - -", in.readLine());
+        }
+
+        out.println("bye");
+        out.flush();
+        assertEquals("Bye", in.readLine());
+        socket.close();
+        MinesweeperServer.stopMinesweeperServer(thread);
+    }
+}
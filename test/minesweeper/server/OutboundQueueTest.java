@@ -0,0 +1,94 @@
+/* Copyright (c) 2007-2017 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package minesweeper.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import minesweeper.server.OutboundQueue.Frame;
+import minesweeper.server.OutboundQueue.Kind;
+
+public class OutboundQueueTest {
+
+    /*
+     * Testing strategy
+     * ==================
+     * 
+     * Partition the inputs as follows:
+     * 1. replies only, queue not full
+     * 2. pushed BOARD frames superseding older pushed frames, but never replies
+     * 3. pushed frames offered to a full queue, UPDATE and BOARD
+     * 4. closed queue, with and without frames still queued
+     * 
+     * Cover each part testing coverage.
+     */
+
+    private static byte[] bytes(String s) {
+        return s.getBytes();
+    }
+
+    @Test
+    public void testRepliesInOrder() throws InterruptedException {
+        OutboundQueue queue = new OutboundQueue(4);
+        assertTrue(queue.put(bytes("a")));
+        assertTrue(queue.put(bytes("b")));
+        assertEquals(2, queue.size());
+        assertEquals("a", new String(queue.take().data));
+        assertEquals("b", new String(queue.take().data));
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    public void testBoardSupersedesPushedFrames() throws InterruptedException {
+        OutboundQueue queue = new OutboundQueue(4);
+        assertTrue(queue.offer(new Frame(Kind.BOARD, bytes("board1"))));
+        assertTrue(queue.put(bytes("reply")));
+        assertTrue(queue.offer(new Frame(Kind.UPDATE, bytes("update"))));
+        assertTrue(queue.offer(new Frame(Kind.BOARD, bytes("board2"))));
+
+        assertEquals(2, queue.size());
+        assertEquals(2, queue.getSuperseded());
+        assertEquals("reply", new String(queue.take().data));
+        assertEquals("board2", new String(queue.take().data));
+    }
+
+    @Test
+    public void testFullQueueRejectsPushedFrames() throws InterruptedException {
+        OutboundQueue queue = new OutboundQueue(2);
+        assertTrue(queue.put(bytes("reply1")));
+        assertTrue(queue.put(bytes("reply2")));
+        assertTrue("full queue must reject pushed frames", !queue.offer(new Frame(Kind.UPDATE, bytes("update"))));
+        assertEquals(1, queue.getDropped());
+        assertEquals(2, queue.size());
+    }
+
+    @Test
+    public void testFullQueueKeepsNewestBoard() throws InterruptedException {
+        OutboundQueue queue = new OutboundQueue(2);
+        assertTrue(queue.put(bytes("reply1")));
+        assertTrue(queue.put(bytes("reply2")));
+        // a queue full of replies still takes the newest board, one frame over its capacity
+        assertTrue(queue.offer(new Frame(Kind.BOARD, bytes("board1"))));
+        assertTrue(queue.offer(new Frame(Kind.BOARD, bytes("board2"))));
+        assertTrue("full queue must reject updates", !queue.offer(new Frame(Kind.UPDATE, bytes("update"))));
+        assertEquals(3, queue.size());
+        assertEquals(1, queue.getSuperseded());
+        assertEquals(1, queue.getDropped());
+        assertEquals("reply1", new String(queue.take().data));
+        assertEquals("reply2", new String(queue.take().data));
+        assertEquals("board2", new String(queue.take().data));
+    }
+
+    @Test
+    public void testClose() throws InterruptedException {
+        OutboundQueue queue = new OutboundQueue(2);
+        assertTrue(queue.put(bytes("reply")));
+        queue.close();
+        assertTrue("closed queue must reject replies", !queue.put(bytes("late")));
+        assertEquals("reply", new String(queue.take().data));
+        assertEquals(null, queue.take());
+    }
+}
@@ -0,0 +1,126 @@
+/* Copyright (c) 2007-2017 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package minesweeper.server;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.ConnectException;
+import java.net.Socket;
+
+import minesweeper.client.BinaryClient;
+
+/**
+ * ProtocolBenchmark compares the text protocol with the binary protocol (see BinaryProtocol)
+ * on a large board: round trips of single requests, and batches of requests.
+ *
+ * Not a JUnit test, run it by hand:
+ *      java minesweeper.server.ProtocolBenchmark [SIZE [REQUESTS]]
+ */
+public class ProtocolBenchmark {
+
+    private static final String LOCALHOST = "127.0.0.1";
+    private static final int PORT = 4444 + 17;
+    private static final int BATCH = 64;
+
+    public static void main(String[] args) throws Exception {
+        int size = (args.length > 0) ? Integer.parseInt(args[0]) : 200;
+        int requests = (args.length > 1) ? Integer.parseInt(args[1]) : 2000;
+
+        Thread server = new Thread(() -> MinesweeperServer.main(new String[] {
+                "--debug", "--port", Integer.toString(PORT), "--size", size + "," + size,
+                "--log-level", "WARN"}));
+        server.setDaemon(true);
+        server.start();
+        waitForServer();
+
+        System.out.printf("board %dx%d, %d requests per run%n", size, size, requests);
+        for (int round = 0; round < 3; round++) {
+            // the first rounds warm up the JIT of both sides
+            System.out.printf("round %d%n", round);
+            text(size, requests, false);
+            text(size, requests, true);
+            binary(size, requests, false);
+            binary(size, requests, true);
+        }
+        MinesweeperServer.stopMinesweeperServer(server);
+    }
+
+    /*
+     * "look" requests over the text protocol, one at a time or pipelined by BATCH.
+     */
+    private static void text(int size, int requests, boolean pipelined) throws IOException {
+        try (Socket socket = new Socket(LOCALHOST, PORT)) {
+            socket.setTcpNoDelay(true);
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()), 1 << 16);
+            PrintWriter out = new PrintWriter(socket.getOutputStream(), false);
+            in.readLine();
+
+            long bytes = 0;
+            int group = pipelined ? BATCH : 1;
+            long start = System.nanoTime();
+            int i;
+            for (i = 0; i < requests; i += group) {
+                for (int j = 0; j < group; j++) {
+                    out.println("look");
+                }
+                out.flush();
+                for (int j = 0; j < group * size; j++) {
+                    bytes += in.readLine().length() + System.lineSeparator().length();
+                }
+            }
+            report(pipelined ? "text, pipelined" : "text", i, bytes, System.nanoTime() - start);
+            out.println("bye");
+            out.flush();
+        }
+    }
+
+    /*
+     * LOOK requests over the binary protocol, one at a time or in BATCHes.
+     */
+    private static void binary(int size, int requests, boolean batched) throws IOException {
+        try (BinaryClient client = new BinaryClient(LOCALHOST, PORT)) {
+            long bytes = 0;
+            long reply = BinaryProtocol.boardFrame(size, size, new byte[(size * size + 1) / 2]).length;
+            long start = System.nanoTime();
+            int i;
+            for (i = 0; i < requests; ) {
+                if (batched) {
+                    BinaryClient.Batch batch = client.batch();
+                    for (int j = 0; j < BATCH; j++) {
+                        batch.look();
+                    }
+                    i += batch.send().size();
+                } else {
+                    client.look();
+                    i++;
+                }
+                bytes = (long) i * reply;
+            }
+            report(batched ? "binary, batched" : "binary", i, bytes, System.nanoTime() - start);
+            client.bye();
+        }
+    }
+
+    private static void report(String name, int requests, long bytes, long nanos) {
+        System.out.printf("  %-16s %8.0f requests/s %8d bytes/reply %8.1f MB/s%n", name,
+                          requests * 1e9 / nanos, bytes / requests, bytes * 1e3 / nanos);
+    }
+
+    private static void waitForServer() throws InterruptedException {
+        for (int attempts = 0; attempts < 50; attempts++) {
+            try {
+                // the server accepts connections: nothing to say yet
+                new Socket(LOCALHOST, PORT).close();
+                return;
+            } catch (ConnectException ce) {
+                Thread.sleep(100);
+            } catch (IOException ioe) {
+                throw new RuntimeException(ioe);
+            }
+        }
+        throw new RuntimeException("server not started on port " + PORT);
+    }
+}